@@ -13,6 +13,7 @@ import android.os.Bundle;
 import androidx.appcompat.app.AppCompatDelegate;
 import androidx.preference.PreferenceManager;
 
+import com.alphawallet.app.service.SignatureLookupService;
 import com.alphawallet.app.util.ShiplyLogger;
 import com.alphawallet.app.util.TimberInit;
 import com.alphawallet.app.walletconnect.AWWalletConnectClient;
@@ -74,6 +75,7 @@ public class App extends Application
         mInstance = this;
         Realm.init(this);
         TimberInit.configTimber();
+        SignatureLookupService.init(this);
 
         int defaultTheme = PreferenceManager.getDefaultSharedPreferences(this)
                 .getInt("theme", C.THEME_AUTO);
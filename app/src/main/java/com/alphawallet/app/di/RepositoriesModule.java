@@ -33,7 +33,9 @@ import com.alphawallet.app.service.AlphaWalletService;
 import com.alphawallet.app.service.AnalyticsService;
 import com.alphawallet.app.service.AnalyticsServiceType;
 import com.alphawallet.app.service.AssetDefinitionService;
+import com.alphawallet.app.service.BlockHeaderCache;
 import com.alphawallet.app.service.GasService;
+import com.alphawallet.app.service.IPFSContentCache;
 import com.alphawallet.app.service.IPFSService;
 import com.alphawallet.app.service.IPFSServiceType;
 import com.alphawallet.app.service.KeyService;
@@ -207,9 +209,9 @@ public class RepositoriesModule
 
     @Singleton
     @Provides
-    IPFSServiceType provideIPFSService(OkHttpClient client)
+    IPFSServiceType provideIPFSService(OkHttpClient client, @ApplicationContext Context ctx)
     {
-        return new IPFSService(client);
+        return new IPFSService(client, IPFSContentCache.init(ctx.getCacheDir()), IPFSService.DEFAULT_GATEWAYS);
     }
 
     @Singleton
@@ -218,9 +220,17 @@ public class RepositoriesModule
                                                     EthereumNetworkRepositoryType ethereumNetworkRepositoryType,
                                                     TransactionsNetworkClientType transactionsNetworkClientType,
                                                     TransactionLocalSource transactionLocalSource,
-                                                    TransactionNotificationService transactionNotificationService)
+                                                    TransactionNotificationService transactionNotificationService,
+                                                    BlockHeaderCache blockHeaderCache)
     {
-        return new TransactionsService(tokensService, ethereumNetworkRepositoryType, transactionsNetworkClientType, transactionLocalSource, transactionNotificationService);
+        return new TransactionsService(tokensService, ethereumNetworkRepositoryType, transactionsNetworkClientType, transactionLocalSource, transactionNotificationService, blockHeaderCache);
+    }
+
+    @Singleton
+    @Provides
+    BlockHeaderCache provideBlockHeaderCache(RealmManager realmManager)
+    {
+        return new BlockHeaderCache(realmManager);
     }
 
     @Singleton
@@ -262,9 +272,9 @@ public class RepositoriesModule
     @Provides
     AssetDefinitionService providingAssetDefinitionServices(IPFSServiceType ipfsService, @ApplicationContext Context ctx, NotificationService notificationService, RealmManager realmManager,
                                                             TokensService tokensService, TokenLocalSource tls,
-                                                            AlphaWalletService alphaService)
+                                                            AlphaWalletService alphaService, BlockHeaderCache blockHeaderCache)
     {
-        return new AssetDefinitionService(ipfsService, ctx, notificationService, realmManager, tokensService, tls, alphaService);
+        return new AssetDefinitionService(ipfsService, ctx, notificationService, realmManager, tokensService, tls, alphaService, blockHeaderCache);
     }
 
     @Singleton
@@ -3,20 +3,38 @@ package com.alphawallet.app.entity;
 import android.content.Context;
 import android.util.Log;
 
+import com.alphawallet.app.service.IPFSService;
+import com.bumptech.glide.Glide;
 import com.bumptech.glide.GlideBuilder;
+import com.bumptech.glide.Registry;
 import com.bumptech.glide.annotation.GlideModule;
+import com.bumptech.glide.load.engine.cache.DiskCache;
+import com.bumptech.glide.load.engine.cache.InternalCacheDiskCacheFactory;
 import com.bumptech.glide.module.AppGlideModule;
 
 import org.jetbrains.annotations.NotNull;
 
+import java.io.InputStream;
+
 /**
  * Created by JB on 24/10/2021.
  */
 @GlideModule
 public class AlphaWalletGlideModule extends AppGlideModule
 {
+    //token icons and NFT artwork; keeps Glide's default directory so the existing cache carries over
+    private static final long MEDIA_DISK_CACHE_BYTES = 400L * 1024 * 1024;
+
     @Override
     public void applyOptions(@NotNull Context context, GlideBuilder builder) {
         builder.setLogLevel(Log.ERROR);
+        builder.setDiskCache(new InternalCacheDiskCacheFactory(context, DiskCache.Factory.DEFAULT_DISK_CACHE_DIR, MEDIA_DISK_CACHE_BYTES));
+    }
+
+    @Override
+    public void registerComponents(@NotNull Context context, @NotNull Glide glide, @NotNull Registry registry)
+    {
+        //ahead of the default String loaders, so IPFS media is keyed by CID whichever gateway the link names
+        registry.prepend(String.class, InputStream.class, new IPFSModelLoader.Factory(IPFSService.DEFAULT_GATEWAYS));
     }
 }
@@ -2,6 +2,7 @@ package com.alphawallet.app.entity;
 
 import android.util.Pair;
 
+import com.alphawallet.app.entity.nftassets.NFTOwnershipIndex;
 import com.alphawallet.app.entity.tokens.Token;
 import com.alphawallet.app.repository.EthereumNetworkBase;
 import com.alphawallet.app.repository.TokensRealmSource;
@@ -450,7 +451,7 @@ public class EventSync
      */
 
     public Pair<Integer, Pair<HashSet<BigInteger>, HashSet<BigInteger>>> processTransferEvents(Web3j web3j, Event transferEvent, DefaultBlockParameter startBlock,
-                                                                       DefaultBlockParameter endBlock, Realm realm)
+                                                                       DefaultBlockParameter endBlock, Realm realm, NFTOwnershipIndex index)
             throws IOException, LogOverflowException
     {
         HashSet<String> txHashes = new HashSet<>();
@@ -464,11 +465,11 @@ public class EventSync
 
         int eventCount = receiveLogs.getLogs().size();
 
-        HashSet<BigInteger> rcvTokenIds = new HashSet<>(token.processLogsAndStoreTransferEvents(receiveLogs, transferEvent, txHashes, realm));
+        HashSet<BigInteger> rcvTokenIds = new HashSet<>(token.processLogsAndStoreTransferEvents(receiveLogs, transferEvent, txHashes, realm, index));
 
         if (sendLogs.getLogs().size() > eventCount) eventCount = sendLogs.getLogs().size();
 
-        HashSet<BigInteger> sendTokenIds = token.processLogsAndStoreTransferEvents(sendLogs, transferEvent, txHashes, realm);
+        HashSet<BigInteger> sendTokenIds = token.processLogsAndStoreTransferEvents(sendLogs, transferEvent, txHashes, realm, index);
 
         //register Transaction fetches
         for (String txHash : txHashes)
@@ -0,0 +1,173 @@
+package com.alphawallet.app.entity;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import com.alphawallet.app.util.IPFSCid;
+import com.alphawallet.app.util.Utils;
+import com.bumptech.glide.Priority;
+import com.bumptech.glide.load.DataSource;
+import com.bumptech.glide.load.Options;
+import com.bumptech.glide.load.data.DataFetcher;
+import com.bumptech.glide.load.model.GlideUrl;
+import com.bumptech.glide.load.model.ModelLoader;
+import com.bumptech.glide.load.model.ModelLoaderFactory;
+import com.bumptech.glide.load.model.MultiModelLoaderFactory;
+import com.bumptech.glide.signature.ObjectKey;
+
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Loads ipfs://, /ipfs/ and bare CID image links through the IPFS gateways in turn, rather than only the gateway
+ * named in the link. Media is keyed by CID and path, so the same artwork linked through different gateways is
+ * downloaded and cached once.
+ */
+public class IPFSModelLoader implements ModelLoader<String, InputStream>
+{
+    private static final String KEY_PREFIX = "ipfs:";
+
+    private final ModelLoader<GlideUrl, InputStream> urlLoader;
+    private final List<String> gateways;
+
+    public IPFSModelLoader(ModelLoader<GlideUrl, InputStream> urlLoader, List<String> gateways)
+    {
+        this.urlLoader = urlLoader;
+        this.gateways = gateways;
+    }
+
+    @Override
+    public boolean handles(@NonNull String model)
+    {
+        return Utils.isIPFS(model);
+    }
+
+    @Nullable
+    @Override
+    public LoadData<InputStream> buildLoadData(@NonNull String model, int width, int height, @NonNull Options options)
+    {
+        IPFSCid cid = IPFSCid.fromUrl(model);
+        if (cid == null) return null; //looked like IPFS but isn't; the default loaders take it
+
+        List<DataFetcher<InputStream>> fetchers = new ArrayList<>();
+        for (String gateway : gateways)
+        {
+            LoadData<InputStream> gatewayData = urlLoader.buildLoadData(new GlideUrl(Utils.resolveIPFS(model, gateway)), width, height, options);
+            if (gatewayData != null) fetchers.add(gatewayData.fetcher);
+        }
+
+        return fetchers.isEmpty() ? null : new LoadData<>(new ObjectKey(KEY_PREFIX + cid.key()), new GatewayFetcher(fetchers));
+    }
+
+    /**
+     * Tries each gateway's fetcher until one returns data
+     */
+    public static class GatewayFetcher implements DataFetcher<InputStream>
+    {
+        private final List<DataFetcher<InputStream>> fetchers;
+        private int current;
+        private volatile boolean cancelled;
+
+        public GatewayFetcher(List<DataFetcher<InputStream>> fetchers)
+        {
+            this.fetchers = fetchers;
+        }
+
+        @Override
+        public void loadData(@NonNull Priority priority, @NonNull DataCallback<? super InputStream> callback)
+        {
+            current = 0;
+            fetchFrom(priority, callback, null);
+        }
+
+        private void fetchFrom(Priority priority, DataCallback<? super InputStream> callback, @Nullable Exception lastError)
+        {
+            if (cancelled) return;
+            if (current >= fetchers.size())
+            {
+                callback.onLoadFailed(lastError != null ? lastError : new Exception("No IPFS gateway returned the content"));
+                return;
+            }
+
+            fetchers.get(current).loadData(priority, new DataCallback<InputStream>()
+            {
+                @Override
+                public void onDataReady(@Nullable InputStream data)
+                {
+                    if (data != null)
+                    {
+                        callback.onDataReady(data);
+                    }
+                    else
+                    {
+                        next(priority, callback, null);
+                    }
+                }
+
+                @Override
+                public void onLoadFailed(@NonNull Exception e)
+                {
+                    next(priority, callback, e);
+                }
+            });
+        }
+
+        private void next(Priority priority, DataCallback<? super InputStream> callback, @Nullable Exception error)
+        {
+            fetchers.get(current).cleanup();
+            current++;
+            fetchFrom(priority, callback, error);
+        }
+
+        @Override
+        public void cleanup()
+        {
+            if (current < fetchers.size()) fetchers.get(current).cleanup();
+        }
+
+        @Override
+        public void cancel()
+        {
+            cancelled = true;
+            if (current < fetchers.size()) fetchers.get(current).cancel();
+        }
+
+        @NonNull
+        @Override
+        public Class<InputStream> getDataClass()
+        {
+            return InputStream.class;
+        }
+
+        @NonNull
+        @Override
+        public DataSource getDataSource()
+        {
+            return DataSource.REMOTE;
+        }
+    }
+
+    public static class Factory implements ModelLoaderFactory<String, InputStream>
+    {
+        private final List<String> gateways;
+
+        public Factory(List<String> gateways)
+        {
+            this.gateways = gateways;
+        }
+
+        @NonNull
+        @Override
+        public ModelLoader<String, InputStream> build(@NonNull MultiModelLoaderFactory multiFactory)
+        {
+            return new IPFSModelLoader(multiFactory.build(GlideUrl.class, InputStream.class), gateways);
+        }
+
+        @Override
+        public void teardown()
+        {
+            //nothing held
+        }
+    }
+}
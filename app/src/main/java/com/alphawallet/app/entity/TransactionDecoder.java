@@ -3,6 +3,7 @@ package com.alphawallet.app.entity;
 import static com.alphawallet.app.entity.TransactionDecoder.ReadState.ARGS;
 import static org.web3j.crypto.Keys.ADDRESS_LENGTH_IN_HEX;
 
+import com.alphawallet.app.service.SignatureLookupService;
 import com.alphawallet.app.web3.entity.Web3Transaction;
 
 import org.web3j.crypto.Hash;
@@ -11,33 +12,41 @@ import org.web3j.utils.Numeric;
 
 import java.math.BigInteger;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
 
 import timber.log.Timber;
 
 /**
  * Created by James on 2/02/2018.
  *
- * TransactionDecoder currently only decode a transaction input in the
- * string format, which is strictly a string starting with "0x" and
- * with an even number of hex digits followed. (Probably should be
- * bytes but we work with string for now.) It is used only for one
- * thing at the moment: decodeInput(), which returns the decoded
- * input.
+ * TransactionDecoder decodes a transaction input given as a string
+ * starting with "0x" and followed by hex digits. The arguments are
+ * hex decoded once and read as bytes; decodeInput() returns the
+ * decoded input. Decoding keeps no state between calls, so the
+ * shared decoder can be used from any thread.
  */
 
 public class TransactionDecoder
 {
     public static final int FUNCTION_LENGTH = 10;
+    private static final int WORD_DIGITS = 64;
+    private static final int DECODED_CACHE_SIZE = 256;
     private final static List<String> endContractSignatures = new ArrayList<>();
 
-    private int parseIndex;
     private Map<String, FunctionData> functionList;
-
-    private ReadState state = ARGS;
-    private int sigCount = 0;
+    private final Map<String, DecodedInput> decoded = new LinkedHashMap<String, DecodedInput>(64, 0.75f, true)
+    {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, DecodedInput> eldest)
+        {
+            return size() > DECODED_CACHE_SIZE;
+        }
+    };
 
     private FunctionData getUnknownFunction()
     {
@@ -51,8 +60,6 @@ public class TransactionDecoder
 
     public TransactionInput decodeInput(String input)
     {
-        ParseStage parseState = ParseStage.PARSE_FUNCTION;
-        parseIndex = 0;
         //1. check function
         TransactionInput thisData = new TransactionInput();
         if (input == null || input.length() < 10)
@@ -63,25 +70,10 @@ public class TransactionDecoder
 
         try
         {
-            while (parseIndex < input.length() && !(parseState == ParseStage.FINISH))
+            if (setFunction(thisData, input.substring(0, FUNCTION_LENGTH)) && input.length() > FUNCTION_LENGTH)
             {
-                switch (parseState)
-                {
-                    case PARSE_FUNCTION: //get function
-                        parseState = setFunction(thisData, readBytes(input, FUNCTION_LENGTH), input.length());
-                        break;
-                    case PARSE_ARGS: //now get params
-                        parseState = getParams(thisData, input);
-                        break;
-                    case FINISH:
-                        break;
-                    case ERROR:
-                        //Perform any future error handling here
-                        parseState = ParseStage.FINISH;
-                        break;
-                }
-
-                if (parseIndex < 0) break; //error
+                //2. now get params
+                getParams(thisData, new CallData(input));
             }
         }
         catch (Exception e)
@@ -95,7 +87,7 @@ public class TransactionDecoder
 
     public TransactionInput decodeInput(Transaction tx, String walletAddress)
     {
-        TransactionInput thisData = decodeInput(tx.input);
+        TransactionInput thisData = decodeCached(tx);
         thisData.setOperationType(tx, walletAddress);
         return thisData;
     }
@@ -108,7 +100,32 @@ public class TransactionDecoder
         return thisData;
     }
 
-    private ParseStage setFunction(TransactionInput thisData, String input, int length)
+    // Lists show the same transactions over and over, each time from a fresh Transaction; decode each input once.
+    // Callers get a copy as they set the operation type on it
+    private TransactionInput decodeCached(Transaction tx)
+    {
+        if (tx.hash == null || tx.hash.isEmpty()) return decodeInput(tx.input);
+
+        String key = tx.hash + "-" + tx.chainId;
+        DecodedInput entry;
+        synchronized (decoded)
+        {
+            entry = decoded.get(key);
+        }
+
+        if (entry == null || !Objects.equals(entry.input, tx.input)) //input can arrive after the tx was first seen
+        {
+            entry = new DecodedInput(tx.input, decodeInput(tx.input));
+            synchronized (decoded)
+            {
+                decoded.put(key, entry);
+            }
+        }
+
+        return new TransactionInput(entry.result);
+    }
+
+    private boolean setFunction(TransactionInput thisData, String input)
     {
         //first get expected arg list:
         FunctionData data = functionList.get(input);
@@ -121,15 +138,24 @@ public class TransactionDecoder
             thisData.sigData.clear();
             thisData.miscData.clear();
             thisData.functionData.functionRawHex = input;
+            return true;
         }
         else
         {
-            thisData.functionData = getUnknownFunction();
+            //not one of ours, but name it if the selector is known locally
+            String signature = SignatureLookupService.getLocalSignature(input);
+            int argStart = signature != null ? signature.indexOf('(') : -1;
+            if (argStart <= 0 || !signature.endsWith(")"))
+            {
+                thisData.functionData = getUnknownFunction();
+                thisData.functionData.functionRawHex = input;
+                return false;
+            }
+
+            thisData.functionData = new FunctionData(signature, ContractType.OTHER, false);
             thisData.functionData.functionRawHex = input;
-            return ParseStage.ERROR;
+            return signature.indexOf('(', argStart + 1) < 0; //read its args too, unless it takes tuples which the arg list can't split
         }
-
-        return ParseStage.PARSE_ARGS;
     }
 
     enum ReadState
@@ -138,140 +164,215 @@ public class TransactionDecoder
         SIGNATURE
     }
 
-    private ParseStage getParams(TransactionInput thisData, String input)
+    // Args are read in sequence, one word each plus any data a dynamic type reads after it. Values are read from the
+    // decoded bytes; hex strings are only made for what ends up in the TransactionInput
+    private void getParams(TransactionInput thisData, CallData data)
     {
-        state = ARGS;
-        BigInteger count;
-        StringBuilder sb = new StringBuilder();
-        if (thisData.functionData != null && thisData.functionData.args != null)
+        if (thisData.functionData == null || thisData.functionData.args == null) return;
+
+        for (String type : thisData.functionData.args)
         {
-            for (String type : thisData.functionData.args)
+            if (!data.hasWord()) break;
+            int word = data.readWord();
+            switch (type)
             {
-                String argData = read256bits(input);
-                if (argData.equals("0")) break;
-                switch (type)
-                {
-                    case "bytes":
-                        sb.setLength(0);
-                        argData = read256bits(input);
-                        BigInteger dataCount = Numeric.toBigInt(argData);
-                        String hexBytes = readBytes(input, dataCount.intValue());
-                        thisData.miscData.add(hexBytes);
-                        thisData.hexArgs.add(Numeric.prependHexPrefix(hexBytes));
-                        break;
-                    case "string":
-                        count = new BigInteger(argData, 16);
-                        sb.setLength(0);
-                        argData = read256bits(input);
-                        if (count.intValue() > argData.length())
-                            count = BigInteger.valueOf(argData.length());
-                        for (int index = 0; index < (count.intValue() * 2); index += 2)
-                        {
-                            int v = Integer.parseInt(argData.substring(index, index + 2), 16);
-                            char c = (char) v;
-                            sb.append(c);
-                        }
-                        thisData.miscData.add(Numeric.cleanHexPrefix(sb.toString()));
-
-                        //Should be ASCII, try to convert
-                        thisData.hexArgs.add(new String(Numeric.hexStringToByteArray(sb.toString())));
-                        break;
-                    case "address":
-                        if (argData.length() >= 64 - ADDRESS_LENGTH_IN_HEX)
-                        {
-                            String addr = Numeric.prependHexPrefix(argData.substring(64 - ADDRESS_LENGTH_IN_HEX));
-                            thisData.addresses.add(addr);
-                            thisData.hexArgs.add(addr);
-                        }
-                        break;
-                    case "bytes32":
-                        addArg(thisData, argData);
-                        break;
-                    case "bytes32[]":
-                    case "uint16[]":
-                    case "uint256[]":
-                        count = new BigInteger(argData, 16);
-                        for (int i = 0; i < count.intValue(); i++)
-                        {
-                            String inputData = read256bits(input);
-                            thisData.arrayValues.add(new BigInteger(inputData, 16));
-                            thisData.hexArgs.add(inputData);
-                            if (inputData.equals("0")) break;
-                        }
-                        break;
-                    case "uint256":
-                    case "uint":
-                        addArg(thisData, argData);
-                        break;
-                    case "uint8": //In our standards, we will put uint8 as the signature marker
-                        if (thisData.functionData.hasSig)
+                case "bytes":
+                    int dataCount = data.hasWord() ? data.intValue(data.readWord()) : 0;
+                    String hexBytes = data.readDigits(dataCount); //count of bytes read as hex digits, as always
+                    if (hexBytes == null) return;
+                    thisData.miscData.add(hexBytes);
+                    thisData.hexArgs.add(Numeric.prependHexPrefix(hexBytes));
+                    break;
+                case "string":
+                    String text = data.readText(data.intValue(word));
+                    if (text == null) return;
+                    thisData.miscData.add(Numeric.cleanHexPrefix(text));
+
+                    //Should be ASCII, try to convert
+                    thisData.hexArgs.add(new String(Numeric.hexStringToByteArray(text)));
+                    break;
+                case "address":
+                    String addr = Numeric.prependHexPrefix(data.digits(word + 64 - ADDRESS_LENGTH_IN_HEX, ADDRESS_LENGTH_IN_HEX));
+                    thisData.addresses.add(addr);
+                    thisData.hexArgs.add(addr);
+                    break;
+                case "bytes32":
+                    data.addArg(thisData, word);
+                    break;
+                case "bytes32[]":
+                case "uint16[]":
+                case "uint256[]":
+                    int count = data.intValue(word);
+                    for (int i = 0; i < count; i++)
+                    {
+                        if (!data.hasWord())
                         {
-                            state = ReadState.SIGNATURE;
-                            sigCount = 0;
+                            thisData.arrayValues.add(BigInteger.ZERO);
+                            thisData.hexArgs.add("0");
+                            break;
                         }
-                        addArg(thisData, argData);
-                        break;
-                    case "nodata":
-                        //no need to store this data - eg placeholder to indicate presence of a vararg
-                        break;
-                    case "bool":
-                        //zero or one?
-                        BigInteger val = new BigInteger(argData, 16);
-                        thisData.hexArgs.add(val.longValue() == 0 ? "false" : "true");
-                        break;
-                    default:
-                        break;
-                }
+                        int element = data.readWord();
+                        thisData.arrayValues.add(data.bigIntValue(element));
+                        thisData.hexArgs.add(data.digits(element, WORD_DIGITS));
+                    }
+                    break;
+                case "uint256":
+                case "uint":
+                    data.addArg(thisData, word);
+                    break;
+                case "uint8": //In our standards, we will put uint8 as the signature marker
+                    if (thisData.functionData.hasSig)
+                    {
+                        data.state = ReadState.SIGNATURE;
+                        data.sigCount = 0;
+                    }
+                    data.addArg(thisData, word);
+                    break;
+                case "nodata":
+                    //no need to store this data - eg placeholder to indicate presence of a vararg
+                    break;
+                case "bool":
+                    //zero or one?
+                    thisData.hexArgs.add(data.isZero(word) ? "false" : "true");
+                    break;
+                default:
+                    break;
             }
         }
-        else
+    }
+
+    /**
+     * Argument area of one input, hex decoded once. Positions are in hex digits from the start of the arguments,
+     * as a bytes arg can leave the read position mid-byte; reads after that find no more words.
+     */
+    private static class CallData
+    {
+        private final String input;
+        private final byte[] bytes; //null if the arguments aren't hex
+        private final int length; //hex digits
+        private int pos;
+        private ReadState state = ARGS;
+        private int sigCount = 0;
+
+        CallData(String input)
         {
-            return ParseStage.FINISH; //skip to end of read if there are no args in the spec
+            this.input = input;
+            this.length = input.length() - FUNCTION_LENGTH;
+            this.bytes = hexToBytes(input, FUNCTION_LENGTH);
         }
 
-        return ParseStage.FINISH;
-    }
+        boolean hasWord()
+        {
+            return bytes != null && (pos & 1) == 0 && pos + WORD_DIGITS <= length;
+        }
 
-    private void addArg(TransactionInput thisData, String input)
-    {
-        switch (state)
+        // Position of the next word, which is then skipped
+        int readWord()
         {
-            case ARGS:
-                thisData.miscData.add(Numeric.cleanHexPrefix(input));
-                break;
-            case SIGNATURE:
-                thisData.sigData.add(input);
-                if (++sigCount == 3) state = ARGS;
-                break;
+            int word = pos;
+            pos += WORD_DIGITS;
+            return word;
         }
-        thisData.hexArgs.add(input);
-    }
 
-    private String readBytes(String input, int bytes)
-    {
-        if ((parseIndex + bytes) <= input.length())
+        // Low 32 bits, as BigInteger.intValue()
+        int intValue(int word)
         {
-            String value = input.substring(parseIndex, parseIndex + bytes);
-            parseIndex += bytes;
-            return value;
+            int offset = (word >> 1) + 28;
+            return ((bytes[offset] & 0xFF) << 24) | ((bytes[offset + 1] & 0xFF) << 16)
+                    | ((bytes[offset + 2] & 0xFF) << 8) | (bytes[offset + 3] & 0xFF);
         }
-        else
+
+        // Low 64 bits are zero, as BigInteger.longValue() == 0
+        boolean isZero(int word)
         {
-            return "0";
+            int offset = (word >> 1) + 24;
+            for (int i = offset; i < offset + 8; i++)
+            {
+                if (bytes[i] != 0) return false;
+            }
+            return true;
         }
-    }
 
-    private String read256bits(String input)
-    {
-        if ((parseIndex + 64) <= input.length())
+        BigInteger bigIntValue(int word)
+        {
+            int offset = word >> 1;
+            return new BigInteger(1, Arrays.copyOfRange(bytes, offset, offset + 32));
+        }
+
+        String digits(int start, int count)
         {
-            String value = input.substring(parseIndex, parseIndex + 64);
-            parseIndex += 64;
+            return input.substring(FUNCTION_LENGTH + start, FUNCTION_LENGTH + start + count);
+        }
+
+        // Next count hex digits; "0" if there aren't that many, null if the count is invalid
+        String readDigits(int count)
+        {
+            if (count < 0) return null;
+            if (pos + count > length) return "0";
+            String value = digits(pos, count);
+            pos += count;
             return value;
         }
-        else
+
+        // Chars from the bytes of the next word, count as the string decoder clamped and doubled it (wrapping included);
+        // null where that runs past the word
+        String readText(int count)
         {
-            return "0";
+            boolean hasNext = hasWord();
+            int available = hasNext ? WORD_DIGITS : 1;
+            int start = hasNext ? readWord() >> 1 : 0;
+            if (count > available) count = available;
+            int digits = count * 2;
+            if (digits > available) return null;
+
+            StringBuilder sb = new StringBuilder();
+            for (int i = 0; i < digits / 2; i++)
+            {
+                sb.append((char) (bytes[start + i] & 0xFF));
+            }
+            return sb.toString();
+        }
+
+        void addArg(TransactionInput thisData, int word)
+        {
+            String value = digits(word, WORD_DIGITS);
+            switch (state)
+            {
+                case ARGS:
+                    thisData.miscData.add(value);
+                    break;
+                case SIGNATURE:
+                    thisData.sigData.add(value);
+                    if (++sigCount == 3) state = ARGS;
+                    break;
+            }
+            thisData.hexArgs.add(value);
+        }
+
+        // Whole bytes from offset; a trailing odd digit can't be part of a word so is dropped
+        private static byte[] hexToBytes(String input, int offset)
+        {
+            byte[] result = new byte[(input.length() - offset) / 2];
+            for (int i = 0; i < result.length; i++)
+            {
+                int hi = Character.digit(input.charAt(offset + i * 2), 16);
+                int lo = Character.digit(input.charAt(offset + i * 2 + 1), 16);
+                if (hi < 0 || lo < 0) return null;
+                result[i] = (byte) ((hi << 4) | lo);
+            }
+            return result;
+        }
+    }
+
+    private static class DecodedInput
+    {
+        final String input;
+        final TransactionInput result;
+
+        DecodedInput(String input, TransactionInput result)
+        {
+            this.input = input;
+            this.result = result;
         }
     }
 
@@ -443,11 +544,6 @@ public class TransactionDecoder
         return highestType;
     }
 
-    enum ParseStage
-    {
-        PARSE_FUNCTION, PARSE_ARGS, FINISH, ERROR
-    }
-
     public Sign.SignatureData getSignatureData(TransactionInput data)
     {
         Sign.SignatureData sigData = null;
@@ -0,0 +1,190 @@
+package com.alphawallet.app.entity.nftassets;
+
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import io.reactivex.Scheduler;
+import io.reactivex.Single;
+import io.reactivex.disposables.CompositeDisposable;
+import timber.log.Timber;
+
+/**
+ * Pages of a token's NFT assets for a collection view. Only the sorted token ids are held for the whole collection;
+ * assets with their decoded metadata are loaded a page at a time around the position being shown, and the least
+ * recently used pages are dropped past {@link #MAX_PAGES}.
+ *
+ * A position whose page hasn't loaded yet has no asset; the view shows a placeholder and is told when it arrives.
+ */
+public class NFTAssetPager
+{
+    public static final int PAGE_SIZE = 40;
+    public static final int PREFETCH = 20; //items either side of the shown position
+    public static final int MAX_PAGES = 6;
+
+    /**
+     * Reads the assets for a page of token ids; an id missing from the result is shown as a placeholder
+     */
+    public interface Loader
+    {
+        Map<BigInteger, NFTAsset> load(List<BigInteger> tokenIds);
+    }
+
+    public interface Listener
+    {
+        void onPageLoaded(int start, int count);
+    }
+
+    private final Loader loader;
+    private final Scheduler ioScheduler;
+    private final Scheduler uiScheduler;
+    private final CompositeDisposable disposables = new CompositeDisposable();
+    private final Map<Integer, Map<BigInteger, NFTAsset>> pages = new LinkedHashMap<Integer, Map<BigInteger, NFTAsset>>(MAX_PAGES, 0.75f, true)
+    {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Integer, Map<BigInteger, NFTAsset>> eldest)
+        {
+            return size() > MAX_PAGES;
+        }
+    };
+    private final Set<Integer> loading = new HashSet<>();
+    private List<BigInteger> tokenIds = Collections.emptyList();
+    private Listener listener;
+    private int generation; //bumped when the id list changes, so pages read for the old list are discarded
+
+    public NFTAssetPager(Loader loader, Scheduler ioScheduler, Scheduler uiScheduler)
+    {
+        this.loader = loader;
+        this.ioScheduler = ioScheduler;
+        this.uiScheduler = uiScheduler;
+    }
+
+    public void setListener(Listener listener)
+    {
+        this.listener = listener;
+    }
+
+    /**
+     * Show these ids, in ascending order; drops any loaded pages
+     */
+    public void setTokenIds(List<BigInteger> ids)
+    {
+        List<BigInteger> sorted = new ArrayList<>(ids);
+        Collections.sort(sorted);
+        tokenIds = sorted;
+        pages.clear();
+        loading.clear();
+        generation++;
+    }
+
+    public int size()
+    {
+        return tokenIds.size();
+    }
+
+    public BigInteger getTokenId(int position)
+    {
+        return tokenIds.get(position);
+    }
+
+    /**
+     * @return position of this id, or -1 if it isn't shown
+     */
+    public int indexOf(BigInteger tokenId)
+    {
+        int position = Collections.binarySearch(tokenIds, tokenId);
+        return position >= 0 ? position : -1;
+    }
+
+    /**
+     * @return the asset at this position, or null if its page isn't loaded yet; loads the pages around it
+     */
+    public NFTAsset getAsset(int position)
+    {
+        int first = Math.max(0, position - PREFETCH) / PAGE_SIZE;
+        int last = Math.min(tokenIds.size() - 1, position + PREFETCH) / PAGE_SIZE;
+        for (int page = first; page <= last; page++)
+        {
+            loadPage(page);
+        }
+
+        return peekAsset(position);
+    }
+
+    /**
+     * @return the asset at this position if its page is loaded, without loading anything
+     */
+    public NFTAsset peekAsset(int position)
+    {
+        if (position < 0 || position >= tokenIds.size()) return null;
+        Map<BigInteger, NFTAsset> page = pages.get(position / PAGE_SIZE);
+        return page != null ? page.get(tokenIds.get(position)) : null;
+    }
+
+    /**
+     * Replace the asset for this id if its page is loaded (eg after fetching its metadata)
+     */
+    public void update(BigInteger tokenId, NFTAsset asset)
+    {
+        int position = indexOf(tokenId);
+        if (position < 0) return;
+        Map<BigInteger, NFTAsset> page = pages.get(position / PAGE_SIZE);
+        if (page != null) page.put(tokenId, asset);
+    }
+
+    /**
+     * @return the assets currently loaded
+     */
+    public List<NFTAsset> getLoadedAssets()
+    {
+        List<NFTAsset> loaded = new ArrayList<>();
+        for (Map<BigInteger, NFTAsset> page : pages.values()) loaded.addAll(page.values());
+        return loaded;
+    }
+
+    public int getLoadedPageCount()
+    {
+        return pages.size();
+    }
+
+    public void dispose()
+    {
+        disposables.clear();
+        loading.clear();
+    }
+
+    private void loadPage(int page)
+    {
+        if (pages.containsKey(page) || loading.contains(page)) return;
+
+        int start = page * PAGE_SIZE;
+        int end = Math.min(tokenIds.size(), start + PAGE_SIZE);
+        if (start >= end) return;
+
+        List<BigInteger> ids = new ArrayList<>(tokenIds.subList(start, end));
+        int loadGeneration = generation;
+        loading.add(page);
+        disposables.add(Single.fromCallable(() -> loader.load(ids))
+                .subscribeOn(ioScheduler)
+                .observeOn(uiScheduler)
+                .subscribe(assets -> onPageLoaded(loadGeneration, page, start, ids.size(), assets),
+                        e -> {
+                            Timber.w(e);
+                            if (loadGeneration == generation) loading.remove(page);
+                        }));
+    }
+
+    private void onPageLoaded(int loadGeneration, int page, int start, int count, Map<BigInteger, NFTAsset> assets)
+    {
+        if (loadGeneration != generation) return;
+        loading.remove(page);
+        pages.put(page, new HashMap<>(assets));
+        if (listener != null) listener.onPageLoaded(start, count);
+    }
+}
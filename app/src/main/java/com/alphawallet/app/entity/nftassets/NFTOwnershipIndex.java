@@ -0,0 +1,326 @@
+package com.alphawallet.app.entity.nftassets;
+
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Which token ids of one NFT contract a wallet holds, kept from the contract's transfer logs (ERC721 Transfer,
+ * ERC1155 TransferSingle and TransferBatch) instead of asking the contract about every id that moves.
+ *
+ * The index records the block ranges it has read, and applies each log in a new range once:
+ * - ERC721: the latest transfer involving the wallet decides; the id is held if it went to the wallet
+ * - ERC1155: amounts in and out are summed
+ *
+ * An id is settled when every block since the point its state is known from has been read. Only unsettled ids need
+ * checking with the contract, and the value read becomes the new starting point for that id.
+ */
+public class NFTOwnershipIndex
+{
+    public static final long FIRST_BLOCK = 1; //event sync starts reads here
+    public static final long REBUILD_INTERVAL = TimeUnit.DAYS.toMillis(1);
+
+    public static class Entry
+    {
+        public final BigInteger tokenId;
+        private BigInteger amount = BigInteger.ZERO;
+        private long lastBlock = -1;      //latest transfer applied
+        private long lastLogIndex = -1;
+        private long verifiedBlock = -1;  //amount was read from the contract at this block
+        private boolean dirty;
+
+        Entry(BigInteger tokenId)
+        {
+            this.tokenId = tokenId;
+        }
+
+        public BigInteger getAmount()
+        {
+            return amount;
+        }
+
+        public long getLastBlock()
+        {
+            return lastBlock;
+        }
+
+        public long getLastLogIndex()
+        {
+            return lastLogIndex;
+        }
+
+        public long getVerifiedBlock()
+        {
+            return verifiedBlock;
+        }
+
+        private boolean isAfterLast(long block, long logIndex)
+        {
+            return block > lastBlock || (block == lastBlock && logIndex > lastLogIndex);
+        }
+    }
+
+    private final String wallet;
+    private final boolean fungible;
+    private final Map<BigInteger, Entry> entries = new HashMap<>();
+    private final List<long[]> covered = new ArrayList<>(); //inclusive block ranges, ascending and merged
+    private final Set<String> applied = new HashSet<>();    //logs applied since the last committed range
+    private long lastRebuild;
+    private boolean rangesChanged;
+    private boolean cleared;
+
+    public NFTOwnershipIndex(String wallet, boolean fungible)
+    {
+        this.wallet = wallet;
+        this.fungible = fungible;
+    }
+
+    /**
+     * Apply one transfer from a log in the range being read. Logs in blocks already read are ignored, as is the same
+     * log seen again (a transfer to self is in both the send and receive logs).
+     */
+    public void applyTransfer(long block, long logIndex, String from, String to, BigInteger tokenId, BigInteger amount)
+    {
+        boolean in = wallet.equalsIgnoreCase(to);
+        boolean out = wallet.equalsIgnoreCase(from);
+        if ((!in && !out) || isCovered(block, block) || !applied.add(block + "-" + logIndex + "-" + tokenId)) return;
+
+        Entry entry = entries.computeIfAbsent(tokenId, Entry::new);
+        if (block <= entry.verifiedBlock) return; //already part of the value read from the contract
+
+        if (fungible)
+        {
+            if (in) entry.amount = entry.amount.add(amount);
+            if (out) entry.amount = entry.amount.subtract(amount);
+        }
+        else if (entry.isAfterLast(block, logIndex))
+        {
+            entry.amount = in ? BigInteger.ONE : BigInteger.ZERO;
+        }
+        else
+        {
+            return; //older than the transfer which decides ownership
+        }
+
+        if (entry.isAfterLast(block, logIndex))
+        {
+            entry.lastBlock = block;
+            entry.lastLogIndex = logIndex;
+        }
+        entry.dirty = true;
+    }
+
+    /**
+     * Record that the logs for this range have all been applied
+     */
+    public void commitRange(long startBlock, long endBlock)
+    {
+        applied.clear();
+        if (endBlock < startBlock) return;
+
+        covered.add(new long[] { startBlock, endBlock });
+        covered.sort((a, b) -> Long.compare(a[0], b[0]));
+        List<long[]> merged = new ArrayList<>();
+        for (long[] range : covered)
+        {
+            long[] last = merged.isEmpty() ? null : merged.get(merged.size() - 1);
+            if (last != null && range[0] <= last[1] + 1) last[1] = Math.max(last[1], range[1]);
+            else merged.add(range);
+        }
+        covered.clear();
+        covered.addAll(merged);
+        rangesChanged = true;
+    }
+
+    /**
+     * @return true if every block from start to end has been read; trivially true for an empty span
+     */
+    public boolean isCovered(long startBlock, long endBlock)
+    {
+        if (startBlock > endBlock) return true;
+        for (long[] range : covered)
+        {
+            if (range[0] <= startBlock && range[1] >= endBlock) return true;
+        }
+        return false;
+    }
+
+    public long getCoveredHead()
+    {
+        return covered.isEmpty() ? -1 : covered.get(covered.size() - 1)[1];
+    }
+
+    public boolean isSettled(BigInteger tokenId)
+    {
+        Entry entry = entries.get(tokenId);
+        if (entry == null || covered.isEmpty()) return false;
+
+        long head = getCoveredHead();
+        if (fungible)
+        {
+            //sums are only exact from a known starting amount
+            long from = entry.verifiedBlock >= 0 ? entry.verifiedBlock + 1 : FIRST_BLOCK;
+            return entry.amount.signum() >= 0 && isCovered(from, head);
+        }
+        else
+        {
+            return isCovered(Math.max(Math.max(entry.lastBlock, entry.verifiedBlock), FIRST_BLOCK), head);
+        }
+    }
+
+    /**
+     * @return the ids which need checking with the contract, in the order given
+     */
+    public Set<BigInteger> getUnsettled(Collection<BigInteger> tokenIds)
+    {
+        Set<BigInteger> unsettled = new LinkedHashSet<>();
+        for (BigInteger tokenId : tokenIds)
+        {
+            if (!isSettled(tokenId)) unsettled.add(tokenId);
+        }
+        return unsettled;
+    }
+
+    /**
+     * Take the amount read from the contract as of this block as the id's state
+     */
+    public void setVerified(BigInteger tokenId, BigInteger amount, long atBlock)
+    {
+        Entry entry = entries.computeIfAbsent(tokenId, Entry::new);
+        entry.amount = amount;
+        entry.verifiedBlock = atBlock;
+        entry.dirty = true;
+    }
+
+    /**
+     * @return up to max of the given ids which the index holds as settled, longest since checked with the contract
+     * first. Checking a few of these alongside the unsettled ids catches a sum which has drifted from the contract
+     */
+    public List<BigInteger> getAuditSample(Collection<BigInteger> tokenIds, int max)
+    {
+        List<Entry> settled = new ArrayList<>();
+        for (BigInteger tokenId : tokenIds)
+        {
+            if (isSettled(tokenId)) settled.add(entries.get(tokenId));
+        }
+
+        settled.sort((a, b) -> Long.compare(a.verifiedBlock, b.verifiedBlock));
+        List<BigInteger> sample = new ArrayList<>();
+        for (int i = 0; i < settled.size() && i < max; i++) sample.add(settled.get(i).tokenId);
+        return sample;
+    }
+
+    public boolean contains(BigInteger tokenId)
+    {
+        return entries.containsKey(tokenId);
+    }
+
+    public boolean isHeld(BigInteger tokenId)
+    {
+        Entry entry = entries.get(tokenId);
+        return entry != null && entry.amount.signum() > 0;
+    }
+
+    public BigInteger getAmount(BigInteger tokenId)
+    {
+        Entry entry = entries.get(tokenId);
+        return entry != null ? entry.amount.max(BigInteger.ZERO) : BigInteger.ZERO;
+    }
+
+    public boolean isRebuildDue(long now)
+    {
+        return now - lastRebuild > REBUILD_INTERVAL;
+    }
+
+    /**
+     * Drop everything read so far; the caller restarts the log reads from the first block
+     */
+    public void rebuild(long now)
+    {
+        entries.clear();
+        covered.clear();
+        applied.clear();
+        lastRebuild = now;
+        rangesChanged = true;
+        cleared = true;
+    }
+
+    /* Persistence */
+
+    public String getRanges()
+    {
+        StringBuilder sb = new StringBuilder();
+        for (long[] range : covered)
+        {
+            if (sb.length() > 0) sb.append(',');
+            sb.append(range[0]).append('-').append(range[1]);
+        }
+        return sb.toString();
+    }
+
+    public long getLastRebuild()
+    {
+        return lastRebuild;
+    }
+
+    public void restoreRanges(String ranges, long lastRebuild)
+    {
+        this.lastRebuild = lastRebuild;
+        covered.clear();
+        if (ranges == null || ranges.isEmpty()) return;
+
+        for (String range : ranges.split(","))
+        {
+            int split = range.indexOf('-');
+            if (split <= 0) continue;
+            covered.add(new long[] { Long.parseLong(range.substring(0, split)), Long.parseLong(range.substring(split + 1)) });
+        }
+    }
+
+    public void restoreEntry(BigInteger tokenId, BigInteger amount, long lastBlock, long lastLogIndex, long verifiedBlock)
+    {
+        Entry entry = new Entry(tokenId);
+        entry.amount = amount;
+        entry.lastBlock = lastBlock;
+        entry.lastLogIndex = lastLogIndex;
+        entry.verifiedBlock = verifiedBlock;
+        entries.put(tokenId, entry);
+    }
+
+    public List<Entry> getChangedEntries()
+    {
+        List<Entry> changed = new ArrayList<>();
+        for (Entry entry : entries.values())
+        {
+            if (entry.dirty) changed.add(entry);
+        }
+        return changed;
+    }
+
+    public boolean isRangesChanged()
+    {
+        return rangesChanged;
+    }
+
+    /**
+     * @return true if stored entries must be dropped before the changed ones are written
+     */
+    public boolean isCleared()
+    {
+        return cleared;
+    }
+
+    public void markSaved()
+    {
+        for (Entry entry : entries.values()) entry.dirty = false;
+        rangesChanged = false;
+        cleared = false;
+    }
+}
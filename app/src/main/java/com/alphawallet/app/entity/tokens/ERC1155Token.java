@@ -14,9 +14,11 @@ import com.alphawallet.app.entity.SyncDef;
 import com.alphawallet.app.entity.Transaction;
 import com.alphawallet.app.entity.TransactionInput;
 import com.alphawallet.app.entity.nftassets.NFTAsset;
+import com.alphawallet.app.entity.nftassets.NFTOwnershipIndex;
 import com.alphawallet.app.entity.opensea.AssetContract;
 import com.alphawallet.app.entity.tokendata.TokenGroup;
 import com.alphawallet.app.repository.EventResult;
+import com.alphawallet.app.repository.NFTOwnershipStore;
 import com.alphawallet.app.repository.TokenRepository;
 import com.alphawallet.app.repository.entity.RealmNFTAsset;
 import com.alphawallet.app.repository.entity.RealmToken;
@@ -50,6 +52,7 @@ import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -60,6 +63,8 @@ import timber.log.Timber;
 
 public class ERC1155Token extends Token
 {
+    private static final int AUDIT_SAMPLE_SIZE = 4; //settled ids re-checked with the contract on a pass which reads balances
+
     private final Map<BigInteger, NFTAsset> assets;
     private AssetContract assetContract;
 
@@ -337,10 +342,10 @@ public class ERC1155Token extends Token
         return updatedAssetMap;
     }
 
-    private List<Uint256> fetchBalances(Set<BigInteger> tokenIds)
+    private List<Uint256> fetchBalances(Set<BigInteger> tokenIds, DefaultBlockParameter atBlock)
     {
         Function balanceOfBatch = balanceOfBatch(getWallet(), tokenIds);
-        List<Uint256> balances = callSmartContractFunctionArray(tokenInfo.chainId, balanceOfBatch, getAddress(), getWallet());
+        List<Uint256> balances = callSmartContractFunctionArray(tokenInfo.chainId, balanceOfBatch, getAddress(), getWallet(), atBlock);
         if (balances == null) //bad network read
         {
             return null;
@@ -665,7 +670,7 @@ public class ERC1155Token extends Token
      * Uses both events and balance call. Each call to updateBalance uses 3 Node calls:
      * 1. Get new TransferSingle events since last call
      * 2. Get new TransferBatch events since last call
-     * 3. Call ERC1155 contract function balanceOfBatch on all tokenIds
+     * 3. Call ERC1155 contract function balanceOfBatch on the tokenIds whose balance the ownership index can't settle
      *
      * Once we have the current balance for potential tokens the database is updated to reflect the current status
      *
@@ -685,34 +690,78 @@ public class ERC1155Token extends Token
         DefaultBlockParameter endBlock = DefaultBlockParameter.valueOf(sync.eventReadEndBlock);
         if (sync.eventReadEndBlock.compareTo(BigInteger.valueOf(-1L)) == 0) endBlock = DefaultBlockParameterName.LATEST;
 
-        //take a note of the current block#
+        //take a note of the current block#; logs and balances are both read as of this block, so the range committed
+        //to the index is exactly the range read and a balance read never already includes a log applied next pass
         BigInteger currentBlock = TransactionsService.getCurrentBlock(tokenInfo.chainId);
+        DefaultBlockParameter atBlock = DefaultBlockParameter.valueOf(currentBlock);
+        DefaultBlockParameter readTo = endBlock == DefaultBlockParameterName.LATEST ? atBlock : endBlock;
+        NFTOwnershipIndex index = NFTOwnershipStore.load(realm, this, true);
 
         try
         {
             final Web3j web3j = TokenRepository.getWeb3jServiceForEvents(tokenInfo.chainId);
 
             Pair<Integer, Pair<HashSet<BigInteger>, HashSet<BigInteger>>> evRead = eventSync.processTransferEvents(web3j,
-                    getBalanceUpdateEvents(), startBlock, endBlock, realm);
+                    getBalanceUpdateEvents(), startBlock, readTo, realm, index);
 
             Pair<Integer, Pair<HashSet<BigInteger>, HashSet<BigInteger>>> batchRead = eventSync.processTransferEvents(web3j,
-                    getBatchBalanceUpdateEvents(), startBlock, endBlock, realm);
+                    getBatchBalanceUpdateEvents(), startBlock, readTo, realm, index);
+
+            index.commitRange(sync.eventReadStartBlock.longValue(), endBlock == DefaultBlockParameterName.LATEST
+                    ? currentBlock.longValue() : sync.eventReadEndBlock.longValue());
 
             // All tokenIds which have passed through the owner address
-            evRead.second.first.addAll(evRead.second.second);
-            evRead.second.first.addAll(batchRead.second.first);
-            evRead.second.first.addAll(batchRead.second.second);
+            Set<BigInteger> moved = new HashSet<>(evRead.second.first);
+            moved.addAll(evRead.second.second);
+            moved.addAll(batchRead.second.first);
+            moved.addAll(batchRead.second.second);
 
             //combine the tokenIds with existing assets
+            evRead.second.first.addAll(moved);
             evRead.second.first.addAll(assets.keySet());
 
-            //update balances of all
-            List<Uint256> balances = fetchBalances(evRead.second.first);
-            //update realm
-            updateRealmBalance(realm, evRead.second.first, balances);
+            //fetch balances only where the logs read so far don't settle them; existing assets new to the index are checked once.
+            //A few settled ids which moved are checked too, to catch sums which have drifted from the contract
+            Set<BigInteger> unsettled = index.getUnsettled(evRead.second.first);
+            List<BigInteger> audit = unsettled.isEmpty() && moved.isEmpty()
+                    ? Collections.emptyList() : index.getAuditSample(moved, AUDIT_SAMPLE_SIZE);
+            Set<BigInteger> checkIds = new LinkedHashSet<>(unsettled);
+            checkIds.addAll(audit);
+            boolean drifted = false;
+            if (!checkIds.isEmpty())
+            {
+                List<Uint256> verified = fetchBalances(checkIds, atBlock);
+                if (verified != null && verified.size() == checkIds.size())
+                {
+                    int i = 0;
+                    for (BigInteger tokenId : checkIds)
+                    {
+                        BigInteger amount = verified.get(i++).getValue();
+                        if (audit.contains(tokenId) && !amount.equals(index.getAmount(tokenId))) drifted = true;
+                        index.setVerified(tokenId, amount, currentBlock.longValue());
+                    }
+                }
+            }
+
+            //update realm with every settled balance
+            Set<BigInteger> settled = new LinkedHashSet<>();
+            List<Uint256> balances = new ArrayList<>();
+            for (BigInteger tokenId : evRead.second.first)
+            {
+                if (!index.isSettled(tokenId)) continue; //balance read failed; try again next pass
+                settled.add(tokenId);
+                balances.add(new Uint256(index.getAmount(tokenId)));
+            }
+            updateRealmBalance(realm, settled, balances);
 
             //update read points
             eventSync.updateEventReads(realm, sync, currentBlock, evRead.first); //means our event read was fine
+            NFTOwnershipStore.save(realm, this, index);
+
+            if (drifted && rebuildOwnershipIndex(realm, index))
+            {
+                Timber.w("ERC1155 ownership index for %s disagreed with the contract; rebuilding", tokenInfo.address);
+            }
         }
         catch (LogOverflowException e)
         {
@@ -732,16 +781,18 @@ public class ERC1155Token extends Token
     }
 
     @Override
-    public HashSet<BigInteger> processLogsAndStoreTransferEvents(EthLog receiveLogs, Event event, HashSet<String> txHashes, Realm realm)
+    public HashSet<BigInteger> processLogsAndStoreTransferEvents(EthLog receiveLogs, Event event, HashSet<String> txHashes, Realm realm,
+                                                                 NFTOwnershipIndex index)
     {
         HashSet<BigInteger> tokenIds = new HashSet<>();
         for (EthLog.LogResult<?> ethLog : receiveLogs.getLogs())
         {
-            String block = ((Log) ethLog.get()).getBlockNumberRaw();
+            Log log = (Log) ethLog.get();
+            String block = log.getBlockNumberRaw();
             if (block == null || block.length() == 0) continue;
-            String txHash = ((Log) ethLog.get()).getTransactionHash();
+            String txHash = log.getTransactionHash();
 
-            final EventValues eventValues = staticExtractEventParameters(event, (Log) ethLog.get());
+            final EventValues eventValues = staticExtractEventParameters(event, log);
             Pair<List<BigInteger>, List<BigInteger>> idResult = eventSync.getEventIdResult(eventValues.getNonIndexedValues().get(0),
                     eventValues.getNonIndexedValues().get(1));
             tokenIds.addAll(idResult.first);
@@ -751,12 +802,21 @@ public class ERC1155Token extends Token
             String to = eventValues.getIndexedValues().get(2).getValue().toString();    // to address
             eventSync.storeTransferData(realm, from, to, idResult, txHash);
             txHashes.add(txHash);
+
+            if (index != null && log.getLogIndexRaw() != null && idResult.first.size() == idResult.second.size())
+            {
+                for (int i = 0; i < idResult.first.size(); i++)
+                {
+                    index.applyTransfer(log.getBlockNumber().longValue(), log.getLogIndex().longValue(), from, to,
+                            idResult.first.get(i), idResult.second.get(i));
+                }
+            }
         }
 
         return tokenIds;
     }
 
-    private Function balanceOfBatch(String address, Set<BigInteger> tokenIds)
+    public static Function balanceOfBatch(String address, Set<BigInteger> tokenIds)
     {
         //create address list
         List<Address> batchAddresses = new ArrayList<>(tokenIds.size());
@@ -790,7 +850,7 @@ public class ERC1155Token extends Token
      * @param tokenId
      * @return
      */
-    private static BigInteger getBaseTokenId(BigInteger tokenId)
+    public static BigInteger getBaseTokenId(BigInteger tokenId)
     {
         return tokenId.shiftRight(96); //Top 20 bytes (bottom 5 is NFT tokenId)
     }
@@ -22,9 +22,11 @@ import com.alphawallet.app.entity.Transaction;
 import com.alphawallet.app.entity.TransactionInput;
 import com.alphawallet.app.entity.Wallet;
 import com.alphawallet.app.entity.nftassets.NFTAsset;
+import com.alphawallet.app.entity.nftassets.NFTOwnershipIndex;
 import com.alphawallet.app.entity.tokendata.TokenGroup;
 import com.alphawallet.app.repository.EthereumNetworkBase;
 import com.alphawallet.app.repository.EventResult;
+import com.alphawallet.app.repository.NFTOwnershipStore;
 import com.alphawallet.app.repository.TokenRepository;
 import com.alphawallet.app.repository.entity.RealmNFTAsset;
 import com.alphawallet.app.repository.entity.RealmToken;
@@ -365,18 +367,25 @@ public class ERC721Token extends Token
 
         final DefaultBlockParameter startBlock = DefaultBlockParameter.valueOf(sync.eventReadStartBlock);
         final DefaultBlockParameter endBlock = (sync.eventReadEndBlock.compareTo(BigInteger.valueOf(-1L)) == 0) ? DefaultBlockParameterName.LATEST : DefaultBlockParameter.valueOf(sync.eventReadEndBlock);
+        final NFTOwnershipIndex index = NFTOwnershipStore.load(realm, this, false);
 
         try
         {
-            //take a note of the current block#
+            //take a note of the current block#; logs and owners are both read as of this block, so the range committed
+            //to the index is exactly the range read
             BigInteger currentBlock = TransactionsService.getCurrentBlock(tokenInfo.chainId);
+            DefaultBlockParameter atBlock = DefaultBlockParameter.valueOf(currentBlock);
+            DefaultBlockParameter readTo = endBlock == DefaultBlockParameterName.LATEST ? atBlock : endBlock;
 
             balanceChecks.put(tokenInfo.address, true); //set checking
 
             Pair<Integer, Pair<HashSet<BigInteger>, HashSet<BigInteger>>> evRead = eventSync.processTransferEvents(web3j,
-                    getTransferEvents(), startBlock, endBlock, realm);
+                    getTransferEvents(), startBlock, readTo, realm, index);
 
+            index.commitRange(sync.eventReadStartBlock.longValue(), endBlock == DefaultBlockParameterName.LATEST
+                    ? currentBlock.longValue() : sync.eventReadEndBlock.longValue());
             eventSync.updateEventReads(realm, sync, currentBlock, evRead.first); //means our event read was fine
+            NFTOwnershipStore.save(realm, this, index);
 
             //No need to go any further if this is enumerable
             if (contractType == ContractType.ERC721_ENUMERABLE) return balance;
@@ -384,13 +393,31 @@ public class ERC721Token extends Token
             HashSet<BigInteger> allMovingTokens = new HashSet<>(evRead.second.first);
             allMovingTokens.addAll(evRead.second.second);
 
+            //only ask the contract about ids whose owner the logs read so far don't settle
+            Set<BigInteger> unsettled = index.getUnsettled(allMovingTokens);
             if (allMovingTokens.isEmpty() && balance.intValue() != tokenBalanceAssets.size()) //if there's a mismatch, check all current assets
             {
                 allMovingTokens.addAll(tokenBalanceAssets.keySet());
+                unsettled.addAll(tokenBalanceAssets.keySet());
+            }
+
+            //only ids whose ownerOf call was answered are settled; the rest are asked again next time
+            Set<BigInteger> answered = new HashSet<>();
+            HashSet<BigInteger> verifiedHeld = checkBalances(web3j, new HashSet<>(unsettled), answered, atBlock);
+            for (BigInteger tokenId : unsettled)
+            {
+                if (!answered.contains(tokenId)) continue;
+                index.setVerified(tokenId, verifiedHeld.contains(tokenId) ? BigInteger.ONE : BigInteger.ZERO, currentBlock.longValue());
+            }
+
+            HashSet<BigInteger> tokenIdsHeld = new HashSet<>();
+            for (BigInteger tokenId : allMovingTokens)
+            {
+                if (index.isHeld(tokenId)) tokenIdsHeld.add(tokenId);
             }
 
-            HashSet<BigInteger> tokenIdsHeld = checkBalances(web3j, allMovingTokens);
             updateRealmBalance(realm, tokenIdsHeld, allMovingTokens);
+            NFTOwnershipStore.save(realm, this, index);
         }
         catch (LogOverflowException e)
         {
@@ -411,11 +438,10 @@ public class ERC721Token extends Token
             balanceChecks.remove(tokenInfo.address);
         }
 
-        //check for possible issues
+        //check for possible issues: a mismatch rebuilds the index from the beginning
         if (endBlock == DefaultBlockParameterName.LATEST && balance.compareTo(BigDecimal.valueOf(tokenBalanceAssets.size())) != 0)
         {
-            //possible mismatch, scan from beginning again
-            eventSync.resetEventReads(realm);
+            rebuildOwnershipIndex(realm, index);
         }
 
         return balance;
@@ -464,7 +490,7 @@ public class ERC721Token extends Token
 
         for (long tokenIndex = 0; tokenIndex < currentBalance; tokenIndex++)
         {
-            requests.add(getContractCall(web3j, tokenOfOwnerByIndex(BigInteger.valueOf(tokenIndex)), getAddress()));
+            requests.add(getContractCall(web3j, tokenOfOwnerByIndex(BigInteger.valueOf(tokenIndex)), getAddress(), DefaultBlockParameterName.LATEST));
             if (requests.getRequests().size() >= EthereumNetworkBase.getBatchProcessingLimit(tokenInfo.chainId))
             {
                 //do this send
@@ -638,16 +664,18 @@ public class ERC721Token extends Token
     }
 
     @Override
-    public HashSet<BigInteger> processLogsAndStoreTransferEvents(EthLog receiveLogs, Event event, HashSet<String> txHashes, Realm realm)
+    public HashSet<BigInteger> processLogsAndStoreTransferEvents(EthLog receiveLogs, Event event, HashSet<String> txHashes, Realm realm,
+                                                                 NFTOwnershipIndex index)
     {
         HashSet<BigInteger> tokenIds = new HashSet<>();
         for (EthLog.LogResult<?> ethLog : receiveLogs.getLogs())
         {
-            String block = ((Log) ethLog.get()).getBlockNumberRaw();
+            Log log = (Log) ethLog.get();
+            String block = log.getBlockNumberRaw();
             if (block == null || block.length() == 0) continue;
-            String txHash = ((Log) ethLog.get()).getTransactionHash();
+            String txHash = log.getTransactionHash();
 
-            final EventValues eventValues = staticExtractEventParameters(event, (Log) ethLog.get());
+            final EventValues eventValues = staticExtractEventParameters(event, log);
             Pair<List<BigInteger>, List<BigInteger>> idResult = eventSync.getEventIdResult(eventValues.getIndexedValues().get(2), null);
             tokenIds.addAll(idResult.first);
 
@@ -656,18 +684,35 @@ public class ERC721Token extends Token
             String to = eventValues.getIndexedValues().get(1).getValue().toString();    // to address
             eventSync.storeTransferData(realm, from, to, idResult, txHash);
             txHashes.add(txHash);
+
+            if (index != null && log.getLogIndexRaw() != null)
+            {
+                index.applyTransfer(log.getBlockNumber().longValue(), log.getLogIndex().longValue(), from, to,
+                        idResult.first.get(0), BigInteger.ONE);
+            }
         }
         return tokenIds;
     }
 
     private HashSet<BigInteger> checkBalances(Web3j web3j, HashSet<BigInteger> eventIds) throws IOException
+    {
+        return checkBalances(web3j, eventIds, new HashSet<>(), DefaultBlockParameterName.LATEST);
+    }
+
+    /**
+     * @param answered receives the ids whose ownerOf call returned an owner; ids missing from it weren't checked
+     * @param atBlock  block whose state the owners are read from
+     */
+    private HashSet<BigInteger> checkBalances(Web3j web3j, HashSet<BigInteger> eventIds, Set<BigInteger> answered,
+                                              DefaultBlockParameter atBlock) throws IOException
     {
         HashSet<BigInteger> heldTokens = new HashSet<>();
-        if (EthereumNetworkBase.getBatchProcessingLimit(tokenInfo.chainId) > 0 && eventIds.size() > 1) return checkBatchBalances(web3j, eventIds);
+        if (EthereumNetworkBase.getBatchProcessingLimit(tokenInfo.chainId) > 0 && eventIds.size() > 1) return checkBatchBalances(web3j, eventIds, answered, atBlock);
 
         for (BigInteger tokenId : eventIds)
         {
-            String owner = callSmartContractFunction(tokenInfo.chainId, ownerOf(tokenId), getAddress(), getWallet());
+            String owner = callSmartContractFunction(tokenInfo.chainId, ownerOf(tokenId), getAddress(), getWallet(), atBlock);
+            if (!TextUtils.isEmpty(owner)) answered.add(tokenId);
             if (TextUtils.isEmpty(owner) || owner.equalsIgnoreCase(getWallet()))
             {
                 heldTokens.add(tokenId);
@@ -677,19 +722,20 @@ public class ERC721Token extends Token
         return heldTokens;
     }
 
-    private HashSet<BigInteger> checkBatchBalances(Web3j web3j, HashSet<BigInteger> eventIds) throws IOException
+    private HashSet<BigInteger> checkBatchBalances(Web3j web3j, HashSet<BigInteger> eventIds, Set<BigInteger> answered,
+                                                   DefaultBlockParameter atBlock) throws IOException
     {
         HashSet<BigInteger> heldTokens = new HashSet<>();
         List<BigInteger> balanceIds = new ArrayList<>();
         BatchRequest requests = web3j.newBatch();
         for (BigInteger tokenId : eventIds)
         {
-            requests.add(getContractCall(web3j, ownerOf(tokenId), getAddress()));
+            requests.add(getContractCall(web3j, ownerOf(tokenId), getAddress(), atBlock));
             balanceIds.add(tokenId);
             if (requests.getRequests().size() >= EthereumNetworkBase.getBatchProcessingLimit(tokenInfo.chainId))
             {
                 //do this send
-                handleRequests(requests, balanceIds, heldTokens);
+                handleRequests(requests, balanceIds, heldTokens, answered);
                 requests = web3j.newBatch();
             }
         }
@@ -697,19 +743,21 @@ public class ERC721Token extends Token
         if (requests.getRequests().size() > 0)
         {
             //do final call
-            handleRequests(requests, balanceIds, heldTokens);
+            handleRequests(requests, balanceIds, heldTokens, answered);
         }
 
         return heldTokens;
     }
 
-    private void handleRequests(BatchRequest requests, List<BigInteger> balanceIds, HashSet<BigInteger> heldTokens) throws IOException
+    private void handleRequests(BatchRequest requests, List<BigInteger> balanceIds, HashSet<BigInteger> heldTokens,
+                                Set<BigInteger> answered) throws IOException
     {
         int index = 0;
         BatchResponse responses = requests.send();
         if (responses.getResponses().size() != requests.getRequests().size())
         {
             EthereumNetworkBase.setBatchProcessingError(tokenInfo.chainId);
+            balanceIds.clear();
             return;
         }
 
@@ -717,9 +765,11 @@ public class ERC721Token extends Token
         for (Response<?> rsp : responses.getResponses())
         {
             BigInteger tokenId = balanceIds.get(index);
-            if (isOwner(rsp, tokenId))
+            String owner = getOwner(rsp, tokenId);
+            if (owner != null)
             {
-                heldTokens.add(tokenId);
+                answered.add(tokenId);
+                if (owner.equalsIgnoreCase(getWallet())) heldTokens.add(tokenId);
             }
 
             index++;
@@ -728,19 +778,21 @@ public class ERC721Token extends Token
         balanceIds.clear();
     }
 
-    private boolean isOwner(Response<?> rsp, BigInteger tokenId)
+    // Owner from an ownerOf response, or null if the call failed or returned nothing
+    private String getOwner(Response<?> rsp, BigInteger tokenId)
     {
         EthCall response = (EthCall) rsp;
+        if (response.hasError() || response.getValue() == null) return null;
         Function function = ownerOf(tokenId);
         List<Type> responseValues = FunctionReturnDecoder.decode(response.getValue(), function.getOutputParameters());
         if (!responseValues.isEmpty())
         {
             String owner = responseValues.get(0).getValue().toString();
-            return (!owner.isEmpty() && owner.equalsIgnoreCase(getWallet()));
+            return owner.isEmpty() ? null : owner;
         }
         else
         {
-            return false;
+            return null;
         }
     }
 
@@ -969,12 +1021,12 @@ public class ERC721Token extends Token
         return updatedAssets;
     }
 
-    private Request<?, EthCall> getContractCall(Web3j web3j, Function function, String contractAddress)
+    private Request<?, EthCall> getContractCall(Web3j web3j, Function function, String contractAddress, DefaultBlockParameter atBlock)
     {
         String encodedFunction = FunctionEncoder.encode(function);
         org.web3j.protocol.core.methods.request.Transaction transaction
                 = createEthCallTransaction(getWallet(), contractAddress, encodedFunction);
-        return web3j.ethCall(transaction, DefaultBlockParameterName.LATEST);
+        return web3j.ethCall(transaction, atBlock);
     }
 
     private static Function ownerOf(BigInteger token)
@@ -17,10 +17,12 @@ import com.alphawallet.app.entity.Transaction;
 import com.alphawallet.app.entity.TransactionInput;
 import com.alphawallet.app.entity.TransactionType;
 import com.alphawallet.app.entity.nftassets.NFTAsset;
+import com.alphawallet.app.entity.nftassets.NFTOwnershipIndex;
 import com.alphawallet.app.entity.opensea.AssetContract;
 import com.alphawallet.app.entity.tokendata.TokenGroup;
 import com.alphawallet.app.repository.EthereumNetworkRepository;
 import com.alphawallet.app.repository.EventResult;
+import com.alphawallet.app.repository.NFTOwnershipStore;
 import com.alphawallet.app.repository.TokensRealmSource;
 import com.alphawallet.app.repository.entity.RealmToken;
 import com.alphawallet.app.service.AssetDefinitionService;
@@ -48,6 +50,7 @@ import java.math.BigInteger;
 import java.math.RoundingMode;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.HashSet;
 import java.util.List;
@@ -855,26 +858,14 @@ public class Token
 
     public TokenScriptResult.Attribute getAttributeResult(String attrId, BigInteger tokenId)
     {
-        if (resultMap.containsKey(tokenId))
-        {
-            return resultMap.get(tokenId).get(attrId);
-        }
-        else
-        {
-            return null;
-        }
+        Map<String, TokenScriptResult.Attribute> resultSet = resultMap.get(tokenId); //single read; may be cleared meanwhile
+        return resultSet != null ? resultSet.get(attrId) : null;
     }
 
     public void setAttributeResult(BigInteger tokenId, TokenScriptResult.Attribute attrResult)
     {
-        Map<String, TokenScriptResult.Attribute> resultSet = resultMap.get(tokenId);
-        if (resultSet == null)
-        {
-            resultSet = new ConcurrentHashMap<>();
-            resultMap.put(tokenId, resultSet);
-        }
-
-        resultSet.put(attrResult.id, attrResult);
+        //atomic, so two threads storing the first results for a tokenId can't each put a map and lose the other's
+        resultMap.computeIfAbsent(tokenId, k -> new ConcurrentHashMap<>()).put(attrResult.id, attrResult);
     }
 
     public void clearResultMap()
@@ -1036,6 +1027,11 @@ public class Token
         return contractInteract.fetchTokenMetadata(tokenId);
     }
 
+    public Map<BigInteger, NFTAsset> fetchTokenMetadata(Collection<BigInteger> tokenIds)
+    {
+        return contractInteract.fetchTokenMetadata(tokenIds);
+    }
+
     public boolean checkInfoRequiresUpdate(RealmToken realmToken)
     {
         if (TextUtils.isEmpty(realmToken.getName()) || (!TextUtils.isEmpty(tokenInfo.name) && !tokenInfo.name.equals(realmToken.getName()))) { return true; }
@@ -1059,13 +1055,21 @@ public class Token
             EventResult counts = result.get("value");
             if (amounts == null) return assets;
 
+            //fetch metadata for all the unknown ids together
+            List<BigInteger> unknownIds = new ArrayList<>();
+            for (String tokenId : amounts.values)
+            {
+                if (getAssetForToken(tokenId) == null) unknownIds.add(new BigInteger(tokenId));
+            }
+            Map<BigInteger, NFTAsset> fetched = fetchTokenMetadata(unknownIds);
+
             for (int i = 0; i < amounts.values.length; i++)
             {
                 String tokenId = amounts.values[i];
                 String count = (counts == null || counts.values.length < i) ? "1" : counts.values[i];
 
                 NFTAsset asset = getAssetForToken(tokenId);
-                if (asset == null) asset = fetchTokenMetadata(new BigInteger(tokenId));
+                if (asset == null) asset = fetched.get(new BigInteger(tokenId));
 
                 if (asset != null)
                 {
@@ -1101,11 +1105,30 @@ public class Token
         return null;
     }
 
-    public HashSet<BigInteger> processLogsAndStoreTransferEvents(EthLog receiveLogs, Event event, HashSet<String> txHashes, Realm realm)
+    public HashSet<BigInteger> processLogsAndStoreTransferEvents(EthLog receiveLogs, Event event, HashSet<String> txHashes, Realm realm,
+                                                                 NFTOwnershipIndex index)
     {
         return null;
     }
 
+    /**
+     * Drop the NFT ownership index and restart the transfer log reads from the first block. The index fills again
+     * over the following balance passes on the update thread; until an id is settled again it's checked with the
+     * contract, so balances stay right meanwhile. Rate limited, as a large collection takes many passes to re-read.
+     *
+     * @return true if the rebuild was started
+     */
+    protected boolean rebuildOwnershipIndex(Realm realm, NFTOwnershipIndex index)
+    {
+        long now = System.currentTimeMillis();
+        if (!index.isRebuildDue(now)) return false;
+
+        index.rebuild(now);
+        NFTOwnershipStore.save(realm, this, index);
+        eventSync.resetEventReads(realm);
+        return true;
+    }
+
     public void addAssetElements(NFTAsset asset, Context ctx)
     {
 
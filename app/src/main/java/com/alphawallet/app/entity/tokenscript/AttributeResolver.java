@@ -0,0 +1,119 @@
+package com.alphawallet.app.entity.tokenscript;
+
+import com.alphawallet.token.entity.Attribute;
+import com.alphawallet.token.entity.TokenScriptResult;
+import com.alphawallet.token.tools.TokenDefinition;
+
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import io.reactivex.Maybe;
+import io.reactivex.Observable;
+import io.reactivex.Scheduler;
+import io.reactivex.schedulers.Schedulers;
+import timber.log.Timber;
+
+/**
+ * Resolves a set of TokenScript attributes over a list of token ids as one piece of work, rather than one attribute
+ * and one token id at a time.
+ *
+ * Every (attribute, tokenId) pair needed is collected first. Attributes which don't take the token id are folded onto
+ * token id zero, so a value shared by the whole collection is fetched once. The fetches then run a few at a time; the
+ * contract calls they make around the same moment are coalesced into JSON-RPC batches by the chain's JsonRpcBatcher,
+ * and each result is cached in RealmAuxData by the fetch as before.
+ */
+public class AttributeResolver
+{
+    public static final int MAX_CONCURRENT_FETCHES = 8;
+
+    public interface Fetcher
+    {
+        TokenScriptResult.Attribute fetch(Attribute attr, BigInteger tokenId) throws Exception;
+    }
+
+    public static class Call
+    {
+        public final Attribute attr;
+        public final BigInteger tokenId;
+        private TokenScriptResult.Attribute result;
+
+        Call(Attribute attr, BigInteger tokenId)
+        {
+            this.attr = attr;
+            this.tokenId = tokenId;
+        }
+    }
+
+    private final int maxConcurrent;
+    private final Scheduler scheduler;
+
+    public AttributeResolver()
+    {
+        this(MAX_CONCURRENT_FETCHES, Schedulers.io());
+    }
+
+    public AttributeResolver(int maxConcurrent, Scheduler scheduler)
+    {
+        this.maxConcurrent = maxConcurrent;
+        this.scheduler = scheduler;
+    }
+
+    /**
+     * @return distinct fetches needed to resolve these attributes for these token ids, in first use order
+     */
+    public static List<Call> buildCalls(TokenDefinition td, List<String> attrNames, List<BigInteger> tokenIds)
+    {
+        Map<String, Call> calls = new LinkedHashMap<>();
+        for (BigInteger tokenId : tokenIds)
+        {
+            for (String attrName : attrNames)
+            {
+                Attribute attr = td.attributes.get(attrName);
+                if (attr == null) continue;
+                BigInteger useTokenId = td.useZeroForTokenIdAgnostic(attrName, tokenId);
+                String key = attrName + "-" + useTokenId.toString(16);
+                if (!calls.containsKey(key)) calls.put(key, new Call(attr, useTokenId));
+            }
+        }
+
+        return new ArrayList<>(calls.values());
+    }
+
+    /**
+     * Blocks until every fetch has completed. A fetch which fails or has no result is left out, so the attribute is
+     * absent for that token id.
+     *
+     * @return map of token id to attribute name to result; token id agnostic attributes are under token id zero
+     */
+    public Map<BigInteger, Map<String, TokenScriptResult.Attribute>> resolve(TokenDefinition td, List<String> attrNames,
+                                                                             List<BigInteger> tokenIds, Fetcher fetcher)
+    {
+        List<Call> calls = buildCalls(td, attrNames, tokenIds);
+        Map<BigInteger, Map<String, TokenScriptResult.Attribute>> resultSet = new HashMap<>();
+        if (calls.isEmpty()) return resultSet;
+
+        List<Call> resolved = Observable.fromIterable(calls)
+                .flatMap(call -> Maybe.fromCallable(() -> fetcher.fetch(call.attr, call.tokenId))
+                        .map(result -> {
+                            call.result = result;
+                            return call;
+                        })
+                        .doOnError(e -> Timber.w(e, "Attribute %s not resolved", call.attr.name))
+                        .onErrorComplete()
+                        .subscribeOn(scheduler)
+                        .toObservable(), maxConcurrent)
+                .toList()
+                .blockingGet();
+
+        for (Call call : resolved)
+        {
+            resultSet.computeIfAbsent(call.tokenId, k -> new HashMap<>()).put(call.attr.name, call.result);
+        }
+
+        return resultSet;
+    }
+}
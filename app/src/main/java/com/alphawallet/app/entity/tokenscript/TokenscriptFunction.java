@@ -146,6 +146,7 @@ import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentHashMap;
 
 import io.reactivex.Single;
@@ -162,6 +163,8 @@ public abstract class TokenscriptFunction
 
     private final Map<String, Attribute> localAttrs = new ConcurrentHashMap<>();
     private final Map<String, String> refTags = new ConcurrentHashMap<>();
+    //eth_calls in progress; an identical call made meanwhile (eg two attributes reading the same function) shares the result
+    private final Map<String, CompletableFuture<String>> inFlightCalls = new ConcurrentHashMap<>();
 
     public Function generateTransactionFunction(Token token, BigInteger tokenId, TokenDefinition definition, FunctionDefinition function, AttributeInterface attrIf)
     {
@@ -790,7 +793,7 @@ public abstract class TokenscriptFunction
             else
             {
                 //now push the transaction
-                result = callSmartContractFunction(TokenRepository.getWeb3jService(contractAddress.chainId), transaction, contractAddress.address, token.getWallet());
+                result = callSmartContractFunction(contractAddress.chainId, transaction, contractAddress.address, token.getWallet());
             }
 
             transactionResult.result = handleTransactionResult(transactionResult, transaction, result, attr, System.currentTimeMillis());
@@ -800,14 +803,37 @@ public abstract class TokenscriptFunction
 
     public String callSmartContract(long chainId, String contractAddress, Function function)
     {
-        return callSmartContractFunction(TokenRepository.getWeb3jService(chainId), function, contractAddress, ZERO_ADDRESS);
+        return callSmartContractFunction(chainId, function, contractAddress, ZERO_ADDRESS);
     }
 
-    private String callSmartContractFunction(Web3j web3j,
+    private String callSmartContractFunction(long chainId,
                                              Function function, String contractAddress, String walletAddr)
     {
         String encodedFunction = FunctionEncoder.encode(function);
+        String callKey = chainId + "-" + contractAddress + "-" + walletAddr + "-" + encodedFunction;
+        CompletableFuture<String> call = new CompletableFuture<>();
+        CompletableFuture<String> existing = inFlightCalls.putIfAbsent(callKey, call);
+        if (existing != null)
+        {
+            return existing.join();
+        }
+
+        String result = null;
+        try
+        {
+            result = ethCall(TokenRepository.getWeb3jService(chainId), encodedFunction, contractAddress, walletAddr);
+        }
+        finally
+        {
+            inFlightCalls.remove(callKey);
+            call.complete(result);
+        }
+
+        return result;
+    }
 
+    private String ethCall(Web3j web3j, String encodedFunction, String contractAddress, String walletAddr)
+    {
         try
         {
             org.web3j.protocol.core.methods.request.Transaction transaction
@@ -64,6 +64,27 @@ public class FetchTokensInteract {
         return tokenRepository.fetchTokenMetas(wallet, networkFilters, svs);
     }
 
+    public long getTokenMetaVersion(Wallet wallet)
+    {
+        return tokenRepository.getTokenMetaVersion(wallet);
+    }
+
+    /**
+     * Meta version at which a token was last removed; changes read since an earlier version are incomplete
+     */
+    public long getTokenRemovedVersion(Wallet wallet)
+    {
+        return tokenRepository.getTokenRemovedVersion(wallet);
+    }
+
+    /**
+     * Tokens which changed since the given meta version, including those disabled; see {@link #getTokenMetaVersion}
+     */
+    public Single<TokenCardMeta[]> fetchChangedTokenMetas(Wallet wallet, List<Long> networkFilters, AssetDefinitionService svs, long sinceVersion)
+    {
+        return tokenRepository.fetchChangedTokenMetas(wallet, networkFilters, svs, sinceVersion);
+    }
+
     public Single<TokenCardMeta[]> searchTokenMetas(Wallet wallet, List<Long> networkFilters, String searchTerm)
     {
         return tokenRepository.fetchAllTokenMetas(wallet, networkFilters, searchTerm);
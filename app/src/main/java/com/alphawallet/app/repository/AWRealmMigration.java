@@ -502,6 +502,52 @@ public class AWRealmMigration implements RealmMigration
 
             oldVersion = 54;
         }
+
+        if (oldVersion == 54)
+        {
+            RealmObjectSchema realmData = schema.get("RealmBlockHeader");
+            if (realmData != null) schema.remove("RealmBlockHeader");
+            schema.create("RealmBlockHeader")
+                    .addField("instanceKey", String.class, FieldAttribute.PRIMARY_KEY)
+                    .addField("chainId", long.class)
+                    .addField("blockNumber", long.class)
+                    .addField("timeStamp", long.class);
+
+            oldVersion = 55;
+        }
+
+        if (oldVersion == 55)
+        {
+            RealmObjectSchema realmData = schema.get("RealmTokenScriptData");
+            if (realmData != null && !realmData.hasField("compiledScript"))
+            {
+                realmData.addField("compiledScript", byte[].class);
+            }
+
+            oldVersion = 56;
+        }
+
+        if (oldVersion == 56)
+        {
+            RealmObjectSchema realmData = schema.get("RealmNFTOwnership");
+            if (realmData != null) schema.remove("RealmNFTOwnership");
+            schema.create("RealmNFTOwnership")
+                    .addField("instanceKey", String.class, FieldAttribute.PRIMARY_KEY)
+                    .addField("contractKey", String.class, FieldAttribute.INDEXED)
+                    .addField("amount", String.class)
+                    .addField("lastBlock", long.class)
+                    .addField("lastLogIndex", long.class)
+                    .addField("verifiedBlock", long.class);
+
+            realmData = schema.get("RealmNFTOwnershipIndex");
+            if (realmData != null) schema.remove("RealmNFTOwnershipIndex");
+            schema.create("RealmNFTOwnershipIndex")
+                    .addField("instanceKey", String.class, FieldAttribute.PRIMARY_KEY)
+                    .addField("ranges", String.class)
+                    .addField("lastRebuild", long.class);
+
+            oldVersion = 57;
+        }
     }
 
     @Override
@@ -800,6 +800,14 @@ public abstract class EthereumNetworkBase implements EthereumNetworkRepositoryTy
     private static final List<Long> hasLockedGas = Arrays.asList(KLAYTN_ID, KLAYTN_BAOBAB_ID);
     private static final List<Long> hasOpenSeaAPI = Arrays.asList(MAINNET_ID, POLYGON_ID, ARBITRUM_TEST_ID, AVALANCHE_ID, KLAYTN_ID, GOERLI_ID);
 
+    //Chains with the canonical Multicall3 deployment; balance refresh for these chains is aggregated into batched eth_calls
+    //Add a chain here once Multicall3 is confirmed deployed at MULTICALL3_ADDRESS
+    public static final String MULTICALL3_ADDRESS = "0xcA11bde05977b3631167028862bE2a173976CA11";
+    private static final List<Long> hasMulticall3 = Arrays.asList(MAINNET_ID, POLYGON_ID, ARBITRUM_MAIN_ID, AVALANCHE_ID, BINANCE_MAIN_ID, CRONOS_MAIN_ID,
+            OPTIMISTIC_MAIN_ID, GNOSIS_ID, FANTOM_ID, LINEA_ID, BASE_MAINNET_ID, MANTLE_MAINNET_ID, KLAYTN_ID, CLASSIC_ID, ROOTSTOCK_MAINNET_ID,
+            AURORA_MAINNET_ID, IOTEX_MAINNET_ID, SEPOLIA_TESTNET_ID, HOLESKY_ID, POLYGON_AMOY_ID, ARBITRUM_TEST_ID, BASE_TESTNET_ID,
+            BINANCE_TEST_ID, FUJI_TEST_ID, LINEA_TEST_ID);
+
     private static final LongSparseArray<BigInteger> blockGasLimit = new LongSparseArray<BigInteger>()
     {
         {
@@ -1472,6 +1480,11 @@ public abstract class EthereumNetworkBase implements EthereumNetworkRepositoryTy
         return hasOpenSeaAPI.contains(chainId);
     }
 
+    public static String getMulticallAddress(long chainId)
+    {
+        return hasMulticall3.contains(chainId) ? MULTICALL3_ADDRESS : "";
+    }
+
     public static BigInteger gasOverrideValue(long chainId)
     {
         return BigInteger.valueOf(1);
@@ -1584,11 +1597,14 @@ public abstract class EthereumNetworkBase implements EthereumNetworkRepositoryTy
         }
         NetworkInfo info = new NetworkInfo(networkName, symbol, networks, blockExplorerUrl, chainId, explorerApiUrl, isCustom);
         customNetworks.save(info, isTestnet, oldChainId);
+        Web3jClientRegistry.invalidate(chainId);
+        if (oldChainId != null) Web3jClientRegistry.invalidate(oldChainId);
     }
 
     public void removeCustomRPCNetwork(long chainId)
     {
         customNetworks.remove(chainId);
+        Web3jClientRegistry.invalidate(chainId);
     }
 
     public static NetworkInfo getNetworkInfo(long chainId)
@@ -0,0 +1,151 @@
+package com.alphawallet.app.repository;
+
+import org.web3j.abi.TypeReference;
+import org.web3j.abi.datatypes.Address;
+import org.web3j.abi.datatypes.Function;
+import org.web3j.abi.datatypes.generated.Uint256;
+import org.web3j.utils.Numeric;
+
+import java.io.ByteArrayOutputStream;
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Minimal ABI codec for the Multicall3 contract.
+ *
+ * aggregate3((address target, bool allowFailure, bytes callData)[]) returns ((bool success, bytes returnData)[])
+ *
+ * The encoding is done by hand rather than through web3j's DynamicStruct support; the layout is fixed and
+ * hand rolling it avoids the reflection cost of building a struct TypeReference for every balance refresh.
+ */
+public class Multicall3
+{
+    public static final String AGGREGATE3 = "82ad56cb";
+    private static final int WORD = 32;
+
+    public static class Call
+    {
+        public final String target;
+        public final boolean allowFailure;
+        public final byte[] callData;
+
+        public Call(String target, boolean allowFailure, String encodedFunction)
+        {
+            this.target = target;
+            this.allowFailure = allowFailure;
+            this.callData = Numeric.hexStringToByteArray(encodedFunction);
+        }
+    }
+
+    public static class Result
+    {
+        public final boolean success;
+        public final byte[] returnData;
+
+        public Result(boolean success, byte[] returnData)
+        {
+            this.success = success;
+            this.returnData = returnData;
+        }
+
+        public String getReturnHex()
+        {
+            return Numeric.toHexString(returnData);
+        }
+    }
+
+    public static Function getEthBalance(String address)
+    {
+        return new Function("getEthBalance",
+                Collections.singletonList(new Address(address)),
+                Collections.singletonList(new TypeReference<Uint256>() {}));
+    }
+
+    public static String encodeAggregate3(List<Call> calls)
+    {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        writeBytes(out, Numeric.hexStringToByteArray(AGGREGATE3));
+        writeWord(out, WORD); //offset to the array
+        writeWord(out, calls.size());
+
+        //element offsets are relative to the start of the offset table
+        long offset = (long) WORD * calls.size();
+        for (Call call : calls)
+        {
+            writeWord(out, offset);
+            offset += 4L * WORD + paddedLength(call.callData.length);
+        }
+
+        for (Call call : calls)
+        {
+            writeBytes(out, Numeric.toBytesPadded(Numeric.toBigInt(call.target), WORD));
+            writeWord(out, call.allowFailure ? 1 : 0);
+            writeWord(out, 3 * WORD); //bytes offset from start of tuple
+            writeWord(out, call.callData.length);
+            writeBytes(out, call.callData);
+            writeBytes(out, new byte[paddedLength(call.callData.length) - call.callData.length]);
+        }
+
+        return Numeric.toHexString(out.toByteArray());
+    }
+
+    public static List<Result> decodeAggregate3(String response)
+    {
+        List<Result> results = new ArrayList<>();
+        byte[] data = Numeric.hexStringToByteArray(response);
+        if (data.length < 2 * WORD) return results;
+
+        int arrayStart = readInt(data, 0);
+        int count = readInt(data, arrayStart);
+        int base = arrayStart + WORD;
+
+        for (int i = 0; i < count; i++)
+        {
+            int tuple = base + readInt(data, base + i * WORD);
+            boolean success = readInt(data, tuple) != 0;
+            int bytesStart = tuple + readInt(data, tuple + WORD);
+            int length = readInt(data, bytesStart);
+            if (bytesStart + WORD + length > data.length)
+            {
+                throw new IllegalArgumentException("Multicall response truncated at offset " + bytesStart);
+            }
+            byte[] returnData = new byte[length];
+            System.arraycopy(data, bytesStart + WORD, returnData, 0, length);
+            results.add(new Result(success, returnData));
+        }
+
+        return results;
+    }
+
+    private static int paddedLength(int length)
+    {
+        return ((length + WORD - 1) / WORD) * WORD;
+    }
+
+    private static int readInt(byte[] data, int offset)
+    {
+        if (offset < 0 || offset + WORD > data.length)
+        {
+            throw new IllegalArgumentException("Multicall response truncated at offset " + offset);
+        }
+        BigInteger value = new BigInteger(1, Arrays.copyOfRange(data, offset, offset + WORD));
+        if (value.bitLength() > 31)
+        {
+            throw new IllegalArgumentException("Multicall response offset out of range");
+        }
+        return value.intValue();
+    }
+
+    private static void writeWord(ByteArrayOutputStream out, long value)
+    {
+        writeBytes(out, Numeric.toBytesPadded(BigInteger.valueOf(value), WORD));
+    }
+
+    private static void writeBytes(ByteArrayOutputStream out, byte[] bytes)
+    {
+        out.write(bytes, 0, bytes.length);
+    }
+}
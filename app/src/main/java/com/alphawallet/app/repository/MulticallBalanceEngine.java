@@ -0,0 +1,185 @@
+package com.alphawallet.app.repository;
+
+import static com.alphawallet.app.repository.TokensRealmSource.databaseKey;
+import static org.web3j.protocol.core.methods.request.Transaction.createEthCallTransaction;
+
+import android.text.TextUtils;
+
+import com.alphawallet.app.entity.ContractType;
+import com.alphawallet.app.entity.tokens.ERC1155Token;
+import com.alphawallet.app.entity.tokens.Token;
+
+import org.web3j.abi.FunctionEncoder;
+import org.web3j.abi.FunctionReturnDecoder;
+import org.web3j.abi.datatypes.DynamicArray;
+import org.web3j.abi.datatypes.Function;
+import org.web3j.abi.datatypes.Type;
+import org.web3j.abi.datatypes.generated.Uint256;
+import org.web3j.protocol.Web3j;
+import org.web3j.protocol.core.DefaultBlockParameterName;
+import org.web3j.protocol.core.methods.response.EthCall;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import timber.log.Timber;
+
+/**
+ * Fetches balances for many tokens on one chain using chunked Multicall3 aggregate3 calls.
+ *
+ * Tokens which could not be resolved (no Multicall3 on the chain, reverted call, empty return data or a
+ * node error for the chunk) are simply absent from the returned map; callers fall back to the per-token path
+ * for those, which also handles the self-destructed contract check.
+ */
+public class MulticallBalanceEngine
+{
+    private static final String TAG = "MULTICALL";
+    public static final int MAX_CALLS_PER_REQUEST = 200;
+
+    public static boolean isSupported(long chainId)
+    {
+        return !TextUtils.isEmpty(EthereumNetworkBase.getMulticallAddress(chainId));
+    }
+
+    /**
+     * @return true if the balance of this token can be fetched by the engine
+     */
+    public static boolean canAggregate(Token token)
+    {
+        switch (token.getInterfaceSpec())
+        {
+            case ETHEREUM:
+            case ERC20:
+            case DYNAMIC_CONTRACT:
+            case ERC721:
+            case ERC721_LEGACY:
+            case ERC721_ENUMERABLE:
+                return true;
+            case ERC1155:
+                return token.getTokenAssets() != null && !token.getTokenAssets().isEmpty();
+            default:
+                return false;
+        }
+    }
+
+    /**
+     * Fetch balances for the supplied tokens, all of which must be on chainId
+     *
+     * @param web3j node connection for the chain
+     * @param chainId chain the tokens are on
+     * @param walletAddress owner address
+     * @param tokens tokens to check
+     * @return map of TokensRealmSource.databaseKey to raw balance, for the tokens successfully read
+     */
+    public Map<String, BigDecimal> fetchBalances(Web3j web3j, long chainId, String walletAddress, List<Token> tokens)
+    {
+        Map<String, BigDecimal> balances = new HashMap<>();
+        String multicallAddress = EthereumNetworkBase.getMulticallAddress(chainId);
+        if (TextUtils.isEmpty(multicallAddress) || tokens.isEmpty()) return balances;
+
+        List<BalanceCall> pending = new ArrayList<>();
+        for (Token token : tokens)
+        {
+            if (token.tokenInfo.chainId != chainId || !canAggregate(token)) continue;
+            pending.add(new BalanceCall(token, walletAddress, multicallAddress));
+        }
+
+        for (int start = 0; start < pending.size(); start += MAX_CALLS_PER_REQUEST)
+        {
+            List<BalanceCall> chunk = pending.subList(start, Math.min(start + MAX_CALLS_PER_REQUEST, pending.size()));
+            executeChunk(web3j, walletAddress, multicallAddress, chunk, balances);
+        }
+
+        return balances;
+    }
+
+    private void executeChunk(Web3j web3j, String walletAddress, String multicallAddress,
+                              List<BalanceCall> chunk, Map<String, BigDecimal> balances)
+    {
+        List<Multicall3.Call> calls = new ArrayList<>(chunk.size());
+        for (BalanceCall bc : chunk)
+        {
+            calls.add(bc.call);
+        }
+
+        try
+        {
+            EthCall response = web3j.ethCall(createEthCallTransaction(walletAddress, multicallAddress, Multicall3.encodeAggregate3(calls)),
+                    DefaultBlockParameterName.LATEST).send();
+
+            if (response.hasError() || TextUtils.isEmpty(response.getValue()) || response.getValue().equals("0x"))
+            {
+                return; //leave the whole chunk to the fallback path
+            }
+
+            List<Multicall3.Result> results = Multicall3.decodeAggregate3(response.getValue());
+            for (int i = 0; i < results.size() && i < chunk.size(); i++)
+            {
+                BigDecimal balance = chunk.get(i).decode(results.get(i));
+                if (balance != null)
+                {
+                    balances.put(databaseKey(chunk.get(i).token), balance);
+                }
+            }
+        }
+        catch (Exception e)
+        {
+            Timber.tag(TAG).w(e);
+        }
+    }
+
+    private static class BalanceCall
+    {
+        final Token token;
+        final Function function;
+        final Multicall3.Call call;
+
+        BalanceCall(Token token, String walletAddress, String multicallAddress)
+        {
+            this.token = token;
+            switch (token.getInterfaceSpec())
+            {
+                case ETHEREUM:
+                    function = Multicall3.getEthBalance(walletAddress);
+                    call = new Multicall3.Call(multicallAddress, true, FunctionEncoder.encode(function));
+                    break;
+                case ERC1155:
+                    function = ERC1155Token.balanceOfBatch(walletAddress, token.getTokenAssets().keySet());
+                    call = new Multicall3.Call(token.getAddress(), true, FunctionEncoder.encode(function));
+                    break;
+                default:
+                    function = TokenRepository.balanceOf(walletAddress);
+                    call = new Multicall3.Call(token.getAddress(), true, FunctionEncoder.encode(function));
+                    break;
+            }
+        }
+
+        @SuppressWarnings("unchecked")
+        BigDecimal decode(Multicall3.Result result)
+        {
+            if (!result.success || result.returnData.length == 0) return null;
+
+            List<Type> response = FunctionReturnDecoder.decode(result.getReturnHex(), function.getOutputParameters());
+            if (response.isEmpty()) return null;
+
+            if (token.getInterfaceSpec() == ContractType.ERC1155)
+            {
+                //ERC1155 balance is the sum of the held asset balances, see ERC1155Token.getBalanceRaw
+                BigInteger total = BigInteger.ZERO;
+                for (Uint256 value : ((DynamicArray<Uint256>) response.get(0)).getValue())
+                {
+                    total = total.add(value.getValue());
+                }
+                return new BigDecimal(total);
+            }
+            else
+            {
+                return new BigDecimal(((Uint256) response.get(0)).getValue());
+            }
+        }
+    }
+}
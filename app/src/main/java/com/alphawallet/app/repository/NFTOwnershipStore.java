@@ -0,0 +1,90 @@
+package com.alphawallet.app.repository;
+
+import com.alphawallet.app.entity.nftassets.NFTOwnershipIndex;
+import com.alphawallet.app.entity.tokens.Token;
+import com.alphawallet.app.repository.entity.RealmNFTOwnership;
+import com.alphawallet.app.repository.entity.RealmNFTOwnershipIndex;
+
+import java.math.BigInteger;
+import java.util.List;
+
+import io.realm.Realm;
+import io.realm.RealmResults;
+import timber.log.Timber;
+
+/**
+ * Reads and writes a token's NFT ownership index in the wallet's realm. Only entries changed since loading are written.
+ */
+public class NFTOwnershipStore
+{
+    public static NFTOwnershipIndex load(Realm realm, Token token, boolean fungible)
+    {
+        NFTOwnershipIndex index = new NFTOwnershipIndex(token.getWallet(), fungible);
+        if (realm == null) return index;
+
+        String contractKey = TokensRealmSource.databaseKey(token);
+        RealmNFTOwnershipIndex ranges = realm.where(RealmNFTOwnershipIndex.class)
+                .equalTo("instanceKey", contractKey)
+                .findFirst();
+
+        if (ranges == null) return index; //nothing read yet
+
+        index.restoreRanges(ranges.getRanges(), ranges.getLastRebuild());
+        for (RealmNFTOwnership entry : realm.where(RealmNFTOwnership.class).equalTo("contractKey", contractKey).findAll())
+        {
+            try
+            {
+                index.restoreEntry(new BigInteger(entry.getTokenId()), new BigInteger(entry.getAmount()),
+                        entry.getLastBlock(), entry.getLastLogIndex(), entry.getVerifiedBlock());
+            }
+            catch (NumberFormatException e)
+            {
+                Timber.w(e);
+            }
+        }
+
+        return index;
+    }
+
+    public static void save(Realm realm, Token token, NFTOwnershipIndex index)
+    {
+        List<NFTOwnershipIndex.Entry> changed = index.getChangedEntries();
+        if (realm == null || (changed.isEmpty() && !index.isRangesChanged() && !index.isCleared())) return;
+
+        String contractKey = TokensRealmSource.databaseKey(token);
+        realm.executeTransaction(r -> {
+            if (index.isCleared())
+            {
+                RealmResults<RealmNFTOwnership> stored = r.where(RealmNFTOwnership.class)
+                        .equalTo("contractKey", contractKey)
+                        .findAll();
+                stored.deleteAllFromRealm();
+            }
+
+            for (NFTOwnershipIndex.Entry entry : changed)
+            {
+                String key = contractKey + "-" + entry.tokenId.toString();
+                RealmNFTOwnership realmEntry = r.where(RealmNFTOwnership.class)
+                        .equalTo("instanceKey", key)
+                        .findFirst();
+
+                if (realmEntry == null) realmEntry = r.createObject(RealmNFTOwnership.class, key);
+                realmEntry.setContractKey(contractKey);
+                realmEntry.setAmount(entry.getAmount().toString());
+                realmEntry.setLastBlock(entry.getLastBlock());
+                realmEntry.setLastLogIndex(entry.getLastLogIndex());
+                realmEntry.setVerifiedBlock(entry.getVerifiedBlock());
+            }
+
+            RealmNFTOwnershipIndex ranges = r.where(RealmNFTOwnershipIndex.class)
+                    .equalTo("instanceKey", contractKey)
+                    .findFirst();
+
+            if (ranges == null) ranges = r.createObject(RealmNFTOwnershipIndex.class, contractKey);
+            ranges.setRanges(index.getRanges());
+            ranges.setLastRebuild(index.getLastRebuild());
+        });
+
+        index.markSaved();
+    }
+}
@@ -0,0 +1,342 @@
+package com.alphawallet.app.repository;
+
+import com.alphawallet.app.entity.tokendata.TokenTicker;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Running fiat value of each wallet, held as per-token contributions rolled up into per-chain subtotals.
+ *
+ * A balance change recomputes only that token's contribution, and a ticker change only the tokens priced by it, so
+ * reading a wallet total is a sum over the chains it holds instead of a pass over every token and every ticker.
+ * Amounts are kept as BigDecimal so subtracting an old contribution and adding the new one never drifts.
+ */
+public class PortfolioAggregator
+{
+    private static final int MAX_WALLETS = 32; //the wallets list asks for the total of every wallet
+    private static final int SCALE = 18;
+    private static final BigDecimal HUNDRED = BigDecimal.valueOf(100);
+
+    public static class Totals
+    {
+        public final double value;
+        public final double historical; //value 24 hours ago, at the same balances
+
+        Totals(BigDecimal value, BigDecimal historical)
+        {
+            this.value = value.doubleValue();
+            this.historical = historical.doubleValue();
+        }
+    }
+
+    /**
+     * A token balance which counts towards the wallet total
+     */
+    public static class Holding
+    {
+        final String key;
+        final long chainId;
+        final String tickerKey;
+        final BigDecimal amount;
+        BigDecimal value = BigDecimal.ZERO;
+        BigDecimal historical = BigDecimal.ZERO;
+
+        /**
+         * @param tickerKey databaseKey of the ticker which prices the token
+         * @param balance   raw balance in the token's smallest unit, or null if the token doesn't count towards the total
+         */
+        public Holding(String key, long chainId, String tickerKey, String balance, int decimals)
+        {
+            this.key = key;
+            this.chainId = chainId;
+            this.tickerKey = tickerKey;
+            this.amount = correctedAmount(balance, decimals);
+        }
+
+        boolean counts()
+        {
+            return amount != null && amount.signum() > 0;
+        }
+    }
+
+    private static class Quote
+    {
+        final BigDecimal price;
+        final BigDecimal historicalFactor;
+
+        Quote(TokenTicker ticker)
+        {
+            price = new BigDecimal(ticker.price);
+            historicalFactor = BigDecimal.ONE.subtract(new BigDecimal(ticker.percentChange24h).divide(HUNDRED));
+        }
+    }
+
+    private static class Subtotal
+    {
+        BigDecimal value = BigDecimal.ZERO;
+        BigDecimal historical = BigDecimal.ZERO;
+    }
+
+    private static class WalletEntry
+    {
+        final Map<String, Holding> holdings = new HashMap<>();
+        final Map<String, Set<String>> byTicker = new HashMap<>();
+        final Map<Long, Subtotal> chains = new HashMap<>();
+        long version = -1;
+    }
+
+    private final Map<String, Quote> quotes = new HashMap<>();
+    private final Set<String> dirtyTickers = new HashSet<>();
+    private boolean tickersLoaded;
+    private int tickerGeneration;
+
+    private final Map<String, WalletEntry> wallets = new LinkedHashMap<String, WalletEntry>(MAX_WALLETS, 0.75f, true)
+    {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, WalletEntry> eldest)
+        {
+            return size() > MAX_WALLETS;
+        }
+    };
+
+    /**
+     * @return token meta version the wallet's holdings were last brought up to, or -1 if the wallet isn't held
+     */
+    public synchronized long getVersion(String walletAddress)
+    {
+        WalletEntry entry = wallets.get(walletAddress.toLowerCase());
+        return entry != null ? entry.version : -1;
+    }
+
+    /**
+     * Merge changed holdings into the wallet's total.
+     *
+     * @param replace true if holdings is the wallet's complete token list; anything not in it is dropped
+     */
+    public synchronized void update(String walletAddress, long version, Collection<Holding> holdings, boolean replace)
+    {
+        WalletEntry entry = getEntry(walletAddress);
+        if (replace)
+        {
+            entry.holdings.clear();
+            entry.byTicker.clear();
+            entry.chains.clear();
+        }
+
+        for (Holding holding : holdings)
+        {
+            remove(entry, holding.key);
+            if (holding.counts()) add(entry, holding);
+        }
+
+        entry.version = version;
+    }
+
+    /**
+     * @param chains chains to total; empty for all
+     */
+    public synchronized Totals getTotal(String walletAddress, Collection<Long> chains)
+    {
+        BigDecimal value = BigDecimal.ZERO;
+        BigDecimal historical = BigDecimal.ZERO;
+        WalletEntry entry = wallets.get(walletAddress.toLowerCase());
+        if (entry != null)
+        {
+            for (Map.Entry<Long, Subtotal> chain : entry.chains.entrySet())
+            {
+                if (!chains.isEmpty() && !chains.contains(chain.getKey())) continue;
+                value = value.add(chain.getValue().value);
+                historical = historical.add(chain.getValue().historical);
+            }
+        }
+
+        return new Totals(value, historical);
+    }
+
+    public synchronized boolean hasTickers()
+    {
+        return tickersLoaded;
+    }
+
+    /**
+     * Start a full ticker load; pass the result to {@link #loadTickers}
+     */
+    public synchronized int beginTickerLoad()
+    {
+        dirtyTickers.clear();
+        return tickerGeneration;
+    }
+
+    /**
+     * Replace every ticker and reprice every holding
+     *
+     * @param generation value from {@link #beginTickerLoad}; if the tickers were invalidated since, the load is kept
+     *                   but the next access reloads again
+     */
+    public synchronized void loadTickers(int generation, Map<String, TokenTicker> tickers)
+    {
+        quotes.clear();
+        for (Map.Entry<String, TokenTicker> ticker : tickers.entrySet())
+        {
+            putQuote(ticker.getKey(), ticker.getValue());
+        }
+        tickersLoaded = generation == tickerGeneration;
+
+        for (WalletEntry entry : wallets.values())
+        {
+            for (Holding holding : entry.holdings.values())
+            {
+                reprice(entry, holding);
+            }
+        }
+    }
+
+    /**
+     * Change one ticker, repricing only the holdings it prices
+     *
+     * @param ticker new ticker, or null if the ticker is gone
+     */
+    public synchronized void updateTicker(String tickerKey, TokenTicker ticker)
+    {
+        quotes.remove(tickerKey);
+        putQuote(tickerKey, ticker);
+
+        for (WalletEntry entry : wallets.values())
+        {
+            Set<String> keys = entry.byTicker.get(tickerKey);
+            if (keys == null) continue;
+            for (String key : keys)
+            {
+                reprice(entry, entry.holdings.get(key));
+            }
+        }
+    }
+
+    /**
+     * Record that a ticker has been written; it will be re-read on next access
+     */
+    public synchronized void markTickerDirty(String tickerKey)
+    {
+        dirtyTickers.add(tickerKey);
+    }
+
+    public synchronized Set<String> takeDirtyTickers()
+    {
+        Set<String> dirty = new HashSet<>(dirtyTickers);
+        dirtyTickers.clear();
+        return dirty;
+    }
+
+    /**
+     * Reload every ticker on next access; for bulk deletes
+     */
+    public synchronized void invalidateTickers()
+    {
+        tickersLoaded = false;
+        tickerGeneration++;
+    }
+
+    public static BigDecimal correctedAmount(String balance, int decimals)
+    {
+        if (balance == null || balance.isEmpty()) return null;
+        try
+        {
+            BigDecimal raw = new BigDecimal(balance);
+            return decimals > 0 ? raw.divide(BigDecimal.TEN.pow(decimals), SCALE, RoundingMode.DOWN) : raw;
+        }
+        catch (NumberFormatException e)
+        {
+            return null;
+        }
+    }
+
+    private WalletEntry getEntry(String walletAddress)
+    {
+        String key = walletAddress.toLowerCase();
+        WalletEntry entry = wallets.get(key);
+        if (entry == null)
+        {
+            entry = new WalletEntry();
+            wallets.put(key, entry);
+        }
+        return entry;
+    }
+
+    private void putQuote(String tickerKey, TokenTicker ticker)
+    {
+        if (ticker == null) return;
+        try
+        {
+            quotes.put(tickerKey, new Quote(ticker));
+        }
+        catch (NumberFormatException | NullPointerException e)
+        {
+            //unpriced placeholder; the token doesn't count
+        }
+    }
+
+    private void add(WalletEntry entry, Holding holding)
+    {
+        entry.holdings.put(holding.key, holding);
+        Set<String> keys = entry.byTicker.get(holding.tickerKey);
+        if (keys == null)
+        {
+            keys = new HashSet<>();
+            entry.byTicker.put(holding.tickerKey, keys);
+        }
+        keys.add(holding.key);
+        reprice(entry, holding);
+    }
+
+    private void remove(WalletEntry entry, String key)
+    {
+        Holding old = entry.holdings.remove(key);
+        if (old == null) return;
+
+        Set<String> keys = entry.byTicker.get(old.tickerKey);
+        if (keys != null)
+        {
+            keys.remove(key);
+            if (keys.isEmpty()) entry.byTicker.remove(old.tickerKey);
+        }
+
+        Subtotal subtotal = entry.chains.get(old.chainId);
+        if (subtotal != null)
+        {
+            subtotal.value = subtotal.value.subtract(old.value);
+            subtotal.historical = subtotal.historical.subtract(old.historical);
+        }
+    }
+
+    private void reprice(WalletEntry entry, Holding holding)
+    {
+        if (holding == null) return;
+        Quote quote = quotes.get(holding.tickerKey);
+        BigDecimal value = BigDecimal.ZERO;
+        BigDecimal historical = BigDecimal.ZERO;
+        if (quote != null)
+        {
+            value = holding.amount.multiply(quote.price).setScale(SCALE, RoundingMode.DOWN);
+            historical = value.multiply(quote.historicalFactor);
+        }
+
+        Subtotal subtotal = entry.chains.get(holding.chainId);
+        if (subtotal == null)
+        {
+            subtotal = new Subtotal();
+            entry.chains.put(holding.chainId, subtotal);
+        }
+
+        subtotal.value = subtotal.value.subtract(holding.value).add(value);
+        subtotal.historical = subtotal.historical.subtract(holding.historical).add(historical);
+        holding.value = value;
+        holding.historical = historical;
+    }
+}
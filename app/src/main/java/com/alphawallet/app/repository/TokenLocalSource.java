@@ -29,10 +29,14 @@ public interface TokenLocalSource
 
     Single<Token[]> saveTokens(Wallet wallet, Token[] items);
 
-    boolean updateTokenBalance(Wallet wallet, Token token, BigDecimal balance, List<BigInteger> balanceArray);
+    void updateTokenBalance(Wallet wallet, Token token, BigDecimal balance, List<BigInteger> balanceArray);
+
+    void updateTokenBalances(Wallet wallet, List<Token> tokens, Map<String, BigDecimal> balances);
 
     Token fetchToken(long chainId, Wallet wallet, String address);
 
+    Token fetchTokenWithoutAssets(long chainId, Wallet wallet, String address);
+
     void setEnable(Wallet wallet, ContractAddress cAddr, boolean isEnabled);
 
     String getTokenImageUrl(long chainId, String address);
@@ -51,6 +55,12 @@ public interface TokenLocalSource
 
     TokenCardMeta[] fetchTokenMetasForUpdate(Wallet wallet, List<Long> networkFilters);
 
+    long getTokenMetaVersion(Wallet wallet);
+
+    long getTokenRemovedVersion(Wallet wallet);
+
+    TokenCardMeta[] fetchChangedTokenMetas(Wallet wallet, List<Long> networkFilters, AssetDefinitionService svs, long sinceVersion);
+
     Single<Token[]> fetchAllTokensWithNameIssue(String walletAddress, List<Long> networkFilters);
 
     Single<ContractAddress[]> fetchAllTokensWithBlankName(String walletAddress, List<Long> networkFilters);
@@ -79,6 +89,10 @@ public interface TokenLocalSource
 
     void storeAsset(String wallet, Token token, BigInteger tokenId, NFTAsset asset);
 
+    Map<BigInteger, NFTAsset> getNFTAssets(String wallet, Token token, List<BigInteger> tokenIds);
+
+    List<BigInteger> getNFTTokenIds(String wallet, Token token);
+
     Single<Pair<Double, Double>> getTotalValue(String currentAddress, List<Long> networkFilters);
 
     Map<String, Long> getTickerTimeMap(long chainId, List<TokenCardMeta> erc20Tokens);
@@ -0,0 +1,373 @@
+package com.alphawallet.app.repository;
+
+import com.alphawallet.app.entity.ContractType;
+import com.alphawallet.app.repository.entity.RealmToken;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+
+import io.realm.Realm;
+import io.realm.RealmResults;
+
+/**
+ * In-memory projection of each wallet's RealmToken table, holding just the fields needed to build TokenCardMetas.
+ *
+ * The wallet list, the balance scheduler and token search all read the token list many times a minute; with this
+ * cache a read is an in-memory filter instead of a full Realm query plus object materialisation. The projection is
+ * kept current in two ways:
+ * - The write path marks keys it has committed as dirty, which are re-read on the next access.
+ * - Each access compares a cheap fingerprint of the table (row count plus the newest added/updated/tx times) and
+ *   re-reads only the rows newer than the last fingerprint. This catches writes made outside TokensRealmSource.
+ *
+ * Every row carries the cache version at which it last changed, so callers can ask for just the rows which changed
+ * since they last looked.
+ */
+public class TokenMetaCache
+{
+    private static final int MAX_WALLETS = 16; //as many as the wallet switch cache keeps warm (WalletWarmCache)
+
+    /**
+     * Immutable snapshot of one RealmToken
+     */
+    public static class Row
+    {
+        public final String key;
+        public final long chainId;
+        public final String tokenAddress;
+        public final String balance;
+        public final ContractType contractType;
+        public final String name;
+        public final String symbol;
+        public final String auxData;
+        public final int decimals;
+        public final long addedTime;
+        public final long updatedTime;
+        public final long lastTxTime;
+        public final boolean isEnabled;
+        public final boolean visibilityChanged;
+        long version;
+
+        public Row(String key, long chainId, String tokenAddress, String balance, ContractType contractType, String name,
+                   String symbol, String auxData, int decimals, long addedTime, long updatedTime, long lastTxTime,
+                   boolean isEnabled, boolean visibilityChanged)
+        {
+            this.key = key;
+            this.chainId = chainId;
+            this.tokenAddress = tokenAddress;
+            this.balance = balance;
+            this.contractType = contractType;
+            this.name = name;
+            this.symbol = symbol;
+            this.auxData = auxData;
+            this.decimals = decimals;
+            this.addedTime = addedTime;
+            this.updatedTime = updatedTime;
+            this.lastTxTime = lastTxTime;
+            this.isEnabled = isEnabled;
+            this.visibilityChanged = visibilityChanged;
+        }
+
+        Row(RealmToken t)
+        {
+            this(t.getDatabaseKey(), t.getChainId(), t.getTokenAddress(), t.getBalance(), t.getContractType(), t.getName(),
+                    t.getSymbol(), t.getAuxData(), t.getDecimals(), t.getUpdateTime(), t.getBalanceUpdateTime(), t.getLastTxTime(),
+                    t.isEnabled(), t.isVisibilityChanged());
+        }
+
+        public long getVersion()
+        {
+            return version;
+        }
+
+        // addedTime is touched on every balance read, even when nothing changed, so it doesn't count as a change
+        boolean sameAs(Row other)
+        {
+            return other != null && chainId == other.chainId && decimals == other.decimals && updatedTime == other.updatedTime
+                    && lastTxTime == other.lastTxTime && isEnabled == other.isEnabled
+                    && visibilityChanged == other.visibilityChanged && contractType == other.contractType
+                    && Objects.equals(balance, other.balance) && Objects.equals(name, other.name)
+                    && Objects.equals(symbol, other.symbol) && Objects.equals(auxData, other.auxData);
+        }
+    }
+
+    private static class Fingerprint
+    {
+        final long count;
+        final long maxAdded;
+        final long maxUpdated;
+        final long maxLastTx;
+
+        Fingerprint(Realm realm)
+        {
+            count = realm.where(RealmToken.class).count();
+            maxAdded = asLong(realm.where(RealmToken.class).max("addedTime"));
+            maxUpdated = asLong(realm.where(RealmToken.class).max("updatedTime"));
+            maxLastTx = asLong(realm.where(RealmToken.class).max("lastTxTime"));
+        }
+
+        boolean matches(Fingerprint other)
+        {
+            return other != null && count == other.count && maxAdded == other.maxAdded
+                    && maxUpdated == other.maxUpdated && maxLastTx == other.maxLastTx;
+        }
+
+        private static long asLong(Number n)
+        {
+            return n != null ? n.longValue() : 0;
+        }
+    }
+
+    private static class WalletEntry
+    {
+        final Map<String, Row> rows = new HashMap<>();
+        final Set<String> dirty = new HashSet<>();
+        Fingerprint fingerprint;
+        boolean loaded;
+        long version;
+        long removedVersion;
+    }
+
+    //shared by all wallets so a version never repeats, even after a wallet is evicted and reloaded
+    private final AtomicLong versions = new AtomicLong();
+
+    private final Map<String, WalletEntry> wallets = new LinkedHashMap<String, WalletEntry>(MAX_WALLETS, 0.75f, true)
+    {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, WalletEntry> eldest)
+        {
+            return size() > MAX_WALLETS;
+        }
+    };
+
+    /**
+     * Bring the wallet's projection up to date and return its rows, oldest addedTime first (the order the Realm
+     * queries used to return).
+     *
+     * @param realm open instance of the wallet database, on the calling thread
+     */
+    public List<Row> snapshot(Realm realm, String walletAddress)
+    {
+        WalletEntry entry = getEntry(walletAddress);
+        synchronized (entry)
+        {
+            refresh(realm, entry);
+            List<Row> result = new ArrayList<>(entry.rows.values());
+            Collections.sort(result, (r1, r2) -> Long.compare(r1.addedTime, r2.addedTime));
+            return result;
+        }
+    }
+
+    /**
+     * Bring the wallet's projection up to date without copying it out; follow with {@link #changedSince}
+     */
+    public void refresh(Realm realm, String walletAddress)
+    {
+        WalletEntry entry = getEntry(walletAddress);
+        synchronized (entry)
+        {
+            refresh(realm, entry);
+        }
+    }
+
+    private void refresh(Realm realm, WalletEntry entry)
+    {
+        Fingerprint current = new Fingerprint(realm);
+        if (!entry.loaded)
+        {
+            replaceAll(entry, realm.where(RealmToken.class).findAll());
+        }
+        else
+        {
+            if (!current.matches(entry.fingerprint))
+            {
+                Fingerprint last = entry.fingerprint;
+                update(entry, realm.where(RealmToken.class)
+                        .greaterThan("addedTime", last.maxAdded)
+                        .or().greaterThan("updatedTime", last.maxUpdated)
+                        .or().greaterThan("lastTxTime", last.maxLastTx)
+                        .findAll());
+            }
+
+            if (!entry.dirty.isEmpty())
+            {
+                String[] keys = entry.dirty.toArray(new String[0]);
+                RealmResults<RealmToken> found = realm.where(RealmToken.class).in("address", keys).findAll();
+                update(entry, found);
+                if (found.size() < keys.length) removeMissing(entry, keys, found);
+            }
+
+            //rows were deleted or re-keyed in a way the time fields didn't show; start again
+            if (entry.rows.size() != current.count)
+            {
+                replaceAll(entry, realm.where(RealmToken.class).findAll());
+            }
+        }
+
+        entry.dirty.clear();
+        entry.fingerprint = current;
+        entry.loaded = true;
+    }
+
+    /**
+     * @return rows which have changed since the given version; call after {@link #snapshot} has brought the wallet up to date
+     */
+    public List<Row> changedSince(String walletAddress, long version)
+    {
+        WalletEntry entry = getEntry(walletAddress);
+        List<Row> changed = new ArrayList<>();
+        synchronized (entry)
+        {
+            for (Row row : entry.rows.values())
+            {
+                if (row.version > version) changed.add(row);
+            }
+        }
+        return changed;
+    }
+
+    public long getVersion(String walletAddress)
+    {
+        WalletEntry entry = getEntry(walletAddress);
+        synchronized (entry)
+        {
+            return entry.version;
+        }
+    }
+
+    /**
+     * @return version at which a row last left the projection; a caller which last looked before this can't rely on
+     * {@link #changedSince} and should start again from a full snapshot
+     */
+    public long getRemovedVersion(String walletAddress)
+    {
+        WalletEntry entry = getEntry(walletAddress);
+        synchronized (entry)
+        {
+            return entry.removedVersion;
+        }
+    }
+
+    /**
+     * Record that a token row has been written; it will be re-read on next access
+     */
+    public void markDirty(String walletAddress, String key)
+    {
+        WalletEntry entry = getEntry(walletAddress);
+        synchronized (entry)
+        {
+            entry.dirty.add(key);
+        }
+    }
+
+    /**
+     * Re-read the whole table on next access; for bulk writes
+     */
+    public void invalidate(String walletAddress)
+    {
+        WalletEntry entry = getEntry(walletAddress);
+        synchronized (entry)
+        {
+            entry.loaded = false;
+        }
+    }
+
+    /**
+     * Merge rows into the projection, bumping the version of any which changed. Exposed for the write path and tests.
+     */
+    public void apply(String walletAddress, Collection<Row> rows, Collection<String> removed)
+    {
+        WalletEntry entry = getEntry(walletAddress);
+        synchronized (entry)
+        {
+            for (Row row : rows)
+            {
+                merge(entry, row);
+            }
+
+            for (String key : removed)
+            {
+                if (entry.rows.remove(key) != null) removed(entry);
+            }
+        }
+    }
+
+    private WalletEntry getEntry(String walletAddress)
+    {
+        String key = walletAddress.toLowerCase();
+        synchronized (wallets)
+        {
+            WalletEntry entry = wallets.get(key);
+            if (entry == null)
+            {
+                entry = new WalletEntry();
+                entry.version = entry.removedVersion = versions.incrementAndGet();
+                wallets.put(key, entry);
+            }
+            return entry;
+        }
+    }
+
+    private void replaceAll(WalletEntry entry, RealmResults<RealmToken> realmTokens)
+    {
+        Set<String> present = new HashSet<>(realmTokens.size());
+        for (RealmToken t : realmTokens)
+        {
+            Row row = new Row(t);
+            present.add(row.key);
+            merge(entry, row);
+        }
+
+        //keep versions for unchanged rows so callers' diffs stay small after a full reload
+        if (entry.rows.keySet().retainAll(present)) removed(entry);
+    }
+
+    private void update(WalletEntry entry, RealmResults<RealmToken> realmTokens)
+    {
+        for (RealmToken t : realmTokens)
+        {
+            merge(entry, new Row(t));
+        }
+    }
+
+    private void removeMissing(WalletEntry entry, String[] keys, RealmResults<RealmToken> found)
+    {
+        Set<String> foundKeys = new HashSet<>();
+        for (RealmToken t : found)
+        {
+            foundKeys.add(t.getDatabaseKey());
+        }
+
+        for (String key : keys)
+        {
+            if (!foundKeys.contains(key) && entry.rows.remove(key) != null) removed(entry);
+        }
+    }
+
+    private void merge(WalletEntry entry, Row row)
+    {
+        Row existing = entry.rows.get(row.key);
+        if (row.sameAs(existing))
+        {
+            row.version = existing.version;
+        }
+        else
+        {
+            row.version = entry.version = versions.incrementAndGet();
+        }
+        entry.rows.put(row.key, row);
+    }
+
+    private void removed(WalletEntry entry)
+    {
+        entry.version = entry.removedVersion = versions.incrementAndGet();
+    }
+}
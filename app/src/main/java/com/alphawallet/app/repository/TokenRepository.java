@@ -1,5 +1,6 @@
 package com.alphawallet.app.repository;
 
+import static com.alphawallet.app.repository.TokensRealmSource.databaseKey;
 import static com.alphawallet.ethereum.EthereumNetworkBase.MAINNET_ID;
 import static com.alphawallet.ethereum.EthereumNetworkBase.OKX_ID;
 import static org.web3j.protocol.core.methods.request.Transaction.createEthCallTransaction;
@@ -52,6 +53,7 @@ import org.web3j.abi.datatypes.generated.Bytes4;
 import org.web3j.abi.datatypes.generated.Uint256;
 import org.web3j.abi.datatypes.generated.Uint8;
 import org.web3j.protocol.Web3j;
+import org.web3j.protocol.core.DefaultBlockParameter;
 import org.web3j.protocol.core.DefaultBlockParameterName;
 import org.web3j.protocol.core.methods.response.EthBlockNumber;
 import org.web3j.protocol.core.methods.response.EthCall;
@@ -66,6 +68,7 @@ import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
@@ -105,6 +108,7 @@ public class TokenRepository implements TokenRepositoryType {
     private static final int CONTRACT_BALANCE_NULL = -2;
 
     private final Map<Long, Web3j> web3jNodeServers;
+    private final MulticallBalanceEngine multicallEngine = new MulticallBalanceEngine();
     private AWEnsResolver ensResolver;
     private String currentAddress;
 
@@ -214,6 +218,25 @@ public class TokenRepository implements TokenRepositoryType {
         return localSource.fetchTokenMetasForUpdate(wallet, networkFilters);
     }
 
+    @Override
+    public long getTokenMetaVersion(Wallet wallet)
+    {
+        return localSource.getTokenMetaVersion(wallet);
+    }
+
+    @Override
+    public long getTokenRemovedVersion(Wallet wallet)
+    {
+        return localSource.getTokenRemovedVersion(wallet);
+    }
+
+    @Override
+    public Single<TokenCardMeta[]> fetchChangedTokenMetas(Wallet wallet, List<Long> networkFilters, AssetDefinitionService svs, long sinceVersion)
+    {
+        final List<Long> filters = networkFilters != null ? networkFilters : Collections.emptyList();
+        return Single.fromCallable(() -> localSource.fetchChangedTokenMetas(wallet, filters, svs, sinceVersion));
+    }
+
     @Override
     public Single<Pair<Double, Double>> getTotalValue(String currentAddress, List<Long> networkFilters)
     {
@@ -291,6 +314,13 @@ public class TokenRepository implements TokenRepositoryType {
         return localSource.fetchToken(chainId, wallet, address);
     }
 
+    @Override
+    public Token fetchTokenWithoutAssets(long chainId, String walletAddress, String address)
+    {
+        Wallet wallet = new Wallet(walletAddress);
+        return localSource.fetchTokenWithoutAssets(chainId, wallet, address);
+    }
+
     @Override
     public Token fetchAttestation(long chainId, String walletAddress, String address, String attnId)
     {
@@ -350,6 +380,40 @@ public class TokenRepository implements TokenRepositoryType {
                 .observeOn(Schedulers.io());
     }
 
+    @Override
+    public Single<Map<String, BigDecimal>> updateTokenBalances(String walletAddress, List<Token> tokens)
+    {
+        Wallet wallet = new Wallet(walletAddress);
+        return Single.fromCallable(() -> {
+            List<Token> fungible = new ArrayList<>();
+            for (Token t : tokens)
+            {
+                if (!t.isNonFungible()) fungible.add(t);
+            }
+
+            Map<String, BigDecimal> balances = fetchAggregatedBalances(wallet, fungible);
+            List<Token> aggregated = new ArrayList<>();
+            for (Token t : fungible)
+            {
+                if (balances.containsKey(databaseKey(t))) aggregated.add(t);
+            }
+
+            localSource.updateTokenBalances(wallet, aggregated, balances);
+
+            //anything the multicall couldn't resolve goes through the standard single token path
+            for (Token t : tokens)
+            {
+                if (!balances.containsKey(databaseKey(t)))
+                {
+                    balances.put(databaseKey(t), updateBalance(wallet, t).blockingGet());
+                }
+            }
+
+            return balances;
+        }).subscribeOn(Schedulers.io())
+          .observeOn(Schedulers.io());
+    }
+
     @Override
     public Single<Token[]> storeTokens(Wallet wallet, Token[] tokens)
     {
@@ -377,6 +441,18 @@ public class TokenRepository implements TokenRepositoryType {
         localSource.storeAsset(wallet, token, tokenId, asset);
     }
 
+    @Override
+    public Map<BigInteger, NFTAsset> getNFTAssets(String wallet, Token token, List<BigInteger> tokenIds)
+    {
+        return localSource.getNFTAssets(wallet, token, tokenIds);
+    }
+
+    @Override
+    public List<BigInteger> getNFTTokenIds(String wallet, Token token)
+    {
+        return localSource.getNFTTokenIds(wallet, token);
+    }
+
     @Override
     public Token initNFTAssets(Wallet wallet, Token token)
     {
@@ -582,15 +658,55 @@ public class TokenRepository implements TokenRepositoryType {
     private Single<Token[]> updateBalances(Wallet wallet, Token[] tokens)
     {
         return Single.fromCallable(() -> {
+            List<Token> balanceTokens = new ArrayList<>();
             for (Token t : tokens)
+            {
+                if (t.isERC20() || t.isNonFungible()) balanceTokens.add(t);
+            }
+
+            Map<String, BigDecimal> balances = fetchAggregatedBalances(wallet, balanceTokens);
+
+            for (Token t : balanceTokens)
             {
                 //get balance of any token here
-                if (t.isERC20() || t.isNonFungible()) t.balance = checkUint256Balance(wallet, t.tokenInfo.chainId, t.getAddress());
+                BigDecimal balance = balances.get(databaseKey(t));
+                t.balance = balance != null ? balance : checkUint256Balance(wallet, t.tokenInfo.chainId, t.getAddress());
             }
             return tokens;
         });
     }
 
+    /**
+     * Fetch balances through Multicall3 for the tokens on chains with a Multicall deployment
+     * @return map of database key to balance for the tokens that were resolved
+     */
+    private Map<String, BigDecimal> fetchAggregatedBalances(Wallet wallet, List<Token> tokens)
+    {
+        Map<Long, List<Token>> chainTokens = new HashMap<>();
+        for (Token t : tokens)
+        {
+            long chainId = t.tokenInfo.chainId;
+            if (!MulticallBalanceEngine.isSupported(chainId) || !MulticallBalanceEngine.canAggregate(t)) continue;
+            List<Token> onChain = chainTokens.get(chainId);
+            if (onChain == null)
+            {
+                onChain = new ArrayList<>();
+                chainTokens.put(chainId, onChain);
+            }
+            onChain.add(t);
+        }
+
+        Map<String, BigDecimal> balances = new HashMap<>();
+        for (Map.Entry<Long, List<Token>> entry : chainTokens.entrySet())
+        {
+            //single tokens gain nothing from the aggregate call
+            if (entry.getValue().size() < 2) continue;
+            balances.putAll(multicallEngine.fetchBalances(getService(entry.getKey()), entry.getKey(), wallet.address, entry.getValue()));
+        }
+
+        return balances;
+    }
+
     private BigDecimal checkUint256Balance(@NonNull Wallet wallet, long chainId, String tokenAddress)
     {
         BigDecimal balance = BigDecimal.valueOf(-1);
@@ -1304,36 +1420,25 @@ public class TokenRepository implements TokenRepositoryType {
 
     public static Web3j getWeb3jServiceForEvents(long chainId)
     {
-        OkHttpClient okClient = new OkHttpClient.Builder()
-                .connectTimeout(C.CONNECT_TIMEOUT * 3, TimeUnit.SECONDS) //events can take longer to render
-                .connectTimeout(C.READ_TIMEOUT * 3, TimeUnit.SECONDS)
-                .writeTimeout(C.LONG_WRITE_TIMEOUT, TimeUnit.SECONDS)
-                .retryOnConnectionFailure(true)
-                .build();
-
-        String[] rpcUrls = EthereumNetworkBase.getNetwork(chainId).rpcUrls;
-
-        AWHttpServiceWaterfall publicNodeService = new AWHttpServiceWaterfall(rpcUrls, chainId, okClient, KeyProviderFactory.get().getInfuraKey(),
-                KeyProviderFactory.get().getInfuraSecret(), KeyProviderFactory.get().getKlaytnKey(), false);
-        return Web3j.build(publicNodeService);
+        return Web3jClientRegistry.get(chainId, Web3jClientRegistry.Profile.EVENTS);
     }
 
     public static Web3j getWeb3jService(long chainId)
     {
-        OkHttpClient okClient = new OkHttpClient.Builder()
-                .connectTimeout(C.CONNECT_TIMEOUT, TimeUnit.SECONDS)
-                .connectTimeout(C.READ_TIMEOUT * 3, TimeUnit.SECONDS)
-                .writeTimeout(C.LONG_WRITE_TIMEOUT, TimeUnit.SECONDS)
-                .retryOnConnectionFailure(true)
-                .build();
-
-        AWHttpServiceWaterfall publicNodeService = new AWHttpServiceWaterfall(EthereumNetworkBase.getNetwork(chainId).rpcUrls, chainId, okClient, KeyProviderFactory.get().getInfuraKey(),
-                KeyProviderFactory.get().getInfuraSecret(), KeyProviderFactory.get().getKlaytnKey(), false);
-        return Web3j.build(publicNodeService);
+        return Web3jClientRegistry.get(chainId, Web3jClientRegistry.Profile.STANDARD);
     }
 
     public static String callSmartContractFunction(long chainId,
                                   Function function, String contractAddress, String walletAddr)
+    {
+        return callSmartContractFunction(chainId, function, contractAddress, walletAddr, DefaultBlockParameterName.LATEST);
+    }
+
+    /**
+     * As above, with the call made against the state at the given block
+     */
+    public static String callSmartContractFunction(long chainId, Function function, String contractAddress,
+                                                   String walletAddr, DefaultBlockParameter block)
     {
         String encodedFunction = FunctionEncoder.encode(function);
 
@@ -1341,7 +1446,7 @@ public class TokenRepository implements TokenRepositoryType {
         {
             org.web3j.protocol.core.methods.request.Transaction transaction
                     = createEthCallTransaction(walletAddr, contractAddress, encodedFunction);
-            EthCall response = getWeb3jService(chainId).ethCall(transaction, DefaultBlockParameterName.LATEST).send();
+            EthCall response = getWeb3jService(chainId).ethCall(transaction, block).send();
 
             List<Type> responseValues = FunctionReturnDecoder.decode(response.getValue(), function.getOutputParameters());
 
@@ -1392,6 +1497,15 @@ public class TokenRepository implements TokenRepositoryType {
 
     public static List callSmartContractFunctionArray(long chainId,
                                 Function function, String contractAddress, String walletAddr)
+    {
+        return callSmartContractFunctionArray(chainId, function, contractAddress, walletAddr, DefaultBlockParameterName.LATEST);
+    }
+
+    /**
+     * As above, with the call made against the state at the given block
+     */
+    public static List callSmartContractFunctionArray(long chainId, Function function, String contractAddress,
+                                                      String walletAddr, DefaultBlockParameter block)
     {
         try
         {
@@ -1399,7 +1513,7 @@ public class TokenRepository implements TokenRepositoryType {
             org.web3j.protocol.core.methods.response.EthCall ethCall = getWeb3jService(chainId).ethCall(
                     org.web3j.protocol.core.methods.request.Transaction
                             .createEthCallTransaction(walletAddr, contractAddress, encodedFunction),
-                    DefaultBlockParameterName.LATEST).send();
+                    block).send();
 
             String value = ethCall.getValue();
             if (value.equals("0x"))
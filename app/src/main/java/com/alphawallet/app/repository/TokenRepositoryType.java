@@ -20,6 +20,7 @@ import com.alphawallet.token.entity.ContractAddress;
 import java.math.BigDecimal;
 import java.math.BigInteger;
 import java.util.List;
+import java.util.Map;
 
 import io.reactivex.Observable;
 import io.reactivex.Single;
@@ -31,6 +32,8 @@ public interface TokenRepositoryType
 
     Single<BigDecimal> updateTokenBalance(String walletAddress, Token token);
 
+    Single<Map<String, BigDecimal>> updateTokenBalances(String walletAddress, List<Token> tokens);
+
     Single<ContractLocator> getTokenResponse(String address, long chainId, String method);
 
     Single<Token> checkInterface(Token tokens, Wallet wallet);
@@ -51,6 +54,8 @@ public interface TokenRepositoryType
 
     Token fetchToken(long chainId, String walletAddress, String address);
 
+    Token fetchTokenWithoutAssets(long chainId, String walletAddress, String address);
+
     String getTokenImageUrl(long chainId, String address);
 
     Single<Token[]> storeTokens(Wallet wallet, Token[] tokens);
@@ -61,6 +66,10 @@ public interface TokenRepositoryType
 
     void storeAsset(String currentAddress, Token token, BigInteger tokenId, NFTAsset asset);
 
+    Map<BigInteger, NFTAsset> getNFTAssets(String currentAddress, Token token, List<BigInteger> tokenIds);
+
+    List<BigInteger> getNFTTokenIds(String currentAddress, Token token);
+
     Token initNFTAssets(Wallet wallet, Token token);
 
     Single<ContractType> determineCommonType(TokenInfo tokenInfo);
@@ -85,6 +94,12 @@ public interface TokenRepositoryType
 
     TokenCardMeta[] fetchTokenMetasForUpdate(Wallet wallet, List<Long> networkFilters);
 
+    long getTokenMetaVersion(Wallet wallet);
+
+    long getTokenRemovedVersion(Wallet wallet);
+
+    Single<TokenCardMeta[]> fetchChangedTokenMetas(Wallet wallet, List<Long> networkFilters, AssetDefinitionService svs, long sinceVersion);
+
     Realm getRealmInstance(Wallet wallet);
 
     Realm getTickerRealmInstance();
@@ -0,0 +1,215 @@
+package com.alphawallet.app.repository;
+
+import com.alphawallet.app.service.RealmWriter;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import io.reactivex.schedulers.Schedulers;
+import io.realm.Realm;
+import timber.log.Timber;
+
+/**
+ * Write-behind queue for token, ticker, image and NFT asset writes.
+ *
+ * Mutations are collected per database and keyed by what they write (usually the token's databaseKey), so a newer
+ * write to the same record replaces the pending one instead of adding another transaction. A database's pending
+ * mutations are flushed as one transaction when {@link #MAX_PENDING} are waiting, or {@link #FLUSH_DELAY} ms after
+ * the first one was queued, whichever comes first.
+ *
+ * Mutations must be self contained: they run later on the database's writer thread, inside a shared transaction.
+ */
+public class TokenWriteQueue
+{
+    private static final String TAG = "WRITEQ";
+    public static final int MAX_PENDING = 128;
+    public static final long FLUSH_DELAY = 250; //ms
+
+    /**
+     * Where flushed batches go; normally RealmManager::queueWrite
+     */
+    public interface Sink
+    {
+        void write(String database, Realm.Transaction transaction, RealmWriter.Callback callback);
+    }
+
+    /**
+     * Told which keys were written once a batch has committed
+     */
+    public interface CommitListener
+    {
+        void onCommitted(String database, List<String> keys);
+    }
+
+    private static class Batch
+    {
+        final Map<String, Realm.Transaction> mutations = new LinkedHashMap<>();
+        final List<RealmWriter.Callback> callbacks = new ArrayList<>();
+    }
+
+    private final Sink sink;
+    private final int maxPending;
+    private final long flushDelay;
+    private final Map<String, Batch> batches = new HashMap<>();
+    private volatile CommitListener commitListener;
+
+    private final AtomicLong queued = new AtomicLong();
+    private final AtomicLong superseded = new AtomicLong();
+    private final AtomicLong flushes = new AtomicLong();
+
+    public TokenWriteQueue(Sink sink)
+    {
+        this(sink, MAX_PENDING, FLUSH_DELAY);
+    }
+
+    public TokenWriteQueue(Sink sink, int maxPending, long flushDelay)
+    {
+        this.sink = sink;
+        this.maxPending = maxPending;
+        this.flushDelay = flushDelay;
+    }
+
+    public void setCommitListener(CommitListener listener)
+    {
+        this.commitListener = listener;
+    }
+
+    public void enqueue(String walletAddress, String key, Realm.Transaction mutation)
+    {
+        enqueue(walletAddress, key, mutation, null);
+    }
+
+    /**
+     * Queue a mutation, replacing any pending mutation with the same key on the same database.
+     *
+     * @param callback called once the batch containing the mutation has been committed (or has failed)
+     */
+    public void enqueue(String walletAddress, String key, Realm.Transaction mutation, RealmWriter.Callback callback)
+    {
+        //RealmManager lower-cases wallet addresses; do the same so one database only ever has one batch
+        final String database = walletAddress.toLowerCase();
+        Batch full = null;
+        boolean schedule = false;
+        synchronized (batches)
+        {
+            Batch batch = batches.get(database);
+            if (batch == null)
+            {
+                batch = new Batch();
+                batches.put(database, batch);
+                schedule = true;
+            }
+
+            //remove first so the replacement takes the latest position; later writes to other keys may depend on it
+            if (batch.mutations.remove(key) != null) superseded.incrementAndGet();
+            batch.mutations.put(key, mutation);
+            if (callback != null) batch.callbacks.add(callback);
+            queued.incrementAndGet();
+
+            if (batch.mutations.size() >= maxPending)
+            {
+                batches.remove(database);
+                full = batch;
+                schedule = false;
+            }
+        }
+
+        if (full != null)
+        {
+            write(database, full);
+        }
+        else if (schedule)
+        {
+            Schedulers.io().scheduleDirect(() -> flush(database), flushDelay, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * Flush pending mutations for one database now
+     */
+    public void flush(String database)
+    {
+        Batch batch;
+        synchronized (batches)
+        {
+            batch = batches.remove(database.toLowerCase());
+        }
+
+        if (batch != null) write(database, batch);
+    }
+
+    public void flushAll()
+    {
+        List<String> databases;
+        synchronized (batches)
+        {
+            databases = new ArrayList<>(batches.keySet());
+        }
+
+        for (String database : databases)
+        {
+            flush(database);
+        }
+    }
+
+    public int getPendingCount()
+    {
+        int count = 0;
+        synchronized (batches)
+        {
+            for (Batch batch : batches.values())
+            {
+                count += batch.mutations.size();
+            }
+        }
+        return count;
+    }
+
+    public long getQueuedCount()
+    {
+        return queued.get();
+    }
+
+    public long getSupersededCount()
+    {
+        return superseded.get();
+    }
+
+    public long getFlushCount()
+    {
+        return flushes.get();
+    }
+
+    private void write(String database, Batch batch)
+    {
+        flushes.incrementAndGet();
+        final List<Realm.Transaction> mutations = new ArrayList<>(batch.mutations.values());
+        final List<String> keys = new ArrayList<>(batch.mutations.keySet());
+        sink.write(database, r -> {
+            for (Realm.Transaction mutation : mutations)
+            {
+                try
+                {
+                    mutation.execute(r);
+                }
+                catch (Exception e)
+                {
+                    //don't let one bad record lose the rest of the batch
+                    Timber.tag(TAG).w(e, "Write failed on %s", database);
+                }
+            }
+        }, error -> {
+            CommitListener listener = commitListener;
+            if (error == null && listener != null) listener.onCommitted(database, keys);
+            for (RealmWriter.Callback callback : batch.callbacks)
+            {
+                callback.onComplete(error);
+            }
+        });
+    }
+}
@@ -29,6 +29,7 @@ import com.alphawallet.app.repository.entity.RealmToken;
 import com.alphawallet.app.repository.entity.RealmTokenTicker;
 import com.alphawallet.app.service.AssetDefinitionService;
 import com.alphawallet.app.service.RealmManager;
+import com.alphawallet.app.service.RealmWriter;
 import com.alphawallet.app.util.Utils;
 import com.alphawallet.token.entity.ContractAddress;
 import com.google.gson.Gson;
@@ -36,12 +37,14 @@ import com.google.gson.JsonSyntaxException;
 
 import java.math.BigDecimal;
 import java.math.BigInteger;
-import java.math.RoundingMode;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 import io.reactivex.Single;
 import io.realm.Case;
@@ -64,12 +67,46 @@ public class TokensRealmSource implements TokenLocalSource
     private final RealmManager realmManager;
     private final EthereumNetworkRepositoryType ethereumNetworkRepository;
     private final TokensMappingRepositoryType tokensMappingRepository;
+    private final TokenWriteQueue writeQueue;
+    private final TokenMetaCache metaCache = new TokenMetaCache();
+    private final PortfolioAggregator portfolio = new PortfolioAggregator();
 
     public TokensRealmSource(RealmManager realmManager, EthereumNetworkRepositoryType ethereumNetworkRepository, TokensMappingRepositoryType tokensMappingRepository)
     {
         this.realmManager = realmManager;
         this.ethereumNetworkRepository = ethereumNetworkRepository;
         this.tokensMappingRepository = tokensMappingRepository;
+        this.writeQueue = new TokenWriteQueue(realmManager::queueWrite);
+        this.writeQueue.setCommitListener(this::onTokensWritten);
+    }
+
+    // Keys written to the wallet database are re-read into the meta cache on next access, tickers into the portfolio
+    private void onTokensWritten(String database, List<String> keys)
+    {
+        for (String key : keys)
+        {
+            int index = key.indexOf(':');
+            String type = key.substring(0, index);
+            if (type.equals("token") || type.equals("balance") || type.equals("touch"))
+            {
+                metaCache.markDirty(database, key.substring(index + 1));
+            }
+            else if (type.equals("ticker"))
+            {
+                portfolio.markTickerDirty(key.substring(index + 1));
+            }
+        }
+    }
+
+    // Java equivalent of like("address", ADDRESS_FORMAT)
+    private static boolean isContractKey(String key)
+    {
+        return key != null && key.length() > 42 && key.startsWith("0x") && key.charAt(42) == '-';
+    }
+
+    private static boolean containsIgnoreCase(String value, String lowerTerm)
+    {
+        return value != null && value.toLowerCase().contains(lowerTerm);
     }
 
     public static String databaseKey(long chainId, String address)
@@ -180,6 +217,7 @@ public class TokensRealmSource implements TokenLocalSource
                 {
                     Timber.w(e);
                 }
+                metaCache.invalidate(wallet.address);
                 return items;
             });
         }
@@ -203,6 +241,11 @@ public class TokensRealmSource implements TokenLocalSource
                 }
             });
         }
+
+        for (TokenCardMeta tcm : tcmList)
+        {
+            metaCache.markDirty(wallet.address, databaseKey(tcm.getChain(), tcm.getAddress()));
+        }
     }
 
     @Override
@@ -224,13 +267,11 @@ public class TokensRealmSource implements TokenLocalSource
         {
             return Single.fromCallable(() -> token);
         }
-        else return Single.fromCallable(() -> {
-            try (Realm realm = realmManager.getRealmInstance(wallet))
-            {
-                realm.executeTransaction(r -> saveTokenLocal(r, token));
-            }
-            return token;
-        });
+        else return Single.create(emitter ->
+            writeQueue.enqueue(wallet.address, "token:" + databaseKey(token), r -> saveTokenLocal(r, token), error -> {
+                if (error == null) emitter.onSuccess(token);
+                else emitter.tryOnError(error);
+            }));
     }
 
     @Override
@@ -286,12 +327,27 @@ public class TokensRealmSource implements TokenLocalSource
 
     @Override
     public Token fetchToken(long chainId, Wallet wallet, String address)
+    {
+        return fetchToken(chainId, wallet, address, true);
+    }
+
+    /**
+     * As {@link #fetchToken}, but NFT assets are left in the database; for views which page them with
+     * {@link #getNFTAssets(String, Token, List)}
+     */
+    @Override
+    public Token fetchTokenWithoutAssets(long chainId, Wallet wallet, String address)
+    {
+        return fetchToken(chainId, wallet, address, false);
+    }
+
+    private Token fetchToken(long chainId, Wallet wallet, String address, boolean withAssets)
     {
         try (Realm realm = realmManager.getRealmInstance(wallet))
         {
             RealmToken realmItem = realm.where(RealmToken.class).equalTo("address", databaseKey(chainId, address)).findFirst();
 
-            Token t = convertSingle(realmItem, realm, null, wallet);
+            Token t = convertSingle(realmItem, realm, null, wallet, withAssets);
             if (t == null && address.equalsIgnoreCase(wallet.address))
             {
                 NetworkInfo info = ethereumNetworkRepository.getNetworkByChain(chainId);
@@ -405,17 +461,14 @@ public class TokensRealmSource implements TokenLocalSource
     @Override
     public void setEnable(Wallet wallet, ContractAddress cAddr, boolean isEnabled)
     {
-        try (Realm realm = realmManager.getRealmInstance(wallet))
-        {
-            realm.executeTransactionAsync(r -> {
-                RealmToken realmToken = r.where(RealmToken.class).equalTo("address", cAddr.getAddressKey()).findFirst();
+        realmManager.queueWrite(wallet.address, r -> {
+            RealmToken realmToken = r.where(RealmToken.class).equalTo("address", cAddr.getAddressKey()).findFirst();
 
-                if (realmToken != null)
-                {
-                    realmToken.setEnabled(isEnabled);
-                }
-            });
-        }
+            if (realmToken != null)
+            {
+                realmToken.setEnabled(isEnabled);
+            }
+        }, error -> metaCache.markDirty(wallet.address, cAddr.getAddressKey()));
     }
 
     @Override
@@ -438,12 +491,72 @@ public class TokensRealmSource implements TokenLocalSource
     @Override
     public void storeAsset(String wallet, Token token, BigInteger tokenId, NFTAsset asset)
     {
+        writeQueue.enqueue(wallet, "asset:" + RealmNFTAsset.databaseKey(token, tokenId), r -> writeAsset(r, token, tokenId, asset));
+    }
+
+    @Override
+    public Map<BigInteger, NFTAsset> getNFTAssets(String wallet, Token token, List<BigInteger> tokenIds)
+    {
+        Map<BigInteger, NFTAsset> assets = new HashMap<>();
+        if (tokenIds.isEmpty()) return assets;
+
+        String[] keys = new String[tokenIds.size()];
+        for (int i = 0; i < keys.length; i++)
+        {
+            keys[i] = RealmNFTAsset.databaseKey(token, tokenIds.get(i));
+        }
+
         try (Realm realm = realmManager.getRealmInstance(wallet))
         {
-            realm.executeTransactionAsync(r -> {
-                writeAsset(r, token, tokenId, asset);
-            });
+            RealmResults<RealmNFTAsset> results = realm.where(RealmNFTAsset.class).in("tokenIdAddr", keys, Case.INSENSITIVE).findAll();
+            for (RealmNFTAsset realmAsset : results)
+            {
+                try
+                {
+                    assets.put(new BigInteger(realmAsset.getTokenId()), new NFTAsset(realmAsset));
+                }
+                catch (NumberFormatException e)
+                {
+                    // Just in case tokenId got corrupted
+                }
+            }
+        }
+        catch (Exception e)
+        {
+            Timber.w(e);
         }
+
+        return assets;
+    }
+
+    /**
+     * @return ids of the token's stored NFT assets; only the keys are read, the metadata is left in the database
+     */
+    @Override
+    public List<BigInteger> getNFTTokenIds(String wallet, Token token)
+    {
+        List<BigInteger> tokenIds = new ArrayList<>();
+        try (Realm realm = realmManager.getRealmInstance(wallet))
+        {
+            RealmResults<RealmNFTAsset> results = realm.where(RealmNFTAsset.class).like("tokenIdAddr", databaseKey(token) + "-*", Case.INSENSITIVE).findAll();
+            for (RealmNFTAsset realmAsset : results)
+            {
+                try
+                {
+                    tokenIds.add(new BigInteger(realmAsset.getTokenId()));
+                }
+                catch (NumberFormatException e)
+                {
+                    // Just in case tokenId got corrupted
+                }
+            }
+        }
+        catch (Exception e)
+        {
+            Timber.w(e);
+        }
+
+        return tokenIds;
     }
 
     @Override
@@ -541,12 +654,12 @@ public class TokensRealmSource implements TokenLocalSource
     {
         if (balanceCount.compareTo(BigDecimal.ZERO) > 0 && !realmToken.getEnabled() && !realmToken.isVisibilityChanged() && token.group != TokenGroup.SPAM)
         {
-            token.tokenInfo.isEnabled = true;
+            setTokenEnabled(token, true);
             realmToken.setEnabled(true);
         }
         else if (balanceCount.compareTo(BigDecimal.ZERO) == 0 && !realmToken.isVisibilityChanged() && realmToken.isEnabled())
         {
-            token.tokenInfo.isEnabled = false;
+            setTokenEnabled(token, false);
             realmToken.setEnabled(false);
         }
     }
@@ -554,125 +667,142 @@ public class TokensRealmSource implements TokenLocalSource
     @Override
     public void setVisibilityChanged(Wallet wallet, ContractAddress cAddr)
     {
-        try (Realm realm = realmManager.getRealmInstance(wallet))
-        {
-            realm.executeTransactionAsync(r -> {
-                RealmToken realmToken = r.where(RealmToken.class).equalTo("address", cAddr.getAddressKey()).findFirst();
+        realmManager.queueWrite(wallet.address, r -> {
+            RealmToken realmToken = r.where(RealmToken.class).equalTo("address", cAddr.getAddressKey()).findFirst();
 
-                if (realmToken != null)
-                {
-                    realmToken.setVisibilityChanged(true);
-                }
-            });
-        }
-        catch (Exception ex)
-        {
-            //
-        }
+            if (realmToken != null)
+            {
+                realmToken.setVisibilityChanged(true);
+            }
+        }, error -> metaCache.markDirty(wallet.address, cAddr.getAddressKey()));
     }
 
     @Override
-    public boolean updateTokenBalance(Wallet wallet, Token token, BigDecimal balance, List<BigInteger> balanceArray)
+    public void updateTokenBalance(Wallet wallet, Token token, BigDecimal balance, List<BigInteger> balanceArray)
     {
-        boolean balanceChanged = false;
-        String key = databaseKey(token);
         if (token.getWallet() == null)
         {
             token.setTokenWallet(wallet.address);
         }
 
-        try (Realm realm = realmManager.getRealmInstance(wallet))
+        //a newer balance for the same token replaces this one if it hasn't been written yet
+        writeQueue.enqueue(wallet.address, "balance:" + databaseKey(token), r -> writeTokenBalance(r, token, balance, balanceArray));
+    }
+
+    @Override
+    public void updateTokenBalances(Wallet wallet, List<Token> tokens, Map<String, BigDecimal> balances)
+    {
+        //same keys as updateTokenBalance, so a batch balance and a single read of the same token supersede each other
+        for (Token token : tokens)
         {
-            RealmToken realmToken = realm.where(RealmToken.class).equalTo("address", key).findFirst();
+            BigDecimal balance = balances.get(databaseKey(token));
+            if (balance == null) continue;
+            if (token.getWallet() == null) token.setTokenWallet(wallet.address);
+            writeQueue.enqueue(wallet.address, "balance:" + databaseKey(token), r -> writeTokenBalance(r, token, balance, null));
+        }
+    }
 
-            if (realmToken != null)
-            {
-                final String currentBalance = realmToken.getBalance();
-                final String newBalance = (balanceArray == null || balanceArray.size() == 0) ? balance.toString() : Utils.bigIntListToString(balanceArray, true);
+    /**
+     * Writes a token balance; must be called from within a write transaction
+     */
+    private boolean writeTokenBalance(Realm realm, Token token, BigDecimal balance, List<BigInteger> balanceArray)
+    {
+        boolean balanceChanged = false;
+        String key = databaseKey(token);
+        RealmToken realmToken = realm.where(RealmToken.class).equalTo("address", key).findFirst();
 
-                //does the token need updating?
-                if (token.checkInfoRequiresUpdate(realmToken))
-                {
-                    realm.executeTransaction(r -> {
-                        realmToken.setName(token.tokenInfo.name);
-                        realmToken.setSymbol(token.tokenInfo.symbol);
-                        realmToken.setDecimals(token.tokenInfo.decimals);
-                        realmToken.setInterfaceSpec(token.getInterfaceSpec().ordinal());
-                    });
-                }
+        if (realmToken != null)
+        {
+            final String currentBalance = realmToken.getBalance();
+            final String newBalance = (balanceArray == null || balanceArray.size() == 0) ? balance.toString() : Utils.bigIntListToString(balanceArray, true);
 
-                validateTokenName(realm, realmToken, token, balance);
+            //does the token need updating?
+            if (token.checkInfoRequiresUpdate(realmToken))
+            {
+                realmToken.setName(token.tokenInfo.name);
+                realmToken.setSymbol(token.tokenInfo.symbol);
+                realmToken.setDecimals(token.tokenInfo.decimals);
+                realmToken.setInterfaceSpec(token.getInterfaceSpec().ordinal());
+            }
 
-                if ((token.isERC721()) && balance.equals(BigDecimal.ZERO) && !currentBalance.equals("0"))
-                {
-                    //only used for determining if balance is now zero
-                    realm.executeTransaction(r -> {
-                        realmToken.setBalance(newBalance);
-                        deleteAllAssets(r, key);
-                    });
-                    Timber.tag(TAG).d("Zero out ERC721 balance: %s :%s", realmToken.getName(), token.getAddress());
-                    balanceChanged = true;
-                }
-                else if (!TextUtils.isEmpty(newBalance) && (!newBalance.equals(currentBalance) || !checkEthToken(realm, token)))
-                {
-                    realm.executeTransaction(r -> {
-                        realmToken.setBalance(newBalance);
-                        if (token.isEthereum())
-                        {
-                            updateEthToken(r, token, newBalance);
-                        }
-                        if (currentBalance.equals("0") && !realmToken.isVisibilityChanged())
-                        {
-                            realmToken.setEnabled(true);
-                            realmToken.setUpdateTime(System.currentTimeMillis());
-                        }
-                    });
-                    Timber.tag(TAG).d("Update Token Balance: %s :%s", realmToken.getName(), token.getAddress());
-                    balanceChanged = true;
-                }
+            validateTokenName(realmToken, token, balance);
 
-                if (!realmToken.isVisibilityChanged() && realmToken.isEnabled() && newBalance != null && newBalance.equals("0") && !(token.isEthereum() && CustomViewSettings.alwaysShow(token.tokenInfo.chainId)))
+            if ((token.isERC721()) && balance.equals(BigDecimal.ZERO) && !currentBalance.equals("0"))
+            {
+                //only used for determining if balance is now zero
+                realmToken.setBalance(newBalance);
+                deleteAllAssets(realm, key);
+                Timber.tag(TAG).d("Zero out ERC721 balance: %s :%s", realmToken.getName(), token.getAddress());
+                balanceChanged = true;
+            }
+            else if (!TextUtils.isEmpty(newBalance) && (!newBalance.equals(currentBalance) || !checkEthToken(realm, token)))
+            {
+                realmToken.setBalance(newBalance);
+                if (token.isEthereum())
                 {
-                    realm.executeTransaction(r -> {
-                        realmToken.setEnabled(false);
-                        realmToken.setBalance("0");
-                    });
+                    updateEthToken(realm, token, newBalance);
                 }
-                else if (token.group != TokenGroup.SPAM && (!realmToken.isVisibilityChanged() && !realmToken.isEnabled()) && (token.balance.compareTo(BigDecimal.ZERO) > 0 || (token.isEthereum() && CustomViewSettings.alwaysShow(token.tokenInfo.chainId) && !realmToken.isEnabled()))) // enable if base token should be showing
+                if (currentBalance.equals("0") && !realmToken.isVisibilityChanged())
                 {
-                    realm.executeTransaction(r -> {
-                        realmToken.setEnabled(true);
-                        realmToken.setUpdateTime(System.currentTimeMillis());
-                    });
+                    realmToken.setEnabled(true);
+                    realmToken.setUpdateTime(System.currentTimeMillis());
                 }
+                Timber.tag(TAG).d("Update Token Balance: %s :%s", realmToken.getName(), token.getAddress());
+                balanceChanged = true;
             }
-            else
+
+            if (!realmToken.isVisibilityChanged() && realmToken.isEnabled() && newBalance != null && newBalance.equals("0") && !(token.isEthereum() && CustomViewSettings.alwaysShow(token.tokenInfo.chainId)))
             {
-                balanceChanged = true;
-                if (token.isEthereum() && CustomViewSettings.alwaysShow(token.tokenInfo.chainId))
-                    token.tokenInfo.isEnabled = true;
-                //write token
-                realm.executeTransaction(r -> {
-                    token.balance = balance;
-                    saveTokenLocal(r, token);
-                });
+                realmToken.setEnabled(false);
+                realmToken.setBalance("0");
+            }
+            else if (token.group != TokenGroup.SPAM && (!realmToken.isVisibilityChanged() && !realmToken.isEnabled()) && (token.balance.compareTo(BigDecimal.ZERO) > 0 || (token.isEthereum() && CustomViewSettings.alwaysShow(token.tokenInfo.chainId) && !realmToken.isEnabled()))) // enable if base token should be showing
+            {
+                realmToken.setEnabled(true);
+                realmToken.setUpdateTime(System.currentTimeMillis());
             }
         }
-        catch (Exception e)
+        else
         {
-            Timber.e(e);
+            balanceChanged = true;
+            boolean enable = token.tokenInfo.isEnabled || (token.isEthereum() && CustomViewSettings.alwaysShow(token.tokenInfo.chainId));
+            //write a copy holding the new balance; the token itself only changes once the write has committed
+            saveTokenLocal(realm, copyWithBalance(token, balance, enable));
+            RealmToken saved = realm.where(RealmToken.class).equalTo("address", key).findFirst();
+            boolean enabled = saved != null ? saved.getEnabled() : enable;
+            RealmWriter.afterCommit(() -> {
+                token.tokenInfo.isEnabled = enabled;
+                token.balance = balance;
+            });
         }
 
         return balanceChanged;
     }
 
-    private void validateTokenName(Realm realm, RealmToken realmToken, Token token, BigDecimal balance)
+    private Token copyWithBalance(Token token, BigDecimal balance, boolean enabled)
+    {
+        TokenInfo info = new TokenInfo(token.tokenInfo.address, token.tokenInfo.name, token.tokenInfo.symbol,
+                token.tokenInfo.decimals, enabled, token.tokenInfo.chainId);
+        Token copy = new TokenFactory().createToken(info, balance, null, token.updateBlancaTime, token.getInterfaceSpec(),
+                token.getNetworkName(), token.lastBlockCheck);
+        copy.setTokenWallet(token.getWallet());
+        copy.group = token.group;
+        return copy;
+    }
+
+    /**
+     * Token visibility is mirrored on the in-memory token; deferred to commit when on a batched writer
+     */
+    private void setTokenEnabled(Token token, boolean enabled)
+    {
+        RealmWriter.afterCommit(() -> token.tokenInfo.isEnabled = enabled);
+    }
+
+    private void validateTokenName(RealmToken realmToken, Token token, BigDecimal balance)
     {
         if (TextUtils.isEmpty(token.tokenInfo.name) && TextUtils.isEmpty(token.tokenInfo.symbol) && balance.compareTo(BigDecimal.ZERO) > 0)
         {
-            realm.executeTransaction(r -> {
-                realmToken.setName(Utils.formatAddress(token.tokenInfo.address));
-            });
+            realmToken.setName(Utils.formatAddress(token.tokenInfo.address));
         }
     }
 
@@ -714,6 +844,7 @@ public class TokensRealmSource implements TokenLocalSource
                 });
             }
 
+            metaCache.markDirty(wallet.address, databaseKey(tInfo.chainId, tInfo.address));
             return tInfo;
         });
     }
@@ -721,27 +852,27 @@ public class TokensRealmSource implements TokenLocalSource
     @Override
     public void storeTokenUrl(List<ImageEntry> entries)
     {
-        try (Realm realm = realmManager.getRealmInstance(IMAGES_DB))
+        for (ImageEntry thisEntry : entries)
         {
-            realm.executeTransaction(r -> {
-                for (ImageEntry thisEntry : entries)
-                {
-                    final String instanceKey = thisEntry.address.toLowerCase() + "-" + thisEntry.chainId;
-                    RealmAuxData instance = r.where(RealmAuxData.class).equalTo("instanceKey", instanceKey).findFirst();
+            final String instanceKey = thisEntry.address.toLowerCase() + "-" + thisEntry.chainId;
+            writeQueue.enqueue(IMAGES_DB, "image:" + instanceKey, r -> writeImageUrl(r, instanceKey, thisEntry.imageUrl));
+        }
+    }
 
-                    if (instance == null || !instance.getResult().equals(thisEntry.imageUrl))
-                    {
-                        if (instance == null)
-                        {
-                            instance = r.createObject(RealmAuxData.class, instanceKey);
-                        }
+    private void writeImageUrl(Realm r, String instanceKey, String imageUrl)
+    {
+        RealmAuxData instance = r.where(RealmAuxData.class).equalTo("instanceKey", instanceKey).findFirst();
 
-                        instance.setResult(thisEntry.imageUrl);
-                        instance.setResultTime(System.currentTimeMillis());
-                        r.insertOrUpdate(instance);
-                    }
-                }
-            });
+        if (instance == null || !instance.getResult().equals(imageUrl))
+        {
+            if (instance == null)
+            {
+                instance = r.createObject(RealmAuxData.class, instanceKey);
+            }
+
+            instance.setResult(imageUrl);
+            instance.setResultTime(System.currentTimeMillis());
+            r.insertOrUpdate(instance);
         }
     }
 
@@ -794,18 +925,18 @@ public class TokensRealmSource implements TokenLocalSource
         //Final check to see if the token should be visible
         if (group == TokenGroup.SPAM)
         {
-            token.tokenInfo.isEnabled = false;
+            setTokenEnabled(token, false);
             realmToken.setEnabled(false);
         }
         else if (token.hasPositiveBalance() && !realmToken.getEnabled() && !realmToken.isVisibilityChanged())
         {
             if (wasNew) Timber.tag(TAG).d("Save New Token set enable");
-            token.tokenInfo.isEnabled = true;
+            setTokenEnabled(token, true);
             realmToken.setEnabled(true);
         }
         else if (!token.isEthereum() && !token.hasPositiveBalance() && realmToken.getEnabled() && !realmToken.isVisibilityChanged())
         {
-            token.tokenInfo.isEnabled = false;
+            setTokenEnabled(token, false);
             realmToken.setEnabled(false);
         }
 
@@ -951,21 +1082,22 @@ public class TokensRealmSource implements TokenLocalSource
     {
         List<TokenCardMeta> tokenMetas = new ArrayList<>();
         List<Long> rootChainTokenCards = new ArrayList<>(networkFilters);
+        final String walletPrefix = wallet.address.toLowerCase();
         try (Realm realm = realmManager.getRealmInstance(wallet))
         {
-            RealmResults<RealmToken> realmItems = realm.where(RealmToken.class).sort("addedTime", Sort.ASCENDING).beginGroup().equalTo("isEnabled", true).or().equalTo("visibilityChanged", false).or().like("address", wallet.address + "*", Case.INSENSITIVE).endGroup().findAll();
-
-            for (RealmToken t : realmItems)
+            for (TokenMetaCache.Row t : metaCache.snapshot(realm, wallet.address))
             {
-                if (networkFilters.size() > 0 && !networkFilters.contains(t.getChainId()) || (!t.getEnabled() && t.isVisibilityChanged()) || // Don't update tokens hidden by user
-                    (ethereumNetworkRepository.isChainContract(t.getChainId(), t.getTokenAddress())))
+                if (!(t.isEnabled || !t.visibilityChanged || t.key.toLowerCase().startsWith(walletPrefix)))
+                    continue;
+                if (networkFilters.size() > 0 && !networkFilters.contains(t.chainId) || (!t.isEnabled && t.visibilityChanged) || // Don't update tokens hidden by user
+                    (ethereumNetworkRepository.isChainContract(t.chainId, t.tokenAddress)))
                     continue;
 
-                if (t.getContractType() == ContractType.ETHEREUM)
+                if (t.contractType == ContractType.ETHEREUM)
                 {
-                    if (rootChainTokenCards.contains(t.getChainId()))
+                    if (rootChainTokenCards.contains(t.chainId))
                     {
-                        rootChainTokenCards.remove(t.getChainId());
+                        rootChainTokenCards.remove(t.chainId);
                     }
                     else
                     {
@@ -973,9 +1105,9 @@ public class TokensRealmSource implements TokenLocalSource
                     }
                 }
 
-                TokenCardMeta meta = new TokenCardMeta(t.getChainId(), t.getTokenAddress(), convertStringBalance(t.getBalance(), t.getContractType()), t.getUpdateTime(), null, t.getName(), t.getSymbol(), t.getContractType(), getTokenGroup(t.getChainId(), t.getTokenAddress(), t.getContractType()));
-                meta.lastTxUpdate = t.getLastTxTime();
-                meta.isEnabled = t.isEnabled();
+                TokenCardMeta meta = new TokenCardMeta(t.chainId, t.tokenAddress, convertStringBalance(t.balance, t.contractType), t.addedTime, null, t.name, t.symbol, t.contractType, getTokenGroup(t.chainId, t.tokenAddress, t.contractType));
+                meta.lastTxUpdate = t.lastTxTime;
+                meta.isEnabled = t.isEnabled;
 
                 tokenMetas.add(meta);
             }
@@ -999,6 +1131,53 @@ public class TokensRealmSource implements TokenLocalSource
         return tokenMetas.toArray(new TokenCardMeta[0]);
     }
 
+    @Override
+    public long getTokenMetaVersion(Wallet wallet)
+    {
+        return metaCache.getVersion(wallet.address);
+    }
+
+    @Override
+    public long getTokenRemovedVersion(Wallet wallet)
+    {
+        return metaCache.getRemovedVersion(wallet.address);
+    }
+
+    /**
+     * Tokens whose card data has changed since the given version. Replaces polling Realm on updatedTime.
+     * Tokens which have been disabled are included, with isEnabled false, so the caller can take them off the list
+     */
+    @Override
+    public TokenCardMeta[] fetchChangedTokenMetas(Wallet wallet, List<Long> networkFilters, AssetDefinitionService svs, long sinceVersion)
+    {
+        List<TokenCardMeta> tokenMetas = new ArrayList<>();
+        try (Realm realm = realmManager.getRealmInstance(wallet))
+        {
+            metaCache.snapshot(realm, wallet.address);
+        }
+        catch (Exception e)
+        {
+            Timber.e(e);
+            return new TokenCardMeta[0];
+        }
+
+        for (TokenMetaCache.Row t : metaCache.changedSince(wallet.address, sinceVersion))
+        {
+            if (!isContractKey(t.key)) continue;
+            if (networkFilters.size() > 0 && !networkFilters.contains(t.chainId)) continue;
+            if (t.contractType == ContractType.ETHEREUM && !t.tokenAddress.equalsIgnoreCase(wallet.address)) continue;
+            if (ethereumNetworkRepository.isChainContract(t.chainId, t.tokenAddress)) continue;
+
+            TokenCardMeta meta = new TokenCardMeta(t.chainId, t.tokenAddress, convertStringBalance(t.balance, t.contractType),
+                    t.addedTime, svs, t.name, t.symbol, t.contractType, getTokenGroup(t.chainId, t.tokenAddress, t.contractType));
+            meta.lastTxUpdate = t.lastTxTime;
+            meta.isEnabled = t.isEnabled;
+            tokenMetas.add(meta);
+        }
+
+        return tokenMetas.toArray(new TokenCardMeta[0]);
+    }
+
     /**
      * Fetches all enabled TokenMetas in database, adding in chain tokens if required
      *
@@ -1020,23 +1199,24 @@ public class TokensRealmSource implements TokenLocalSource
                     realmIt.deleteAllFromRealm();
                 });*/
 
-                RealmResults<RealmToken> realmItems = realm.where(RealmToken.class).sort("addedTime", Sort.ASCENDING).beginGroup().equalTo("isEnabled", true).or().like("address", wallet.address + "*", Case.INSENSITIVE).endGroup().like("address", ADDRESS_FORMAT).findAll();
-
-                for (RealmToken t : realmItems)
+                final String walletPrefix = wallet.address.toLowerCase();
+                for (TokenMetaCache.Row t : metaCache.snapshot(realm, wallet.address))
                 {
-                    if (networkFilters.size() > 0 && !networkFilters.contains(t.getChainId()))
+                    if (!(t.isEnabled || t.key.toLowerCase().startsWith(walletPrefix)) || !isContractKey(t.key))
                         continue;
-                    if (t.getContractType() == ContractType.ETHEREUM && !(t.getTokenAddress().equalsIgnoreCase(wallet.address)))
+                    if (networkFilters.size() > 0 && !networkFilters.contains(t.chainId))
                         continue;
-                    if (ethereumNetworkRepository.isChainContract(t.getChainId(), t.getTokenAddress()))
+                    if (t.contractType == ContractType.ETHEREUM && !(t.tokenAddress.equalsIgnoreCase(wallet.address)))
                         continue;
-                    String balance = convertStringBalance(t.getBalance(), t.getContractType());
+                    if (ethereumNetworkRepository.isChainContract(t.chainId, t.tokenAddress))
+                        continue;
+                    String balance = convertStringBalance(t.balance, t.contractType);
 
-                    if (t.getContractType() == ContractType.ETHEREUM) //only allow 1 base per chain
+                    if (t.contractType == ContractType.ETHEREUM) //only allow 1 base per chain
                     {
-                        if (rootChainTokenCards.contains(t.getChainId()))
+                        if (rootChainTokenCards.contains(t.chainId))
                         {
-                            rootChainTokenCards.remove(t.getChainId());
+                            rootChainTokenCards.remove(t.chainId);
                         }
                         else
                         {
@@ -1044,10 +1224,10 @@ public class TokensRealmSource implements TokenLocalSource
                         }
                     }
 
-                    TokenCardMeta meta = new TokenCardMeta(t.getChainId(), t.getTokenAddress(), balance, t.getUpdateTime(), svs, t.getName(), t.getSymbol(), t.getContractType(), getTokenGroup(t.getChainId(), t.getTokenAddress(), t.getContractType()));
-                    meta.lastTxUpdate = t.getLastTxTime();
+                    TokenCardMeta meta = new TokenCardMeta(t.chainId, t.tokenAddress, balance, t.addedTime, svs, t.name, t.symbol, t.contractType, getTokenGroup(t.chainId, t.tokenAddress, t.contractType));
+                    meta.lastTxUpdate = t.lastTxTime;
                     tokenMetas.add(meta);
-                    meta.isEnabled = t.isEnabled();
+                    meta.isEnabled = t.isEnabled;
                 }
             }
             catch (Exception e)
@@ -1099,71 +1279,103 @@ public class TokensRealmSource implements TokenLocalSource
         });
     }
 
+    /**
+     * Served from the portfolio aggregator; only balances and tickers written since the last call are re-read
+     */
     @Override
     public Single<Pair<Double, Double>> getTotalValue(String currentAddress, List<Long> networkFilters)
     {
-        final Wallet wallet = new Wallet(currentAddress);
-        return calculateWalletValue(fetchTokenMetasForUpdate(wallet, networkFilters), wallet);
+        return Single.fromCallable(() -> {
+            refreshPortfolioTickers();
+            refreshPortfolioHoldings(new Wallet(currentAddress));
+            PortfolioAggregator.Totals totals = portfolio.getTotal(currentAddress, networkFilters);
+            return new Pair<>(totals.value, totals.historical);
+        });
     }
 
-    private Single<Pair<Double, Double>> calculateWalletValue(TokenCardMeta[] metas, Wallet wallet)
+    private void refreshPortfolioHoldings(Wallet wallet)
     {
-        return Single.fromCallable(() -> {
-            //fetch all token tickers
-            Map<Long, Map<String, TokenTicker>> tickerMap = fetchAllTokenTickers();
-            BigDecimal historicalBalance = BigDecimal.ZERO;
-            BigDecimal newBalance = BigDecimal.ZERO;
-            BigDecimal hundred = BigDecimal.valueOf(100);
-            for (TokenCardMeta meta : metas)
+        try (Realm realm = realmManager.getRealmInstance(wallet))
+        {
+            long since = portfolio.getVersion(wallet.address);
+            metaCache.refresh(realm, wallet.address);
+            long version = metaCache.getVersion(wallet.address);
+            if (version == since) return;
+
+            //a removed token can't be seen as a change; rebuild the wallet from the full list instead
+            boolean rebuild = since < 0 || metaCache.getRemovedVersion(wallet.address) > since;
+            Collection<TokenMetaCache.Row> rows = rebuild ? metaCache.snapshot(realm, wallet.address)
+                    : metaCache.changedSince(wallet.address, since);
+
+            List<PortfolioAggregator.Holding> holdings = new ArrayList<>(rows.size());
+            for (TokenMetaCache.Row t : rows)
             {
-                long chainId = meta.getChain();
-                String address = meta.isEthereum() ? "eth" : meta.getAddress();
-                Map<String, TokenTicker> localTickers = tickerMap.get(chainId);
-                TokenTicker ticker = localTickers != null ? localTickers.get(address) : null;
-                if (ticker != null && meta.hasPositiveBalance() && !meta.isNFT() && meta.group != TokenGroup.SPAM) //Currently we don't add NFT value. TODO: potentially get value from OpenSea
-                {
-                    Token t = fetchToken(chainId, wallet, meta.getAddress());
-                    BigDecimal correctedBalance = t.getCorrectedBalance(18);
-                    BigDecimal fiatValue = correctedBalance.multiply(new BigDecimal(ticker.price)).setScale(18, RoundingMode.DOWN);
-                    historicalBalance = historicalBalance.add(fiatValue.add(fiatValue.multiply((new BigDecimal(ticker.percentChange24h).divide(hundred)).negate())));
-                    newBalance = newBalance.add(fiatValue);
-                }
+                holdings.add(toHolding(wallet, t));
             }
 
-            return new Pair<>(newBalance.doubleValue(), historicalBalance.doubleValue());
-        });
+            portfolio.update(wallet.address, version, holdings, rebuild);
+        }
+        catch (Exception e)
+        {
+            Timber.w(e);
+        }
     }
 
-    private Map<Long, Map<String, TokenTicker>> fetchAllTokenTickers()
+    // Same selection the total has always used: tokens the user hasn't hidden, with a balance, excluding NFTs and spam
+    private PortfolioAggregator.Holding toHolding(Wallet wallet, TokenMetaCache.Row t)
     {
-        Map<Long, Map<String, TokenTicker>> tickerMap = new HashMap<>();
+        String balance = convertStringBalance(t.balance, t.contractType);
+        boolean isEthereum = t.contractType == ContractType.ETHEREUM;
+        boolean counts = !(!t.isEnabled && t.visibilityChanged) && !balance.equals("0")
+                && (!isEthereum || t.tokenAddress.equalsIgnoreCase(wallet.address))
+                && !ethereumNetworkRepository.isChainContract(t.chainId, t.tokenAddress);
+
+        if (counts)
+        {
+            TokenGroup group = getTokenGroup(t.chainId, t.tokenAddress, t.contractType);
+            counts = group != TokenGroup.NFT && group != TokenGroup.SPAM; //Currently we don't add NFT value. TODO: potentially get value from OpenSea
+        }
+
+        String tickerKey = databaseKey(t.chainId, isEthereum ? "eth" : t.tokenAddress);
+        return new PortfolioAggregator.Holding(t.key, t.chainId, tickerKey, counts ? balance : null, t.decimals);
+    }
+
+    private void refreshPortfolioTickers()
+    {
+        boolean reload = !portfolio.hasTickers();
+        int generation = reload ? portfolio.beginTickerLoad() : 0;
+        Set<String> dirty = reload ? Collections.emptySet() : portfolio.takeDirtyTickers();
+        if (!reload && dirty.isEmpty()) return;
+
         try (Realm realm = realmManager.getRealmInstance(TICKER_DB))
         {
-            RealmResults<RealmTokenTicker> realmTickers = realm.where(RealmTokenTicker.class).findAll();
+            RealmResults<RealmTokenTicker> realmTickers = reload ? realm.where(RealmTokenTicker.class).findAll()
+                    : realm.where(RealmTokenTicker.class).in("contract", dirty.toArray(new String[0])).findAll();
 
+            Map<String, TokenTicker> tickers = new HashMap<>();
             for (RealmTokenTicker ticker : realmTickers)
             {
-                Map<String, TokenTicker> networkMap = tickerMap.get(ticker.getChain());
-                if (networkMap == null)
-                {
-                    networkMap = new HashMap<>();
-                    tickerMap.put(ticker.getChain(), networkMap);
-                }
-
                 TokenTicker tt = convertRealmTicker(ticker);
+                if (tt != null) tickers.put(databaseKey(ticker.getChain(), ticker.getContract()), tt);
+            }
 
-                if (tt != null)
+            if (reload)
+            {
+                portfolio.loadTickers(generation, tickers);
+            }
+            else
+            {
+                for (String key : dirty)
                 {
-                    networkMap.put(ticker.getContract(), tt);
+                    portfolio.updateTicker(key, tickers.get(key));
                 }
             }
         }
         catch (Exception e)
         {
-            //
+            Timber.w(e);
+            portfolio.invalidateTickers();
         }
-
-        return tickerMap;
     }
 
     /**
@@ -1199,6 +1411,7 @@ public class TokensRealmSource implements TokenLocalSource
                 if (updated > 0)
                 {
                     realm.commitTransaction();
+                    metaCache.invalidate(wallet.address);
                 }
                 else
                 {
@@ -1224,16 +1437,19 @@ public class TokensRealmSource implements TokenLocalSource
         return Single.fromCallable(() -> {
             try (Realm realm = realmManager.getRealmInstance(wallet))
             {
-                RealmResults<RealmToken> realmItems = realm.where(RealmToken.class).beginGroup().like("auxData", "*" + searchTerm + "*", Case.INSENSITIVE).or().like("symbol", "*" + searchTerm + "*", Case.INSENSITIVE).or().like("name", "*" + searchTerm + "*", Case.INSENSITIVE).or().like("address", "*" + searchTerm + "*", Case.INSENSITIVE).endGroup().like("address", ADDRESS_FORMAT).findAll();
-
-                for (RealmToken t : realmItems)
+                final String term = searchTerm.toLowerCase();
+                for (TokenMetaCache.Row t : metaCache.snapshot(realm, wallet.address))
                 {
-                    if (networkFilters.size() > 0 && !networkFilters.contains(t.getChainId()))
+                    if (!isContractKey(t.key))
+                        continue;
+                    if (!(containsIgnoreCase(t.auxData, term) || containsIgnoreCase(t.symbol, term) || containsIgnoreCase(t.name, term) || containsIgnoreCase(t.key, term)))
+                        continue;
+                    if (networkFilters.size() > 0 && !networkFilters.contains(t.chainId))
                         continue;
-                    String balance = convertStringBalance(t.getBalance(), t.getContractType());
-                    TokenCardMeta meta = new TokenCardMeta(t.getChainId(), t.getTokenAddress(), balance, t.getUpdateTime(), null, t.getAuxData(), t.getSymbol(), t.getContractType(), getTokenGroup(t.getChainId(), t.getTokenAddress(), t.getContractType()));
-                    meta.lastTxUpdate = t.getLastTxTime();
-                    meta.isEnabled = t.isEnabled();
+                    String balance = convertStringBalance(t.balance, t.contractType);
+                    TokenCardMeta meta = new TokenCardMeta(t.chainId, t.tokenAddress, balance, t.addedTime, null, t.auxData, t.symbol, t.contractType, getTokenGroup(t.chainId, t.tokenAddress, t.contractType));
+                    meta.lastTxUpdate = t.lastTxTime;
+                    meta.isEnabled = t.isEnabled;
                     tokenMetas.add(meta);
                 }
             }
@@ -1313,6 +1529,11 @@ public class TokensRealmSource implements TokenLocalSource
             Timber.w(e);
         }
 
+        for (ContractAddress contract : tickerUpdates)
+        {
+            portfolio.markTickerDirty(databaseKey(contract.chainId, contract.address));
+        }
+
         //This will trigger an update of the holder
         updateWalletTokens(tickerUpdates);
     }
@@ -1322,27 +1543,21 @@ public class TokensRealmSource implements TokenLocalSource
         final String currentWallet = ethereumNetworkRepository.getCurrentWalletAddress();
         if (TextUtils.isEmpty(currentWallet)) return;
 
-        try (Realm realm = realmManager.getRealmInstance(currentWallet))
+        for (ContractAddress contract : tickerUpdates)
         {
-            realm.executeTransaction(r -> {
-                for (ContractAddress contract : tickerUpdates)
-                {
-                    String contractAddress = contract.address.equals("eth") ? currentWallet : contract.address;
-                    RealmToken realmToken = r.where(RealmToken.class)
-                            .equalTo("address", databaseKey(contract.chainId, contractAddress))
-                            .findFirst();
+            String contractAddress = contract.address.equals("eth") ? currentWallet : contract.address;
+            final String key = databaseKey(contract.chainId, contractAddress);
+            writeQueue.enqueue(currentWallet, "touch:" + key, r -> {
+                RealmToken realmToken = r.where(RealmToken.class)
+                        .equalTo("address", key)
+                        .findFirst();
 
-                    if (realmToken != null && realmToken.isEnabled())
-                    {
-                        realmToken.setUpdateTime(System.currentTimeMillis());
-                    }
+                if (realmToken != null && realmToken.isEnabled())
+                {
+                    realmToken.setUpdateTime(System.currentTimeMillis());
                 }
             });
         }
-        catch (Exception e)
-        {
-            //
-        }
     }
 
     @Override
@@ -1353,25 +1568,18 @@ public class TokensRealmSource implements TokenLocalSource
             return;
         }
 
-        List<ContractAddress> tickerUpdates = new ArrayList<>();
-        try (Realm realm = realmManager.getRealmInstance(TICKER_DB))
-        {
-            realm.executeTransaction(r -> {
-                for (String tokenAddress : erc20Tickers.keySet())
-                {
-                    if (writeTickerToRealm(r, erc20Tickers.get(tokenAddress), chainId, tokenAddress))
-                    {
-                        tickerUpdates.add(new ContractAddress(chainId, tokenAddress));
-                    }
-                }
-            });
-        }
-        catch (Exception e)
+        for (Map.Entry<String, TokenTicker> entry : erc20Tickers.entrySet())
         {
-            //
-        }
+            final String tokenAddress = entry.getKey();
+            final TokenTicker ticker = entry.getValue();
+            if (ticker == null) continue;
 
-        updateWalletTokens(tickerUpdates);
+            //once the ticker is committed, touch the wallet token so its holder refreshes
+            writeQueue.enqueue(TICKER_DB, "ticker:" + databaseKey(chainId, tokenAddress.toLowerCase()),
+                    r -> writeTickerToRealm(r, ticker, chainId, tokenAddress), error -> {
+                        if (error == null) updateWalletTokens(Collections.singletonList(new ContractAddress(chainId, tokenAddress)));
+                    });
+        }
     }
 
     @Override
@@ -1382,6 +1590,7 @@ public class TokensRealmSource implements TokenLocalSource
             realm.executeTransaction(r -> {
                 writeTickerToRealm(r, ticker, chainId, address);
             });
+            portfolio.markTickerDirty(databaseKey(chainId, address));
         }
         catch (Exception e)
         {
@@ -1468,6 +1677,10 @@ public class TokensRealmSource implements TokenLocalSource
         {
             //
         }
+        finally
+        {
+            portfolio.invalidateTickers();
+        }
     }
 
     @Override
@@ -1509,6 +1722,10 @@ public class TokensRealmSource implements TokenLocalSource
         {
             //
         }
+        finally
+        {
+            portfolio.invalidateTickers();
+        }
     }
 
     private boolean writeTickerToRealm(Realm realm, final TokenTicker ticker, long chainId, String tokenAddress)
@@ -1537,6 +1754,11 @@ public class TokensRealmSource implements TokenLocalSource
     }
 
     private Token convertSingle(RealmToken realmItem, Realm realm, TokenFactory tf, Wallet wallet)
+    {
+        return convertSingle(realmItem, realm, tf, wallet, true);
+    }
+
+    private Token convertSingle(RealmToken realmItem, Realm realm, TokenFactory tf, Wallet wallet, boolean withAssets)
     {
         if (realmItem == null) return null;
         if (tf == null) tf = new TokenFactory();
@@ -1554,10 +1776,13 @@ public class TokensRealmSource implements TokenLocalSource
 
         if (result.isNonFungible())
         {
-            Map<BigInteger, NFTAsset> assets = getNFTAssets(realm, result);
-            for (BigInteger tokenId : assets.keySet())
+            if (withAssets)
             {
-                result.addAssetToTokenBalanceAssets(tokenId, assets.get(tokenId));
+                Map<BigInteger, NFTAsset> assets = getNFTAssets(realm, result);
+                for (BigInteger tokenId : assets.keySet())
+                {
+                    result.addAssetToTokenBalanceAssets(tokenId, assets.get(tokenId));
+                }
             }
 
             loadAssetContract(realm, result);
@@ -0,0 +1,234 @@
+package com.alphawallet.app.repository;
+
+import com.alphawallet.app.C;
+import com.alphawallet.app.service.AWHttpServiceWaterfall;
+
+import org.web3j.protocol.Web3j;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import okhttp3.ConnectionPool;
+import okhttp3.Dispatcher;
+import okhttp3.Interceptor;
+import okhttp3.OkHttpClient;
+import okhttp3.Response;
+
+/**
+ * Per-chain cache of node clients. Each chain has one OkHttp connection pool and dispatcher, shared by a standard
+ * Web3j and an event-query Web3j which differ only in timeouts. The dispatcher allows more calls per host than OkHttp's
+ * default of 5, since hedged reads are sent asynchronously and would otherwise queue behind each other, with the queue
+ * time counted as node latency. Each Web3j has its own node service, and so its own
+ * JSON-RPC batcher, so event queries are never sent on the standard client. Entries are rebuilt when the chain's RPC
+ * list changes.
+ */
+public class Web3jClientRegistry
+{
+    public enum Profile
+    {
+        STANDARD,
+        EVENTS //eth_getLogs and similar can take longer to render
+    }
+
+    /**
+     * Builds the Web3j for one profile of a chain on the given client
+     */
+    interface Web3jFactory
+    {
+        Web3j build(long chainId, String[] rpcUrls, OkHttpClient client);
+    }
+
+    interface RpcUrlSource
+    {
+        String[] getRpcUrls(long chainId);
+    }
+
+    private static final int MAX_REQUESTS_PER_HOST = 32;
+
+    private static final Map<Long, ChainClients> clients = new ConcurrentHashMap<>();
+    private static final RpcUrlSource DEFAULT_URL_SOURCE = chainId -> EthereumNetworkBase.getNetwork(chainId).rpcUrls;
+    private static volatile Web3jFactory web3jFactory = Web3jClientRegistry::buildWeb3j;
+    private static volatile RpcUrlSource rpcUrlSource = DEFAULT_URL_SOURCE;
+
+    /**
+     * For tests: build clients without the key provider or network list
+     */
+    static void setFactories(RpcUrlSource urlSource, Web3jFactory factory)
+    {
+        rpcUrlSource = urlSource;
+        web3jFactory = factory;
+        clients.clear();
+    }
+
+    static void resetFactories()
+    {
+        setFactories(DEFAULT_URL_SOURCE, Web3jClientRegistry::buildWeb3j);
+    }
+
+    public static Web3j get(long chainId, Profile profile)
+    {
+        return getClients(chainId).getWeb3j(profile);
+    }
+
+    /**
+     * Drop the cached clients for a chain; call when its RPC settings change
+     */
+    public static void invalidate(long chainId)
+    {
+        ChainClients removed = clients.remove(chainId);
+        if (removed != null) removed.release();
+    }
+
+    public static ClientStats getStats(long chainId)
+    {
+        ChainClients entry = clients.get(chainId);
+        return entry != null ? entry.getStats() : new ClientStats(chainId, 0, 0, 0, 0);
+    }
+
+    private static ChainClients getClients(long chainId)
+    {
+        String[] rpcUrls = rpcUrlSource.getRpcUrls(chainId);
+        ChainClients entry = clients.get(chainId);
+        if (entry == null || !Arrays.equals(entry.rpcUrls, rpcUrls))
+        {
+            synchronized (clients)
+            {
+                entry = clients.get(chainId);
+                if (entry == null || !Arrays.equals(entry.rpcUrls, rpcUrls))
+                {
+                    if (entry != null) entry.release();
+                    entry = new ChainClients(chainId, rpcUrls);
+                    clients.put(chainId, entry);
+                }
+            }
+        }
+        return entry;
+    }
+
+    private static class ChainClients
+    {
+        final long chainId;
+        final String[] rpcUrls;
+        final OkHttpClient baseClient;
+        final AtomicInteger inFlight = new AtomicInteger();
+        final AtomicLong totalCalls = new AtomicLong();
+        private volatile Web3j standard;
+        private volatile Web3j events;
+
+        ChainClients(long chainId, String[] rpcUrls)
+        {
+            this.chainId = chainId;
+            this.rpcUrls = rpcUrls;
+            Dispatcher dispatcher = new Dispatcher();
+            dispatcher.setMaxRequestsPerHost(MAX_REQUESTS_PER_HOST);
+            this.baseClient = new OkHttpClient.Builder()
+                    .connectionPool(new ConnectionPool())
+                    .dispatcher(dispatcher)
+                    .connectTimeout(C.CONNECT_TIMEOUT, TimeUnit.SECONDS)
+                    .readTimeout(C.READ_TIMEOUT * 3, TimeUnit.SECONDS)
+                    .writeTimeout(C.LONG_WRITE_TIMEOUT, TimeUnit.SECONDS)
+                    .retryOnConnectionFailure(true)
+                    .addInterceptor(this::countCall)
+                    .build();
+        }
+
+        Web3j getWeb3j(Profile profile)
+        {
+            if (profile == Profile.EVENTS)
+            {
+                if (events == null)
+                {
+                    synchronized (this)
+                    {
+                        // newBuilder shares the connection pool and dispatcher of the base client
+                        if (events == null) events = build(baseClient.newBuilder()
+                                .connectTimeout(C.CONNECT_TIMEOUT * 3, TimeUnit.SECONDS)
+                                .readTimeout(C.READ_TIMEOUT * 4, TimeUnit.SECONDS)
+                                .build());
+                    }
+                }
+                return events;
+            }
+            else
+            {
+                if (standard == null)
+                {
+                    synchronized (this)
+                    {
+                        if (standard == null) standard = build(baseClient);
+                    }
+                }
+                return standard;
+            }
+        }
+
+        private Web3j build(OkHttpClient client)
+        {
+            return web3jFactory.build(chainId, rpcUrls, client);
+        }
+
+        private Response countCall(Interceptor.Chain chain) throws IOException
+        {
+            inFlight.incrementAndGet();
+            totalCalls.incrementAndGet();
+            try
+            {
+                return chain.proceed(chain.request());
+            }
+            finally
+            {
+                inFlight.decrementAndGet();
+            }
+        }
+
+        ClientStats getStats()
+        {
+            ConnectionPool pool = baseClient.connectionPool();
+            return new ClientStats(chainId, pool.connectionCount(), pool.idleConnectionCount(), inFlight.get(), totalCalls.get());
+        }
+
+        void release()
+        {
+            // Web3j.shutdown() would stop web3j's shared executor; just let idle sockets go
+            baseClient.connectionPool().evictAll();
+        }
+    }
+
+    private static Web3j buildWeb3j(long chainId, String[] rpcUrls, OkHttpClient client)
+    {
+        KeyProvider keyProvider = KeyProviderFactory.get();
+        AWHttpServiceWaterfall service = new AWHttpServiceWaterfall(rpcUrls, chainId, client, keyProvider.getInfuraKey(),
+                keyProvider.getInfuraSecret(), keyProvider.getKlaytnKey(), false);
+        return Web3j.build(service);
+    }
+
+    public static class ClientStats
+    {
+        public final long chainId;
+        public final int connections;
+        public final int idleConnections;
+        public final int callsInFlight;
+        public final long totalCalls;
+
+        ClientStats(long chainId, int connections, int idleConnections, int callsInFlight, long totalCalls)
+        {
+            this.chainId = chainId;
+            this.connections = connections;
+            this.idleConnections = idleConnections;
+            this.callsInFlight = callsInFlight;
+            this.totalCalls = totalCalls;
+        }
+
+        @Override
+        public String toString()
+        {
+            return "Chain " + chainId + ": " + connections + " connections (" + idleConnections + " idle), "
+                    + callsInFlight + " in flight, " + totalCalls + " total";
+        }
+    }
+}
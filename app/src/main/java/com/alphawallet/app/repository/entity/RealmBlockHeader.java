@@ -0,0 +1,53 @@
+package com.alphawallet.app.repository.entity;
+
+import io.realm.RealmObject;
+import io.realm.annotations.PrimaryKey;
+
+/**
+ * Recently used block headers, so block times for events don't need fetching again across restarts.
+ * Key is block hash (lower case) + "-" + chainId
+ */
+public class RealmBlockHeader extends RealmObject
+{
+    @PrimaryKey
+    private String instanceKey;
+
+    private long chainId;
+    private long blockNumber;
+    private long timeStamp;
+
+    public String getHash()
+    {
+        return instanceKey.substring(0, instanceKey.lastIndexOf('-'));
+    }
+
+    public long getChainId()
+    {
+        return chainId;
+    }
+
+    public void setChainId(long chainId)
+    {
+        this.chainId = chainId;
+    }
+
+    public long getBlockNumber()
+    {
+        return blockNumber;
+    }
+
+    public void setBlockNumber(long blockNumber)
+    {
+        this.blockNumber = blockNumber;
+    }
+
+    public long getTimeStamp()
+    {
+        return timeStamp;
+    }
+
+    public void setTimeStamp(long timeStamp)
+    {
+        this.timeStamp = timeStamp;
+    }
+}
@@ -0,0 +1,78 @@
+package com.alphawallet.app.repository.entity;
+
+import io.realm.RealmObject;
+import io.realm.annotations.Index;
+import io.realm.annotations.PrimaryKey;
+
+/**
+ * One token id's entry in a wallet's NFT ownership index. Key is contractKey + "-" + tokenId,
+ * where contractKey is address (lower case) + "-" + chainId
+ */
+public class RealmNFTOwnership extends RealmObject
+{
+    @PrimaryKey
+    private String instanceKey;
+
+    @Index
+    private String contractKey;
+
+    private String amount;
+    private long lastBlock;
+    private long lastLogIndex;
+    private long verifiedBlock;
+
+    public String getTokenId()
+    {
+        return instanceKey.substring(instanceKey.lastIndexOf('-') + 1);
+    }
+
+    public String getContractKey()
+    {
+        return contractKey;
+    }
+
+    public void setContractKey(String contractKey)
+    {
+        this.contractKey = contractKey;
+    }
+
+    public String getAmount()
+    {
+        return amount;
+    }
+
+    public void setAmount(String amount)
+    {
+        this.amount = amount;
+    }
+
+    public long getLastBlock()
+    {
+        return lastBlock;
+    }
+
+    public void setLastBlock(long lastBlock)
+    {
+        this.lastBlock = lastBlock;
+    }
+
+    public long getLastLogIndex()
+    {
+        return lastLogIndex;
+    }
+
+    public void setLastLogIndex(long lastLogIndex)
+    {
+        this.lastLogIndex = lastLogIndex;
+    }
+
+    public long getVerifiedBlock()
+    {
+        return verifiedBlock;
+    }
+
+    public void setVerifiedBlock(long verifiedBlock)
+    {
+        this.verifiedBlock = verifiedBlock;
+    }
+}
@@ -0,0 +1,36 @@
+package com.alphawallet.app.repository.entity;
+
+import io.realm.RealmObject;
+import io.realm.annotations.PrimaryKey;
+
+/**
+ * Block ranges a wallet's NFT ownership index has read for one contract. Key is address (lower case) + "-" + chainId
+ */
+public class RealmNFTOwnershipIndex extends RealmObject
+{
+    @PrimaryKey
+    private String instanceKey;
+
+    private String ranges; //CSV of start-end, inclusive
+    private long lastRebuild;
+
+    public String getRanges()
+    {
+        return ranges;
+    }
+
+    public void setRanges(String ranges)
+    {
+        this.ranges = ranges;
+    }
+
+    public long getLastRebuild()
+    {
+        return lastRebuild;
+    }
+
+    public void setLastRebuild(long lastRebuild)
+    {
+        this.lastRebuild = lastRebuild;
+    }
+}
@@ -61,6 +61,11 @@ public class RealmToken extends RealmObject
         this.name = name;
     }
 
+    public String getDatabaseKey()
+    {
+        return address;
+    }
+
     public String getTokenAddress()
     {
         String tAddress = address;
@@ -27,6 +27,7 @@ public class RealmTokenScriptData extends RealmObject
     private String ipfsPath;
     private boolean hasEvents; //TokenScript has events
     private String schemaUID;
+    private byte[] compiledScript; //CompiledTokenDefinition of the script, so it needn't be parsed again
 
     public long getChainId()
     {
@@ -159,4 +160,14 @@ public class RealmTokenScriptData extends RealmObject
     {
         this.schemaUID = schemaUID;
     }
-}
+
+    public byte[] getCompiledScript()
+    {
+        return compiledScript;
+    }
+
+    public void setCompiledScript(byte[] compiledScript)
+    {
+        this.compiledScript = compiledScript;
+    }
+}
\ No newline at end of file
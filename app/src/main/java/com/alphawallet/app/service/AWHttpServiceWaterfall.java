@@ -1,29 +1,39 @@
 package com.alphawallet.app.service;
 
-import static com.alphawallet.app.service.JsonValidator.validateAndGetStream;
 import static com.alphawallet.ethereum.EthereumNetworkBase.KLAYTN_BAOBAB_ID;
 import static com.alphawallet.ethereum.EthereumNetworkBase.KLAYTN_ID;
 import static okhttp3.ConnectionSpec.CLEARTEXT;
 
 import android.text.TextUtils;
 
+import androidx.annotation.NonNull;
+
+import com.google.gson.JsonObject;
 import com.google.gson.JsonParseException;
+import com.google.gson.JsonParser;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.web3j.protocol.http.HttpService;
+import org.web3j.utils.Numeric;
 
-import java.io.BufferedInputStream;
 import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.Random;
-
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.BiConsumer;
+
+import okhttp3.Call;
+import okhttp3.Callback;
 import okhttp3.CipherSuite;
 import okhttp3.ConnectionSpec;
 import okhttp3.Headers;
@@ -33,8 +43,6 @@ import okhttp3.Request;
 import okhttp3.RequestBody;
 import okhttp3.Response;
 import okhttp3.ResponseBody;
-import okio.Buffer;
-import okio.BufferedSource;
 import timber.log.Timber;
 
 public class AWHttpServiceWaterfall extends HttpService
@@ -94,17 +102,20 @@ public class AWHttpServiceWaterfall extends HttpService
 
     public static final String DEFAULT_URL = "http://localhost:8545/";
 
+    private static final String NULL_RESPONSE = "{\"jsonrpc\":\"2.0\",\"id\":1,\"result\":\"0x\"}";
+    private static final String BLOCK_NUMBER_METHOD = "\"eth_blockNumber\"";
+    private static final long HEDGE_TIMEOUT_S = 60;
+
     private static final Logger log = LoggerFactory.getLogger(org.web3j.protocol.http.HttpService.class);
 
     private final OkHttpClient httpClient;
 
     private final String[] urls; // Changed to array of URLs
-    private final boolean includeRawResponse;
     private final String infuraSecret;
     private final String infuraKey;
     private final String klaytnKey;
     private final long chainId;
-    private final Random random = new Random();
+    private final JsonRpcBatcher batcher;
 
     private final HashMap<String, String> headers = new HashMap<>();
 
@@ -113,166 +124,289 @@ public class AWHttpServiceWaterfall extends HttpService
         super(includeRawResponses);
         this.urls = urls;
         this.httpClient = httpClient;
-        this.includeRawResponse = includeRawResponses;
         this.infuraKey = infuraKey;
         this.infuraSecret = infuraSecret;
         this.klaytnKey = klaytnKey;
         this.chainId = chainId;
+        this.batcher = new JsonRpcBatcher(chainId, urls, this::sendRaw);
     }
 
     @Override
     protected InputStream performIO(String request) throws IOException
     {
-        // Start at a random point within the URLs
-        int startIndex = random.nextInt(urls.length);
-
-        // Round-robin try all URLs
-        for (int count = 0; count < urls.length; count++)
+        String response;
+        if (batcher.canBatch(request))
         {
-            String url = urls[(startIndex + count) % urls.length];
+            // Coalesce with other requests on this service arriving in the same window
+            response = batcher.submit(request);
+        }
+        else
+        {
+            response = sendRaw(request);
+        }
 
-            try
-            {
-                okhttp3.Response response = performSingleIO(url, request);
+        // Fully buffered, so mark/reset works for includeRawResponse
+        return new ByteArrayInputStream(response.getBytes(StandardCharsets.UTF_8));
+    }
 
-                // Check if the response is valid (2xx status code)
-                if (response.isSuccessful())
-                {
-                    return processResponse(response);
-                }
-                else
-                {
-                    Timber.d("Response was %s, retrying...", response.code());
-                }
-            }
-            catch (IOException e)
-            {
-                log.warn("Request to {} failed: {}", url, e.getMessage());
-                // Optionally, re-throw for specific error handling at a higher level
-            }
+    /**
+     * Send a raw payload (single JSON-RPC request or batch array), returning the validated body.
+     * Endpoints are tried best score first; for reads a hedged duplicate goes to the second best endpoint if the
+     * best one hasn't answered within its p95 latency.
+     */
+    private String sendRaw(String payload) throws IOException
+    {
+        RpcEndpointHealth health = RpcEndpointHealth.get(chainId);
+        List<String> ordered = health.orderEndpoints(urls);
+        int index = 0;
+
+        if (ordered.size() > 1 && isIdempotent(payload))
+        {
+            String response = sendHedged(health, ordered.get(0), ordered.get(1), payload);
+            if (response != null) return response;
+            index = 2;
+        }
+
+        for (; index < ordered.size(); index++)
+        {
+            String response = sendToEndpoint(health, ordered.get(index), payload);
+            if (response != null) return response;
         }
 
         throw new IOException("All requests failed!");
     }
 
-    private okhttp3.Response performSingleIO(String url, String request) throws IOException
+    private String sendToEndpoint(RpcEndpointHealth health, String url, String payload)
     {
-        RequestBody requestBody;
-        try
+        long startTime = System.currentTimeMillis();
+        try (okhttp3.Response response = httpClient.newCall(buildRequest(url, payload)).execute())
         {
-            requestBody = RequestBody.create(request, JSON_MEDIA_TYPE);
+            String content = readResponse(url, response);
+            if (content != null)
+            {
+                recordSuccess(health, url, payload, content, System.currentTimeMillis() - startTime);
+                return content;
+            }
         }
-        catch (JsonParseException e)
+        catch (IOException e)
         {
-            requestBody = RequestBody.create("", MEDIA_TYPE_TEXT);
+            log.warn("Request to {} failed: {}", url, e.getMessage());
         }
 
-        addRequiredSecrets(url);
-
-        Request httpRequest = new Request.Builder()
-                .url(url)
-                .headers(buildHeaders())
-                .post(requestBody)
-                .build();
-
-        return httpClient.newCall(httpRequest).execute();
+        health.recordFailure(url);
+        return null;
     }
 
-    private InputStream processResponse(Response response) throws IOException
+    /**
+     * Race the best endpoint against a delayed duplicate to the runner up; first valid response wins and the other call
+     * is cancelled. Returns null if both fail.
+     */
+    private String sendHedged(RpcEndpointHealth health, String primary, String secondary, String payload) throws IOException
     {
-        processHeaders(response.headers());
+        List<Call> calls = new ArrayList<>(2);
+        CompletableFuture<String> first = new CompletableFuture<>();
+        calls.add(enqueue(health, primary, payload, first));
 
-        if (response.isSuccessful())
+        try
         {
-            if (response.body() != null)
+            try
             {
-                return buildInputStream(response);
+                return first.get(health.getHedgeDelay(primary), TimeUnit.MILLISECONDS);
             }
-            else
+            catch (ExecutionException e)
             {
-                return buildNullInputStream();
+                // primary failed before the hedge delay; just move on to the runner up
+                return sendToEndpoint(health, secondary, payload);
             }
+            catch (TimeoutException e)
+            {
+                Timber.d("Hedging request for chain %s", chainId);
+            }
+
+            CompletableFuture<String> second = new CompletableFuture<>();
+            calls.add(enqueue(health, secondary, payload, second));
+
+            CompletableFuture<String> winner = new CompletableFuture<>();
+            BiConsumer<String, Throwable> onComplete = (result, error) -> {
+                if (error == null) winner.complete(result);
+                else if (first.isCompletedExceptionally() && second.isCompletedExceptionally()) winner.completeExceptionally(error);
+            };
+            first.whenComplete(onComplete);
+            second.whenComplete(onComplete);
+
+            return winner.get(HEDGE_TIMEOUT_S, TimeUnit.SECONDS);
         }
-        else
+        catch (ExecutionException | TimeoutException e)
+        {
+            return null;
+        }
+        catch (InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+            throw new java.io.InterruptedIOException("Request interrupted");
+        }
+        finally
         {
-            throw new IOException("Unsuccessful response: " + response.code());
+            for (Call call : calls) call.cancel();
         }
     }
 
-
-    protected void processHeaders(Headers headers)
+    private Call enqueue(RpcEndpointHealth health, String url, String payload, CompletableFuture<String> result)
     {
-        // Default implementation is empty
-    }
+        long startTime = System.currentTimeMillis();
+        Call call = httpClient.newCall(buildRequest(url, payload));
+        call.enqueue(new Callback()
+        {
+            @Override
+            public void onFailure(@NonNull Call call, @NonNull IOException e)
+            {
+                // the losing side of a hedge is cancelled; that's not a mark against the node
+                if (!call.isCanceled())
+                {
+                    log.warn("Request to {} failed: {}", url, e.getMessage());
+                    health.recordFailure(url);
+                }
+                result.completeExceptionally(e);
+            }
 
-    private InputStream buildNullInputStream()
-    {
-        String jsonData = "{\"jsonrpc\":\"2.0\",\"id\":1,\"result\":\"0x\"}";
-        return new ByteArrayInputStream(jsonData.getBytes(StandardCharsets.UTF_8));
+            @Override
+            public void onResponse(@NonNull Call call, @NonNull Response response)
+            {
+                try (Response r = response)
+                {
+                    String content = readResponse(url, r);
+                    if (content != null)
+                    {
+                        recordSuccess(health, url, payload, content, System.currentTimeMillis() - startTime);
+                        result.complete(content);
+                        return;
+                    }
+                }
+                catch (IOException e)
+                {
+                    //fall through
+                }
+
+                if (!call.isCanceled()) health.recordFailure(url);
+                result.completeExceptionally(new IOException("Invalid response from " + url));
+            }
+        });
+
+        return call;
     }
 
-    private InputStream buildInputStream(Response response) throws IOException
+    private String readResponse(String url, Response response) throws IOException
     {
-        ResponseBody responseBody = response.body();
-        InputStream inputStream = validateAndGetStream(responseBody);
-        //InputStream inputStream = responseBody.byteStream();
-
-        if (includeRawResponse)
+        if (!response.isSuccessful())
         {
-            // we have to buffer the entire input payload, so that after processing
-            // it can be re-read and used to populate the rawResponse field.
+            Timber.d("Response was %s, retrying...", response.code());
+            return null;
+        }
+
+        processHeaders(response.headers());
+        ResponseBody body = response.body();
+        if (body == null) return NULL_RESPONSE;
 
-            BufferedSource source = responseBody.source();
-            source.request(Long.MAX_VALUE); // Buffer the entire body
-            Buffer buffer = source.getBuffer();
+        String content = body.string();
+        if (JsonValidator.isValidJson(content))
+        {
+            return content;
+        }
+        else
+        {
+            Timber.d("Invalid response from %s, retrying...", url);
+            return null;
+        }
+    }
 
-            long size = buffer.size();
-            if (size > Integer.MAX_VALUE)
+    private void recordSuccess(RpcEndpointHealth health, String url, String payload, String content, long latency)
+    {
+        health.recordSuccess(url, latency);
+        if (payload.contains(BLOCK_NUMBER_METHOD) && content.startsWith("{"))
+        {
+            try
             {
-                throw new UnsupportedOperationException(
-                        "Non-integer input buffer size specified: " + size);
+                JsonObject obj = JsonParser.parseString(content).getAsJsonObject();
+                if (obj.has("result"))
+                {
+                    health.recordBlockHeight(url, Numeric.toBigInt(obj.get("result").getAsString()).longValue());
+                }
             }
+            catch (Exception e)
+            {
+                // not a block number response
+            }
+        }
+    }
 
-            int bufferSize = (int) size;
-            BufferedInputStream bufferedinputStream =
-                    new BufferedInputStream(inputStream, bufferSize);
-
-            bufferedinputStream.mark(inputStream.available());
-            return bufferedinputStream;
+    private static boolean isIdempotent(String payload)
+    {
+        return !payload.contains("\"eth_sendRawTransaction\"") && !payload.contains("\"eth_sendTransaction\"");
+    }
 
+    private Request buildRequest(String url, String payload)
+    {
+        RequestBody requestBody;
+        try
+        {
+            requestBody = RequestBody.create(payload, JSON_MEDIA_TYPE);
         }
-        else
+        catch (JsonParseException e)
         {
-            return inputStream;
+            requestBody = RequestBody.create("", MEDIA_TYPE_TEXT);
         }
+
+        return new Request.Builder()
+                .url(url)
+                .headers(buildHeaders(url))
+                .post(requestBody)
+                .build();
+    }
+
+    protected void processHeaders(Headers headers)
+    {
+        // Default implementation is empty
     }
 
-    private void addRequiredSecrets(String url)
+    /**
+     * Headers for one endpoint: the shared headers plus any secrets that endpoint needs. Built per request so that
+     * concurrent (hedged) calls to different endpoints don't see each other's credentials.
+     */
+    private Headers buildHeaders(String url)
     {
+        Map<String, String> requestHeaders;
+        synchronized (headers)
+        {
+            requestHeaders = new HashMap<>(headers);
+        }
+
         if (!TextUtils.isEmpty(infuraKey) && url.endsWith(infuraKey) && !TextUtils.isEmpty(infuraSecret)) //primary InfuraKey has secret
         {
-            addHeader("Authorization", "Basic " + infuraSecret);
+            requestHeaders.put("Authorization", "Basic " + infuraSecret);
         }
         else if (!TextUtils.isEmpty(klaytnKey) && (chainId == KLAYTN_BAOBAB_ID || chainId == KLAYTN_ID))
         {
-            addHeader("x-chain-id", Long.toString(chainId));
-            addHeader("Authorization", "Basic " + klaytnKey);
+            requestHeaders.put("x-chain-id", Long.toString(chainId));
+            requestHeaders.put("Authorization", "Basic " + klaytnKey);
         }
-    }
 
-    private Headers buildHeaders()
-    {
-        return Headers.of(headers);
+        return Headers.of(requestHeaders);
     }
 
     public void addHeader(String key, String value)
     {
-        headers.put(key, value);
+        synchronized (headers)
+        {
+            headers.put(key, value);
+        }
     }
 
     public void addHeaders(Map<String, String> headersToAdd)
     {
-        headers.putAll(headersToAdd);
+        synchronized (headers)
+        {
+            headers.putAll(headersToAdd);
+        }
     }
 
     public HashMap<String, String> getHeaders()
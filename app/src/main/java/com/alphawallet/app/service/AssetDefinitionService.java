@@ -25,7 +25,6 @@ import androidx.annotation.Nullable;
 import androidx.core.app.NotificationCompat;
 import androidx.lifecycle.MutableLiveData;
 
-import com.alphawallet.app.BuildConfig;
 import com.alphawallet.app.entity.ContractLocator;
 import com.alphawallet.app.entity.ContractType;
 import com.alphawallet.app.entity.EasAttestation;
@@ -37,9 +36,11 @@ import com.alphawallet.app.entity.Wallet;
 import com.alphawallet.app.entity.nftassets.NFTAsset;
 import com.alphawallet.app.entity.tokens.Attestation;
 import com.alphawallet.app.entity.tokens.Token;
+import com.alphawallet.app.entity.tokenscript.AttributeResolver;
 import com.alphawallet.app.entity.tokenscript.EventUtils;
 import com.alphawallet.app.entity.tokenscript.TokenScriptFile;
 import com.alphawallet.app.entity.tokenscript.TokenscriptFunction;
+import com.alphawallet.app.repository.EthereumNetworkBase;
 import com.alphawallet.app.repository.TokenLocalSource;
 import com.alphawallet.app.repository.TokensRealmSource;
 import com.alphawallet.app.repository.entity.RealmAttestation;
@@ -68,6 +69,7 @@ import com.alphawallet.token.entity.TokenscriptElement;
 import com.alphawallet.token.entity.TransactionResult;
 import com.alphawallet.token.entity.ViewType;
 import com.alphawallet.token.entity.XMLDsigDescriptor;
+import com.alphawallet.token.tools.CompiledTokenDefinition;
 import com.alphawallet.token.tools.TokenDefinition;
 
 import org.jetbrains.annotations.NotNull;
@@ -80,10 +82,10 @@ import org.web3j.abi.datatypes.Type;
 import org.web3j.crypto.Keys;
 import org.web3j.protocol.Web3j;
 import org.web3j.protocol.core.methods.request.EthFilter;
-import org.web3j.protocol.core.methods.response.EthBlock;
 import org.web3j.protocol.core.methods.response.EthLog;
 import org.web3j.protocol.core.methods.response.Log;
 import org.web3j.utils.Numeric;
+import org.w3c.dom.Document;
 import org.xml.sax.SAXException;
 
 import java.io.BufferedOutputStream;
@@ -107,15 +109,19 @@ import java.util.Arrays;
 import java.util.Collections;
 import java.util.Date;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
+import java.util.Set;
 import java.util.TimeZone;
+import java.util.concurrent.Callable;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.Semaphore;
 import java.util.concurrent.TimeUnit;
 
 import io.reactivex.Completable;
+import io.reactivex.Flowable;
 import io.reactivex.Observable;
 import io.reactivex.Single;
 import io.reactivex.android.schedulers.AndroidSchedulers;
@@ -123,6 +129,7 @@ import io.reactivex.disposables.Disposable;
 import io.reactivex.schedulers.Schedulers;
 import io.realm.Case;
 import io.realm.Realm;
+import io.realm.RealmQuery;
 import io.realm.RealmResults;
 import io.realm.Sort;
 import io.realm.exceptions.RealmException;
@@ -143,7 +150,9 @@ public class AssetDefinitionService implements ParseResult, AttributeInterface
     public static final String ASSET_DETAIL_VIEW_NAME = "view";
     private static final String ASSET_DEFINITION_DB = "ASSET-db.realm";
     private static final String BUNDLED_SCRIPT = "bundled";
+    private static final int MAX_COMPILED_SCRIPT = 4 * 1024 * 1024; //well inside Realm's field limit
     private static final long CHECK_TX_LOGS_INTERVAL = 20;
+    private static final int EVENT_SCAN_CONCURRENCY = 4; //chains scanned at once
     private static final String EIP5169_ISSUER = "EIP5169-IPFS";
     private static final String TS_EXTENSION = ".tsml";
     private final Context context;
@@ -154,14 +163,16 @@ public class AssetDefinitionService implements ParseResult, AttributeInterface
     private final TokensService tokensService;
     private final TokenLocalSource tokenLocalSource;
     private final AlphaWalletService alphaWalletService;
-    private TokenDefinition cachedDefinition = null;
+    private final BlockHeaderCache blockHeaders;
+    private final TokenDefinitionCache definitionCache = new TokenDefinitionCache();
     private final ConcurrentHashMap<String, EventDefinition> eventList = new ConcurrentHashMap<>(); //List of events built during file load
     private final Semaphore assetLoadingLock;  // used to block if someone calls getAssetDefinitionASync() while loading
     private Disposable eventListener;           // timer thread that periodically checks event logs for scripts that require events
-    private final Semaphore eventConnection;
+    private final EventScanner eventScanner = new EventScanner();
     private FragmentMessenger homeMessenger;
 
     private final TokenscriptFunction tokenscriptUtility;
+    private final AttributeResolver attributeResolver = new AttributeResolver();
 
     @Nullable
     private Disposable checkEventDisposable;
@@ -172,7 +183,8 @@ public class AssetDefinitionService implements ParseResult, AttributeInterface
      *  This is the design pattern of the app. See class RepositoriesModule for constructors which are called at App init only */
     public AssetDefinitionService  (IPFSServiceType ipfsSvs, Context ctx, NotificationService svs,
                                     RealmManager rm, TokensService tokensService,
-                                    TokenLocalSource trs, AlphaWalletService alphaService)
+                                    TokenLocalSource trs, AlphaWalletService alphaService,
+                                    BlockHeaderCache blockHeaderCache)
     {
         context = ctx;
         ipfsService = ipfsSvs;
@@ -180,13 +192,13 @@ public class AssetDefinitionService implements ParseResult, AttributeInterface
         notificationService = svs;
         realmManager = rm;
         alphaWalletService = alphaService;
+        blockHeaders = blockHeaderCache;
         this.tokensService = tokensService;
         tokenscriptUtility = new TokenscriptFunction()
         {
         }; //no overridden functions
         tokenLocalSource = trs;
         assetLoadingLock = new Semaphore(1);
-        eventConnection = new Semaphore(1);
         //deleteAllEventData();
         loadAssetScripts();
     }
@@ -810,11 +822,14 @@ public class AssetDefinitionService implements ParseResult, AttributeInterface
         String address = elements[0];
         long chainId = Long.parseLong(elements[1]);
 
-        if (checkCachedDefinition(chainId, address) != null)
+        result = definitionCache.find(chainId, address);
+        if (result != null)
         {
-            return cachedDefinition;
+            return result;
         }
 
+        String fileHash = null;
+        String filePath = null;
         try (Realm realm = realmManager.getRealmInstance(ASSET_DEFINITION_DB))
         {
             RealmTokenScriptData tsData = realm.where(RealmTokenScriptData.class)
@@ -823,16 +838,26 @@ public class AssetDefinitionService implements ParseResult, AttributeInterface
 
             if (tsData != null)
             {
-                if (tsData.getFileHash().equals(BUNDLED_SCRIPT)) //handle bundled scripts
-                {
-                    cachedDefinition = getBundledDefinition(tsData.getFilePath());
-                }
-                else
-                {
-                    TokenScriptFile tf = new TokenScriptFile(context, tsData.getFilePath());
-                    cachedDefinition = parseFile(tf.getInputStream());
-                }
-                result = cachedDefinition;
+                fileHash = tsData.getFileHash();
+                filePath = tsData.getFilePath();
+            }
+        }
+
+        try
+        {
+            if (fileHash == null)
+            {
+                return null;
+            }
+            else if (fileHash.equals(BUNDLED_SCRIPT)) //handle bundled scripts
+            {
+                final String asset = filePath;
+                result = loadDefinition(fileHash, filePath, () -> context.getResources().getAssets().open(asset));
+            }
+            else
+            {
+                TokenScriptFile tf = new TokenScriptFile(context, filePath);
+                result = loadDefinition(fileHash, filePath, tf::getInputStream);
             }
         }
         catch (Exception e)
@@ -843,22 +868,90 @@ public class AssetDefinitionService implements ParseResult, AttributeInterface
         return result;
     }
 
-    private TokenDefinition checkCachedDefinition(long chainId, String address)
+    /**
+     * Definition for the script with this hash: the one already in memory, else rebuilt from the precompiled form kept
+     * with its script entries, else parsed from the script and compiled for next time.
+     */
+    private TokenDefinition loadDefinition(String fileHash, String filePath, Callable<InputStream> script) throws Exception
     {
-        if (cachedDefinition != null)
+        //bundled scripts are all entered under the same hash; they're told apart by asset path
+        String scriptKey = fileHash.equals(BUNDLED_SCRIPT) ? BUNDLED_SCRIPT + ":" + filePath : fileHash;
+        TokenDefinition td = definitionCache.get(scriptKey);
+        if (td != null) return td;
+
+        byte[] compiled = getCompiledScript(fileHash, filePath, scriptKey);
+        if (compiled != null)
         {
-            //only match holding token
-            ContractInfo holdingContracts = cachedDefinition.contracts.get(cachedDefinition.holdingToken);
-            if (holdingContracts != null && holdingContracts.addresses.containsKey(chainId))
+            try
             {
-                for (String addr : holdingContracts.addresses.get(chainId))
-                {
-                    if (addr.equalsIgnoreCase(address.toLowerCase())) return cachedDefinition;
-                }
+                td = CompiledTokenDefinition.load(compiled, getLocale(), this);
+            }
+            catch (Exception e)
+            {
+                Timber.w(e, "Discarding compiled script %s", scriptKey);
             }
         }
 
-        return null;
+        if (td == null)
+        {
+            Document xml;
+            try (InputStream input = script.call())
+            {
+                xml = CompiledTokenDefinition.parseDocument(input);
+            }
+
+            //compile before TokenDefinition reads the tree, so the stored form is the tree as parsed
+            compiled = CompiledTokenDefinition.compile(xml, scriptKey);
+            td = new TokenDefinition(xml, getLocale(), this);
+            storeCompiledScript(fileHash, filePath, compiled);
+        }
+
+        definitionCache.put(scriptKey, td);
+        return td;
+    }
+
+    private byte[] getCompiledScript(String fileHash, String filePath, String scriptKey)
+    {
+        try (Realm realm = realmManager.getRealmInstance(ASSET_DEFINITION_DB))
+        {
+            RealmQuery<RealmTokenScriptData> query = realm.where(RealmTokenScriptData.class)
+                    .equalTo("fileHash", fileHash)
+                    .isNotNull("compiledScript");
+            if (fileHash.equals(BUNDLED_SCRIPT)) query = query.equalTo("filePath", filePath);
+
+            RealmTokenScriptData tsData = query.findFirst();
+            byte[] compiled = tsData != null ? tsData.getCompiledScript() : null;
+            return compiled != null && CompiledTokenDefinition.matches(compiled, scriptKey) ? compiled : null;
+        }
+        catch (Exception e)
+        {
+            Timber.e(e);
+            return null;
+        }
+    }
+
+    // Keep the compiled form on every entry made from this script; written off the caller's thread
+    private void storeCompiledScript(String fileHash, String filePath, byte[] compiled)
+    {
+        if (compiled.length > MAX_COMPILED_SCRIPT) return;
+
+        Completable.fromAction(() -> {
+            try (Realm realm = realmManager.getRealmInstance(ASSET_DEFINITION_DB))
+            {
+                realm.executeTransaction(r -> {
+                    RealmQuery<RealmTokenScriptData> query = r.where(RealmTokenScriptData.class)
+                            .equalTo("fileHash", fileHash);
+                    if (fileHash.equals(BUNDLED_SCRIPT)) query = query.equalTo("filePath", filePath);
+
+                    for (RealmTokenScriptData entry : query.findAll())
+                    {
+                        entry.setCompiledScript(compiled);
+                    }
+                });
+            }
+        }).subscribeOn(Schedulers.io())
+          .subscribe(() -> { }, this::onError)
+          .isDisposed();
     }
 
     public TokenScriptFile getTokenScriptFile(long chainId, String address)
@@ -1046,16 +1139,16 @@ public class AssetDefinitionService implements ParseResult, AttributeInterface
             return null;
         }
 
-        if (checkCachedDefinition(token.tokenInfo.chainId, token.getAddress()) != null)
+        TokenDefinition td = definitionCache.find(token.tokenInfo.chainId, token.getAddress());
+        if (td != null)
         {
-            return cachedDefinition;
+            return td;
         }
 
         try
         {
             TokenScriptFile tsf = getTokenScriptFile(token);
-            cachedDefinition = parseFile(tsf.getInputStream());
-            return cachedDefinition;
+            return loadDefinition(tsf.calcMD5(), tsf.getAbsolutePath(), tsf::getInputStream);
         }
         catch (Exception e)
         {
@@ -1201,10 +1294,13 @@ public class AssetDefinitionService implements ParseResult, AttributeInterface
 
     private TokenDefinition parseFile(InputStream xmlInputStream) throws Exception
     {
-        Locale locale = context.getResources().getConfiguration().getLocales().get(0);
-
         return new TokenDefinition(
-                xmlInputStream, locale, this);
+                xmlInputStream, getLocale(), this);
+    }
+
+    private Locale getLocale()
+    {
+        return context.getResources().getConfiguration().getLocales().get(0);
     }
 
     private Single<TokenDefinition> handleNewTSFile(File newFile)
@@ -1238,7 +1334,7 @@ public class AssetDefinitionService implements ParseResult, AttributeInterface
                 boolean isDebugOverride = tsf.isDebug();
                 //remove all old definitions & certificates
                 updateScriptEntriesInRealm(originContracts, isDebugOverride, tsf.calcMD5(), schemaUID);
-                cachedDefinition = td;
+                definitionCache.put(tsf.calcMD5(), td);
                 return tsf;
         }).flatMap(tt -> cacheSignature(tsf, td))
           .map(a -> fileLoadComplete(originContracts, tsf, td));
@@ -1659,21 +1755,6 @@ public class AssetDefinitionService implements ParseResult, AttributeInterface
         return false;
     }
 
-    private TokenDefinition getBundledDefinition(String asset)
-    {
-        TokenDefinition td = null;
-        try (InputStream input = context.getResources().getAssets().open(asset))
-        {
-            td = parseFile(input);
-        }
-        catch (Exception e)
-        {
-            Timber.e(e);
-        }
-
-        return td;
-    }
-
     private void updateRealmForBundledScript(long chainId, String address, String asset, TokenDefinition td)
     {
         try (Realm realm = realmManager.getRealmInstance(ASSET_DEFINITION_DB))
@@ -1692,6 +1773,7 @@ public class AssetDefinitionService implements ParseResult, AttributeInterface
                 entry.setViewList(td.getViews());
                 entry.setSchemaUID(td.getAttestationSchemaUID());
                 entry.setFileHash(BUNDLED_SCRIPT);
+                entry.setCompiledScript(null); //asset may have changed with the app
             });
         }
     }
@@ -1764,74 +1846,84 @@ public class AssetDefinitionService implements ParseResult, AttributeInterface
         if (eventListener != null && !eventListener.isDisposed()) eventListener.dispose();
         eventListener = Observable.interval(0, CHECK_TX_LOGS_INTERVAL, TimeUnit.SECONDS)
                 .doOnNext(l -> {
-                    checkEvents()
+                    if (checkEventDisposable != null && !checkEventDisposable.isDisposed()) return; //previous scan still running
+                    checkEventDisposable = checkEvents()
                             .subscribeOn(Schedulers.io())
                             .observeOn(AndroidSchedulers.mainThread())
-                            .subscribe(() -> {}, t -> {}) //results are handled within logging function
-                            .isDisposed();
+                            .subscribe(() -> {}, Timber::w); //results are handled within logging function
                 }).subscribe();
     }
 
     private Completable checkEvents()
     {
-        //check events for corresponding tokens
-        return Completable.fromAction(() -> {
-            for (EventDefinition ev : eventList.values())
-            {
-                getEvent(ev);
-            }
+        //check events for corresponding tokens; definitions on the same contract share a scan, and chains run in parallel
+        return Completable.defer(() -> {
+            final String walletAddress = tokensService.getCurrentAddress();
+            return Flowable.fromIterable(getEventSubscriptions().entrySet())
+                    .flatMapCompletable(chain -> Completable.fromAction(() -> scanChainEvents(chain.getKey(), chain.getValue(), walletAddress))
+                            .subscribeOn(Schedulers.io())
+                            .doOnError(Timber::w)
+                            .onErrorComplete(), false, EVENT_SCAN_CONCURRENCY);
         });
     }
 
-    private void getEvent(EventDefinition ev)
+    private Map<Long, Map<String, List<EventScanner.Subscription>>> getEventSubscriptions()
     {
-        try
-        {
-            EthFilter filter = getEventFilter(ev);
-            if (filter == null) return;
-            if (BuildConfig.DEBUG)
-                eventConnection.acquire(); //prevent overlapping event calls while debugging
-            final String walletAddress = tokensService.getCurrentAddress();
-            Web3j web3j = getWeb3jService(ev.getEventChainId());
-
-            checkEventDisposable = handleLogs(ev, filter, web3j, walletAddress)
-                    .subscribeOn(Schedulers.io())
-                    .observeOn(Schedulers.computation())
-                    .subscribe();
-        }
-        catch (Exception e)
+        Map<Long, Map<String, List<EventScanner.Subscription>>> subscriptions = new HashMap<>();
+        for (EventDefinition ev : eventList.values())
         {
-            Timber.e(e);
-        }
-    }
-
-    private Single<String> handleLogs(EventDefinition ev, EthFilter filter, Web3j web3j, final String walletAddress)
-    {
-        return Single.fromCallable(() -> {
-            String txHash = "";
             try
             {
-                EthLog ethLogs = web3j.ethGetLogs(filter).send();
-                txHash = processLogs(ev, ethLogs.getLogs(), walletAddress);
+                EthFilter filter = getEventFilter(ev);
+                if (filter == null || filter.getAddress() == null || filter.getAddress().isEmpty()) continue;
+                long chainId = ev.contract.addresses.keySet().iterator().next();
+                String address = filter.getAddress().get(0).toLowerCase();
+                subscriptions.computeIfAbsent(chainId, id -> new HashMap<>())
+                        .computeIfAbsent(address, a -> new ArrayList<>())
+                        .add(new EventScanner.Subscription(ev, filter));
             }
             catch (Exception e)
             {
                 Timber.e(e);
             }
-            finally
+        }
+
+        return subscriptions;
+    }
+
+    private void scanChainEvents(long chainId, Map<String, List<EventScanner.Subscription>> contracts, String walletAddress) throws IOException
+    {
+        Web3j web3j = getWeb3jService(chainId);
+        long latestBlock = web3j.ethBlockNumber().send().getBlockNumber().longValue();
+        long maxSpan = Long.MAX_VALUE;
+        long earliestBlock = 0;
+        if (EthereumNetworkBase.isEventBlockLimitEnforced(chainId))
+        {
+            //as EventSync: the node won't serve the whole history, so start new definitions from recent blocks
+            maxSpan = EthereumNetworkBase.getMaxEventFetch(chainId).longValue();
+            earliestBlock = Math.max(0, latestBlock - maxSpan * 3);
+        }
+
+        EventScanner.Listener store = new EventScanner.Listener()
+        {
+            @Override
+            public void onLogs(EventDefinition ev, List<EthLog.LogResult> logs) throws IOException
             {
-                if (BuildConfig.DEBUG) eventConnection.release();
+                processLogs(ev, logs, walletAddress);
             }
-            return txHash;
-        });
-        //More elegant, but requires a private node
-//        return web3j.ethLogFlowable(filter)
-//                .subscribeOn(Schedulers.io())
-//                .observeOn(AndroidSchedulers.mainThread())
-//                .subscribe(log -> {
-//            Timber.d("log.toString(): " +  log.toString());
-//            //TODO here: callback to event service listener
-//        }, this::onLogError);
+
+            @Override
+            public void onCheckpoint(EventDefinition ev, long nextBlock)
+            {
+                storeEventCheckpoint(walletAddress, ev, nextBlock);
+            }
+        };
+
+        for (Map.Entry<String, List<EventScanner.Subscription>> contract : contracts.entrySet())
+        {
+            eventScanner.scan(chainId, contract.getKey(), contract.getValue(), earliestBlock, latestBlock, maxSpan,
+                    filter -> web3j.ethGetLogs(filter).send(), store);
+        }
     }
 
     private EthFilter getEventFilter(EventDefinition ev) throws Exception
@@ -1846,13 +1938,13 @@ public class AssetDefinitionService implements ParseResult, AttributeInterface
         return EventUtils.generateLogFilter(ev, originToken, this);
     }
 
-    private String processLogs(EventDefinition ev, List<EthLog.LogResult> logs, String walletAddress)
+    private void processLogs(EventDefinition ev, List<EthLog.LogResult> logs, String walletAddress) throws IOException
     {
-        if (logs == null || logs.isEmpty()) return ""; //early return
+        if (logs == null || logs.isEmpty()) return; //early return
         long chainId = ev.contract.addresses.keySet().iterator().next();
-        Web3j web3j = getWeb3jService(chainId);
 
-        String firstTxHash = "";
+        Map<String, BlockHeaderCache.Header> blockTimes = ev.parentAttribute == null
+                ? blockHeaders.getHeaders(chainId, getBlockHashes(logs)) : Collections.emptyMap();
 
         int index = logs.size() - 1;
 
@@ -1860,15 +1952,7 @@ public class AssetDefinitionService implements ParseResult, AttributeInterface
         {
             EthLog.LogResult<?> ethLog = logs.get(i);
             String txHash = ((Log) ethLog.get()).getTransactionHash();
-            if (TextUtils.isEmpty(firstTxHash)) firstTxHash = txHash;
             String selectVal = EventUtils.getSelectVal(ev, ethLog);
-            BigInteger blockNumber = ((Log) ethLog.get()).getBlockNumber();
-
-            if (blockNumber.compareTo(ev.readBlock) > 0)
-            {
-                //Should store the latest event value
-                storeLatestEventBlockTime(walletAddress, ev, blockNumber);
-            }
 
             if (ev.parentAttribute != null)
             {
@@ -1876,21 +1960,36 @@ public class AssetDefinitionService implements ParseResult, AttributeInterface
             }
             else
             {
-                EthBlock txBlock = EventUtils.getBlockDetails(((Log) ethLog.get()).getBlockHash(), web3j).blockingGet();
-                long blockTime = txBlock.getBlock().getTimestamp().longValue();
+                String blockHash = ((Log) ethLog.get()).getBlockHash();
+                BlockHeaderCache.Header header = blockHash != null ? blockTimes.get(blockHash.trim().toLowerCase()) : null;
+                if (header == null)
+                {
+                    //fail the chunk so its checkpoint isn't stored and the next scan reads these logs again
+                    throw new IOException("No block header for " + blockHash + " on chain " + chainId);
+                }
+                long blockTime = header.timestamp;
 
                 storeActivityValue(walletAddress, ev, ethLog, blockTime, ev.activityName);
 
                 TransactionsService.addTransactionHashFetch(txHash, chainId, walletAddress);
             }
         }
+    }
 
-        return firstTxHash;
+    private Set<String> getBlockHashes(List<EthLog.LogResult> logs)
+    {
+        Set<String> blockHashes = new HashSet<>();
+        for (EthLog.LogResult<?> ethLog : logs)
+        {
+            String blockHash = ((Log) ethLog.get()).getBlockHash();
+            if (blockHash != null) blockHashes.add(blockHash);
+        }
+        return blockHashes;
     }
 
-    private void storeLatestEventBlockTime(String walletAddress, EventDefinition ev, BigInteger readBlock)
+    // Record the next block to read for the event; see updateEventList
+    private void storeEventCheckpoint(String walletAddress, EventDefinition ev, long nextBlock)
     {
-        ev.readBlock = readBlock.add(BigInteger.ONE);
         try (Realm realm = realmManager.getRealmInstance(walletAddress))
         {
             long chainId = ev.getEventChainId();
@@ -1904,7 +2003,7 @@ public class AssetDefinitionService implements ParseResult, AttributeInterface
                 if (realmToken == null)
                     realmToken = r.createObject(RealmAuxData.class, databaseKey);
                 realmToken.setResultTime(System.currentTimeMillis());
-                realmToken.setResult(ev.readBlock.toString(16));
+                realmToken.setResult(Long.toHexString(nextBlock));
                 realmToken.setFunctionId(eventName);
                 realmToken.setChainId(chainId);
                 realmToken.setTokenAddress("");
@@ -2463,24 +2562,9 @@ public class AssetDefinitionService implements ParseResult, AttributeInterface
     private Map<BigInteger, Map<String, TokenScriptResult.Attribute>> getRequiredAttributeResults(List<String> requiredAttrNames, List<BigInteger> tokenIds,
                                                                                                   TokenDefinition td, Token token, UpdateType update)
     {
-        Map<BigInteger, Map<String, TokenScriptResult.Attribute>> resultSet = new HashMap<>();
-        for (BigInteger tokenId : tokenIds)
-        {
-            for (String attrName : requiredAttrNames)
-            {
-                Attribute attr = td.attributes.get(attrName);
-                if (attr == null) continue;
-                BigInteger useTokenId = td.useZeroForTokenIdAgnostic(attrName, tokenId);
-                TokenScriptResult.Attribute attrResult = tokenscriptUtility.fetchAttrResult(token, attr, useTokenId, td, this, ViewType.VIEW, update).blockingGet();
-                if (attrResult != null)
-                {
-                    Map<String, TokenScriptResult.Attribute> tokenIdMap = resultSet.computeIfAbsent(useTokenId, k -> new HashMap<>());
-                    tokenIdMap.put(attrName, attrResult);
-                }
-            }
-        }
-
-        return resultSet;
+        //each distinct attribute value is fetched once, a few at a time, rather than per tokenId in sequence
+        return attributeResolver.resolve(td, requiredAttrNames, tokenIds,
+                (attr, tokenId) -> tokenscriptUtility.fetchAttrResult(token, attr, tokenId, td, this, ViewType.VIEW, update).blockingGet());
     }
 
     private List<String> getRequiredAttributeNames(Map<String, TSAction> actions, TokenDefinition td)
@@ -2745,7 +2829,7 @@ public class AssetDefinitionService implements ParseResult, AttributeInterface
         EventDefinition ev = eventList.get(eventKey);
         if (ev != null)
         {
-            ev.readBlock = new BigInteger(eventData.getResult(), 16).add(BigInteger.ONE); // add one so we don't pick up the same event again
+            ev.readBlock = new BigInteger(eventData.getResult(), 16); // stored value is the next block to read
         }
     }
 
@@ -3001,7 +3085,7 @@ public class AssetDefinitionService implements ParseResult, AttributeInterface
         tokenscriptUtility.buildAttrMap(attrList);
         return Observable.fromIterable(attrList)
                 .flatMap(attr -> tokenscriptUtility.fetchAttrResult(token, attr, tokenId,
-                        td, this, itemView, update).toObservable());
+                        td, this, itemView, update).toObservable(), AttributeResolver.MAX_CONCURRENT_FETCHES);
     }
 
     public Observable<TokenScriptResult.Attribute> resolveAttrs(Token token, List<BigInteger> tokenIds, List<Attribute> extraAttrs, UpdateType update)
@@ -3076,11 +3160,11 @@ public class AssetDefinitionService implements ParseResult, AttributeInterface
     }
 
     /**
-     * Clear the currently cached definition. This forces the service to reload the definition so it's clean for the next usage.
+     * Clear the cached definitions. This forces the service to reload the definition so it's clean for the next usage.
      */
     public void clearCache()
     {
-        cachedDefinition = null;
+        definitionCache.clear();
     }
 
     public ContractLocator getHoldingContract(String importFileName)
@@ -3182,16 +3266,9 @@ public class AssetDefinitionService implements ParseResult, AttributeInterface
         {
             try
             {
-                TokenDefinition td;
-                if (checkCachedDefinition(token.tokenInfo.chainId, token.getAddress()) != null)
-                {
-                    td = cachedDefinition;
-                }
-                else
-                {
-                    td = parseFile(tf.getInputStream());
-                    cachedDefinition = td;
-                }
+                TokenDefinition cached = definitionCache.find(token.tokenInfo.chainId, token.getAddress());
+                final TokenDefinition td = cached != null ? cached
+                        : loadDefinition(tf.calcMD5(), tf.getAbsolutePath(), tf::getInputStream);
 
                 return Single.fromCallable(() -> td);
             }
@@ -0,0 +1,366 @@
+package com.alphawallet.app.service;
+
+import static com.alphawallet.app.repository.TokensRealmSource.databaseKey;
+
+import android.text.format.DateUtils;
+
+import com.alphawallet.app.entity.ContractType;
+import com.alphawallet.app.entity.tokens.TokenCardMeta;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+
+/**
+ * In-memory balance check queue for TokensService.
+ *
+ * Tokens wait in a heap keyed by the time they next become due (last check + update interval). Each tick only the
+ * tokens which have come due are moved out of the heap and scored, so the cost of picking the next token scales
+ * with the number of due tokens rather than the number of tokens in the wallet. The token list is only re-read
+ * from the database on {@link #refresh}; between refreshes check times are tracked here.
+ *
+ * The heap is lazy: when a token's due time changes a new node is pushed and the old one is skipped when popped.
+ */
+public class BalanceUpdateScheduler
+{
+    public static final long REFRESH_INTERVAL = 5 * DateUtils.SECOND_IN_MILLIS;
+
+    /**
+     * Update heuristics, supplied by TokensService
+     */
+    public interface UpdatePolicy
+    {
+        /**
+         * @return true if the token may be checked at all right now (sync state, app focus etc)
+         */
+        boolean canUpdate(TokenCardMeta meta);
+
+        /**
+         * @return minimum time between balance checks for this token
+         */
+        long updateInterval(TokenCardMeta meta, long currentTime);
+
+        /**
+         * @return priority of a due token; the highest is checked first
+         */
+        float updatePriority(TokenCardMeta meta, long currentTime);
+    }
+
+    public static class Selection
+    {
+        public final TokenCardMeta token;
+        public final List<TokenCardMeta> dueOnChain; //other due, enabled ERC20 on the same chain
+
+        Selection(TokenCardMeta token, List<TokenCardMeta> dueOnChain)
+        {
+            this.token = token;
+            this.dueOnChain = dueOnChain;
+        }
+    }
+
+    private static class Entry
+    {
+        final String key;
+        TokenCardMeta meta;
+        long dueTime;
+        int version;
+
+        Entry(String key, TokenCardMeta meta)
+        {
+            this.key = key;
+            this.meta = meta;
+        }
+    }
+
+    private static class HeapNode implements Comparable<HeapNode>
+    {
+        final Entry entry;
+        final long dueTime;
+        final int version;
+
+        HeapNode(Entry entry)
+        {
+            this.entry = entry;
+            this.dueTime = entry.dueTime;
+            this.version = entry.version;
+        }
+
+        boolean isStale()
+        {
+            return version != entry.version;
+        }
+
+        @Override
+        public int compareTo(HeapNode other)
+        {
+            return Long.compare(dueTime, other.dueTime);
+        }
+    }
+
+    private final UpdatePolicy policy;
+    private final Map<String, Entry> entries = new HashMap<>();
+    private final PriorityQueue<HeapNode> waiting = new PriorityQueue<>();
+    private final Map<String, Entry> due = new LinkedHashMap<>();
+    private final Map<Long, Set<Entry>> chainIndex = new HashMap<>();
+    private final Map<String, Long> restoredChecks = new HashMap<>();
+    private long lastRefresh = 0;
+    private boolean dirty = true;
+
+    public BalanceUpdateScheduler(UpdatePolicy policy)
+    {
+        this.policy = policy;
+    }
+
+    /**
+     * @return true if the token list should be re-read from the database
+     */
+    public synchronized boolean needsRefresh(long currentTime)
+    {
+        return dirty || currentTime > lastRefresh + REFRESH_INTERVAL;
+    }
+
+    /**
+     * Force a database re-read on the next tick; eg the network filters changed
+     */
+    public synchronized void invalidate()
+    {
+        dirty = true;
+    }
+
+    public synchronized void clear()
+    {
+        entries.clear();
+        waiting.clear();
+        due.clear();
+        chainIndex.clear();
+        restoredChecks.clear();
+        dirty = true;
+    }
+
+    /**
+     * @return the last time the token was checked, or -1 if the scheduler doesn't know the token
+     */
+    public synchronized long getLastChecked(String key)
+    {
+        Entry entry = entries.get(key);
+        if (entry != null) return entry.meta.lastUpdate;
+        Long restored = restoredChecks.get(key);
+        return restored != null ? restored : -1;
+    }
+
+    /**
+     * @return last check time of every token, keyed by databaseKey; see {@link #restoreCheckTimes}
+     */
+    public synchronized Map<String, Long> getCheckTimes()
+    {
+        Map<String, Long> checkTimes = new HashMap<>(entries.size());
+        for (Entry entry : entries.values())
+        {
+            checkTimes.put(entry.key, entry.meta.lastUpdate);
+        }
+        return checkTimes;
+    }
+
+    /**
+     * Carry check times over from an earlier run for the same wallet, so tokens checked recently aren't all due at
+     * once. They're reported by {@link #getLastChecked} until the next {@link #refresh} takes them up.
+     */
+    public synchronized void restoreCheckTimes(Map<String, Long> checkTimes)
+    {
+        restoredChecks.putAll(checkTimes);
+    }
+
+    /**
+     * Reconcile with a fresh read of the token list. Check times in the metas must already be merged
+     * with {@link #getLastChecked}. Tokens missing from the list are dropped.
+     */
+    public synchronized void refresh(TokenCardMeta[] metas, long currentTime)
+    {
+        Set<String> present = new HashSet<>(metas.length);
+        for (TokenCardMeta meta : metas)
+        {
+            String key = databaseKey(meta.getChain(), meta.getAddress());
+            present.add(key);
+            Entry entry = entries.get(key);
+            if (entry == null)
+            {
+                entry = new Entry(key, meta);
+                entries.put(key, entry);
+                indexChain(entry);
+            }
+            else
+            {
+                entry.meta = meta;
+            }
+
+            schedule(entry, currentTime, false);
+        }
+
+        Iterator<Map.Entry<String, Entry>> itr = entries.entrySet().iterator();
+        while (itr.hasNext())
+        {
+            Entry entry = itr.next().getValue();
+            if (!present.contains(entry.key))
+            {
+                itr.remove();
+                remove(entry);
+            }
+        }
+
+        compact();
+        restoredChecks.clear();
+        lastRefresh = currentTime;
+        dirty = false;
+    }
+
+    /**
+     * Record a balance check. The token goes back into the heap with its next due time
+     */
+    public synchronized void markChecked(String key, long checkTime)
+    {
+        Entry entry = entries.get(key);
+        if (entry == null) return;
+        entry.meta.lastUpdate = checkTime;
+        schedule(entry, checkTime, true);
+    }
+
+    public synchronized void remove(String key)
+    {
+        Entry entry = entries.remove(key);
+        if (entry != null) remove(entry);
+    }
+
+    /**
+     * Re-evaluate update intervals for every token; call when a heuristic input which affects all tokens changes (focus token)
+     */
+    public synchronized void reschedule(long currentTime)
+    {
+        for (Entry entry : entries.values())
+        {
+            schedule(entry, currentTime, true);
+        }
+    }
+
+    /**
+     * Re-evaluate update intervals for one chain; call when the chain is marked pending or the pending state expires
+     */
+    public synchronized void rescheduleChain(long chainId, long currentTime)
+    {
+        Set<Entry> onChain = chainIndex.get(chainId);
+        if (onChain == null) return;
+        for (Entry entry : onChain)
+        {
+            schedule(entry, currentTime, true);
+        }
+    }
+
+    /**
+     * @return highest priority due token which may be updated, plus the other due ERC20 on its chain, or null if nothing is due.
+     * Does not mark anything as checked.
+     */
+    public synchronized Selection next(long currentTime)
+    {
+        while (!waiting.isEmpty() && waiting.peek().dueTime < currentTime)
+        {
+            HeapNode node = waiting.poll();
+            if (!node.isStale()) due.put(node.entry.key, node.entry);
+        }
+
+        Entry highest = null;
+        float highestPriority = 0;
+        List<Entry> eligible = new ArrayList<>();
+        for (Entry entry : due.values())
+        {
+            if (!policy.canUpdate(entry.meta)) continue;
+            eligible.add(entry);
+            float priority = policy.updatePriority(entry.meta, currentTime);
+            if (priority > highestPriority)
+            {
+                highestPriority = priority;
+                highest = entry;
+            }
+        }
+
+        if (highest == null) return null;
+
+        List<TokenCardMeta> dueOnChain = new ArrayList<>();
+        for (Entry entry : eligible)
+        {
+            if (entry != highest && entry.meta.getChain() == highest.meta.getChain()
+                    && entry.meta.type == ContractType.ERC20 && entry.meta.isEnabled)
+            {
+                dueOnChain.add(entry.meta);
+            }
+        }
+
+        return new Selection(highest.meta, dueOnChain);
+    }
+
+    public synchronized int size()
+    {
+        return entries.size();
+    }
+
+    public synchronized int dueCount()
+    {
+        return due.size();
+    }
+
+    // Compute due time; push a new heap node if it moved (or always, if forced)
+    private void schedule(Entry entry, long currentTime, boolean force)
+    {
+        long dueTime = entry.meta.lastUpdate + policy.updateInterval(entry.meta, currentTime);
+        boolean queued = due.containsKey(entry.key) || entry.version > 0;
+        if (!force && queued && dueTime == entry.dueTime) return;
+
+        entry.dueTime = dueTime;
+        entry.version++;
+        due.remove(entry.key);
+        if (dueTime < currentTime)
+        {
+            due.put(entry.key, entry);
+        }
+        else
+        {
+            waiting.add(new HeapNode(entry));
+        }
+    }
+
+    // Drop stale heap nodes once they outnumber the live ones
+    private void compact()
+    {
+        if (waiting.size() <= 2 * entries.size() + 64) return;
+        List<HeapNode> live = new ArrayList<>(entries.size());
+        for (HeapNode node : waiting)
+        {
+            if (!node.isStale()) live.add(node);
+        }
+        waiting.clear();
+        waiting.addAll(live);
+    }
+
+    private void remove(Entry entry)
+    {
+        entry.version++; //invalidates any heap node
+        due.remove(entry.key);
+        Set<Entry> onChain = chainIndex.get(entry.meta.getChain());
+        if (onChain != null) onChain.remove(entry);
+    }
+
+    private void indexChain(Entry entry)
+    {
+        Set<Entry> onChain = chainIndex.get(entry.meta.getChain());
+        if (onChain == null)
+        {
+            onChain = new HashSet<>();
+            chainIndex.put(entry.meta.getChain(), onChain);
+        }
+        onChain.add(entry);
+    }
+}
@@ -0,0 +1,360 @@
+package com.alphawallet.app.service;
+
+import static com.alphawallet.app.repository.TokensRealmSource.TICKER_DB;
+
+import com.alphawallet.app.repository.EthereumNetworkBase;
+import com.alphawallet.app.repository.TokenRepository;
+import com.alphawallet.app.repository.entity.RealmBlockHeader;
+
+import org.web3j.protocol.Web3j;
+import org.web3j.protocol.core.BatchRequest;
+import org.web3j.protocol.core.BatchResponse;
+import org.web3j.protocol.core.Response;
+import org.web3j.protocol.core.methods.response.EthBlock;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+
+import io.realm.Realm;
+import io.realm.RealmResults;
+import io.realm.Sort;
+import timber.log.Timber;
+
+/**
+ * Bounded per-chain cache of block headers (number and timestamp), looked up by block hash or number.
+ *
+ * Event scans can return hundreds of logs from a handful of blocks; resolving the hashes through here costs one header
+ * request per distinct block. Misses are looked up in Realm, then fetched from the node in one go: as a web3j batch
+ * where the chain supports it, otherwise as concurrent single calls which the RPC transport coalesces. Fetched headers
+ * are persisted so block times survive a restart; the store keeps only the most recent blocks of each chain.
+ */
+public class BlockHeaderCache
+{
+    public static final int MAX_HEADERS = 512; //per chain, in memory
+    public static final int MAX_STORED = 2048; //per chain, in Realm
+    private static final int PRUNE_SLACK = 256;
+
+    public static class Header
+    {
+        public final String hash;
+        public final long number;
+        public final long timestamp;
+
+        public Header(String hash, long number, long timestamp)
+        {
+            this.hash = hash;
+            this.number = number;
+            this.timestamp = timestamp;
+        }
+    }
+
+    /**
+     * Fetches headers from the node; hashes the node doesn't know are left out of the result
+     */
+    public interface Source
+    {
+        List<Header> fetch(long chainId, List<String> hashes);
+    }
+
+    public interface Store
+    {
+        List<Header> load(long chainId, Collection<String> hashes);
+        void save(long chainId, List<Header> headers);
+    }
+
+    private final Map<Long, ChainHeaders> chains = new ConcurrentHashMap<>();
+    private final Source source;
+    private final Store store;
+
+    public BlockHeaderCache(RealmManager realmManager)
+    {
+        this(BlockHeaderCache::fetchFromNode, new RealmStore(realmManager));
+    }
+
+    public BlockHeaderCache(Source source, Store store)
+    {
+        this.source = source;
+        this.store = store;
+    }
+
+    public Header getHeader(long chainId, String blockHash)
+    {
+        return getHeaders(chainId, Collections.singletonList(blockHash)).get(normalise(blockHash));
+    }
+
+    /**
+     * Resolve a set of block hashes, fetching only those not already known
+     *
+     * @return headers keyed by lower case block hash; hashes that couldn't be resolved are absent
+     */
+    public Map<String, Header> getHeaders(long chainId, Collection<String> blockHashes)
+    {
+        ChainHeaders cache = getChain(chainId);
+        Map<String, Header> result = new HashMap<>();
+        Set<String> missing = new LinkedHashSet<>();
+
+        for (String blockHash : blockHashes)
+        {
+            if (blockHash == null) continue;
+            String hash = normalise(blockHash);
+            Header header = cache.get(hash);
+            if (header != null) result.put(hash, header);
+            else missing.add(hash);
+        }
+
+        if (missing.isEmpty()) return result;
+
+        for (Header header : store.load(chainId, missing))
+        {
+            add(cache, header, result, missing);
+        }
+
+        if (missing.isEmpty()) return result;
+
+        List<Header> fetched = new ArrayList<>();
+        for (Header header : source.fetch(chainId, new ArrayList<>(missing)))
+        {
+            if (add(cache, header, result, missing)) fetched.add(header);
+        }
+
+        if (!fetched.isEmpty()) store.save(chainId, fetched);
+
+        return result;
+    }
+
+    /**
+     * @return header for the block number if a header for that block has been seen recently, else null
+     */
+    public Header getByNumber(long chainId, long blockNumber)
+    {
+        return getChain(chainId).getByNumber(blockNumber);
+    }
+
+    private boolean add(ChainHeaders cache, Header header, Map<String, Header> result, Set<String> missing)
+    {
+        String hash = normalise(header.hash);
+        if (!missing.remove(hash)) return false;
+        Header normalised = new Header(hash, header.number, header.timestamp);
+        cache.put(normalised);
+        result.put(hash, normalised);
+        return true;
+    }
+
+    private ChainHeaders getChain(long chainId)
+    {
+        return chains.computeIfAbsent(chainId, id -> new ChainHeaders());
+    }
+
+    private static String normalise(String blockHash)
+    {
+        return blockHash.trim().toLowerCase();
+    }
+
+    private static String databaseKey(long chainId, String hash)
+    {
+        return hash + "-" + chainId;
+    }
+
+    // LRU by hash, with an index from block number to the latest hash seen at that height
+    private static class ChainHeaders
+    {
+        private final Map<Long, String> byNumber = new HashMap<>();
+        private final LinkedHashMap<String, Header> byHash = new LinkedHashMap<String, Header>(16, 0.75f, true)
+        {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Header> eldest)
+            {
+                if (size() <= MAX_HEADERS) return false;
+                byNumber.remove(eldest.getValue().number, eldest.getKey());
+                return true;
+            }
+        };
+
+        synchronized Header get(String hash)
+        {
+            return byHash.get(hash);
+        }
+
+        synchronized Header getByNumber(long number)
+        {
+            String hash = byNumber.get(number);
+            return hash != null ? byHash.get(hash) : null;
+        }
+
+        synchronized void put(Header header)
+        {
+            byHash.put(header.hash, header);
+            byNumber.put(header.number, header.hash);
+        }
+    }
+
+    private static List<Header> fetchFromNode(long chainId, List<String> hashes)
+    {
+        Web3j web3j = TokenRepository.getWeb3jService(chainId);
+        List<Header> headers = new ArrayList<>();
+        int batchLimit = EthereumNetworkBase.getBatchProcessingLimit(chainId);
+        int index = 0;
+
+        if (batchLimit > 1)
+        {
+            try
+            {
+                for (; index < hashes.size(); index += batchLimit)
+                {
+                    List<String> chunk = hashes.subList(index, Math.min(hashes.size(), index + batchLimit));
+                    BatchRequest requests = web3j.newBatch();
+                    for (String hash : chunk)
+                    {
+                        requests.add(web3j.ethGetBlockByHash(hash, false));
+                    }
+
+                    BatchResponse responses = requests.send();
+                    if (responses.getResponses().size() != chunk.size())
+                    {
+                        EthereumNetworkBase.setBatchProcessingError(chainId);
+                        break;
+                    }
+
+                    for (Response<?> rsp : responses.getResponses())
+                    {
+                        addHeader(headers, (EthBlock) rsp);
+                    }
+                }
+            }
+            catch (Exception e)
+            {
+                Timber.w(e);
+                EthereumNetworkBase.setBatchProcessingError(chainId);
+            }
+        }
+
+        if (index >= hashes.size()) return headers;
+
+        //Send the remainder together so the RPC transport can coalesce them
+        List<CompletableFuture<EthBlock>> calls = new ArrayList<>();
+        for (String hash : hashes.subList(index, hashes.size()))
+        {
+            calls.add(web3j.ethGetBlockByHash(hash, false).sendAsync());
+        }
+
+        for (CompletableFuture<EthBlock> call : calls)
+        {
+            try
+            {
+                addHeader(headers, call.get());
+            }
+            catch (ExecutionException e)
+            {
+                Timber.w(e);
+            }
+            catch (InterruptedException e)
+            {
+                Thread.currentThread().interrupt();
+                break;
+            }
+        }
+
+        return headers;
+    }
+
+    private static void addHeader(List<Header> headers, EthBlock rsp)
+    {
+        EthBlock.Block block = rsp != null ? rsp.getBlock() : null;
+        if (block == null || block.getHash() == null) return;
+        try
+        {
+            headers.add(new Header(block.getHash(), block.getNumber().longValue(), block.getTimestamp().longValue()));
+        }
+        catch (RuntimeException e) //pending block, or a node returning a malformed header
+        {
+            Timber.w(e);
+        }
+    }
+
+    private static class RealmStore implements Store
+    {
+        private final RealmManager realmManager;
+
+        RealmStore(RealmManager realmManager)
+        {
+            this.realmManager = realmManager;
+        }
+
+        @Override
+        public List<Header> load(long chainId, Collection<String> hashes)
+        {
+            List<Header> headers = new ArrayList<>();
+            String[] keys = new String[hashes.size()];
+            int i = 0;
+            for (String hash : hashes)
+            {
+                keys[i++] = databaseKey(chainId, hash);
+            }
+
+            try (Realm realm = realmManager.getRealmInstance(TICKER_DB))
+            {
+                RealmResults<RealmBlockHeader> stored = realm.where(RealmBlockHeader.class)
+                        .in("instanceKey", keys)
+                        .findAll();
+                for (RealmBlockHeader rh : stored)
+                {
+                    headers.add(new Header(rh.getHash(), rh.getBlockNumber(), rh.getTimeStamp()));
+                }
+            }
+            catch (Exception e)
+            {
+                Timber.w(e);
+            }
+
+            return headers;
+        }
+
+        @Override
+        public void save(long chainId, List<Header> headers)
+        {
+            realmManager.queueWrite(TICKER_DB, r -> {
+                for (Header header : headers)
+                {
+                    String key = databaseKey(chainId, header.hash);
+                    RealmBlockHeader rh = r.where(RealmBlockHeader.class)
+                            .equalTo("instanceKey", key)
+                            .findFirst();
+                    if (rh == null) rh = r.createObject(RealmBlockHeader.class, key);
+                    rh.setChainId(chainId);
+                    rh.setBlockNumber(header.number);
+                    rh.setTimeStamp(header.timestamp);
+                }
+
+                prune(r, chainId);
+            });
+        }
+
+        // Keep the newest MAX_STORED blocks; only prune once the slack is used so most writes skip the sort
+        private void prune(Realm r, long chainId)
+        {
+            long count = r.where(RealmBlockHeader.class).equalTo("chainId", chainId).count();
+            if (count <= MAX_STORED + PRUNE_SLACK) return;
+
+            RealmResults<RealmBlockHeader> newest = r.where(RealmBlockHeader.class)
+                    .equalTo("chainId", chainId)
+                    .sort("blockNumber", Sort.DESCENDING)
+                    .findAll();
+            long cutoff = newest.get(MAX_STORED - 1).getBlockNumber();
+            r.where(RealmBlockHeader.class)
+                    .equalTo("chainId", chainId)
+                    .lessThan("blockNumber", cutoff)
+                    .findAll()
+                    .deleteAllFromRealm();
+        }
+    }
+}
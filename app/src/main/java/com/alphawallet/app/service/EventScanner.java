@@ -0,0 +1,305 @@
+package com.alphawallet.app.service;
+
+import com.alphawallet.token.entity.EventDefinition;
+
+import org.web3j.protocol.core.DefaultBlockParameter;
+import org.web3j.protocol.core.Response;
+import org.web3j.protocol.core.methods.request.EthFilter;
+import org.web3j.protocol.core.methods.request.Filter;
+import org.web3j.protocol.core.methods.response.EthLog;
+import org.web3j.protocol.core.methods.response.Log;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import timber.log.Timber;
+
+/**
+ * Scans eth_getLogs for TokenScript event definitions in block range chunks sized to what the node will answer.
+ *
+ * All definitions on one contract are read with one filter: topic 0 is the OR of their event signatures, and each
+ * further topic the OR of their constraints (or any value if one of them doesn't constrain it). Logs are then matched
+ * back to the definitions that asked for them. The chunk span halves when the node refuses a range (too many results,
+ * range limit or timeout) and doubles after each success, and is remembered per contract between scans. Each scan
+ * sends at most MAX_REQUESTS_PER_SCAN requests per contract; at the end the progress of each definition is reported
+ * so the caller can checkpoint it, and the next scan carries on from there.
+ */
+public class EventScanner
+{
+    public static final int MAX_REQUESTS_PER_SCAN = 8;
+
+    //fragments of node errors meaning the block range or result set was too big, rather than wrong
+    private static final String[] RANGE_ERRORS = {
+            "block range", "blocks range", "range is too", "range too", "too many blocks", "more than", "results",
+            "response size", "response is too", "timeout", "timed out"
+    };
+
+    //throttling isn't about the query size; a smaller span would only send more requests
+    private static final String[] RATE_ERRORS = {
+            "rate limit", "too many requests", "request limit", "capacity", "credits"
+    };
+
+    public interface LogSource
+    {
+        EthLog getLogs(EthFilter filter) throws IOException;
+    }
+
+    public interface Listener
+    {
+        /**
+         * Logs matching the definition, in the order the node returned them. Throw if they couldn't be stored;
+         * the definition's progress then stays before the chunk
+         */
+        void onLogs(EventDefinition ev, List<EthLog.LogResult> logs) throws IOException;
+
+        /**
+         * All blocks below nextBlock have been read for the definition; called once per scan
+         */
+        void onCheckpoint(EventDefinition ev, long nextBlock);
+    }
+
+    /**
+     * One event definition with the filter it would use on its own; the filter's block range is ignored
+     */
+    public static class Subscription
+    {
+        public final EventDefinition ev;
+        final List<Set<String>> topics; //null entry = any value
+
+        public Subscription(EventDefinition ev, EthFilter filter)
+        {
+            this.ev = ev;
+            this.topics = readTopics(filter);
+        }
+
+        boolean matches(Log log)
+        {
+            List<String> logTopics = log.getTopics();
+            for (int i = 0; i < topics.size(); i++)
+            {
+                Set<String> allowed = topics.get(i);
+                if (allowed == null) continue;
+                if (logTopics == null || i >= logTopics.size() || logTopics.get(i) == null
+                        || !allowed.contains(logTopics.get(i).toLowerCase(Locale.ROOT))) return false;
+            }
+            return true;
+        }
+    }
+
+    private final Map<String, Long> spans = new ConcurrentHashMap<>(); //last good span per chain and contract
+
+    /**
+     * Read the contract's logs up to latestBlock for the subscriptions, starting at the lowest ev.readBlock
+     *
+     * @param earliestBlock where to start for a definition which has never been read
+     * @param maxSpan       largest range the chain's nodes accept in one request
+     * @return number of requests sent
+     */
+    public int scan(long chainId, String contract, List<Subscription> subs, long earliestBlock, long latestBlock,
+                    long maxSpan, LogSource source, Listener listener)
+    {
+        if (subs.isEmpty()) return 0;
+
+        String spanKey = contract.toLowerCase(Locale.ROOT) + "-" + chainId;
+        long from = latestBlock + 1;
+        for (Subscription sub : subs)
+        {
+            from = Math.min(from, startBlock(sub.ev, earliestBlock));
+        }
+
+        long span = Math.min(maxSpan, spans.getOrDefault(spanKey, maxSpan));
+        int requests = 0;
+        Map<Subscription, BigInteger> startedAt = new HashMap<>();
+        for (Subscription sub : subs) startedAt.put(sub, sub.ev.readBlock);
+
+        while (from <= latestBlock && requests < MAX_REQUESTS_PER_SCAN)
+        {
+            long to = span >= latestBlock - from + 1 ? latestBlock : from + span - 1;
+            requests++;
+
+            EthLog result;
+            try
+            {
+                result = source.getLogs(combinedFilter(contract, subs, from, to));
+            }
+            catch (InterruptedIOException e) //includes SocketTimeoutException
+            {
+                result = null;
+            }
+            catch (IOException e)
+            {
+                Timber.w(e);
+                break;
+            }
+
+            if (result == null || result.hasError())
+            {
+                Response.Error error = result != null ? result.getError() : null;
+                if ((error == null || isRangeError(error.getMessage())) && to > from)
+                {
+                    span = Math.max(1, (to - from + 1) / 2);
+                    spans.put(spanKey, span);
+                    continue;
+                }
+
+                if (error != null) Timber.w("eth_getLogs failed on chain %d: %s", chainId, error.getMessage());
+                break;
+            }
+
+            //a definition whose logs couldn't be stored keeps its place; stop so later chunks don't pass it
+            if (!dispatch(subs, result.getLogs(), to, earliestBlock, listener)) break;
+
+            if (span < maxSpan)
+            {
+                span = span > maxSpan / 2 ? maxSpan : span * 2;
+                spans.put(spanKey, span);
+            }
+            from = to + 1;
+        }
+
+        for (Subscription sub : subs)
+        {
+            if (!sub.ev.readBlock.equals(startedAt.get(sub))) listener.onCheckpoint(sub.ev, sub.ev.readBlock.longValue());
+        }
+
+        return requests;
+    }
+
+    /**
+     * Hand each definition its logs from the chunk and move it past the chunk if they were stored
+     *
+     * @return false if any definition's listener failed
+     */
+    private boolean dispatch(List<Subscription> subs, List<EthLog.LogResult> logs, long to, long earliestBlock, Listener listener)
+    {
+        Map<Subscription, List<EthLog.LogResult>> matched = new HashMap<>();
+        if (logs != null)
+        {
+            for (EthLog.LogResult<?> logResult : logs)
+            {
+                if (!(logResult.get() instanceof Log log) || log.isRemoved()) continue;
+                long block = log.getBlockNumber().longValue();
+                for (Subscription sub : subs)
+                {
+                    //skip blocks a definition already read in an earlier scan
+                    if (block < startBlock(sub.ev, earliestBlock) || !sub.matches(log)) continue;
+                    matched.computeIfAbsent(sub, s -> new ArrayList<>()).add(logResult);
+                }
+            }
+        }
+
+        boolean stored = true;
+        for (Subscription sub : subs)
+        {
+            if (startBlock(sub.ev, earliestBlock) > to) continue;
+            List<EthLog.LogResult> evLogs = matched.get(sub);
+            try
+            {
+                if (evLogs != null) listener.onLogs(sub.ev, evLogs);
+                sub.ev.readBlock = BigInteger.valueOf(to + 1);
+            }
+            catch (IOException e)
+            {
+                Timber.w(e);
+                stored = false;
+            }
+        }
+
+        return stored;
+    }
+
+    private static long startBlock(EventDefinition ev, long earliestBlock)
+    {
+        long readBlock = ev.readBlock.longValue();
+        return readBlock > 0 ? readBlock : earliestBlock;
+    }
+
+    static EthFilter combinedFilter(String contract, List<Subscription> subs, long from, long to)
+    {
+        EthFilter filter = new EthFilter(DefaultBlockParameter.valueOf(BigInteger.valueOf(from)),
+                DefaultBlockParameter.valueOf(BigInteger.valueOf(to)), contract);
+
+        int positions = 0;
+        for (Subscription sub : subs) positions = Math.max(positions, sub.topics.size());
+
+        List<Set<String>> combined = new ArrayList<>();
+        for (int i = 0; i < positions; i++)
+        {
+            Set<String> values = new LinkedHashSet<>();
+            for (Subscription sub : subs)
+            {
+                Set<String> allowed = i < sub.topics.size() ? sub.topics.get(i) : null;
+                if (allowed == null)
+                {
+                    values = null;
+                    break;
+                }
+                values.addAll(allowed);
+            }
+            combined.add(values);
+        }
+
+        //trailing wildcards add nothing
+        while (!combined.isEmpty() && combined.get(combined.size() - 1) == null) combined.remove(combined.size() - 1);
+
+        for (Set<String> values : combined)
+        {
+            if (values == null) filter.addSingleTopic(null);
+            else if (values.size() == 1) filter.addSingleTopic(values.iterator().next());
+            else filter.addOptionalTopics(values.toArray(new String[0]));
+        }
+
+        return filter;
+    }
+
+    private static List<Set<String>> readTopics(EthFilter filter)
+    {
+        List<Set<String>> topics = new ArrayList<>();
+        for (Filter.FilterTopic<?> topic : filter.getTopics())
+        {
+            Set<String> values = new LinkedHashSet<>();
+            Object value = topic.getValue();
+            if (value instanceof String single)
+            {
+                values.add(single.toLowerCase(Locale.ROOT));
+            }
+            else if (value instanceof List<?> list)
+            {
+                for (Object option : list)
+                {
+                    if (option instanceof Filter.SingleTopic st && st.getValue() != null)
+                    {
+                        values.add(st.getValue().toLowerCase(Locale.ROOT));
+                    }
+                }
+            }
+            topics.add(values.isEmpty() ? null : values);
+        }
+
+        return topics;
+    }
+
+    static boolean isRangeError(String message)
+    {
+        if (message == null) return false;
+        String lower = message.toLowerCase(Locale.ROOT);
+        for (String fragment : RATE_ERRORS)
+        {
+            if (lower.contains(fragment)) return false;
+        }
+        for (String fragment : RANGE_ERRORS)
+        {
+            if (lower.contains(fragment)) return true;
+        }
+        return false;
+    }
+}
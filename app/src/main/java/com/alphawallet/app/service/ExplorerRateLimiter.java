@@ -0,0 +1,160 @@
+package com.alphawallet.app.service;
+
+import java.net.URI;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+
+/**
+ * Gate for block explorer API calls, so per-chain sync can run concurrently without tripping explorer rate limits.
+ *
+ * A call needs a token from its explorer host's bucket, a slot for the host and a global slot. Buckets refill at a
+ * steady rate up to a small burst; when empty the caller sleeps until its token is due, before taking either slot,
+ * rather than sending a request the explorer will refuse. Several chains often share a host (eg the etherscan family), which is why limits are per
+ * host and not per chain.
+ */
+public class ExplorerRateLimiter
+{
+    public static final int DEFAULT_GLOBAL_CONCURRENCY = 6;
+    public static final int DEFAULT_HOST_CONCURRENCY = 2;
+    public static final double DEFAULT_RATE = 4.0; //requests per second per host; free explorer keys allow 5
+    public static final int DEFAULT_BURST = 4;
+
+    private static ExplorerRateLimiter instance;
+
+    private final Semaphore global;
+    private final int hostConcurrency;
+    private final double ratePerNano;
+    private final int burst;
+    private final LongSupplier clock;
+    private final Map<String, Host> hosts = new ConcurrentHashMap<>();
+
+    public static synchronized ExplorerRateLimiter get()
+    {
+        if (instance == null)
+        {
+            instance = new ExplorerRateLimiter(DEFAULT_GLOBAL_CONCURRENCY, DEFAULT_HOST_CONCURRENCY, DEFAULT_RATE, DEFAULT_BURST, System::nanoTime);
+        }
+        return instance;
+    }
+
+    public ExplorerRateLimiter(int globalConcurrency, int hostConcurrency, double ratePerSecond, int burst, LongSupplier clock)
+    {
+        this.global = new Semaphore(globalConcurrency, true);
+        this.hostConcurrency = hostConcurrency;
+        this.ratePerNano = ratePerSecond / TimeUnit.SECONDS.toNanos(1);
+        this.burst = burst;
+        this.clock = clock;
+    }
+
+    /**
+     * Held for the duration of one explorer call, including reading the body
+     */
+    public class Permit implements AutoCloseable
+    {
+        private final Host host;
+        private boolean released;
+
+        private Permit(Host host)
+        {
+            this.host = host;
+        }
+
+        /**
+         * The explorer refused the call (HTTP 429); hold back the host until a full burst has refilled
+         */
+        public void backOff()
+        {
+            host.drain();
+        }
+
+        @Override
+        public void close()
+        {
+            if (released) return;
+            released = true;
+            host.slots.release();
+            global.release();
+        }
+    }
+
+    /**
+     * Block until the call may be made
+     */
+    public Permit acquire(String url) throws InterruptedException
+    {
+        Host host = getHost(hostOf(url));
+        //wait for the host's token before taking any slot, so a paced host doesn't hold up calls to other hosts
+        long wait = host.reserve(clock.getAsLong());
+        if (wait > 0) TimeUnit.NANOSECONDS.sleep(wait);
+
+        host.slots.acquire();
+        try
+        {
+            global.acquire();
+        }
+        catch (InterruptedException e)
+        {
+            host.slots.release();
+            throw e;
+        }
+
+        return new Permit(host);
+    }
+
+    /**
+     * Take a token from the host's bucket without waiting
+     *
+     * @return nanoseconds the caller must wait before its token is due
+     */
+    long reserve(String url)
+    {
+        return getHost(hostOf(url)).reserve(clock.getAsLong());
+    }
+
+    private Host getHost(String name)
+    {
+        return hosts.computeIfAbsent(name, n -> new Host(clock.getAsLong()));
+    }
+
+    private static String hostOf(String url)
+    {
+        try
+        {
+            String host = URI.create(url).getHost();
+            return host != null ? host : url;
+        }
+        catch (IllegalArgumentException e)
+        {
+            return url;
+        }
+    }
+
+    private class Host
+    {
+        final Semaphore slots = new Semaphore(hostConcurrency, true);
+        double tokens = burst;
+        long last;
+
+        Host(long now)
+        {
+            last = now;
+        }
+
+        // Tokens may go negative: each caller reserves the next token and sleeps until it is due
+        synchronized long reserve(long now)
+        {
+            tokens = Math.min(burst, tokens + (now - last) * ratePerNano);
+            last = now;
+            tokens -= 1;
+            return tokens >= 0 ? 0 : (long) Math.ceil(-tokens / ratePerNano);
+        }
+
+        synchronized void drain()
+        {
+            tokens = Math.min(tokens, -burst);
+        }
+    }
+}
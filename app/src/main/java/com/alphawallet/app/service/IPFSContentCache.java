@@ -0,0 +1,199 @@
+package com.alphawallet.app.service;
+
+import com.alphawallet.app.util.IPFSCid;
+
+import org.web3j.crypto.Hash;
+import org.web3j.utils.Numeric;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import timber.log.Timber;
+
+/**
+ * Disk cache of IPFS content, keyed by CID and path. Content at a CID never changes, so entries never go stale; the
+ * cache is bounded in bytes and evicts least recently used entries. Access order survives a restart through the
+ * file modification time.
+ *
+ * Content that can be checked against its CID is checked before it is stored and again when it is read back.
+ */
+public class IPFSContentCache
+{
+    public static final long DEFAULT_MAX_BYTES = 32L * 1024 * 1024;
+    private static final String CACHE_DIR = "ipfs";
+    private static final String TEMP_SUFFIX = ".tmp";
+
+    private static IPFSContentCache instance;
+
+    private final File dir;
+    private final long maxBytes;
+    private final LinkedHashMap<String, Long> entries = new LinkedHashMap<>(64, 0.75f, true); //file name -> size, eldest first
+    private long totalBytes;
+
+    /**
+     * Create the app's cache under the given cache directory; called once at startup
+     */
+    public static synchronized IPFSContentCache init(File cacheRoot)
+    {
+        if (instance == null) instance = new IPFSContentCache(new File(cacheRoot, CACHE_DIR), DEFAULT_MAX_BYTES);
+        return instance;
+    }
+
+    /**
+     * @return the app's cache, or null before init (eg in unit tests)
+     */
+    public static synchronized IPFSContentCache get()
+    {
+        return instance;
+    }
+
+    public IPFSContentCache(File dir, long maxBytes)
+    {
+        this.dir = dir;
+        this.maxBytes = maxBytes;
+        load();
+    }
+
+    public byte[] get(IPFSCid cid)
+    {
+        String name = fileName(cid);
+        synchronized (this)
+        {
+            if (entries.get(name) == null) return null;
+        }
+
+        File file = new File(dir, name);
+        try
+        {
+            byte[] content = readFile(file);
+            if (cid.verify(content) == IPFSCid.Check.MISMATCH)
+            {
+                Timber.w("Cached IPFS content for %s is corrupt", cid.cid);
+                remove(name);
+                return null;
+            }
+
+            file.setLastModified(System.currentTimeMillis());
+            return content;
+        }
+        catch (IOException e)
+        {
+            remove(name); //evicted or deleted underneath us
+            return null;
+        }
+    }
+
+    /**
+     * Store content fetched for the CID; refused if it's too large to be worth caching, or if the CID names a whole
+     * file and the content couldn't be confirmed against it. Content at a path below the CID can't be checked at all
+     * and is kept as fetched
+     */
+    public boolean put(IPFSCid cid, byte[] content)
+    {
+        if (content.length > maxBytes / 4) return false;
+        if (cid.isCheckable() && cid.verify(content) != IPFSCid.Check.VERIFIED) return false;
+
+        String name = fileName(cid);
+        File target = new File(dir, name);
+        File temp = new File(dir, name + "." + Thread.currentThread().getId() + TEMP_SUFFIX);
+        try
+        {
+            if (!dir.exists() && !dir.mkdirs()) return false;
+            try (FileOutputStream out = new FileOutputStream(temp))
+            {
+                out.write(content);
+            }
+            if (!temp.renameTo(target))
+            {
+                temp.delete();
+                return false;
+            }
+        }
+        catch (IOException e)
+        {
+            Timber.w(e);
+            temp.delete();
+            return false;
+        }
+
+        synchronized (this)
+        {
+            Long previous = entries.put(name, (long) content.length);
+            totalBytes += content.length - (previous != null ? previous : 0);
+            trim();
+        }
+        return true;
+    }
+
+    public synchronized long size()
+    {
+        return totalBytes;
+    }
+
+    private void trim()
+    {
+        Iterator<Map.Entry<String, Long>> it = entries.entrySet().iterator();
+        while (totalBytes > maxBytes && it.hasNext())
+        {
+            Map.Entry<String, Long> eldest = it.next();
+            totalBytes -= eldest.getValue();
+            it.remove();
+            new File(dir, eldest.getKey()).delete();
+        }
+    }
+
+    private synchronized void remove(String name)
+    {
+        Long size = entries.remove(name);
+        if (size != null) totalBytes -= size;
+        new File(dir, name).delete();
+    }
+
+    private synchronized void load()
+    {
+        File[] files = dir.listFiles();
+        if (files == null) return;
+
+        Arrays.sort(files, Comparator.comparingLong(File::lastModified));
+        for (File file : files)
+        {
+            if (file.getName().endsWith(TEMP_SUFFIX))
+            {
+                file.delete(); //interrupted write
+                continue;
+            }
+            entries.put(file.getName(), file.length());
+            totalBytes += file.length();
+        }
+        trim();
+    }
+
+    private static byte[] readFile(File file) throws IOException
+    {
+        try (FileInputStream in = new FileInputStream(file))
+        {
+            byte[] content = new byte[(int) file.length()];
+            int read = 0;
+            while (read < content.length)
+            {
+                int count = in.read(content, read, content.length - read);
+                if (count < 0) throw new IOException("Truncated cache file");
+                read += count;
+            }
+            return content;
+        }
+    }
+
+    private static String fileName(IPFSCid cid)
+    {
+        return Numeric.cleanHexPrefix(Numeric.toHexString(Hash.sha256(cid.key().getBytes(StandardCharsets.UTF_8))));
+    }
+}
@@ -4,26 +4,54 @@ import android.text.TextUtils;
 
 import com.alphawallet.app.entity.QueryResponse;
 import com.alphawallet.app.entity.tokenscript.TestScript;
+import com.alphawallet.app.util.IPFSCid;
 import com.alphawallet.app.util.Utils;
 
 import java.io.IOException;
-import java.net.SocketTimeoutException;
-
+import java.io.InterruptedIOException;
+import java.net.HttpURLConnection;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import okhttp3.Call;
+import okhttp3.Callback;
 import okhttp3.OkHttpClient;
 import okhttp3.Request;
 import okhttp3.Response;
+import okhttp3.ResponseBody;
 import timber.log.Timber;
 
 /**
  * Created by JB on 3/11/2022.
+ *
+ * IPFS content is served from the CID cache when possible. Otherwise the gateways are raced: the first gateway gets
+ * a head start, then the next is started each time one fails or HEDGE_DELAY_MS passes without an answer. The first
+ * good response wins and the other calls are cancelled.
  */
 public class IPFSService implements IPFSServiceType
 {
+    public static final List<String> DEFAULT_GATEWAYS = Arrays.asList(Utils.IPFS_INFURA_RESOLVER, Utils.IPFS_IO_RESOLVER, Utils.IPFS_DWEB_RESOLVER);
+    private static final long HEDGE_DELAY_MS = 1000;
+
     private final OkHttpClient client;
+    private final IPFSContentCache cache;
+    private final List<String> gateways;
 
     public IPFSService(OkHttpClient okHttpClient)
+    {
+        this(okHttpClient, IPFSContentCache.get(), DEFAULT_GATEWAYS);
+    }
+
+    public IPFSService(OkHttpClient okHttpClient, IPFSContentCache cache, List<String> gateways)
     {
         this.client = okHttpClient;
+        this.cache = cache;
+        this.gateways = gateways;
     }
 
     public String getContent(String url)
@@ -82,22 +110,114 @@ public class IPFSService implements IPFSServiceType
     {
         if (isTestCode(url)) return loadTestCode();
 
-        //try Infura first
-        String tryIPFS = Utils.resolveIPFS(url, Utils.IPFS_INFURA_RESOLVER);
-        //attempt to load content
-        QueryResponse r;
+        IPFSCid cid = IPFSCid.fromUrl(url);
+        byte[] cached = (cid != null && cache != null) ? cache.get(cid) : null;
+        if (cached != null)
+        {
+            return new QueryResponse(HttpURLConnection.HTTP_OK, new String(cached, StandardCharsets.UTF_8));
+        }
+
+        byte[] content = raceGateways(url, cid);
+        if (cid != null && cache != null) cache.put(cid, content); //refused unless confirmed or uncheckable
+        return new QueryResponse(HttpURLConnection.HTTP_OK, new String(content, StandardCharsets.UTF_8));
+    }
+
+    // Result of one gateway call; content is null if the call failed
+    private static class GatewayResult
+    {
+        final byte[] content;
+        final String failure;
+
+        GatewayResult(byte[] content, String failure)
+        {
+            this.content = content;
+            this.failure = failure;
+        }
+    }
+
+    private byte[] raceGateways(String url, IPFSCid cid) throws IOException
+    {
+        BlockingQueue<GatewayResult> results = new LinkedBlockingQueue<>();
+        List<Call> calls = new ArrayList<>();
+        String lastFailure = "no gateway";
+        int finished = 0;
+
         try
         {
-            r = get(tryIPFS, null);
+            calls.add(startGatewayCall(url, gateways.get(0), cid, results));
+            while (finished < calls.size())
+            {
+                GatewayResult result = calls.size() < gateways.size()
+                        ? results.poll(HEDGE_DELAY_MS, TimeUnit.MILLISECONDS) : results.take();
+
+                if (result == null) //slow gateway; start the next one alongside it
+                {
+                    calls.add(startGatewayCall(url, gateways.get(calls.size()), cid, results));
+                    continue;
+                }
+
+                finished++;
+                if (result.content != null) return result.content;
+
+                lastFailure = result.failure;
+                if (calls.size() < gateways.size())
+                {
+                    calls.add(startGatewayCall(url, gateways.get(calls.size()), cid, results));
+                }
+            }
+        }
+        catch (InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("IPFS fetch interrupted");
         }
-        catch (SocketTimeoutException e)
+        finally
         {
-            //timeout, try second node. Any other failure simply throw back to calling function
-            tryIPFS = Utils.resolveIPFS(url, Utils.IPFS_INFURA_RESOLVER);
-            r = get(tryIPFS, null); //if this throws it will be picked up by calling function
+            for (Call call : calls) call.cancel();
         }
 
-        return r;
+        throw new IOException("IPFS fetch failed for " + url + ": " + lastFailure);
+    }
+
+    private Call startGatewayCall(String url, String gateway, IPFSCid cid, BlockingQueue<GatewayResult> results)
+    {
+        Call call = client.newCall(new Request.Builder().url(Utils.resolveIPFS(url, gateway)).get().build());
+        call.enqueue(new Callback()
+        {
+            @Override
+            public void onFailure(Call c, IOException e)
+            {
+                results.add(new GatewayResult(null, gateway + " " + e.getMessage()));
+            }
+
+            @Override
+            public void onResponse(Call c, Response response)
+            {
+                try (ResponseBody body = response.body())
+                {
+                    if (!response.isSuccessful() || body == null)
+                    {
+                        results.add(new GatewayResult(null, gateway + " HTTP " + response.code()));
+                        return;
+                    }
+
+                    byte[] content = body.bytes();
+                    if (cid != null && cid.verify(content) == IPFSCid.Check.MISMATCH)
+                    {
+                        results.add(new GatewayResult(null, gateway + " content doesn't match CID"));
+                    }
+                    else
+                    {
+                        results.add(new GatewayResult(content, null));
+                    }
+                }
+                catch (IOException e)
+                {
+                    results.add(new GatewayResult(null, gateway + " " + e.getMessage()));
+                }
+            }
+        });
+        return call;
     }
 
     private void addHeaders(Request.Builder bld, String[] headers) throws IOException
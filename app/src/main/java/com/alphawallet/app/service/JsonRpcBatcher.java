@@ -0,0 +1,333 @@
+package com.alphawallet.app.service;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import timber.log.Timber;
+
+/**
+ * Coalesces single JSON-RPC requests for one node service which arrive within a short window into one JSON-RPC batch
+ * array. Each service owns its batcher, so a batch always goes out on the client, endpoints and headers its requests
+ * were made for, and the batcher is dropped along with the service when the chain's clients are rebuilt.
+ *
+ * The first request to arrive opens the window; anything arriving before it closes rides along in the same HTTP POST.
+ * Responses are matched back to callers by JSON-RPC id. If the node rejects the batch (returns a non-array body)
+ * batching is switched off for that service and the requests are re-sent individually. Ids missing from the reply,
+ * and elements the endpoint couldn't serve (see {@link JsonValidator#isEndpointError}), are re-sent on their own,
+ * where they get the waterfall's failover; the rest of the batch completes as answered.
+ */
+public class JsonRpcBatcher
+{
+    private static final String TAG = "RPCBATCH";
+    public static final long BATCH_WINDOW_MS = 10;
+    public static final int DEFAULT_MAX_BATCH = 20;
+    private static final long RESPONSE_TIMEOUT_S = 60;
+
+    //Don't coalesce calls where error isolation matters more than the round trip
+    private static final Set<String> UNBATCHED_METHODS = new HashSet<String>()
+    {{
+        add("eth_sendRawTransaction");
+        add("eth_sendTransaction");
+    }};
+
+    //The timer only hands work over; sends block for the node's answer so they run on an unbounded pool, otherwise
+    //one slow chain would hold back every other chain's requests
+    private static final ScheduledExecutorService flushTimer = Executors.newSingleThreadScheduledExecutor(JsonRpcBatcher::daemonThread);
+    private static final ExecutorService sendExecutor = Executors.newCachedThreadPool(JsonRpcBatcher::daemonThread);
+
+    /**
+     * Sends a raw JSON-RPC payload (single request or batch array) to the node, returning the raw response body
+     */
+    public interface Transport
+    {
+        String sendRaw(String payload) throws IOException;
+    }
+
+    private final long chainId;
+    private final int maxBatch;
+    private final Transport transport;
+    private final List<PendingCall> queue = new ArrayList<>();
+    private boolean flushScheduled = false;
+    private volatile boolean batchingSupported = true;
+
+    /**
+     * @param urls the service's endpoints; the batch cap is taken from these
+     * @param transport sends every batch and single request queued on this batcher
+     */
+    public JsonRpcBatcher(long chainId, String[] urls, Transport transport)
+    {
+        this.chainId = chainId;
+        this.maxBatch = maxBatchForEndpoints(urls);
+        this.transport = transport;
+        this.batchingSupported = maxBatch > 1;
+    }
+
+    /**
+     * Batch cap for a chain is the smallest cap of any endpoint in its waterfall, since any of them may receive the batch
+     */
+    static int maxBatchForEndpoints(String[] urls)
+    {
+        int maxBatch = DEFAULT_MAX_BATCH;
+        if (urls == null) return maxBatch;
+        for (String url : urls)
+        {
+            maxBatch = Math.min(maxBatch, maxBatchForEndpoint(url));
+        }
+        return maxBatch;
+    }
+
+    private static int maxBatchForEndpoint(String url)
+    {
+        if (url == null) return DEFAULT_MAX_BATCH;
+        if (url.contains("klaytn") || url.contains("rpc.ankr.com"))
+        {
+            return 1; //these nodes don't accept batch arrays
+        }
+        else if (url.contains("cronos.org"))
+        {
+            return 5; //matches the limit noted in EthereumNetworkBase.batchProcessingLimit
+        }
+        return DEFAULT_MAX_BATCH;
+    }
+
+    public boolean isBatchingSupported()
+    {
+        return batchingSupported;
+    }
+
+    /**
+     * @return true if this request is a candidate for coalescing
+     */
+    public boolean canBatch(String request)
+    {
+        if (!batchingSupported || request == null) return false;
+        String trimmed = request.trim();
+        if (!trimmed.startsWith("{")) return false; //already a batch
+
+        for (String method : UNBATCHED_METHODS)
+        {
+            if (trimmed.contains("\"" + method + "\"")) return false;
+        }
+
+        return true;
+    }
+
+    /**
+     * Queue a single JSON-RPC request and block until its response is available
+     *
+     * @param request JSON-RPC request object
+     * @return raw JSON-RPC response object for this request
+     */
+    public String submit(String request) throws IOException
+    {
+        String id;
+        try
+        {
+            id = JsonParser.parseString(request).getAsJsonObject().get("id").toString();
+        }
+        catch (Exception e)
+        {
+            return transport.sendRaw(request);
+        }
+
+        PendingCall call = new PendingCall(id, request);
+
+        synchronized (queue)
+        {
+            queue.add(call);
+            if (queue.size() >= maxBatch)
+            {
+                sendExecutor.execute(this::flush);
+            }
+            else if (!flushScheduled)
+            {
+                flushScheduled = true;
+                flushTimer.schedule(() -> sendExecutor.execute(this::flush), BATCH_WINDOW_MS, TimeUnit.MILLISECONDS);
+            }
+        }
+
+        try
+        {
+            return call.response.get(RESPONSE_TIMEOUT_S, TimeUnit.SECONDS);
+        }
+        catch (ExecutionException e)
+        {
+            if (e.getCause() instanceof IOException) throw (IOException) e.getCause();
+            throw new IOException(e.getCause());
+        }
+        catch (InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+            throw new java.io.InterruptedIOException("Batched request interrupted");
+        }
+        catch (TimeoutException e)
+        {
+            throw new java.io.InterruptedIOException("Batched request timed out");
+        }
+    }
+
+    private void flush()
+    {
+        List<PendingCall> batch;
+        synchronized (queue)
+        {
+            if (queue.isEmpty())
+            {
+                flushScheduled = false;
+                return;
+            }
+
+            int count = Math.min(queue.size(), maxBatch);
+            batch = new ArrayList<>(queue.subList(0, count));
+            queue.subList(0, count).clear();
+
+            if (queue.isEmpty())
+            {
+                flushScheduled = false;
+            }
+            else
+            {
+                sendExecutor.execute(this::flush);
+            }
+        }
+
+        if (batch.size() == 1 || !batchingSupported || hasDuplicateIds(batch))
+        {
+            sendIndividually(batch);
+        }
+        else
+        {
+            sendBatch(batch);
+        }
+    }
+
+    private void sendBatch(List<PendingCall> batch)
+    {
+        StringBuilder payload = new StringBuilder("[");
+        for (int i = 0; i < batch.size(); i++)
+        {
+            if (i > 0) payload.append(',');
+            payload.append(batch.get(i).request);
+        }
+        payload.append(']');
+
+        try
+        {
+            String response = transport.sendRaw(payload.toString());
+            JsonElement element = JsonParser.parseString(response);
+            if (!element.isJsonArray())
+            {
+                Timber.tag(TAG).d("Batch rejected by node for chain %s, disabling batching", chainId);
+                batchingSupported = false;
+                sendIndividually(batch);
+                return;
+            }
+
+            Map<String, String> responseMap = new HashMap<>();
+            JsonArray array = element.getAsJsonArray();
+            for (JsonElement e : array)
+            {
+                if (!e.isJsonObject()) continue;
+                JsonObject obj = e.getAsJsonObject();
+                //an element the endpoint couldn't serve is left unmatched, so it's resent on its own below
+                if (!obj.has("id") || (obj.has("error") && JsonValidator.isEndpointError(obj.get("error").toString()))) continue;
+                responseMap.put(obj.get("id").toString(), obj.toString());
+            }
+
+            List<PendingCall> missing = new ArrayList<>();
+            for (PendingCall call : batch)
+            {
+                String callResponse = responseMap.get(call.id);
+                if (callResponse != null) call.response.complete(callResponse);
+                else missing.add(call);
+            }
+
+            if (!missing.isEmpty())
+            {
+                sendIndividually(missing);
+            }
+        }
+        catch (IOException e)
+        {
+            for (PendingCall call : batch) call.response.completeExceptionally(e);
+        }
+        catch (Exception e)
+        {
+            //malformed response; retry individually so callers see the node's own error handling
+            sendIndividually(batch);
+        }
+    }
+
+    /**
+     * Send each call as its own request, side by side; the last one is sent on this thread
+     */
+    private void sendIndividually(List<PendingCall> calls)
+    {
+        for (int i = 0; i < calls.size() - 1; i++)
+        {
+            PendingCall call = calls.get(i);
+            sendExecutor.execute(() -> sendSingle(call));
+        }
+
+        if (!calls.isEmpty()) sendSingle(calls.get(calls.size() - 1));
+    }
+
+    private void sendSingle(PendingCall call)
+    {
+        try
+        {
+            call.response.complete(transport.sendRaw(call.request));
+        }
+        catch (Exception e)
+        {
+            call.response.completeExceptionally(e instanceof IOException ? e : new IOException(e));
+        }
+    }
+
+    private boolean hasDuplicateIds(List<PendingCall> batch)
+    {
+        Set<String> ids = new HashSet<>();
+        for (PendingCall call : batch)
+        {
+            if (!ids.add(call.id)) return true;
+        }
+        return false;
+    }
+
+    private static Thread daemonThread(Runnable r)
+    {
+        Thread thread = new Thread(r, TAG);
+        thread.setDaemon(true);
+        return thread;
+    }
+
+    private static class PendingCall
+    {
+        final String id;
+        final String request;
+        final CompletableFuture<String> response = new CompletableFuture<>();
+
+        PendingCall(String id, String request)
+        {
+            this.id = id;
+            this.request = request;
+        }
+    }
+}
@@ -1,5 +1,6 @@
 package com.alphawallet.app.service;
 
+import org.json.JSONArray;
 import org.json.JSONException;
 import org.json.JSONObject;
 
@@ -91,20 +92,58 @@ public class JsonValidator
                 content.append(line);
             }
 
-            JSONObject thisObj = new JSONObject(content.toString());
-            if (thisObj.has(JSON_ERROR))
+            return isValidJson(content.toString());
+        }
+        catch (IOException e)
+        {
+            return false;
+        }
+    }
+
+    /**
+     * Validate a JSON-RPC response body; either a single response object or a batch response array.
+     *
+     * A batch reply is judged as a whole only on whether the endpoint served it: it's refused if it isn't an array of
+     * response objects, or if every element is an endpoint error. An error on some elements is those calls' own
+     * business; the batcher resends just those, so one failing call doesn't fail over the endpoint for the others.
+     */
+    public static boolean isValidJson(String content)
+    {
+        try
+        {
+            if (content.trim().startsWith("["))
             {
-                String error = thisObj.getString(JSON_ERROR);
-                if (error.toLowerCase().contains(UNAUTHORIZED_ERROR) || error.toLowerCase().contains(INTERNAL_ERROR))
+                JSONArray batch = new JSONArray(content);
+                boolean served = batch.length() == 0;
+                for (int i = 0; i < batch.length(); i++)
                 {
-                    return false;
+                    if (!isEndpointError(batch.getJSONObject(i))) served = true;
                 }
+                return served;
             }
-            return !content.toString().toLowerCase().contains(LIMIT_EXCEEDED);
+
+            return !isEndpointError(new JSONObject(content)) && !content.toLowerCase().contains(LIMIT_EXCEEDED);
         }
-        catch (JSONException | IOException e)
+        catch (JSONException e)
         {
             return false;
         }
     }
+
+    /**
+     * @param error the "error" member of one JSON-RPC response
+     * @return true if the error says the endpoint couldn't serve the call (unauthorized, internal error or rate limit),
+     * so another endpoint may answer it; false for the call's own failures such as a reverted eth_call
+     */
+    public static boolean isEndpointError(String error)
+    {
+        if (error == null) return false;
+        String lower = error.toLowerCase();
+        return lower.contains(UNAUTHORIZED_ERROR) || lower.contains(INTERNAL_ERROR) || lower.contains(LIMIT_EXCEEDED);
+    }
+
+    private static boolean isEndpointError(JSONObject thisObj) throws JSONException
+    {
+        return thisObj.has(JSON_ERROR) && isEndpointError(thisObj.getString(JSON_ERROR));
+    }
 }
@@ -0,0 +1,287 @@
+package com.alphawallet.app.service;
+
+import static com.alphawallet.app.repository.TokenRepository.callSmartContractFunction;
+
+import android.text.TextUtils;
+
+import com.alphawallet.app.C;
+import com.alphawallet.app.entity.QueryResponse;
+import com.alphawallet.app.entity.nftassets.NFTAsset;
+import com.alphawallet.app.entity.tokens.Token;
+import com.alphawallet.app.util.Utils;
+
+import org.web3j.abi.TypeReference;
+import org.web3j.abi.datatypes.Function;
+import org.web3j.abi.datatypes.Utf8String;
+import org.web3j.abi.datatypes.generated.Uint256;
+
+import java.io.IOException;
+import java.math.BigInteger;
+import java.net.HttpURLConnection;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+import io.reactivex.Completable;
+import io.reactivex.Observable;
+import io.reactivex.schedulers.Schedulers;
+import okhttp3.OkHttpClient;
+import timber.log.Timber;
+
+/**
+ * Shared path for NFT metadata, so opening a large collection doesn't turn into one uncoordinated request per item.
+ *
+ * - A metadata URL (or token id) already being fetched is shared by later callers instead of fetched again
+ * - Fetches hold a slot in a per-host limiter, so one slow or strict metadata host can't take every connection
+ * - A refused (HTTP 429), failed (5xx) or dropped call is retried with exponential backoff
+ * - IPFS goes through IPFSService, which races the gateways and keeps content in the CID cache
+ *
+ * Many token ids of one contract are fetched together through {@link #fetchTokenMetadata(Token, Collection)}: the
+ * tokenURI calls are made side by side so the chain's JsonRpcBatcher sends them as one batch.
+ */
+public class NFTMetadataFetcher
+{
+    public static final int MAX_CONCURRENT = 8;
+    public static final int HOST_CONCURRENCY = 3;
+    public static final double HOST_RATE = 8.0; //requests per second per host
+    public static final int HOST_BURST = 8;
+    public static final int MAX_ATTEMPTS = 4;
+    public static final long BASE_BACKOFF_MS = 500;
+    public static final long MAX_BACKOFF_MS = 8000;
+
+    /**
+     * Makes one GET for a metadata URL
+     */
+    public interface Transport
+    {
+        QueryResponse get(String url) throws IOException;
+    }
+
+    private static NFTMetadataFetcher instance;
+
+    private final Transport transport;
+    private final ExplorerRateLimiter limiter;
+    private final long baseBackoffMs;
+    private final Map<String, CompletableFuture<String>> inFlightContent = new ConcurrentHashMap<>();
+    private final Map<String, CompletableFuture<NFTAsset>> inFlightAssets = new ConcurrentHashMap<>();
+
+    public static synchronized NFTMetadataFetcher get()
+    {
+        if (instance == null)
+        {
+            IPFSService ipfs = new IPFSService(
+                    new OkHttpClient.Builder()
+                            .connectTimeout(C.CONNECT_TIMEOUT*2, TimeUnit.SECONDS)
+                            .readTimeout(C.READ_TIMEOUT*2, TimeUnit.SECONDS)
+                            .writeTimeout(C.WRITE_TIMEOUT*2, TimeUnit.SECONDS)
+                            .retryOnConnectionFailure(false)
+                            .build());
+            instance = new NFTMetadataFetcher(url -> Utils.isValidUrl(url) ? ipfs.performIO(url, null)
+                            : new QueryResponse(HttpURLConnection.HTTP_BAD_REQUEST, ""),
+                    new ExplorerRateLimiter(MAX_CONCURRENT, HOST_CONCURRENCY, HOST_RATE, HOST_BURST, System::nanoTime),
+                    BASE_BACKOFF_MS);
+        }
+        return instance;
+    }
+
+    public NFTMetadataFetcher(Transport transport, ExplorerRateLimiter limiter, long baseBackoffMs)
+    {
+        this.transport = transport;
+        this.limiter = limiter;
+        this.baseBackoffMs = baseBackoffMs;
+    }
+
+    /**
+     * @return body of the URL, or empty string if it couldn't be fetched
+     */
+    public String getContent(String url)
+    {
+        return getContent(url, transport);
+    }
+
+    /**
+     * As {@link #getContent(String)}, with the GET made by the caller (eg to add API key headers)
+     */
+    public String getContent(String url, Transport source)
+    {
+        if (url == null || url.trim().isEmpty()) return "";
+        url = url.trim();
+
+        CompletableFuture<String> fetch = new CompletableFuture<>();
+        CompletableFuture<String> existing = inFlightContent.putIfAbsent(url, fetch);
+        if (existing != null)
+        {
+            return existing.join();
+        }
+
+        String result = "";
+        try
+        {
+            result = fetchWithBackoff(url, source);
+        }
+        finally
+        {
+            inFlightContent.remove(url);
+            fetch.complete(result);
+        }
+
+        return result;
+    }
+
+    /**
+     * Read the token's metadata URI from the contract and fetch the metadata it points to
+     */
+    public NFTAsset fetchTokenMetadata(Token token, BigInteger tokenId)
+    {
+        String key = token.tokenInfo.chainId + "-" + token.getAddress().toLowerCase() + "-" + tokenId.toString();
+        CompletableFuture<NFTAsset> fetch = new CompletableFuture<>();
+        CompletableFuture<NFTAsset> existing = inFlightAssets.putIfAbsent(key, fetch);
+        if (existing != null)
+        {
+            return existing.join();
+        }
+
+        NFTAsset asset = new NFTAsset();
+        try
+        {
+            asset = loadTokenMetadata(token, tokenId);
+        }
+        finally
+        {
+            inFlightAssets.remove(key);
+            fetch.complete(asset);
+        }
+
+        return asset;
+    }
+
+    /**
+     * Fetch metadata for many token ids of one contract; blocks until all are done
+     *
+     * @return token id to asset; an id whose fetch failed is left out
+     */
+    public Map<BigInteger, NFTAsset> fetchTokenMetadata(Token token, Collection<BigInteger> tokenIds)
+    {
+        Map<BigInteger, NFTAsset> assets = new ConcurrentHashMap<>();
+        if (tokenIds.isEmpty()) return assets;
+
+        Observable.fromIterable(tokenIds)
+                .flatMapCompletable(tokenId -> Completable.fromAction(() -> assets.put(tokenId, fetchTokenMetadata(token, tokenId)))
+                        .doOnError(e -> Timber.w(e, "Metadata not fetched for %s", tokenId))
+                        .onErrorComplete()
+                        .subscribeOn(Schedulers.io()), false, MAX_CONCURRENT)
+                .blockingAwait();
+
+        return assets;
+    }
+
+    private NFTAsset loadTokenMetadata(Token token, BigInteger tokenId)
+    {
+        //1. get TokenURI (check for non-standard URI - check "tokenURI" and "uri")
+        String responseValue = callSmartContractFunction(token.tokenInfo.chainId, getTokenURI(tokenId), token.getAddress(), token.getWallet());
+        if (TextUtils.isEmpty(responseValue))
+        {
+            responseValue = callSmartContractFunction(token.tokenInfo.chainId, getTokenURI2(tokenId), token.getAddress(), token.getWallet());
+        }
+
+        responseValue = Utils.parseResponseValue(responseValue, tokenId); //ensure {id} is honoured as per ERC1155 rules
+        String metaData = loadMetaData(responseValue);
+        if (!TextUtils.isEmpty(metaData))
+        {
+            return new NFTAsset(metaData);
+        }
+        else
+        {
+            return new NFTAsset();
+        }
+    }
+
+    /**
+     * @return metadata JSON for a token or contract URI; some contracts return the JSON itself
+     */
+    public String loadMetaData(String uri)
+    {
+        if (TextUtils.isEmpty(uri))
+        {
+            return "";
+        }
+        else if (Utils.isJson(uri))
+        {
+            return uri;
+        }
+
+        return getContent(uri);
+    }
+
+    private String fetchWithBackoff(String url, Transport source)
+    {
+        for (int attempt = 0; attempt < MAX_ATTEMPTS; attempt++)
+        {
+            if (attempt > 0 && !sleep(backoffDelay(attempt))) break;
+
+            try (ExplorerRateLimiter.Permit permit = limiter.acquire(url))
+            {
+                QueryResponse response = source.get(url);
+                if (response.isSuccessful())
+                {
+                    return response.body != null ? response.body : "";
+                }
+                else if (response.code == 429)
+                {
+                    permit.backOff(); //hold back the other calls to this host too
+                }
+                else if (response.code < HttpURLConnection.HTTP_INTERNAL_ERROR)
+                {
+                    return ""; //missing or refused for good; retrying won't help
+                }
+            }
+            catch (InterruptedException e)
+            {
+                Thread.currentThread().interrupt();
+                break;
+            }
+            catch (IOException e)
+            {
+                Timber.w("Metadata fetch attempt %d failed for %s: %s", attempt + 1, url, e.getMessage());
+            }
+        }
+
+        return "";
+    }
+
+    long backoffDelay(int attempt)
+    {
+        return Math.min(MAX_BACKOFF_MS, baseBackoffMs << (attempt - 1));
+    }
+
+    private static boolean sleep(long ms)
+    {
+        try
+        {
+            Thread.sleep(ms);
+            return true;
+        }
+        catch (InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    private static Function getTokenURI(BigInteger tokenId)
+    {
+        return new Function("tokenURI",
+                Collections.singletonList(new Uint256(tokenId)),
+                Collections.singletonList(new TypeReference<Utf8String>() {}));
+    }
+
+    private static Function getTokenURI2(BigInteger tokenId)
+    {
+        return new Function("uri",
+                Collections.singletonList(new Uint256(tokenId)),
+                Collections.singletonList(new TypeReference<Utf8String>() {}));
+    }
+}
@@ -18,6 +18,7 @@ import android.util.LongSparseArray;
 
 import com.alphawallet.app.C;
 import com.alphawallet.app.entity.ContractType;
+import com.alphawallet.app.entity.QueryResponse;
 import com.alphawallet.app.entity.nftassets.NFTAsset;
 import com.alphawallet.app.entity.tokens.Token;
 import com.alphawallet.app.entity.tokens.TokenFactory;
@@ -28,6 +29,7 @@ import com.alphawallet.app.util.JsonUtils;
 import org.json.JSONArray;
 import org.json.JSONObject;
 
+import java.io.IOException;
 import java.math.BigInteger;
 import java.util.HashMap;
 import java.util.List;
@@ -398,7 +400,18 @@ public class OpenSeaService
         }
 
         String api = C.OPENSEA_NFT_API_V2.replace("{CHAIN}", mappingName).replace("{ADDRESS}", contractAddress).replace("{TOKEN_ID}", tokenId);
-        return executeRequest(networkId, api);
+        //share the metadata fetcher's host limit, backoff and dedup; a collection view asks for many assets at once
+        String result = NFTMetadataFetcher.get().getContent(api, url -> requestAsset(networkId, url));
+        return TextUtils.isEmpty(result) ? JsonUtils.EMPTY_RESULT : result;
+    }
+
+    private QueryResponse requestAsset(long networkId, String api) throws IOException
+    {
+        try (okhttp3.Response response = httpClient.newCall(buildRequest(networkId, api)).execute())
+        {
+            ResponseBody responseBody = response.body();
+            return new QueryResponse(response.code(), responseBody != null ? responseBody.string() : "");
+        }
     }
 
     public String fetchCollection(long networkId, String slug)
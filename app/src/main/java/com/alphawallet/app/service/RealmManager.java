@@ -4,16 +4,22 @@ import com.alphawallet.app.BuildConfig;
 import com.alphawallet.app.entity.Wallet;
 import com.alphawallet.app.repository.AWRealmMigration;
 
-import java.util.HashMap;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
+import io.reactivex.Completable;
 import io.realm.Realm;
 import io.realm.RealmConfiguration;
 import io.realm.exceptions.RealmMigrationNeededException;
+import timber.log.Timber;
 
 public class RealmManager {
 
-    private final Map<String, RealmConfiguration> realmConfigurations = new HashMap<>();
+    // Accessed from many io threads
+    private final Map<String, RealmConfiguration> realmConfigurations = new ConcurrentHashMap<>();
+    private final Map<String, RealmWriter> writers = new ConcurrentHashMap<>();
 
     public String getRealmInstanceName(Wallet wallet) {
         return wallet.address.toLowerCase() + "-db.realm";
@@ -27,33 +33,23 @@ public class RealmManager {
         return getRealmInstanceInternal(walletAddress.toLowerCase() + "-db.realm");
     }
 
+    // Note that Realm.getInstance is already reference counted per thread by Realm's own cache;
+    // nested opens on the same thread are cheap as long as an outer instance is still open
     Realm getRealmInstanceInternal(String name) {
         try
         {
-            RealmConfiguration config = realmConfigurations.get(name);
-            if (config == null)
-            {
-                config = new RealmConfiguration.Builder().name(name)
-                        .schemaVersion(BuildConfig.DB_VERSION)
-                        .migration(new AWRealmMigration())
-                        .build();
-                realmConfigurations.put(name, config);
-            }
+            RealmConfiguration config = realmConfigurations.computeIfAbsent(name, n -> new RealmConfiguration.Builder().name(n)
+                    .schemaVersion(BuildConfig.DB_VERSION)
+                    .migration(new AWRealmMigration())
+                    .build());
             return Realm.getInstance(config);
         }
         catch (RealmMigrationNeededException e)
         {
-            //we require a realm migration, but this wasn't provided.
-            RealmConfiguration config = realmConfigurations.get(name);
-            if (config == null)
-            {
-                config = new RealmConfiguration.Builder().name(name)
-                        .schemaVersion(BuildConfig.DB_VERSION)
-                        .deleteRealmIfMigrationNeeded()
-                        .build();
-                realmConfigurations.put(name, config);
-            }
-            return Realm.getInstance(config);
+            //we require a realm migration, but this wasn't provided. Don't delete the database over it:
+            //the wallet and token data would be lost, so fail here and add the missing step to AWRealmMigration
+            Timber.e(e, "No migration for %s to version %d", name, BuildConfig.DB_VERSION);
+            throw e;
         }
     }
 
@@ -64,4 +60,56 @@ public class RealmManager {
     public Realm getWalletTypeRealmInstance() {
         return getRealmInstanceInternal("WalletType-db.realm");
     }
+
+    /**
+     * Queue a write on the wallet database's writer thread. Writes queued together are committed in one transaction,
+     * so the transaction must not open its own transaction or hold on to managed objects.
+     */
+    public Completable executeWrite(String walletAddress, Realm.Transaction transaction) {
+        return executeWriteInternal(walletAddress.toLowerCase() + "-db.realm", transaction);
+    }
+
+    public Completable executeWrite(Wallet wallet, Realm.Transaction transaction) {
+        return executeWriteInternal(getRealmInstanceName(wallet), transaction);
+    }
+
+    /**
+     * Fire and forget write; errors are logged by the writer
+     */
+    public void queueWrite(String walletAddress, Realm.Transaction transaction) {
+        queueWrite(walletAddress, transaction, null);
+    }
+
+    public void queueWrite(String walletAddress, Realm.Transaction transaction, RealmWriter.Callback callback) {
+        getWriter(walletAddress.toLowerCase() + "-db.realm").submit(transaction, callback);
+    }
+
+    Completable executeWriteInternal(String name, Realm.Transaction transaction) {
+        return Completable.create(emitter -> getWriter(name).submit(transaction, error -> {
+            if (error == null) emitter.onComplete();
+            else emitter.tryOnError(error);
+        }));
+    }
+
+    // Writers are kept for their metrics; each one's thread and Realm are only held while it has work
+    private RealmWriter getWriter(String name) {
+        return writers.computeIfAbsent(name, n -> new RealmWriter(n, this::getRealmInstanceInternal));
+    }
+
+    /**
+     * @return number of open Realm instances across all threads for the database, or 0 if it hasn't been opened
+     */
+    public int getOpenInstanceCount(String name) {
+        RealmConfiguration config = realmConfigurations.get(name);
+        return config != null ? Realm.getGlobalInstanceCount(config) : 0;
+    }
+
+    public List<RealmWriter.Metrics> getWriterMetrics() {
+        List<RealmWriter.Metrics> metrics = new ArrayList<>();
+        for (RealmWriter writer : writers.values())
+        {
+            metrics.add(writer.getMetrics());
+        }
+        return metrics;
+    }
 }
@@ -0,0 +1,308 @@
+package com.alphawallet.app.service;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import io.realm.Realm;
+import timber.log.Timber;
+
+/**
+ * Single writer thread for one Realm database.
+ *
+ * Queued transactions are drained in batches and committed together, so a burst of small writes costs one write
+ * lock and one commit. If any transaction in a batch throws, the batch is rolled back and replayed one transaction
+ * at a time so only the failing write is lost. Because a transaction may run more than once, anything it changes
+ * outside the database must go through {@link #afterCommit(Runnable)}.
+ *
+ * The writer thread keeps its Realm open while there is work. After an idle period it closes the Realm, so it doesn't
+ * pin an old version of the file, and the thread ends; the next write starts a new one.
+ */
+public class RealmWriter
+{
+    private static final String TAG = "REALMWRITE";
+    public static final int MAX_BATCH = 64;
+    private static final long IDLE_CLOSE_MS = 30 * 1000;
+
+    //changes to objects outside the database made by the transaction(s) being run on this writer thread
+    private static final ThreadLocal<List<Runnable>> pendingEffects = new ThreadLocal<>();
+
+    public interface Callback
+    {
+        void onComplete(Throwable error);
+    }
+
+    /**
+     * Opens the database on the writer thread, so the same configuration and migration fallback is used as for readers
+     */
+    public interface RealmOpener
+    {
+        Realm open(String name);
+    }
+
+    private static class WriteTask
+    {
+        final Realm.Transaction transaction;
+        final Callback callback;
+
+        WriteTask(Realm.Transaction transaction, Callback callback)
+        {
+            this.transaction = transaction;
+            this.callback = callback;
+        }
+    }
+
+    private final String name;
+    private final RealmOpener opener;
+    private final long idleMs;
+    private final LinkedBlockingQueue<WriteTask> queue = new LinkedBlockingQueue<>();
+    private final Object threadLock = new Object();
+    private Thread thread; //guarded by threadLock; null while idle
+
+    private final AtomicLong batches = new AtomicLong();
+    private final AtomicLong transactions = new AtomicLong();
+    private volatile long lastWriteMs;
+    private volatile long maxWriteMs;
+    private volatile double avgWriteMs;
+
+    public RealmWriter(String name, RealmOpener opener)
+    {
+        this(name, opener, IDLE_CLOSE_MS);
+    }
+
+    public RealmWriter(String name, RealmOpener opener, long idleMs)
+    {
+        this.name = name;
+        this.opener = opener;
+        this.idleMs = idleMs;
+    }
+
+    /**
+     * Run this once the transaction now executing has committed. For changes to in-memory objects made alongside a
+     * write, so a transaction that is rolled back (and maybe replayed) doesn't leave them out of step with the
+     * database. Outside a writer transaction it runs straight away.
+     */
+    public static void afterCommit(Runnable effect)
+    {
+        List<Runnable> effects = pendingEffects.get();
+        if (effects != null) effects.add(effect);
+        else effect.run();
+    }
+
+    public void submit(Realm.Transaction transaction, Callback callback)
+    {
+        synchronized (threadLock)
+        {
+            queue.add(new WriteTask(transaction, callback));
+            if (thread == null)
+            {
+                thread = new Thread(this::run, "RealmWriter-" + name);
+                thread.setDaemon(true);
+                thread.start();
+            }
+        }
+    }
+
+    /**
+     * @return true while the writer thread is running; it stops once it has been idle for a while
+     */
+    public boolean isRunning()
+    {
+        synchronized (threadLock)
+        {
+            return thread != null;
+        }
+    }
+
+    public int getQueueDepth()
+    {
+        return queue.size();
+    }
+
+    public Metrics getMetrics()
+    {
+        return new Metrics(name, queue.size(), batches.get(), transactions.get(), lastWriteMs, maxWriteMs, Math.round(avgWriteMs));
+    }
+
+    private void run()
+    {
+        Realm realm = null;
+        List<WriteTask> batch = new ArrayList<>(MAX_BATCH);
+        while (true)
+        {
+            try
+            {
+                WriteTask first = queue.poll(idleMs, TimeUnit.MILLISECONDS);
+                if (first == null)
+                {
+                    synchronized (threadLock)
+                    {
+                        //a write queued after the poll timed out is picked up on the next pass
+                        if (queue.isEmpty())
+                        {
+                            thread = null;
+                            break;
+                        }
+                    }
+                    continue;
+                }
+
+                batch.add(first);
+                queue.drainTo(batch, MAX_BATCH - 1);
+
+                if (realm == null) realm = opener.open(name);
+                writeBatch(realm, batch);
+            }
+            catch (InterruptedException e)
+            {
+                synchronized (threadLock)
+                {
+                    thread = null;
+                }
+                break;
+            }
+            catch (Exception e)
+            {
+                //failed to open the database; fail the batch rather than the writer
+                Timber.tag(TAG).e(e);
+                complete(batch, e);
+            }
+            finally
+            {
+                batch.clear();
+            }
+        }
+
+        if (realm != null) realm.close();
+    }
+
+    private void writeBatch(Realm realm, List<WriteTask> batch)
+    {
+        long startTime = System.currentTimeMillis();
+        List<Runnable> effects = new ArrayList<>();
+        pendingEffects.set(effects);
+        realm.beginTransaction();
+        try
+        {
+            for (WriteTask task : batch)
+            {
+                task.transaction.execute(realm);
+            }
+            realm.commitTransaction();
+            pendingEffects.remove();
+            runEffects(effects);
+            complete(batch, null);
+        }
+        catch (Exception e)
+        {
+            pendingEffects.remove();
+            if (realm.isInTransaction()) realm.cancelTransaction();
+            Timber.tag(TAG).w(e, "Batch write failed on %s, replaying individually", name);
+            replayIndividually(realm, batch);
+        }
+
+        recordWrite(System.currentTimeMillis() - startTime, batch.size());
+    }
+
+    private void replayIndividually(Realm realm, List<WriteTask> batch)
+    {
+        for (WriteTask task : batch)
+        {
+            List<Runnable> effects = new ArrayList<>();
+            pendingEffects.set(effects);
+            try
+            {
+                realm.executeTransaction(task.transaction);
+                pendingEffects.remove();
+                runEffects(effects);
+                complete(task, null);
+            }
+            catch (Exception e)
+            {
+                pendingEffects.remove();
+                complete(task, e);
+            }
+        }
+    }
+
+    private void runEffects(List<Runnable> effects)
+    {
+        for (Runnable effect : effects)
+        {
+            try
+            {
+                effect.run();
+            }
+            catch (Exception e)
+            {
+                Timber.tag(TAG).e(e);
+            }
+        }
+    }
+
+    private void recordWrite(long duration, int count)
+    {
+        batches.incrementAndGet();
+        transactions.addAndGet(count);
+        lastWriteMs = duration;
+        if (duration > maxWriteMs) maxWriteMs = duration;
+        avgWriteMs = avgWriteMs == 0 ? duration : 0.1 * duration + 0.9 * avgWriteMs;
+    }
+
+    private void complete(List<WriteTask> batch, Throwable error)
+    {
+        for (WriteTask task : batch)
+        {
+            complete(task, error);
+        }
+    }
+
+    private void complete(WriteTask task, Throwable error)
+    {
+        if (task.callback == null)
+        {
+            if (error != null) Timber.tag(TAG).e(error);
+            return;
+        }
+
+        try
+        {
+            task.callback.onComplete(error);
+        }
+        catch (Exception e)
+        {
+            Timber.tag(TAG).e(e);
+        }
+    }
+
+    public static class Metrics
+    {
+        public final String name;
+        public final int queueDepth;
+        public final long batches;
+        public final long transactions;
+        public final long lastWriteMs;
+        public final long maxWriteMs;
+        public final long avgWriteMs;
+
+        Metrics(String name, int queueDepth, long batches, long transactions, long lastWriteMs, long maxWriteMs, long avgWriteMs)
+        {
+            this.name = name;
+            this.queueDepth = queueDepth;
+            this.batches = batches;
+            this.transactions = transactions;
+            this.lastWriteMs = lastWriteMs;
+            this.maxWriteMs = maxWriteMs;
+            this.avgWriteMs = avgWriteMs;
+        }
+
+        @Override
+        public String toString()
+        {
+            return name + ": queue " + queueDepth + ", " + transactions + " writes in " + batches + " commits, "
+                    + avgWriteMs + "ms avg, " + maxWriteMs + "ms max";
+        }
+    }
+}
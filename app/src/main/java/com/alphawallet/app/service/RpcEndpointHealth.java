@@ -0,0 +1,230 @@
+package com.alphawallet.app.service;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Tracks the health of each RPC endpoint for one chain and orders endpoints best first.
+ *
+ * Score is the EWMA latency, inflated by the recent error rate and by how far the node's last reported block
+ * lags the best block seen on the chain. Endpoints with no samples yet score as the chain average so they still
+ * get tried and measured.
+ */
+public class RpcEndpointHealth
+{
+    private static final double LATENCY_ALPHA = 0.2;
+    private static final double ERROR_ALPHA = 0.3;
+    private static final long DEFAULT_LATENCY_MS = 500;
+    private static final long STALE_BLOCK_LAG = 5;
+    private static final long STALE_PENALTY_MS = 2000;
+    private static final int LATENCY_SAMPLES = 32;
+    public static final long MIN_HEDGE_DELAY_MS = 150;
+    public static final long MAX_HEDGE_DELAY_MS = 3000;
+
+    private static final Map<Long, RpcEndpointHealth> chainHealth = new ConcurrentHashMap<>();
+
+    private final long chainId;
+    private final Map<String, EndpointScore> scores = new ConcurrentHashMap<>();
+    private volatile long bestBlock = 0;
+
+    public static RpcEndpointHealth get(long chainId)
+    {
+        RpcEndpointHealth health = chainHealth.get(chainId);
+        if (health == null)
+        {
+            health = new RpcEndpointHealth(chainId);
+            RpcEndpointHealth existing = chainHealth.putIfAbsent(chainId, health);
+            if (existing != null) health = existing;
+        }
+        return health;
+    }
+
+    RpcEndpointHealth(long chainId)
+    {
+        this.chainId = chainId;
+    }
+
+    public long getChainId()
+    {
+        return chainId;
+    }
+
+    public void recordSuccess(String url, long latencyMs)
+    {
+        getScore(url).addSample(latencyMs, false);
+    }
+
+    public void recordFailure(String url)
+    {
+        getScore(url).addSample(0, true);
+    }
+
+    public void recordBlockHeight(String url, long blockHeight)
+    {
+        getScore(url).blockHeight = blockHeight;
+        if (blockHeight > bestBlock) bestBlock = blockHeight;
+    }
+
+    /**
+     * @return the supplied endpoints ordered best first. Order is stable for equal scores
+     */
+    public List<String> orderEndpoints(String[] urls)
+    {
+        List<String> ordered = new ArrayList<>(Arrays.asList(urls));
+        long neutral = averageLatency(ordered);
+        Map<String, Double> snapshot = new HashMap<>();
+        for (String url : ordered)
+        {
+            snapshot.put(url, scoreFor(url, neutral));
+        }
+
+        Collections.sort(ordered, (a, b) -> Double.compare(snapshot.get(a), snapshot.get(b)));
+        return ordered;
+    }
+
+    /**
+     * Delay before firing a hedged duplicate to the second best node; the p95 latency of the best node
+     */
+    public long getHedgeDelay(String url)
+    {
+        EndpointScore score = scores.get(url);
+        long p95 = score != null ? score.getP95() : 0;
+        if (p95 == 0) p95 = MAX_HEDGE_DELAY_MS;
+        return Math.max(MIN_HEDGE_DELAY_MS, Math.min(MAX_HEDGE_DELAY_MS, p95));
+    }
+
+    /**
+     * @return snapshot of the tracked endpoints among the chain's current urls, best first. Endpoints which have been
+     * removed from the chain's RPC list keep their history here but aren't reported
+     */
+    public List<EndpointStatus> getStatus(String[] urls)
+    {
+        List<String> current = Arrays.asList(urls);
+        long neutral = averageLatency(current);
+        List<EndpointStatus> status = new ArrayList<>();
+        for (String url : current)
+        {
+            EndpointScore s = scores.get(url);
+            if (s == null) continue;
+            status.add(new EndpointStatus(url, Math.round(s.latency), s.errorRate, s.blockHeight,
+                    s.samples, scoreFor(url, neutral)));
+        }
+
+        Collections.sort(status, (a, b) -> Double.compare(a.score, b.score));
+        return status;
+    }
+
+    /**
+     * @return the best scoring of the chain's current urls which has been measured, or null if none has
+     */
+    public EndpointStatus getBestEndpoint(String[] urls)
+    {
+        for (EndpointStatus status : getStatus(urls))
+        {
+            if (status.samples > 0) return status;
+        }
+        return null;
+    }
+
+    private double scoreFor(String url, long neutral)
+    {
+        EndpointScore s = scores.get(url);
+        if (s == null || s.samples == 0) return neutral;
+
+        double score = s.latency * (1.0 + 4.0 * s.errorRate);
+        if (s.blockHeight > 0 && bestBlock - s.blockHeight > STALE_BLOCK_LAG)
+        {
+            score += STALE_PENALTY_MS;
+        }
+        return score;
+    }
+
+    private long averageLatency(List<String> urls)
+    {
+        double total = 0;
+        int count = 0;
+        for (String url : urls)
+        {
+            EndpointScore s = scores.get(url);
+            if (s != null && s.samples > 0 && s.latency > 0)
+            {
+                total += s.latency;
+                count++;
+            }
+        }
+        return count > 0 ? Math.round(total / count) : DEFAULT_LATENCY_MS;
+    }
+
+    private EndpointScore getScore(String url)
+    {
+        EndpointScore score = scores.get(url);
+        if (score == null)
+        {
+            score = new EndpointScore();
+            EndpointScore existing = scores.putIfAbsent(url, score);
+            if (existing != null) score = existing;
+        }
+        return score;
+    }
+
+    private static class EndpointScore
+    {
+        double latency = 0;
+        double errorRate = 0;
+        long blockHeight = 0;
+        int samples = 0;
+        private final long[] recent = new long[LATENCY_SAMPLES];
+        private int recentCount = 0;
+        private int recentIndex = 0;
+
+        synchronized void addSample(long latencyMs, boolean error)
+        {
+            errorRate = samples == 0 ? (error ? 1.0 : 0.0) : ERROR_ALPHA * (error ? 1.0 : 0.0) + (1 - ERROR_ALPHA) * errorRate;
+            if (!error)
+            {
+                latency = latency == 0 ? latencyMs : LATENCY_ALPHA * latencyMs + (1 - LATENCY_ALPHA) * latency;
+                recent[recentIndex] = latencyMs;
+                recentIndex = (recentIndex + 1) % LATENCY_SAMPLES;
+                if (recentCount < LATENCY_SAMPLES) recentCount++;
+            }
+            else if (latency == 0)
+            {
+                latency = MAX_HEDGE_DELAY_MS; //never answered; rank behind nodes which have
+            }
+            samples++;
+        }
+
+        synchronized long getP95()
+        {
+            if (recentCount == 0) return 0;
+            long[] sorted = Arrays.copyOf(recent, recentCount);
+            Arrays.sort(sorted);
+            return sorted[Math.min(recentCount - 1, (int) Math.ceil(recentCount * 0.95) - 1)];
+        }
+    }
+
+    public static class EndpointStatus
+    {
+        public final String url;
+        public final long latencyMs;
+        public final double errorRate;
+        public final long blockHeight;
+        public final int samples;
+        public final double score;
+
+        EndpointStatus(String url, long latencyMs, double errorRate, long blockHeight, int samples, double score)
+        {
+            this.url = url;
+            this.latencyMs = latencyMs;
+            this.errorRate = errorRate;
+            this.blockHeight = blockHeight;
+            this.samples = samples;
+            this.score = score;
+        }
+    }
+}
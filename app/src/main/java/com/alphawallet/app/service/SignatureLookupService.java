@@ -1,24 +1,68 @@
 package com.alphawallet.app.service;
 
+import android.content.Context;
+import android.content.res.AssetFileDescriptor;
+
 import com.alphawallet.app.C;
 import com.alphawallet.app.entity.Result;
 import com.alphawallet.app.util.JsonUtils;
+import com.alphawallet.token.tools.SelectorIndex;
 import com.google.gson.Gson;
 
 import org.web3j.utils.Numeric;
 
+import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
 import java.util.Objects;
 import java.util.concurrent.TimeUnit;
 
+import io.reactivex.Completable;
 import io.reactivex.Single;
+import io.reactivex.schedulers.Schedulers;
 import okhttp3.OkHttpClient;
 import okhttp3.Request;
 import okhttp3.ResponseBody;
 import timber.log.Timber;
 
+/**
+ * Names contract calls from their 4 byte selector. Common selectors come from the index bundled in the assets
+ * (built by the util module's SelectorIndexGenerator); anything else is asked of 4byte.directory once, and the
+ * answer is kept in memory and in a small file alongside, so it's local from then on.
+ */
 public class SignatureLookupService
 {
     private static final String BASE_API_URL = "https://www.4byte.directory/api/v1/signatures/?hex_signature=";
+    private static final String SELECTOR_INDEX_ASSET = "selectors.idx";
+    private static final String LEARNED_SELECTORS_FILE = "learned_selectors.txt";
+    private static final int LEARNED_CACHE_SIZE = 512;
+    private static final int SELECTOR_LENGTH = 10; //0x + 4 bytes
+
+    private static volatile SelectorIndex bundledIndex;
+    private static volatile File learnedFile;
+    private static final Object fileLock = new Object(); //held for file access; never while on the learned lock
+    private static final Map<String, String> learned = new LinkedHashMap<String, String>(64, 0.75f, true)
+    {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, String> eldest)
+        {
+            return size() > LEARNED_CACHE_SIZE;
+        }
+    };
+
     private final OkHttpClient httpClient;
 
     public SignatureLookupService()
@@ -30,25 +74,190 @@ public class SignatureLookupService
             .build();
     }
 
+    /**
+     * Map the bundled selector index. Cheap enough for app start: the index is stored uncompressed so it's mapped
+     * rather than read, and nothing is decoded until a lookup. The learned selectors are read from file in the
+     * background, so a lookup never waits on the disk; until then they're simply not known locally.
+     */
+    public static void init(Context context)
+    {
+        learnedFile = new File(context.getFilesDir(), LEARNED_SELECTORS_FILE);
+
+        try
+        {
+            bundledIndex = new SelectorIndex(mapAsset(context));
+        }
+        catch (Exception e)
+        {
+            Timber.e(e);
+        }
+
+        Completable.fromAction(SignatureLookupService::loadLearned)
+                .subscribeOn(Schedulers.io())
+                .subscribe(() -> { }, Timber::e)
+                .isDisposed();
+    }
+
+    /**
+     * @param payload call data or selector, with or without 0x
+     * @return text signature if the selector is known locally, otherwise null
+     */
+    public static String getLocalSignature(String payload)
+    {
+        String selector = getSelector(payload);
+        if (selector == null) return null;
+
+        SelectorIndex index = bundledIndex;
+        String signature = index != null ? index.lookup(selector) : null;
+        if (signature != null) return signature;
+
+        synchronized (learned)
+        {
+            return learned.get(selector);
+        }
+    }
+
     public Single<String> getFunctionName(String payload)
     {
-        return Single.fromCallable(() -> getTextSignature(executeRequest(buildRequest(payload))));
+        return Single.fromCallable(() -> {
+            String selector = getSelector(payload);
+            if (selector == null) return "";
+
+            String signature = getLocalSignature(selector);
+            if (signature != null) return signature;
+
+            signature = getTextSignature(executeRequest(buildRequest(selector)));
+            if (!signature.isEmpty()) storeSignature(selector, signature);
+            return signature;
+        });
     }
 
     public String getTextSignature(String response)
     {
-        Result result = new Gson().fromJson(response, Result.class);
-        if (result != null)
+        try
         {
-            return result.getFirst().text_signature;
+            Result result = new Gson().fromJson(response, Result.class);
+            Result.Signature first = result != null ? result.getFirst() : null;
+            if (first != null && first.text_signature != null)
+            {
+                return first.text_signature;
+            }
+        }
+        catch (Exception e)
+        {
+            //not a lookup result; eg the error text from a failed request
+            Timber.w(e);
         }
 
         return "";
     }
 
-    private String getFirstFourBytes(String payload)
+    private static String getSelector(String payload)
+    {
+        if (payload == null) return null;
+        String selector = Numeric.prependHexPrefix(payload);
+        return selector.length() >= SELECTOR_LENGTH ? selector.substring(0, SELECTOR_LENGTH).toLowerCase(Locale.ROOT) : null;
+    }
+
+    private static void storeSignature(String selector, String signature)
     {
-        return (Numeric.prependHexPrefix(payload)).substring(0, 10);
+        if (selector == null || signature.indexOf('\n') >= 0) return;
+        synchronized (learned)
+        {
+            if (signature.equals(learned.put(selector, signature))) return;
+        }
+
+        File file = learnedFile;
+        if (file == null) return;
+        synchronized (fileLock)
+        {
+            try (Writer writer = new OutputStreamWriter(new FileOutputStream(file, true), StandardCharsets.UTF_8))
+            {
+                writer.write(selector + " " + signature + "\n");
+            }
+            catch (IOException e)
+            {
+                Timber.e(e);
+            }
+        }
+    }
+
+    // Runs once in the background from init; the learned lock is only taken to merge what was read
+    private static void loadLearned()
+    {
+        File file = learnedFile;
+        if (file == null) return;
+
+        synchronized (fileLock)
+        {
+            if (!file.exists()) return;
+
+            Map<String, String> read = new LinkedHashMap<>();
+            int lines = 0;
+            try (BufferedReader reader = new BufferedReader(new FileReader(file)))
+            {
+                String line;
+                while ((line = reader.readLine()) != null)
+                {
+                    int split = line.indexOf(' ');
+                    if (split == SELECTOR_LENGTH) read.put(line.substring(0, split), line.substring(split + 1));
+                    lines++;
+                }
+            }
+            catch (IOException e)
+            {
+                Timber.e(e);
+            }
+
+            //anything learned since start is newer than the file, so it goes in last
+            Map<String, String> kept;
+            synchronized (learned)
+            {
+                Map<String, String> sinceStart = new LinkedHashMap<>(learned);
+                learned.clear();
+                learned.putAll(read);
+                learned.putAll(sinceStart);
+                kept = new LinkedHashMap<>(learned);
+            }
+
+            //the file is appended to; once it holds more than the cache keeps, rewrite it with just the kept entries
+            if (lines > LEARNED_CACHE_SIZE * 2)
+            {
+                try (Writer writer = new OutputStreamWriter(new FileOutputStream(file, false), StandardCharsets.UTF_8))
+                {
+                    for (Map.Entry<String, String> entry : kept.entrySet())
+                    {
+                        writer.write(entry.getKey() + " " + entry.getValue() + "\n");
+                    }
+                }
+                catch (IOException e)
+                {
+                    Timber.e(e);
+                }
+            }
+        }
+    }
+
+    private static ByteBuffer mapAsset(Context context) throws IOException
+    {
+        try (AssetFileDescriptor fd = context.getAssets().openFd(SELECTOR_INDEX_ASSET);
+             FileInputStream stream = fd.createInputStream())
+        {
+            FileChannel channel = stream.getChannel();
+            return channel.map(FileChannel.MapMode.READ_ONLY, fd.getStartOffset(), fd.getLength());
+        }
+        catch (IOException e)
+        {
+            //openFd needs the asset stored uncompressed; read it onto the heap instead
+            try (InputStream in = context.getAssets().open(SELECTOR_INDEX_ASSET))
+            {
+                ByteArrayOutputStream out = new ByteArrayOutputStream();
+                byte[] buffer = new byte[8192];
+                int read;
+                while ((read = in.read(buffer)) != -1) out.write(buffer, 0, read);
+                return ByteBuffer.wrap(out.toByteArray());
+            }
+        }
     }
 
     private String executeRequest(Request request)
@@ -77,10 +286,10 @@ public class SignatureLookupService
         return JsonUtils.EMPTY_RESULT;
     }
 
-    private Request buildRequest(String payload)
+    private Request buildRequest(String selector)
     {
         Request.Builder builder = new Request.Builder()
-            .url(BASE_API_URL + getFirstFourBytes(payload))
+            .url(BASE_API_URL + selector)
             .header("User-Agent", "Chrome/74.0.3729.169")
             .addHeader("Content-Type", "application/json")
             .get();
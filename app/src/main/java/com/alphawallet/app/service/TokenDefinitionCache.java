@@ -0,0 +1,107 @@
+package com.alphawallet.app.service;
+
+import com.alphawallet.token.entity.ContractInfo;
+import com.alphawallet.token.tools.TokenDefinition;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Parsed TokenScripts, keyed by the hash of the script they were read from. Moving between a few tokens reuses their
+ * definitions instead of parsing each script again; the least recently used is dropped past {@link #MAX_DEFINITIONS}.
+ */
+public class TokenDefinitionCache
+{
+    public static final int MAX_DEFINITIONS = 8;
+
+    private final Map<String, TokenDefinition> definitions = new LinkedHashMap<String, TokenDefinition>(MAX_DEFINITIONS, 0.75f, true)
+    {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, TokenDefinition> eldest)
+        {
+            return size() > MAX_DEFINITIONS;
+        }
+    };
+
+    public synchronized TokenDefinition get(String scriptHash)
+    {
+        return definitions.get(scriptHash);
+    }
+
+    /**
+     * @return the held definition whose holding contract is this token, or null
+     */
+    public synchronized TokenDefinition find(long chainId, String address)
+    {
+        for (Map.Entry<String, TokenDefinition> entry : definitions.entrySet())
+        {
+            if (isHoldingContract(entry.getValue(), chainId, address))
+            {
+                return definitions.get(entry.getKey()); //mark as used; safe as we return before iterating further
+            }
+        }
+
+        return null;
+    }
+
+    /**
+     * Hold the definition, dropping any other held for the same holding contract; an updated script replaces
+     * the old one rather than sitting beside it where find could still return it
+     */
+    public synchronized void put(String scriptHash, TokenDefinition td)
+    {
+        if (scriptHash == null || td == null) return;
+
+        Iterator<Map.Entry<String, TokenDefinition>> iterator = definitions.entrySet().iterator();
+        while (iterator.hasNext())
+        {
+            Map.Entry<String, TokenDefinition> entry = iterator.next();
+            if (!entry.getKey().equals(scriptHash) && sharesHoldingContract(entry.getValue(), td)) iterator.remove();
+        }
+
+        definitions.put(scriptHash, td);
+    }
+
+    public synchronized void clear()
+    {
+        definitions.clear();
+    }
+
+    public synchronized int size()
+    {
+        return definitions.size();
+    }
+
+    private static boolean sharesHoldingContract(TokenDefinition held, TokenDefinition td)
+    {
+        ContractInfo holdingContracts = td.contracts.get(td.holdingToken);
+        if (holdingContracts == null) return false;
+
+        for (Map.Entry<Long, List<String>> chain : holdingContracts.addresses.entrySet())
+        {
+            for (String address : chain.getValue())
+            {
+                if (isHoldingContract(held, chain.getKey(), address)) return true;
+            }
+        }
+
+        return false;
+    }
+
+    //only match holding token
+    private static boolean isHoldingContract(TokenDefinition td, long chainId, String address)
+    {
+        ContractInfo holdingContracts = td.contracts.get(td.holdingToken);
+        List<String> addresses = holdingContracts != null ? holdingContracts.addresses.get(chainId) : null;
+        if (addresses == null) return false;
+
+        for (String addr : addresses)
+        {
+            if (addr.equalsIgnoreCase(address)) return true;
+        }
+
+        return false;
+    }
+}
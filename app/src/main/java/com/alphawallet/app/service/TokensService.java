@@ -34,6 +34,7 @@ import com.alphawallet.app.entity.tokens.TokenInfo;
 import com.alphawallet.app.repository.EthereumNetworkBase;
 import com.alphawallet.app.repository.EthereumNetworkRepository;
 import com.alphawallet.app.repository.EthereumNetworkRepositoryType;
+import com.alphawallet.app.repository.MulticallBalanceEngine;
 import com.alphawallet.app.repository.TokenRepositoryType;
 import com.alphawallet.app.util.Utils;
 import com.alphawallet.token.entity.ContractAddress;
@@ -72,7 +73,11 @@ public class TokensService
 
     private static final Map<Long, Long> pendingChainMap = new ConcurrentHashMap<>();
     private final ConcurrentLinkedDeque<Token> tokenStoreList = new ConcurrentLinkedDeque<>(); //used to hold tokens that will be stored
-    private final Map<String, Long> pendingTokenMap = new ConcurrentHashMap<>(); //used to determine which token to update next
+    private final BalanceUpdateScheduler balanceScheduler = new BalanceUpdateScheduler(new UpdateHeuristics()); //used to determine which token to update next
+    private final ConcurrentLinkedQueue<Token> balanceBatch = new ConcurrentLinkedQueue<>(); //tokens on the same chain to be read with the next balance check
+    private final WalletWarmCache warmCache = new WalletWarmCache(); //recently used wallets, so switching back is instant
+    @Nullable
+    private volatile Map<String, Long> restoreCheckTimes; //balance check times to pick up on the next update cycle start
     private String currentAddress = null;
     private final EthereumNetworkRepositoryType ethereumNetworkRepository;
     private final TokenRepositoryType tokenRepository;
@@ -84,7 +89,6 @@ public class TokensService
     private ContractLocator focusToken;
     private final ConcurrentLinkedDeque<ContractAddress> unknownTokens;
     private final ConcurrentLinkedQueue<Long> baseTokenCheck;
-    private final ConcurrentLinkedQueue<ImageEntry> imagesForWrite;
     private final ConcurrentLinkedQueue<OkTokenCheck> chainCheckList;
     private long openSeaCheckId;
     private boolean appHasFocus;
@@ -111,7 +115,6 @@ public class TokensService
     @Nullable
     private Disposable openSeaQueryDisposable;
     @Nullable
-    private Disposable imageWriter;
     @Nullable
     private Disposable okDisposable;
 
@@ -133,7 +136,6 @@ public class TokensService
         focusToken = null;
         this.unknownTokens = new ConcurrentLinkedDeque<>();
         this.baseTokenCheck = new ConcurrentLinkedQueue<>();
-        this.imagesForWrite = new ConcurrentLinkedQueue<>();
         this.chainCheckList = new ConcurrentLinkedQueue<>();
         this.httpClient = httpClient;
         setCurrentAddress(ethereumNetworkRepository.getCurrentWalletAddress()); //set current wallet address at service startup
@@ -185,6 +187,15 @@ public class TokensService
         else return tokenRepository.fetchToken(chainId, currentAddress, addr.toLowerCase());
     }
 
+    /**
+     * As {@link #getToken} without the NFT assets; for views which page them with {@link #getNFTAssets}
+     */
+    public Token getTokenWithoutAssets(long chainId, String addr)
+    {
+        if (TextUtils.isEmpty(currentAddress) || TextUtils.isEmpty(addr)) return null;
+        else return tokenRepository.fetchTokenWithoutAssets(chainId, currentAddress, addr.toLowerCase());
+    }
+
     public void storeToken(Token token)
     {
         if (TextUtils.isEmpty(currentAddress) || token == null || token.getInterfaceSpec() == ContractType.OTHER) return;
@@ -220,8 +231,11 @@ public class TokensService
     {
         if (newWalletAddr != null && (currentAddress == null || !currentAddress.equalsIgnoreCase(newWalletAddr)))
         {
+            //keep the outgoing wallet's check times; if it's switched back to, tokens checked recently aren't all due at once
+            if (currentAddress != null) warmCache.putCheckTimes(currentAddress, balanceScheduler.getCheckTimes());
             currentAddress = newWalletAddr.toLowerCase();
             stopUpdateCycle();
+            restoreCheckTimes = warmCache.getCheckTimes(currentAddress);
             addLockedTokens();
             if (openseaService != null) openseaService.resetOffsetRead(networkFilter);
             tokenRepository.updateLocalAddress(newWalletAddr);
@@ -282,7 +296,12 @@ public class TokensService
         eventTimer = Single.fromCallable(() -> {
             startupPass();
             checkIssueTokens();
-            pendingTokenMap.clear();
+            balanceScheduler.clear();
+            if (restoreCheckTimes != null)
+            {
+                balanceScheduler.restoreCheckTimes(restoreCheckTimes);
+                restoreCheckTimes = null;
+            }
             checkTokensOnOKx();
             return true;
         }).subscribeOn(Schedulers.io())
@@ -290,7 +309,7 @@ public class TokensService
                 .subscribe(this::updateCycle, this::onError);
     }
 
-    // Constructs a map of tokens requiring update
+    // Re-reads the tokens requiring update into the balance scheduler
     private TokenCardMeta[] buildUpdateMap()
     {
         int unSynced = 0;
@@ -298,15 +317,14 @@ public class TokensService
         for (TokenCardMeta meta : tokenList)
         {
             meta.lastTxUpdate = meta.lastUpdate;
-            String key = databaseKey(meta.getChain(), meta.getAddress());
-            if (!pendingTokenMap.containsKey(key))
+            long lastChecked = balanceScheduler.getLastChecked(databaseKey(meta.getChain(), meta.getAddress()));
+            if (lastChecked < 0)
             {
                 if (meta.type == ContractType.ERC20 || meta.type == ContractType.ETHEREUM) unSynced++;
-                pendingTokenMap.put(key, meta.lastUpdate);
             }
-            else if (meta.lastUpdate <= pendingTokenMap.get(key))
+            else if (meta.lastUpdate <= lastChecked)
             {
-                meta.lastUpdate = pendingTokenMap.get(key);
+                meta.lastUpdate = lastChecked;
                 if ((meta.type == ContractType.ERC20 || meta.type == ContractType.ETHEREUM)
                         && meta.lastUpdate < syncStart && meta.isEnabled && meta.hasValidName()) { unSynced++; }
             }
@@ -315,6 +333,7 @@ public class TokensService
         }
 
         checkSyncStatus(unSynced, tokenList);
+        balanceScheduler.refresh(tokenList, System.currentTimeMillis());
 
         return tokenList;
     }
@@ -399,6 +418,7 @@ public class TokensService
         if (!networkFilter.contains(chainId)) //add chain to filter list
         {
             networkFilter.add(chainId);
+            balanceScheduler.invalidate();
             ethereumNetworkRepository.setFilterNetworkList(networkFilter.toArray(new Long[0]));
         }
 
@@ -425,13 +445,39 @@ public class TokensService
         pendingChainMap.clear();
         tokenStoreList.clear();
         baseTokenCheck.clear();
-        pendingTokenMap.clear();
+        balanceScheduler.clear();
+        balanceBatch.clear();
         unknownTokens.clear();
         chainCheckList.clear();
     }
 
     public String getCurrentAddress() { return currentAddress; }
 
+    /**
+     * @return token cards last shown for the wallet with the current network filters, plus its last fiat totals;
+     * null if the wallet isn't warm
+     */
+    @Nullable
+    public WalletWarmCache.State getWarmState(String walletAddress)
+    {
+        return warmCache.getTokens(walletAddress, networkFilter);
+    }
+
+    public void cacheTokenMetas(String walletAddress, TokenCardMeta[] metas, long metaVersion)
+    {
+        warmCache.putTokens(walletAddress, metas, metaVersion, networkFilter);
+    }
+
+    public void cacheChangedTokenMetas(String walletAddress, TokenCardMeta[] changed, long sinceVersion, long metaVersion)
+    {
+        warmCache.mergeTokens(walletAddress, changed, sinceVersion, metaVersion);
+    }
+
+    public void cacheFiatValues(String walletAddress, Pair<Double, Double> fiatValues)
+    {
+        warmCache.putFiatValues(walletAddress, fiatValues.first, fiatValues.second);
+    }
+
     public static void setWalletStartup() { walletStartup = true; }
 
     public void setupFilter(boolean userUpdated)
@@ -447,16 +493,19 @@ public class TokensService
         }
 
         if (userUpdated) ethereumNetworkRepository.setHasSetNetworkFilters();
+        balanceScheduler.invalidate();
     }
 
     public void setFocusToken(@NotNull Token token)
     {
         focusToken = new ContractLocator(token.getAddress(), token.tokenInfo.chainId);
+        balanceScheduler.reschedule(System.currentTimeMillis());
     }
 
     public void clearFocusToken()
     {
         focusToken = null;
+        balanceScheduler.reschedule(System.currentTimeMillis());
     }
 
     public void onWalletRefreshSwipe()
@@ -521,35 +570,6 @@ public class TokensService
         }
     }
 
-    private void startImageWrite()
-    {
-        if (imageWriter == null || imageWriter.isDisposed())
-        {
-            imageWriter = Observable.interval(500, 500, TimeUnit.MILLISECONDS)
-                    .doOnNext(l -> writeImages()).subscribe();
-        }
-    }
-
-    private void writeImages()
-    {
-        if (imagesForWrite.isEmpty())
-        {
-            imageWriter.dispose();
-            imageWriter = null;
-        }
-        else
-        {
-            Single.fromCallable(() -> {
-                        List<ImageEntry> entries = new ArrayList<>(imagesForWrite);
-                        imagesForWrite.clear();
-                        tokenRepository.addImageUrl(entries);
-                        return "";
-                    })
-                    .subscribeOn(Schedulers.io())
-                    .observeOn(Schedulers.io()).subscribe().isDisposed();
-        }
-    }
-
     private void checkTokensOnOKx()
     {
         if (httpClient == null)
@@ -631,12 +651,10 @@ public class TokensService
         return info.symbol;
     }
 
-    //Add to write queue
+    //Add to write queue; repeated urls for the same token are collapsed before the write
     public void addTokenImageUrl(long networkId, String address, String imageUrl)
     {
-        ImageEntry entry = new ImageEntry(networkId, address, imageUrl);
-        imagesForWrite.add(entry);
-        startImageWrite();
+        tokenRepository.addImageUrl(Collections.singletonList(new ImageEntry(networkId, address, imageUrl)));
     }
 
     public Single<TokenInfo> update(String address, long chainId, ContractType type)
@@ -665,7 +683,19 @@ public class TokensService
     {
         final Token t = getNextInBalanceUpdateQueue();
 
-        if (t != null)
+        if (t != null && !balanceBatch.isEmpty())
+        {
+            final List<Token> batch = new ArrayList<>();
+            batch.add(t);
+            Token next;
+            while ((next = balanceBatch.poll()) != null) batch.add(next);
+            Timber.tag(TAG).d("Updating batch: " + t.tokenInfo.chainId + " : " + batch.size() + " tokens");
+            balanceCheckDisposable = tokenRepository.updateTokenBalances(currentAddress, batch)
+                    .subscribeOn(Schedulers.io())
+                    .observeOn(AndroidSchedulers.mainThread())
+                    .subscribe(balances -> onBatchBalanceChange(balances, batch), this::onError);
+        }
+        else if (t != null)
         {
             Timber.tag(TAG).d("Updating: " + t.tokenInfo.chainId + (t.isEthereum() ? " (Base Chain) ":"") + " : " + t.getAddress() + " : " + t.getFullName());
             balanceCheckDisposable = tokenRepository.updateTokenBalance(currentAddress, t)
@@ -734,6 +764,15 @@ public class TokensService
         });
     }
 
+    private void onBatchBalanceChange(Map<String, BigDecimal> balances, List<Token> batch)
+    {
+        for (Token t : batch)
+        {
+            BigDecimal newBalance = balances.get(databaseKey(t));
+            if (newBalance != null) onBalanceChange(newBalance, t);
+        }
+    }
+
     private void onBalanceChange(BigDecimal newBalance, Token t)
     {
         boolean balanceChange = !newBalance.equals(t.balance);
@@ -750,7 +789,7 @@ public class TokensService
         }
 
         //update check time
-        pendingTokenMap.put(databaseKey(t), System.currentTimeMillis());
+        balanceScheduler.markChecked(databaseKey(t), System.currentTimeMillis());
 
         //Switch this token chain on
         if (t.isEthereum() && newBalance.compareTo(BigDecimal.ZERO) > 0)
@@ -775,6 +814,7 @@ public class TokensService
             Timber.tag(TAG).d("Detected balance");
             //activate this filter
             networkFilter.add(t.tokenInfo.chainId);
+            balanceScheduler.invalidate();
             //now update the default filters
             ethereumNetworkRepository.setFilterNetworkList(networkFilter.toArray(new Long[0]));
         }
@@ -788,6 +828,7 @@ public class TokensService
             if (currentTime > pendingChainMap.get(chainId))
             {
                 pendingChainMap.remove(chainId);
+                balanceScheduler.rescheduleChain(chainId, currentTime);
             }
         }
     }
@@ -981,6 +1022,7 @@ public class TokensService
     public void markChainPending(long chainId)
     {
         pendingChainMap.put(chainId, System.currentTimeMillis() + PENDING_TIME_LIMIT);
+        balanceScheduler.rescheduleChain(chainId, System.currentTimeMillis());
     }
 
     public Single<Pair<Double, Double>> getFiatValuePair()
@@ -1030,49 +1072,55 @@ public class TokensService
     //TODO: If we have done a transfer check recently then we don't need to check balance here
     public Token getNextInBalanceUpdateQueue()
     {
-        //pull all tokens from this wallet out of DB
-        TokenCardMeta[] tokenList = buildUpdateMap();
-
-        //calculate update based on last update time & importance
-        float highestWeighting = 0;
         long currentTime = System.currentTimeMillis();
+        //only re-read the token list from the DB periodically, check times are tracked by the scheduler in between
+        if (balanceScheduler.needsRefresh(currentTime)) buildUpdateMap();
+        balanceBatch.clear();
+
         Token storeToken = pendingBaseCheck();
         if (storeToken == null) { storeToken = tokenStoreList.poll(); }
         if (storeToken != null) { return storeToken; }
 
-        TokenCardMeta highestToken = null;
+        BalanceUpdateScheduler.Selection selection = balanceScheduler.next(currentTime);
+        if (selection == null) return null;
 
-        //this list will be in order of update.
-        for (TokenCardMeta check : tokenList)
-        {
-            long lastCheckDiff = currentTime - check.lastUpdate;
-            long lastUpdateDiff = check.lastTxUpdate > 0 ? currentTime - check.lastTxUpdate : 0;
-
-            float weighting = check.calculateBalanceUpdateWeight();
+        TokenCardMeta highestToken = selection.token;
+        balanceScheduler.markChecked(databaseKey(highestToken.getChain(), highestToken.getAddress()), currentTime);
+        addBalanceBatch(highestToken, selection.dueOnChain);
+        return getToken(highestToken.getChain(), highestToken.getAddress());
+    }
 
-            if ((!check.isEnabled || check.isNFT()) && !isSynced()) continue; //don't start looking at NFT balances until we sync the chain/ERC20 tokens
-            if (!isSynced() && check.lastUpdate > syncStart) continue; //don't start updating already updated tokens until all ERC20 are checked
-            if (!appHasFocus && (!check.isEthereum() && !isFocusToken(check))) continue; //only check chains when wallet out of focus
+    /**
+     * Balance update heuristics used by the scheduler: which tokens may be checked, how often and in which order
+     */
+    private class UpdateHeuristics implements BalanceUpdateScheduler.UpdatePolicy
+    {
+        @Override
+        public boolean canUpdate(TokenCardMeta check)
+        {
+            if ((!check.isEnabled || check.isNFT()) && !isSynced()) return false; //don't start looking at NFT balances until we sync the chain/ERC20 tokens
+            if (!isSynced() && check.lastUpdate > syncStart) return false; //don't start updating already updated tokens until all ERC20 are checked
+            return appHasFocus || check.isEthereum() || isFocusToken(check); //only check chains when wallet out of focus
+        }
 
-            //simply multiply the weighting by the last diff.
-            float updateFactor = weighting * (float) lastCheckDiff * (check.isEnabled ? 1 : 0.25f);
+        @Override
+        public long updateInterval(TokenCardMeta check, long currentTime)
+        {
+            long lastUpdateDiff = check.lastTxUpdate > 0 ? currentTime - check.lastTxUpdate : 0;
             long cutoffCheck = check.calculateUpdateFrequency(); //normal minimum update frequency for token 30 seconds, 5 minutes for hidden token
 
             if (!check.isEthereum() && lastUpdateDiff > DateUtils.DAY_IN_MILLIS)
             {
                 cutoffCheck = 120*DateUtils.SECOND_IN_MILLIS;
-                updateFactor = 0.5f * updateFactor;
             }
 
             if (isFocusToken(check))
             {
-                updateFactor = 3.0f * (float) lastCheckDiff;
                 cutoffCheck = 15*DateUtils.SECOND_IN_MILLIS; //focus token can be checked every 15 seconds - focus token when erc20 or chain clicked on in wallet
             }
             else if (check.isEthereum() && pendingChainMap.containsKey(check.getChain())) //higher priority for checking balance of pending chain
             {
                 cutoffCheck = 15*DateUtils.SECOND_IN_MILLIS;
-                updateFactor = 4.0f * (float) lastCheckDiff; //chain has a recent transaction
             }
             else if (check.isEthereum())
             {
@@ -1080,25 +1128,62 @@ public class TokensService
             }
             else if (focusToken != null)
             {
-                updateFactor = 0.1f * (float) lastCheckDiff;
                 cutoffCheck = 60*DateUtils.SECOND_IN_MILLIS; //when looking at token in detail view (ERC20TokenDetail) update other tokens at 1 minute cycle
             }
 
-            if (updateFactor > highestWeighting && (lastCheckDiff > (float)cutoffCheck))
-            {
-                highestWeighting = updateFactor;
-                highestToken = check;
-            }
+            return cutoffCheck;
         }
 
-        if (highestToken != null)
+        @Override
+        public float updatePriority(TokenCardMeta check, long currentTime)
         {
-            pendingTokenMap.put(databaseKey(highestToken.getChain(), highestToken.getAddress()), System.currentTimeMillis());
-            return getToken(highestToken.getChain(), highestToken.getAddress());
+            long lastCheckDiff = currentTime - check.lastUpdate;
+            long lastUpdateDiff = check.lastTxUpdate > 0 ? currentTime - check.lastTxUpdate : 0;
+
+            //simply multiply the weighting by the last diff.
+            float updateFactor = check.calculateBalanceUpdateWeight() * (float) lastCheckDiff * (check.isEnabled ? 1 : 0.25f);
+
+            if (!check.isEthereum() && lastUpdateDiff > DateUtils.DAY_IN_MILLIS)
+            {
+                updateFactor = 0.5f * updateFactor;
+            }
+
+            if (isFocusToken(check))
+            {
+                updateFactor = 3.0f * (float) lastCheckDiff;
+            }
+            else if (check.isEthereum() && pendingChainMap.containsKey(check.getChain()))
+            {
+                updateFactor = 4.0f * (float) lastCheckDiff; //chain has a recent transaction
+            }
+            else if (!check.isEthereum() && focusToken != null)
+            {
+                updateFactor = 0.1f * (float) lastCheckDiff;
+            }
+
+            return updateFactor;
         }
-        else
+    }
+
+    /**
+     * If the chain of the selected token has Multicall3, pull in the other due ERC20 tokens on that chain
+     * so their balances are read in the same aggregate call
+     */
+    private void addBalanceBatch(TokenCardMeta selected, List<TokenCardMeta> dueOnChain)
+    {
+        if ((selected.type != ContractType.ERC20 && !selected.isEthereum())
+                || !MulticallBalanceEngine.isSupported(selected.getChain())) return;
+
+        long currentTime = System.currentTimeMillis();
+        for (TokenCardMeta meta : dueOnChain)
         {
-            return null;
+            if (balanceBatch.size() >= MulticallBalanceEngine.MAX_CALLS_PER_REQUEST - 1) break;
+            Token token = getToken(meta.getChain(), meta.getAddress());
+            if (token != null)
+            {
+                balanceScheduler.markChecked(databaseKey(meta.getChain(), meta.getAddress()), currentTime);
+                balanceBatch.add(token);
+            }
         }
     }
 
@@ -1166,6 +1251,7 @@ public class TokensService
 
         //set network filter prefs
         ethereumNetworkRepository.setFilterNetworkList(networkFilter.toArray(new Long[0]));
+        balanceScheduler.invalidate();
     }
 
     /**
@@ -1279,6 +1365,22 @@ public class TokensService
         tokenRepository.storeAsset(currentAddress, token, tokenId, asset);
     }
 
+    /**
+     * @return stored assets for these ids; an id with no stored asset is left out
+     */
+    public Map<BigInteger, NFTAsset> getNFTAssets(Token token, List<BigInteger> tokenIds)
+    {
+        return tokenRepository.getNFTAssets(currentAddress, token, tokenIds);
+    }
+
+    /**
+     * @return ids of the token's stored NFT assets, without reading their metadata
+     */
+    public List<BigInteger> getNFTTokenIds(Token token)
+    {
+        return tokenRepository.getNFTTokenIds(currentAddress, token);
+    }
+
     public boolean isChainToken(long chainId, String tokenAddress)
     {
         return ethereumNetworkRepository.isChainContract(chainId, tokenAddress);
@@ -1370,6 +1472,8 @@ public class TokensService
                     baseTokenCheck.add(info.chainId);
                 }
             }
+
+            balanceScheduler.invalidate();
         }
     }
 
@@ -1413,7 +1517,7 @@ public class TokensService
             tokenRepository.deleteRealmTokens(new Wallet(currentAddress), metasToDelete);
             for (TokenCardMeta tcm : metasToDelete)
             {
-                pendingTokenMap.remove(databaseKey(tcm.getChain(), tcm.getAddress()));
+                balanceScheduler.remove(databaseKey(tcm.getChain(), tcm.getAddress()));
             }
             return true;
         });
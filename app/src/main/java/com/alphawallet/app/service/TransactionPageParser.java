@@ -0,0 +1,101 @@
+package com.alphawallet.app.service;
+
+import com.alphawallet.app.entity.CovalentTransaction;
+import com.google.gson.Gson;
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+
+import java.io.IOException;
+import java.io.Reader;
+
+/**
+ * Streaming decoder for block explorer transaction and transfer pages.
+ *
+ * A page can hold hundreds of records. Reading it with a JsonReader straight off the response body decodes each record
+ * once, directly into its entity, instead of buffering the body as a String, building a JSONObject from it,
+ * re-serialising the record array and parsing that again with Gson.
+ */
+public class TransactionPageParser
+{
+    public interface RecordHandler<T>
+    {
+        void onRecord(T record);
+    }
+
+    private final Gson gson;
+
+    public TransactionPageParser(Gson gson)
+    {
+        this.gson = gson;
+    }
+
+    /**
+     * Etherscan style page; records are in the top level "result" array
+     *
+     * @return number of records read; 0 if the page has no result array (eg a rate limit message)
+     */
+    public <T> int readEtherscanPage(Reader source, Class<T> type, RecordHandler<T> handler) throws IOException
+    {
+        return readArray(source, type, handler, "result");
+    }
+
+    /**
+     * Covalent transactions_v2 page; records are in data.items
+     */
+    public int readCovalentPage(Reader source, RecordHandler<CovalentTransaction> handler) throws IOException
+    {
+        return readArray(source, CovalentTransaction.class, handler, "data", "items");
+    }
+
+    private <T> int readArray(Reader source, Class<T> type, RecordHandler<T> handler, String... path) throws IOException
+    {
+        JsonReader reader = new JsonReader(source);
+        reader.setLenient(true); //as Gson.fromJson(String)
+        return descend(reader, path, 0, gson.getAdapter(type), handler);
+    }
+
+    // Walk down the named path; anything else in the page is skipped without being decoded
+    private <T> int descend(JsonReader reader, String[] path, int depth, TypeAdapter<T> adapter, RecordHandler<T> handler) throws IOException
+    {
+        if (reader.peek() != JsonToken.BEGIN_OBJECT) return 0;
+
+        reader.beginObject();
+        while (reader.hasNext())
+        {
+            if (!reader.nextName().equals(path[depth]))
+            {
+                reader.skipValue();
+            }
+            else if (depth < path.length - 1)
+            {
+                return descend(reader, path, depth + 1, adapter, handler);
+            }
+            else if (reader.peek() == JsonToken.BEGIN_ARRAY)
+            {
+                return readRecords(reader, adapter, handler);
+            }
+            else
+            {
+                return 0;
+            }
+        }
+
+        return 0;
+    }
+
+    private <T> int readRecords(JsonReader reader, TypeAdapter<T> adapter, RecordHandler<T> handler) throws IOException
+    {
+        int count = 0;
+        reader.beginArray();
+        while (reader.hasNext())
+        {
+            T record = adapter.read(reader);
+            if (record != null) handler.onRecord(record);
+            count++;
+        }
+        reader.endArray();
+
+        return count;
+    }
+}
@@ -42,10 +42,10 @@ import com.alphawallet.app.util.Utils;
 import com.alphawallet.token.entity.ContractAddress;
 import com.google.gson.Gson;
 
-import org.json.JSONArray;
 import org.json.JSONException;
-import org.json.JSONObject;
 
+import java.io.IOException;
+import java.io.Reader;
 import java.math.BigDecimal;
 import java.math.BigInteger;
 import java.util.ArrayList;
@@ -56,7 +56,9 @@ import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.function.Consumer;
 
+import io.reactivex.Completable;
 import io.reactivex.Single;
 import io.reactivex.schedulers.Schedulers;
 import io.realm.Case;
@@ -73,6 +75,7 @@ public class TransactionsNetworkClient implements TransactionsNetworkClientType
     private final int PAGESIZE = 800;
     private final int SYNC_PAGECOUNT = 2; //how many pages to read when we first sync the account - means we store the first 1600 transactions only
     private final int TRANSFER_RESULT_MAX = 500;
+    private final int HTTP_TOO_MANY_REQUESTS = 429;
     //Note: if user wants to view transactions older than this, we fetch from etherscan on demand.
     //Generally this would only happen when watching extremely active accounts for curiosity
     private final String BLOCK_ENTRY = "-erc20blockCheck-";
@@ -87,10 +90,10 @@ public class TransactionsNetworkClient implements TransactionsNetworkClientType
     private final String POLYGONSCAN_API_KEY;
     private final String AURORASCAN_API_KEY;
     private final KeyProvider keyProvider = KeyProviderFactory.get();
-    private final String JSON_EMPTY_RESULT = "{\"result\":[]}";
 
     private final OkHttpClient httpClient;
-    private final Gson gson;
+    private final TransactionPageParser pageParser;
+    private final ExplorerRateLimiter rateLimiter = ExplorerRateLimiter.get();
     private final RealmManager realmManager;
 
     public TransactionsNetworkClient(
@@ -98,7 +101,7 @@ public class TransactionsNetworkClient implements TransactionsNetworkClientType
             Gson gson,
             RealmManager realmManager) {
         this.httpClient = httpClient;
-        this.gson = gson;
+        this.pageParser = new TransactionPageParser(gson);
         this.realmManager = realmManager;
 
         BSC_EXPLORER_API_KEY = keyProvider.getBSCExplorerKey().length() > 0 ? "&apikey=" + keyProvider.getBSCExplorerKey() : "";
@@ -170,31 +173,46 @@ public class TransactionsNetworkClient implements TransactionsNetworkClientType
         return Single.fromCallable(() -> {
             long lastBlockNumber = lastBlock + 1;
             List<Transaction> sortedTx = null;
-            try (Realm instance = realmManager.getRealmInstance(svs.getCurrentAddress()))
+            final String walletAddress = svs.getCurrentAddress();
+            try (Realm instance = realmManager.getRealmInstance(walletAddress))
             {
-                long syncToBlock = getTokenBlockRead(instance, networkInfo.chainId, TransferFetchType.ETHEREUM);
+                final long syncToBlock = getTokenBlockRead(instance, networkInfo.chainId, TransferFetchType.ETHEREUM);
                 if (syncToBlock == 0)
                 {
                     lastBlockNumber = 0;
                 }
 
-                sortedTx = syncDownwards(svs, networkInfo, tokenAddress, lastBlockNumber, 999999999);
+                //each page is written on the wallet's writer thread while the next page is fetched
+                List<Completable> pageWrites = new ArrayList<>();
+                sortedTx = syncDownwards(svs, networkInfo, tokenAddress, lastBlockNumber, 999999999, page -> {
+                    if (pageWrites.isEmpty() && syncToBlock == 0)
+                    {
+                        //first sync; blank all entries
+                        pageWrites.add(startWrite(walletAddress, r -> eraseAllTransactions(r, networkInfo.chainId)));
+                    }
+                    pageWrites.add(startWrite(walletAddress, r -> putTransactions(r, page)));
+                });
+                Completable.merge(pageWrites).blockingAwait();
 
                 if (sortedTx.size() > 0)
                 {
                     String highestBlockStr = sortedTx.get(sortedTx.size() - 1).blockNumber;
 
-                    storeLatestBlockRead(svs.getCurrentAddress(), networkInfo.chainId, tokenAddress, highestBlockStr);
+                    storeLatestBlockRead(walletAddress, networkInfo.chainId, tokenAddress, highestBlockStr);
 
                     if (syncToBlock == 0 || sortedTx.size() == PAGESIZE * SYNC_PAGECOUNT)
                     {
-                        //blank all entries
-                        eraseAllTransactions(instance, networkInfo.chainId);
+                        if (syncToBlock != 0)
+                        {
+                            //read a full set of pages, so there may be a hole below them; blank all entries and keep just these
+                            final List<Transaction> keepTx = sortedTx;
+                            instance.executeTransaction(r -> {
+                                eraseAllTransactions(r, networkInfo.chainId);
+                                putTransactions(r, keepTx);
+                            });
+                        }
                         writeTokenBlockRead(instance, networkInfo.chainId, Long.parseLong(sortedTx.get(0).blockNumber), TransferFetchType.ETHEREUM);
                     }
-
-                    //now write transactions
-                    writeTransactions(instance, sortedTx);
                 }
             }
             catch (JSONException e)
@@ -216,6 +234,15 @@ public class TransactionsNetworkClient implements TransactionsNetworkClientType
      * Note that this call is the only place that the 'earliest transaction' block can be written from.
      */
     private List<Transaction> syncDownwards(TokensService svs, NetworkInfo networkInfo, String tokenAddress, long lowBlockNumber, long highBlockNumber) throws Exception
+    {
+        return syncDownwards(svs, networkInfo, tokenAddress, lowBlockNumber, highBlockNumber, null);
+    }
+
+    /**
+     * @param onPage if not null, given each complete page as soon as it has been read, before the next page is fetched
+     */
+    private List<Transaction> syncDownwards(TokensService svs, NetworkInfo networkInfo, String tokenAddress, long lowBlockNumber, long highBlockNumber,
+                                            Consumer<List<Transaction>> onPage) throws Exception
     {
         int page = 1;
         HashMap<String, Transaction> txMap = new HashMap<>();
@@ -223,13 +250,22 @@ public class TransactionsNetworkClient implements TransactionsNetworkClientType
 
         while (continueReading) // only SYNC_PAGECOUNT pages at a time for each check, to avoid congestion
         {
-            EtherscanTransaction[] myTxs = readTransactions(networkInfo, svs, tokenAddress, String.valueOf(lowBlockNumber), String.valueOf(highBlockNumber), false, page++);
-            if (myTxs.length == 0) break;
-            populateTransactionMap(txMap, myTxs, networkInfo.chainId); //use all transactions (wallet address null)
+            //each record becomes a Transaction as it is decoded; the page only joins the map once it has been read in full
+            List<Transaction> pageTxs = new ArrayList<>();
+            int count = readTransactions(networkInfo, svs, tokenAddress, String.valueOf(lowBlockNumber), String.valueOf(highBlockNumber), false, page++,
+                    etx -> addTransaction(pageTxs, etx, networkInfo.chainId)); //use all transactions (wallet address null)
+            if (count == 0) break;
+
+            for (Transaction tx : pageTxs)
+            {
+                txMap.put(tx.hash, tx);
+            }
+
+            if (onPage != null && !pageTxs.isEmpty()) onPage.accept(pageTxs);
 
             if (page > SYNC_PAGECOUNT) continueReading = false;
 
-            if (myTxs.length < PAGESIZE)
+            if (count < PAGESIZE)
             {
                 continueReading = false;
             }
@@ -238,51 +274,22 @@ public class TransactionsNetworkClient implements TransactionsNetworkClientType
         return sortTransactions(txMap.values());
     }
 
-    private void populateTransactionMap(HashMap<String, Transaction> txMap, EtherscanTransaction[] myTxs, long chainId)
+    private void addTransaction(List<Transaction> txList, EtherscanTransaction etx, long chainId)
     {
-        for (EtherscanTransaction etx : myTxs)
+        Transaction tx = etx.createTransaction(null, chainId);
+        if (tx != null)
         {
-            Transaction tx = etx.createTransaction(null, chainId);
-            if (tx != null)
-            {
-                txMap.put(tx.hash, tx);
-            }
+            txList.add(tx);
         }
     }
 
-    private EtherscanTransaction[] getEtherscanTransactions(String response) throws JSONException
+    private CovalentTransaction[] getCovalentTransactions(Reader response, String walletAddress) throws IOException
     {
-        JSONObject stateData;
-        try
-        {
-            stateData = new JSONObject(response);
-        }
-        catch (JSONException e)
-        {
-            Timber.w(e);
-            return new EtherscanTransaction[0];
-        }
-
-        JSONArray orders = stateData.getJSONArray("result");
-        return gson.fromJson(orders.toString(), EtherscanTransaction[].class);
-    }
-
-    private CovalentTransaction[] getCovalentTransactions(String response, String walletAddress) throws JSONException
-    {
-        if (response == null || response.length() < 80)
-        {
-            return new CovalentTransaction[0];
-        }
-        JSONObject stateData = new JSONObject(response);
-        JSONObject data = stateData.getJSONObject("data");
-        JSONArray orders = data.getJSONArray("items");
-        CovalentTransaction[] ctxs = gson.fromJson(orders.toString(), CovalentTransaction[].class);
         //reformat list to remove any transactions already seen
         List<CovalentTransaction> cvList = new ArrayList<>();
         try (Realm instance = realmManager.getRealmInstance(new Wallet(walletAddress)))
         {
-            for (CovalentTransaction ctx : ctxs)
-            {
+            pageParser.readCovalentPage(response, ctx -> {
                 RealmTransaction realmTx = instance.where(RealmTransaction.class)
                         .equalTo("hash", ctx.tx_hash)
                         .findFirst();
@@ -291,63 +298,77 @@ public class TransactionsNetworkClient implements TransactionsNetworkClientType
                 {
                     cvList.add(ctx);
                 }
-            }
+            });
         }
 
         return cvList.toArray(new CovalentTransaction[0]);
     }
 
-    private EtherscanEvent[] getEtherscanEvents(String response) throws JSONException
-    {
-        JSONObject stateData = new JSONObject(response);
-        JSONArray orders = stateData.getJSONArray("result");
-        return gson.fromJson(orders.toString(), EtherscanEvent[].class);
-    }
-
     private void writeTransactions(Realm instance, List<Transaction> txList) throws Exception
     {
         if (txList.size() == 0) return;
 
-        instance.executeTransaction(r -> {
-            for (Transaction tx : txList)
-            {
-                String oldGasFeeMax = "";
-                String oldPriorityFee = "";
-                RealmTransaction realmTx = r.where(RealmTransaction.class)
-                        .equalTo("hash", tx.hash)
-                        .findFirst();
+        instance.executeTransaction(r -> putTransactions(r, txList));
+    }
 
-                if (realmTx == null)
-                {
-                    realmTx = r.createObject(RealmTransaction.class, tx.hash);
-                }
-                else
-                {
-                    oldGasFeeMax = !TextUtils.isEmpty(realmTx.getMaxFeePerGas()) ? realmTx.getMaxFeePerGas() : tx.maxFeePerGas;
-                    oldPriorityFee = !TextUtils.isEmpty(realmTx.getPriorityFee()) ? realmTx.getPriorityFee() : tx.maxPriorityFee;
-                }
+    // Queue a write on the wallet's writer thread now; the returned Completable can be awaited later
+    private Completable startWrite(String walletAddress, Realm.Transaction transaction)
+    {
+        Completable write = realmManager.executeWrite(walletAddress, transaction).cache();
+        write.subscribe(() -> { }, e -> { }); //errors surface when awaited
+        return write;
+    }
 
-                TransactionsRealmCache.fill(realmTx, tx);
-                realmTx.setMaxFeePerGas(oldGasFeeMax);
-                realmTx.setMaxPriorityFee(oldPriorityFee);
-                r.insertOrUpdate(realmTx);
+    private void putTransactions(Realm r, List<Transaction> txList)
+    {
+        for (Transaction tx : txList)
+        {
+            String oldGasFeeMax = "";
+            String oldPriorityFee = "";
+            RealmTransaction realmTx = r.where(RealmTransaction.class)
+                    .equalTo("hash", tx.hash)
+                    .findFirst();
+
+            if (realmTx == null)
+            {
+                realmTx = r.createObject(RealmTransaction.class, tx.hash);
             }
-        });
+            else
+            {
+                oldGasFeeMax = !TextUtils.isEmpty(realmTx.getMaxFeePerGas()) ? realmTx.getMaxFeePerGas() : tx.maxFeePerGas;
+                oldPriorityFee = !TextUtils.isEmpty(realmTx.getPriorityFee()) ? realmTx.getPriorityFee() : tx.maxPriorityFee;
+            }
+
+            TransactionsRealmCache.fill(realmTx, tx);
+            realmTx.setMaxFeePerGas(oldGasFeeMax);
+            realmTx.setMaxPriorityFee(oldPriorityFee);
+            r.insertOrUpdate(realmTx);
+        }
     }
 
-    private EtherscanTransaction[] readTransactions(NetworkInfo networkInfo, TokensService svs, String tokenAddress, String lowBlock, String highBlock, boolean ascending, int page) throws JSONException
+    /**
+     * Read one page of transactions, passing each to the handler as it is decoded
+     *
+     * @return number of transactions in the page; 0 if it couldn't be read in full
+     */
+    private int readTransactions(NetworkInfo networkInfo, TokensService svs, String tokenAddress, String lowBlock, String highBlock, boolean ascending, int page,
+                                 TransactionPageParser.RecordHandler<EtherscanTransaction> handler)
     {
-        if (networkInfo == null) return new EtherscanTransaction[0];
+        if (networkInfo == null) return 0;
         if (networkInfo.etherscanAPI.contains(COVALENT))
         {
-            return readCovalentTransactions(svs, tokenAddress, networkInfo, ascending, page, PAGESIZE);
+            EtherscanTransaction[] unhandledTxs = readCovalentTransactions(svs, tokenAddress, networkInfo, ascending, page, PAGESIZE);
+            for (EtherscanTransaction etx : unhandledTxs)
+            {
+                handler.onRecord(etx);
+            }
+            return unhandledTxs.length;
         }
         else if (networkInfo.chainId == OKX_ID)
         {
-            return new EtherscanTransaction[0];
+            return 0;
         }
 
-        String result = null;
         String fullUrl;
 
         String sort = "asc";
@@ -389,7 +410,7 @@ public class TransactionsNetworkClient implements TransactionsNetworkClientType
 
             if (networkInfo.isCustom && !Utils.isValidUrl(networkInfo.etherscanAPI))
             {
-                return new EtherscanTransaction[0];
+                return 0;
             }
 
             Request request = new Request.Builder()
@@ -397,16 +418,15 @@ public class TransactionsNetworkClient implements TransactionsNetworkClientType
                 .get()
                 .build();
 
-            try (okhttp3.Response response = httpClient.newCall(request).execute())
+            try (ExplorerRateLimiter.Permit permit = rateLimiter.acquire(fullUrl);
+                 okhttp3.Response response = httpClient.newCall(request).execute())
             {
-                if (response.body() == null) return new EtherscanTransaction[0];
+                if (response.code() == HTTP_TOO_MANY_REQUESTS) permit.backOff();
+                if (response.body() == null) return 0;
                 if (response.code() / 200 == 1)
                 {
-                    result = response.body().string();
-                    if (result.length() >= 80 && !result.contains("No transactions found"))
-                    {
-                        return getEtherscanTransactions(result);
-                    }
+                    //'No transactions found' pages carry an empty result array
+                    return pageParser.readEtherscanPage(response.body().charStream(), EtherscanTransaction.class, handler);
                 }
             }
             catch (Exception e)
@@ -415,7 +435,7 @@ public class TransactionsNetworkClient implements TransactionsNetworkClientType
             }
         }
 
-        return new EtherscanTransaction[0];
+        return 0;
     }
 
     /**
@@ -489,7 +509,7 @@ public class TransactionsNetworkClient implements TransactionsNetworkClientType
         }).observeOn(Schedulers.io());
     }
 
-    private EtherscanEvent[] fetchEvents(Realm instance, String walletAddress, NetworkInfo networkInfo, TransferFetchType tfType) throws JSONException
+    private EtherscanEvent[] fetchEvents(Realm instance, String walletAddress, NetworkInfo networkInfo, TransferFetchType tfType)
     {
         EtherscanEvent[] events;
         List<EtherscanEvent> eventList = new ArrayList<>();
@@ -509,17 +529,16 @@ public class TransactionsNetworkClient implements TransactionsNetworkClientType
 
             while (true)
             {
-                String fetchTransactions = readNextTxBatch(walletAddress, networkInfo, upperBlock, lowerBlock, tfType.getValue());
-                events = getEtherscanEvents(fetchTransactions);
+                List<EtherscanEvent> batch = readNextTxBatch(walletAddress, networkInfo, upperBlock, lowerBlock, tfType.getValue());
 
-                if (events.length == 0)
+                if (batch.isEmpty())
                 {
                     break;
                 }
 
-                upperBlock = Long.parseLong(events[events.length - 1].blockNumber) - 1;
-                eventList.addAll(Arrays.asList(events));
-                if (events.length == TRANSFER_RESULT_MAX && eventList.size() > TRANSFER_RESULT_MAX)
+                upperBlock = Long.parseLong(batch.get(batch.size() - 1).blockNumber) - 1;
+                eventList.addAll(batch);
+                if (batch.size() == TRANSFER_RESULT_MAX && eventList.size() > TRANSFER_RESULT_MAX)
                 {
                     //If still above the last read, blank all following reads to avoid 'sync-holes'. The new events read above will be added on the return
                     //TODO: See above - need to sync the lowest block here to the lowest block in the transaction reads
@@ -527,7 +546,7 @@ public class TransactionsNetworkClient implements TransactionsNetworkClientType
                     blankTransferData(instance, networkInfo.chainId);
                 }
 
-                if (eventList.size() > TRANSFER_RESULT_MAX || events.length < TRANSFER_RESULT_MAX)
+                if (eventList.size() > TRANSFER_RESULT_MAX || batch.size() < TRANSFER_RESULT_MAX)
                 {
                     break;
                 }
@@ -679,10 +698,13 @@ public class TransactionsNetworkClient implements TransactionsNetworkClientType
         }
     }
 
-    private String readNextTxBatch(String walletAddress, NetworkInfo networkInfo, long upperBlock, long lowerBlock, String queryType)
+    /**
+     * @return the page of transfer events, decoded straight off the response; empty if it couldn't be read in full
+     */
+    private List<EtherscanEvent> readNextTxBatch(String walletAddress, NetworkInfo networkInfo, long upperBlock, long lowerBlock, String queryType)
     {
-        if (TextUtils.isEmpty(networkInfo.etherscanAPI) || networkInfo.etherscanAPI.contains(COVALENT)) return JSON_EMPTY_RESULT; //Covalent transfers are handled elsewhere
-        String result = JSON_EMPTY_RESULT;
+        List<EtherscanEvent> events = new ArrayList<>();
+        if (TextUtils.isEmpty(networkInfo.etherscanAPI) || networkInfo.etherscanAPI.contains(COVALENT)) return events; //Covalent transfers are handled elsewhere
         if (lowerBlock == 0) lowerBlock = 1;
 
         String fullUrl = networkInfo.etherscanAPI + "module=account&action=" + queryType +
@@ -693,7 +715,7 @@ public class TransactionsNetworkClient implements TransactionsNetworkClientType
 
         if (networkInfo.isCustom && !Utils.isValidUrl(networkInfo.etherscanAPI))
         {
-            return JSON_EMPTY_RESULT;
+            return events;
         }
 
         Request request = new Request.Builder()
@@ -703,23 +725,22 @@ public class TransactionsNetworkClient implements TransactionsNetworkClientType
             .addHeader("Content-Type", "application/json")
             .build();
 
-        try (okhttp3.Response response = httpClient.newCall(request).execute())
+        try (ExplorerRateLimiter.Permit permit = rateLimiter.acquire(fullUrl);
+             okhttp3.Response response = httpClient.newCall(request).execute())
         {
+            if (response.code() == HTTP_TOO_MANY_REQUESTS) permit.backOff();
             if (response.code() / 200 == 1)
             {
-                result = response.body().string();
-                if (result.length() < 80 && result.contains("No transactions found"))
-                {
-                    result = JSON_EMPTY_RESULT;
-                }
+                pageParser.readEtherscanPage(response.body().charStream(), EtherscanEvent.class, events::add);
             }
         }
         catch (Exception e)
         {
             if (BuildConfig.DEBUG) Timber.e(e);
+            events.clear(); //don't use a partial page; older events would be skipped when the block read is stored
         }
 
-        return result;
+        return events;
     }
 
     private String getNetworkAPIToken(NetworkInfo networkInfo)
@@ -746,13 +767,13 @@ public class TransactionsNetworkClient implements TransactionsNetworkClientType
         }
     }
 
-    private EtherscanTransaction[] readCovalentTransactions(TokensService svs, String accountAddress, NetworkInfo networkInfo, boolean ascending, int page, int pageSize) throws JSONException
+    private EtherscanTransaction[] readCovalentTransactions(TokensService svs, String accountAddress, NetworkInfo networkInfo, boolean ascending, int page, int pageSize)
     {
         String covalent = "" + networkInfo.chainId + "/address/" + accountAddress.toLowerCase() + "/transactions_v2/?";
         String args = "block-signed-at-asc=" + (ascending ? "true" : "false") + "&page-number=" + (page - 1) + "&page-size=" +
                 pageSize + "&key=" + keyProvider.getCovalentKey(); //read logs to get all the transfers
         String fullUrl = networkInfo.etherscanAPI.replace(COVALENT, covalent);
-        String result = null;
+        CovalentTransaction[] covalentTransactions;
 
         Request request = new Request.Builder()
                 .url(fullUrl + args)
@@ -760,15 +781,13 @@ public class TransactionsNetworkClient implements TransactionsNetworkClientType
                 .addHeader("Content-Type", "application/json")
                 .build();
 
-        try (okhttp3.Response response = httpClient.newCall(request).execute())
+        try (ExplorerRateLimiter.Permit permit = rateLimiter.acquire(fullUrl);
+             okhttp3.Response response = httpClient.newCall(request).execute())
         {
+            if (response.code() == HTTP_TOO_MANY_REQUESTS) permit.backOff();
             if (response.body() == null) return new EtherscanTransaction[0];
 
-            result = response.body().string();
-            if (result.length() < 80 && result.contains("No transactions found"))
-            {
-                return new EtherscanTransaction[0];
-            }
+            covalentTransactions = getCovalentTransactions(response.body().charStream(), svs.getCurrentAddress());
         }
         catch (Exception e)
         {
@@ -776,8 +795,6 @@ public class TransactionsNetworkClient implements TransactionsNetworkClientType
             return new EtherscanTransaction[0];
         }
 
-        CovalentTransaction[] covalentTransactions = getCovalentTransactions(result, svs.getCurrentAddress());
-
         EtherscanTransaction[] unhandledTxs = processCovalentEvents(covalentTransactions, svs, networkInfo);
 
         return unhandledTxs;
@@ -1246,15 +1263,14 @@ public class TransactionsNetworkClient implements TransactionsNetworkClientType
         return newToken;
     }
 
-    private void eraseAllTransactions(Realm instance, long chainId)
+    // Call inside a transaction
+    private void eraseAllTransactions(Realm r, long chainId)
     {
-        instance.executeTransaction(r -> {
-            RealmResults<RealmTransaction> realmTx = r.where(RealmTransaction.class)
-                    .equalTo("chainId", chainId)
-                    .findAll();
+        RealmResults<RealmTransaction> realmTx = r.where(RealmTransaction.class)
+                .equalTo("chainId", chainId)
+                .findAll();
 
-            realmTx.deleteAllFromRealm();
-        });
+        realmTx.deleteAllFromRealm();
     }
 
     private List<Transaction> sortTransactions(Collection<Transaction> txCollection)
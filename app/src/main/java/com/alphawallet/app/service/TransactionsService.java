@@ -36,6 +36,7 @@ import java.util.AbstractMap;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.TimeUnit;
 
@@ -43,6 +44,8 @@ import io.reactivex.Observable;
 import io.reactivex.Single;
 import io.reactivex.android.schedulers.AndroidSchedulers;
 import io.reactivex.disposables.Disposable;
+import io.reactivex.disposables.Disposables;
+import io.reactivex.functions.Consumer;
 import io.reactivex.schedulers.Schedulers;
 import timber.log.Timber;
 
@@ -58,6 +61,7 @@ public class TransactionsService
     private final TransactionsNetworkClientType transactionsClient;
     private final TransactionNotificationService transactionNotificationService;
     private final TransactionLocalSource transactionsCache;
+    private final BlockHeaderCache blockHeaders;
     private int currentChainIndex;
     private boolean firstCycle;
     private boolean firstTxCycle;
@@ -65,20 +69,20 @@ public class TransactionsService
     private final LongSparseArray<Long> chainTransactionCheckTimes = new LongSparseArray<>();
     private static final LongSparseArray<CurrentBlockTime> currentBlocks = new LongSparseArray<>();
     private static final ConcurrentLinkedQueue<String> requiredTransactions = new ConcurrentLinkedQueue<>();
-    private final LongSparseArray<TransferFetchType> apiFetchProgress = new LongSparseArray<>();
+    private final LongSparseArray<TransferFetchType> apiFetchProgress = new LongSparseArray<>(); //next transfer route to read on each chain
 
     private final static int TRANSACTION_DROPPED = -1;
     private final static int TRANSACTION_SEEN = -2;
     private final static long START_CHECK_DELAY = 3;
     private final static long CHECK_CYCLE = 15;
-    @Nullable
-    private Disposable fetchTransactionDisposable;
+    private final static int SYNC_CONCURRENCY = 4; //chains synced at once; explorer calls are further limited per host by ExplorerRateLimiter
+    private final Map<Long, Disposable> transactionFetches = new ConcurrentHashMap<>();
     @Nullable
     private Disposable transactionCheckCycle;
     @Nullable
     private Disposable tokenTransferCheckCycle;
-    @Nullable
-    private Disposable eventFetch;
+    private final Map<Long, Disposable> transferFetches = new ConcurrentHashMap<>();
+    private volatile long nftTransferChain; //NFT transfer reads go one at a time; TokensService holds off NFT checks on the chain being read
     @Nullable
     private Disposable pendingTransactionCheckCycle;
     @Nullable
@@ -89,13 +93,15 @@ public class TransactionsService
                                EthereumNetworkRepositoryType ethereumNetworkRepositoryType,
                                TransactionsNetworkClientType transactionsClient,
                                TransactionLocalSource transactionsCache,
-                               TransactionNotificationService transactionNotificationService)
+                               TransactionNotificationService transactionNotificationService,
+                               BlockHeaderCache blockHeaders)
     {
         this.tokensService = tokensService;
         this.ethereumNetworkRepository = ethereumNetworkRepositoryType;
         this.transactionsClient = transactionsClient;
         this.transactionsCache = transactionsCache;
         this.transactionNotificationService = transactionNotificationService;
+        this.blockHeaders = blockHeaders;
     }
 
     public void fetchTransactionsFromBackground()
@@ -114,9 +120,7 @@ public class TransactionsService
 
         transactionsClient.checkRequiresAuxReset(tokensService.getCurrentAddress());
 
-        if (fetchTransactionDisposable != null && !fetchTransactionDisposable.isDisposed())
-            fetchTransactionDisposable.dispose();
-        fetchTransactionDisposable = null;
+        disposeAll(transactionFetches);
         //reset transaction timers
         startTransactionCheckCycle(START_CHECK_DELAY);
 
@@ -177,29 +181,47 @@ public class TransactionsService
 
     /**
      * This uses the Etherscan API routes returning ERC20 and ERC721 token transfers, both incoming and outgoing.
+     * Up to SYNC_CONCURRENCY chains are read at once, each stepping through its own transfer routes in turn; a chain
+     * that is still being read is passed over until a later cycle.
      */
     private void checkTransfers()
     {
         List<Long> filters = tokensService.getNetworkFilters();
-        if (tokensService.getCurrentAddress() == null || filters.size() == 0 ||
-                (BuildConfig.DEBUG && eventFetch != null)) //don't allow multiple calls while debugging
+        if (tokensService.getCurrentAddress() == null || filters.size() == 0)
         {
             return; //skip check if the service isn't set up
         }
 
-        long chainId = filters.get(currentChainIndex);
-        boolean initiateRead = readTokenMoves(chainId); //check NFTs for same chain on next iteration or advance to next chain
+        if (currentChainIndex >= filters.size()) currentChainIndex = 0;
+        int startIndex = currentChainIndex;
+
+        for (int i = 0; i < filters.size() && transferFetches.size() < SYNC_CONCURRENCY; i++)
+        {
+            int index = (startIndex + i) % filters.size();
+            long chainId = filters.get(index);
+            if (!readTokenMoves(chainId))
+            {
+                continue; //chain is still being read, or its NFT route is waiting on another chain's NFT read
+            }
+
+            advanceTransferRoute(chainId);
+            currentChainIndex = index + 1; //next cycle starts after the last chain read
+        }
 
-        if (initiateRead)
+        if (currentChainIndex >= filters.size())
         {
-            currentChainIndex = getNextChainIndex(currentChainIndex, chainId, filters);
+            currentChainIndex = 0;
+            firstCycle = false;
         }
     }
 
-    private int getNextChainIndex(int currentIndex, long chainId, List<Long> filters)
+    /**
+     * Moves the chain on to its next transfer route, back to the first once all its routes have been read
+     */
+    private void advanceTransferRoute(long chainId)
     {
         final NetworkInfo info = ethereumNetworkRepository.getNetworkByChain(chainId);
-        if (filters.size() == 0 || info == null) return 0;
+        if (info == null) return;
         TransferFetchType[] availableTxTypes = info.getTransferQueriesUsed();
 
         TransferFetchType tfType = apiFetchProgress.get(chainId, TransferFetchType.ERC_20);
@@ -207,20 +229,11 @@ public class TransactionsService
         if (tfType.ordinal() >= availableTxTypes.length) //available API routes may be zero if unsupported (eg custom network)
         {
             apiFetchProgress.put(chainId, TransferFetchType.ERC_20); // completed reads from this chain, reset to start
-            currentIndex++;
         }
         else
         {
             apiFetchProgress.put(chainId, TransferFetchType.values()[tfType.ordinal() + 1]);
         }
-
-        if (currentIndex >= filters.size())
-        {
-            currentIndex = 0;
-            firstCycle = false;
-        }
-
-        return currentIndex;
     }
 
     /**
@@ -248,38 +261,46 @@ public class TransactionsService
             return true;
         }
 
-        if (eventFetch != null && !eventFetch.isDisposed())
+        TransferFetchType tfType = apiFetchProgress.get(chainId, TransferFetchType.ERC_20);
+        boolean isNFT = tfType.ordinal() > 0;
+        if (transferFetches.containsKey(chainId) || (isNFT && nftTransferChain != 0))
         {
             return false;
         }
 
-        TransferFetchType tfType = apiFetchProgress.get(chainId, TransferFetchType.ERC_20);
-        if (tfType.ordinal() > 0)
+        if (isNFT)
         {
+            nftTransferChain = chainId;
             tokensService.checkingChain(chainId);
         }
 
         Timber.tag(TAG).d("Check transfers: %s : NFT=%s", chainId, tfType.getValue());
-        eventFetch = transactionsClient.readTransfers(tokensService.getCurrentAddress(), info, tokensService, tfType)
-                .subscribeOn(Schedulers.io())
-                .observeOn(AndroidSchedulers.mainThread())
-                .subscribe(tfMap -> handleMoveCheck(info.chainId, tfType.ordinal() > 0, tfMap), this::gotReadErr);
+        startChainFetch(transferFetches, chainId, transactionsClient.readTransfers(tokensService.getCurrentAddress(), info, tokensService, tfType)
+                        .subscribeOn(Schedulers.io())
+                        .observeOn(AndroidSchedulers.mainThread())
+                        .doFinally(() -> transferReadComplete(isNFT)),
+                tfMap -> handleMoveCheck(info.chainId, tfMap), this::gotReadErr);
 
         return true;
     }
 
     private void gotReadErr(Throwable e)
     {
-        eventFetch = null;
         Timber.e(e);
     }
 
-    private void handleMoveCheck(long chainId, boolean isNFT, Map<String, List<TransferEvent>> tfMap)
+    private void transferReadComplete(boolean isNFT)
     {
-        chainTransferCheckTimes.put(chainId, System.currentTimeMillis());
-        if (isNFT) tokensService.checkingChain(0); //this flags to TokensService that the check is complete. This avoids race condition
-        eventFetch = null;
+        if (isNFT)
+        {
+            nftTransferChain = 0;
+            tokensService.checkingChain(0); //this flags to TokensService that the check is complete. This avoids race condition
+        }
+    }
 
+    private void handleMoveCheck(long chainId, Map<String, List<TransferEvent>> tfMap)
+    {
+        chainTransferCheckTimes.put(chainId, System.currentTimeMillis());
         checkForIncomingTransfers(chainId, tfMap);
     }
 
@@ -301,27 +322,29 @@ public class TransactionsService
         showTransactionNotification(tx, token, te);
     }
 
+    /**
+     * Start a transaction sync on each chain that is due, up to SYNC_CONCURRENCY at once
+     */
     private void checkTransactionQueue()
     {
         if (tokensService.getCurrentAddress() == null) return;
-        if (fetchTransactionDisposable == null)
+        while (transactionFetches.size() < SYNC_CONCURRENCY)
         {
             Token t = getRequiresTransactionUpdate();
+            if (t == null) break;
 
-            if (t != null)
-            {
-                String tick = (t.isEthereum() && getPendingChains().contains(t.tokenInfo.chainId)) ? "*" : "";
-                if (BuildConfig.DEBUG)
-                    Timber.tag(TAG).d("Transaction check for: %s (%s) %s", t.tokenInfo.chainId, t.getNetworkName(), tick);
-                NetworkInfo network = ethereumNetworkRepository.getNetworkByChain(t.tokenInfo.chainId);
-                fetchTransactionDisposable =
-                        transactionsClient.storeNewTransactions(tokensService, network, t.getAddress(), t.lastBlockCheck)
-                                .subscribeOn(Schedulers.io())
-                                .observeOn(AndroidSchedulers.mainThread())
-                                .subscribe(transactions -> onUpdateTransactions(transactions, t), this::onTxError);
-
-                checkFirstCycleCompletion();
-            }
+            final long chainId = t.tokenInfo.chainId;
+            String tick = (t.isEthereum() && getPendingChains().contains(chainId)) ? "*" : "";
+            if (BuildConfig.DEBUG)
+                Timber.tag(TAG).d("Transaction check for: %s (%s) %s", chainId, t.getNetworkName(), tick);
+            NetworkInfo network = ethereumNetworkRepository.getNetworkByChain(chainId);
+            startChainFetch(transactionFetches, chainId,
+                    transactionsClient.storeNewTransactions(tokensService, network, t.getAddress(), t.lastBlockCheck)
+                            .subscribeOn(Schedulers.io())
+                            .observeOn(AndroidSchedulers.mainThread()),
+                    transactions -> onUpdateTransactions(transactions, t), this::onTxError);
+
+            checkFirstCycleCompletion();
         }
     }
 
@@ -365,7 +388,7 @@ public class TransactionsService
         for (long chainId : chains)
         {
             NetworkInfo thisInfo = ethereumNetworkRepository.getNetworkByChain(chainId);
-            if (TextUtils.isEmpty(thisInfo.etherscanAPI))
+            if (TextUtils.isEmpty(thisInfo.etherscanAPI) || transactionFetches.containsKey(chainId))
             {
                 continue;
             }
@@ -438,13 +461,12 @@ public class TransactionsService
 
     private void onTxError(Throwable throwable)
     {
-        fetchTransactionDisposable = null;
+        Timber.w(throwable);
     }
 
     private void onUpdateTransactions(Transaction[] transactions, Token token)
     {
         //got a new transaction
-        fetchTransactionDisposable = null;
         if (transactions.length == 0) return;
 
         Timber.tag(TAG).d("Queried for %s : %s Network transactions", token.tokenInfo.name, transactions.length);
@@ -520,17 +542,16 @@ public class TransactionsService
 
     private void stopAllChainUpdate()
     {
-        if (fetchTransactionDisposable != null && !fetchTransactionDisposable.isDisposed()) { fetchTransactionDisposable.dispose(); }
         if (transactionCheckCycle != null && !transactionCheckCycle.isDisposed()) { transactionCheckCycle.dispose(); }
         if (pendingTransactionCheckCycle != null && !pendingTransactionCheckCycle.isDisposed()) { pendingTransactionCheckCycle.dispose(); }
         if (tokenTransferCheckCycle != null && !tokenTransferCheckCycle.isDisposed()) { tokenTransferCheckCycle.dispose(); }
-        if (eventFetch != null && !eventFetch.isDisposed()) { eventFetch.dispose(); }
+        disposeAll(transactionFetches);
+        disposeAll(transferFetches);
 
-        fetchTransactionDisposable = null;
         transactionCheckCycle = null;
         pendingTransactionCheckCycle = null;
         tokenTransferCheckCycle = null;
-        eventFetch = null;
+        nftTransferChain = 0;
         tokensService.checkingChain(0);
         chainTransferCheckTimes.clear();
         chainTransactionCheckTimes.clear();
@@ -538,6 +559,24 @@ public class TransactionsService
         currentChainIndex = 0;
     }
 
+    // The slot is reserved before subscribing, so a fetch which completes straight away can't leave a stale entry behind
+    private <T> void startChainFetch(Map<Long, Disposable> fetches, long chainId, Single<T> fetch, Consumer<T> onSuccess, Consumer<Throwable> onError)
+    {
+        Disposable reserved = Disposables.empty();
+        fetches.put(chainId, reserved);
+        Disposable d = fetch.doFinally(() -> fetches.remove(chainId)).subscribe(onSuccess, onError);
+        fetches.replace(chainId, reserved, d);
+    }
+
+    private void disposeAll(Map<Long, Disposable> fetches)
+    {
+        for (Disposable d : fetches.values())
+        {
+            if (!d.isDisposed()) d.dispose();
+        }
+        fetches.clear();
+    }
+
     public static void addTransactionHashFetch(String txHash, long chainId, String wallet)
     {
         String hashDef = getTxHashDef(txHash, chainId, wallet);
@@ -593,7 +632,7 @@ public class TransactionsService
         final Web3j web3j = TokenRepository.getWeb3jService(chainId);
         return EventUtils.getTransactionDetails(txHash, web3j)
                 .map(this::getBlockNumber)
-                .flatMap(blockData -> joinBlockTimestamp(blockData, web3j))
+                .flatMap(blockData -> joinBlockTimestamp(blockData, chainId))
                 .map(blockData -> formTransaction(blockData, chainId))
                 .subscribeOn(Schedulers.io())
                 .observeOn(Schedulers.io());
@@ -616,12 +655,16 @@ public class TransactionsService
         return new Pair<>(etx, blockNumber);
     }
 
-    private Single<Pair<EthTransaction, Long>> joinBlockTimestamp(Pair<EthTransaction, BigInteger> txData, Web3j web3j)
+    private Single<Pair<EthTransaction, Long>> joinBlockTimestamp(Pair<EthTransaction, BigInteger> txData, long chainId)
     {
         if (txData.second.compareTo(BigInteger.ZERO) > 0)
         {
-            return EventUtils.getBlockDetails(txData.first.getResult().getBlockHash(), web3j)
-                        .map(blockReceipt -> new Pair<>(txData.first, blockReceipt.getBlock().getTimestamp().longValue()));
+            //usually already cached by the event scan that queued this fetch
+            return Single.fromCallable(() -> {
+                BlockHeaderCache.Header header = blockHeaders.getHeader(chainId, txData.first.getResult().getBlockHash());
+                if (header == null) throw new IOException("Block header unavailable");
+                return new Pair<>(txData.first, header.timestamp);
+            });
         }
         else
         {
@@ -0,0 +1,193 @@
+package com.alphawallet.app.service;
+
+import com.alphawallet.app.entity.ContractType;
+import com.alphawallet.app.entity.tokens.TokenCardMeta;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * What the wallet screen showed for the most recently used wallets, so switching back to one renders at once while
+ * the usual refresh runs behind it.
+ *
+ * Per wallet it keeps the token card list with the token meta version it was read at (so the refresh only needs the
+ * tokens changed since), the fiat totals and the balance scheduler's check times. Wallets are dropped least recently
+ * used first, when there are more than {@link #MAX_WALLETS} or the estimated size is over {@link #MEMORY_BUDGET}.
+ */
+public class WalletWarmCache
+{
+    public static final int MAX_WALLETS = 16;
+    public static final long MEMORY_BUDGET = 8L * 1024 * 1024;
+    static final int BYTES_PER_TOKEN = 512; //TokenCardMeta, its strings and a check time, roughly
+    static final int BYTES_PER_WALLET = 256;
+
+    public static class State
+    {
+        private TokenCardMeta[] metas;
+        private long metaVersion;
+        private List<Long> networkFilters = Collections.emptyList();
+        private boolean hasFiatValues;
+        private double fiatValue;
+        private double fiatHistorical;
+        private Map<String, Long> checkTimes = Collections.emptyMap();
+
+        public TokenCardMeta[] getMetas()
+        {
+            return metas;
+        }
+
+        public long getMetaVersion()
+        {
+            return metaVersion;
+        }
+
+        public boolean hasFiatValues()
+        {
+            return hasFiatValues;
+        }
+
+        public double getFiatValue()
+        {
+            return fiatValue;
+        }
+
+        public double getFiatHistorical()
+        {
+            return fiatHistorical;
+        }
+
+        long estimatedBytes()
+        {
+            return BYTES_PER_WALLET + (long) BYTES_PER_TOKEN * Math.max(metas != null ? metas.length : 0, checkTimes.size());
+        }
+    }
+
+    private final Map<String, State> wallets = new LinkedHashMap<>(MAX_WALLETS, 0.75f, true);
+    private long totalBytes;
+
+    /**
+     * @return the wallet's token cards if they were read with the same network filters, otherwise null
+     */
+    public synchronized State getTokens(String walletAddress, List<Long> networkFilters)
+    {
+        State state = wallets.get(walletAddress.toLowerCase());
+        return state != null && state.metas != null && state.networkFilters.equals(networkFilters) ? state : null;
+    }
+
+    public synchronized void putTokens(String walletAddress, TokenCardMeta[] metas, long metaVersion, List<Long> networkFilters)
+    {
+        State state = edit(walletAddress);
+        state.metas = metas.clone();
+        state.metaVersion = metaVersion;
+        state.networkFilters = new ArrayList<>(networkFilters);
+        commit(walletAddress, state);
+    }
+
+    /**
+     * Fold tokens changed since the held version into the held list; changed tokens replace the held ones by tokenId,
+     * and tokens changed to disabled are dropped. Removed tokens can't be seen here: after a removal the caller
+     * should {@link #putTokens} a full list instead
+     */
+    public synchronized void mergeTokens(String walletAddress, TokenCardMeta[] changed, long sinceVersion, long metaVersion)
+    {
+        State state = wallets.get(walletAddress.toLowerCase());
+        if (state == null || state.metas == null || state.metaVersion != sinceVersion) return; //not the list the changes apply to
+
+        if (changed.length > 0)
+        {
+            Map<String, TokenCardMeta> merged = new LinkedHashMap<>(state.metas.length + changed.length);
+            for (TokenCardMeta meta : state.metas) merged.put(meta.tokenId, meta);
+            for (TokenCardMeta meta : changed)
+            {
+                if (isShown(meta)) merged.put(meta.tokenId, meta);
+                else merged.remove(meta.tokenId);
+            }
+            totalBytes -= state.estimatedBytes();
+            state.metas = merged.values().toArray(new TokenCardMeta[0]);
+            totalBytes += state.estimatedBytes();
+        }
+
+        state.metaVersion = metaVersion;
+        trim();
+    }
+
+    // Same rows as the full token list: enabled tokens, plus the wallet's base chain tokens whether enabled or not
+    private static boolean isShown(TokenCardMeta meta)
+    {
+        return meta.isEnabled || meta.type == ContractType.ETHEREUM;
+    }
+
+    public synchronized void putFiatValues(String walletAddress, double value, double historical)
+    {
+        State state = edit(walletAddress);
+        state.hasFiatValues = true;
+        state.fiatValue = value;
+        state.fiatHistorical = historical;
+        commit(walletAddress, state);
+    }
+
+    public synchronized void putCheckTimes(String walletAddress, Map<String, Long> checkTimes)
+    {
+        State state = edit(walletAddress);
+        state.checkTimes = new HashMap<>(checkTimes);
+        commit(walletAddress, state);
+    }
+
+    /**
+     * @return balance check times last saved for the wallet; empty if none
+     */
+    public synchronized Map<String, Long> getCheckTimes(String walletAddress)
+    {
+        State state = wallets.get(walletAddress.toLowerCase());
+        return state != null ? new HashMap<>(state.checkTimes) : Collections.emptyMap();
+    }
+
+    public synchronized void remove(String walletAddress)
+    {
+        State state = wallets.remove(walletAddress.toLowerCase());
+        if (state != null) totalBytes -= state.estimatedBytes();
+    }
+
+    public synchronized int size()
+    {
+        return wallets.size();
+    }
+
+    public synchronized long estimatedBytes()
+    {
+        return totalBytes;
+    }
+
+    // Take the wallet's state out of the size total while it's changed
+    private State edit(String walletAddress)
+    {
+        State state = wallets.get(walletAddress.toLowerCase());
+        if (state == null) return new State();
+        totalBytes -= state.estimatedBytes();
+        return state;
+    }
+
+    private void commit(String walletAddress, State state)
+    {
+        wallets.put(walletAddress.toLowerCase(), state);
+        totalBytes += state.estimatedBytes();
+        trim();
+    }
+
+    // Drop least recently used wallets until within bounds; the most recent one always stays
+    private void trim()
+    {
+        Iterator<State> itr = wallets.values().iterator();
+        while (wallets.size() > 1 && (wallets.size() > MAX_WALLETS || totalBytes > MEMORY_BUDGET))
+        {
+            State eldest = itr.next();
+            totalBytes -= eldest.estimatedBytes();
+            itr.remove();
+        }
+    }
+}
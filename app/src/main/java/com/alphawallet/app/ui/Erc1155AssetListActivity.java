@@ -69,7 +69,7 @@ public class Erc1155AssetListActivity extends BaseActivity implements StandardFu
 
         initViews();
 
-        adapter = new Erc1155AssetListAdapter(this, token.getTokenAssets(), asset, this);
+        adapter = new Erc1155AssetListAdapter(this, token, asset, viewModel.getTokensService(), this);
         recyclerView.setAdapter(adapter);
     }
 
@@ -82,7 +82,7 @@ public class Erc1155AssetListActivity extends BaseActivity implements StandardFu
     private void getIntentData()
     {
         long chainId = getIntent().getLongExtra(C.EXTRA_CHAIN_ID, EthereumNetworkBase.MAINNET_ID);
-        token = viewModel.getTokensService().getToken(chainId, getIntent().getStringExtra(C.EXTRA_ADDRESS));
+        token = viewModel.getTokensService().getTokenWithoutAssets(chainId, getIntent().getStringExtra(C.EXTRA_ADDRESS));
         wallet = getIntent().getParcelableExtra(C.Key.WALLET);
         asset = getIntent().getParcelableExtra(C.EXTRA_NFTASSET_LIST);
     }
@@ -96,7 +96,14 @@ public class Erc1155AssetListActivity extends BaseActivity implements StandardFu
     @Override
     public void onAssetClicked(Pair<BigInteger, NFTAsset> pair)
     {
-        handleTransactionSuccess.launch(viewModel.showAssetDetailsIntent(this, wallet, token, pair.first));
+        handleTransactionSuccess.launch(viewModel.showAssetDetailsIntent(this, wallet, token, pair.first, pair.second));
+    }
+
+    @Override
+    protected void onDestroy()
+    {
+        super.onDestroy();
+        if (adapter != null) adapter.onDestroy();
     }
 
     @Override
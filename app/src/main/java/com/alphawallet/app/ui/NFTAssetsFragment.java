@@ -95,7 +95,7 @@ public class NFTAssetsFragment extends BaseFragment implements OnAssetClickListe
                     .get(NFTAssetsViewModel.class);
 
             long chainId = getArguments().getLong(C.EXTRA_CHAIN_ID, EthereumNetworkBase.MAINNET_ID);
-            token = viewModel.getTokensService().getToken(chainId, getArguments().getString(C.EXTRA_ADDRESS));
+            token = viewModel.getTokensService().getTokenWithoutAssets(chainId, getArguments().getString(C.EXTRA_ADDRESS));
             wallet = getArguments().getParcelable(C.Key.WALLET);
 
             recyclerView = view.findViewById(R.id.recycler_view);
@@ -164,7 +164,7 @@ public class NFTAssetsFragment extends BaseFragment implements OnAssetClickListe
     @Override
     public void onTokenClick(View view, Token token, List<BigInteger> tokenIds, boolean selected)
     {
-        NFTAsset asset = token.getAssetForToken(tokenIds.get(0));
+        NFTAsset asset = viewModel.getTokensService().getNFTAssets(token, tokenIds.subList(0, 1)).get(tokenIds.get(0));
         handleTransactionSuccess.launch(viewModel.showAssetDetails(requireContext(), wallet, token, tokenIds.get(0), asset));
     }
 
@@ -212,14 +212,15 @@ public class NFTAssetsFragment extends BaseFragment implements OnAssetClickListe
         else
         {
             searchLayout.setVisibility(View.VISIBLE);
-            adapter = new NFTAssetsAdapter(getActivity(), token, this, viewModel.getOpenseaService(), isGridView);
-            search.addTextChangedListener(setupTextWatcher((NFTAssetsAdapter)adapter));
+            NFTAssetsAdapter nftAdapter = new NFTAssetsAdapter(getActivity(), token, this, viewModel.getOpenseaService(), viewModel.getTokensService(), isGridView);
+            nftAdapter.setOnTokenIdsLoaded(this::checkSyncStatus);
+            adapter = nftAdapter;
+            search.addTextChangedListener(setupTextWatcher(nftAdapter));
 
             attachAttestations();
         }
 
         recyclerView.setAdapter(adapter);
-        checkSyncStatus();
     }
 
     private void attachAttestations()
@@ -232,11 +233,11 @@ public class NFTAssetsFragment extends BaseFragment implements OnAssetClickListe
         }
     }
 
-    private void checkSyncStatus()
+    private void checkSyncStatus(int storedAssetCount)
     {
-        if (token == null || token.getTokenAssets() == null) return;
+        if (token == null) return;
         Bundle result = new Bundle();
-        result.putBoolean(SYNC_STATUS, token.getTokenCount() != token.getTokenAssets().size());
+        result.putBoolean(SYNC_STATUS, token.getTokenCount() != storedAssetCount);
         getParentFragmentManager().setFragmentResult(SIGNAL_NFT_SYNC, result);
         forceRedraw();
     }
@@ -90,8 +90,8 @@ public class NodeStatusActivity extends BaseActivity
 
         try
         {
-            mainnetAdapter = new NodeStatusAdapter(mainNetList);
-            testnetAdapter = new NodeStatusAdapter(testNetList);
+            mainnetAdapter = new NodeStatusAdapter(mainNetList, viewModel::getBestEndpoint, viewModel::getClientStats);
+            testnetAdapter = new NodeStatusAdapter(testNetList, viewModel::getBestEndpoint, viewModel::getClientStats);
             mainnetRecyclerView.setAdapter(mainnetAdapter);
             testnetRecyclerView.setAdapter(testnetAdapter);
         }
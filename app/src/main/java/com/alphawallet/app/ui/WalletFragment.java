@@ -88,8 +88,10 @@ import java.util.List;
 import javax.inject.Inject;
 
 import dagger.hilt.android.AndroidEntryPoint;
+import io.reactivex.Single;
 import io.reactivex.android.schedulers.AndroidSchedulers;
 import io.reactivex.schedulers.Schedulers;
+import timber.log.Timber;
 
 /**
  * Created by justindeguzman on 2/28/18.
@@ -323,8 +325,18 @@ public class WalletFragment extends BaseFragment implements
     {
         if (metas.length > 0)
         {
-            adapter.updateTokenMetas(metas);
-            systemView.hide();
+            //build the rows and fiat values off the main thread, then apply them in one batched pass
+            final TokensAdapter tokensAdapter = adapter;
+            final long sequence = tokensAdapter.startUpdate();
+            Single.fromCallable(() -> tokensAdapter.prepareUpdate(metas, false, sequence))
+                    .subscribeOn(Schedulers.io())
+                    .observeOn(AndroidSchedulers.mainThread())
+                    .subscribe(batch -> {
+                        if (adapter != tokensAdapter) return;
+                        if (!batch.isEmpty()) tokensAdapter.applyUpdate(batch);
+                        systemView.hide();
+                    }, Timber::w)
+                    .isDisposed();
             viewModel.checkDeleteMetas(metas);
             viewModel.calculateFiatValues();
         }
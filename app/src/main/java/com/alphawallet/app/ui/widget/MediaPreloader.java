@@ -0,0 +1,98 @@
+package com.alphawallet.app.ui.widget;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.recyclerview.widget.LinearLayoutManager;
+import androidx.recyclerview.widget.RecyclerView;
+
+import com.bumptech.glide.RequestBuilder;
+import com.bumptech.glide.RequestManager;
+import com.bumptech.glide.request.FutureTarget;
+
+import java.util.ArrayDeque;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Starts loading media for the rows about to scroll into view, so they bind from Glide's caches instead of starting
+ * a download as they appear. The adapter names the media for a position and builds the request the same way its row
+ * does, so the preloaded entry is the one the row asks for.
+ */
+public class MediaPreloader extends RecyclerView.OnScrollListener
+{
+    private static final int RECENT_URLS = 64;
+
+    public interface Provider
+    {
+        @Nullable
+        String getPreloadUrl(int position);
+
+        RequestBuilder<?> buildRequest(RequestManager requestManager, String url);
+    }
+
+    private final RequestManager requestManager;
+    private final Provider provider;
+    private final int maxPreload;
+    private final ArrayDeque<FutureTarget<?>> inFlight = new ArrayDeque<>();
+    private final Map<String, Boolean> recent = new LinkedHashMap<String, Boolean>(RECENT_URLS, 0.75f, true)
+    {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Boolean> eldest)
+        {
+            return size() > RECENT_URLS;
+        }
+    };
+
+    private int lastFirstVisible = RecyclerView.NO_POSITION;
+
+    public MediaPreloader(RequestManager requestManager, Provider provider, int maxPreload)
+    {
+        this.requestManager = requestManager;
+        this.provider = provider;
+        this.maxPreload = maxPreload;
+    }
+
+    @Override
+    public void onScrolled(@NonNull RecyclerView recyclerView, int dx, int dy)
+    {
+        if (!(recyclerView.getLayoutManager() instanceof LinearLayoutManager layoutManager)) return; //includes grids
+        RecyclerView.Adapter<?> adapter = recyclerView.getAdapter();
+        int first = layoutManager.findFirstVisibleItemPosition();
+        int last = layoutManager.findLastVisibleItemPosition();
+        if (adapter == null || first == RecyclerView.NO_POSITION || first == lastFirstVisible) return;
+
+        //called with no movement after layout; load ahead of the first screen then
+        boolean forward = lastFirstVisible == RecyclerView.NO_POSITION || first > lastFirstVisible;
+        lastFirstVisible = first;
+
+        int count = adapter.getItemCount();
+        if (forward)
+        {
+            for (int i = last + 1; i < Math.min(count, last + 1 + maxPreload); i++) preload(i);
+        }
+        else
+        {
+            for (int i = first - 1; i >= Math.max(0, first - maxPreload); i--) preload(i);
+        }
+    }
+
+    /**
+     * Drop pending preloads, eg when the list is torn down
+     */
+    public void clear()
+    {
+        while (!inFlight.isEmpty()) requestManager.clear(inFlight.poll());
+        recent.clear();
+        lastFirstVisible = RecyclerView.NO_POSITION;
+    }
+
+    private void preload(int position)
+    {
+        String url = provider.getPreloadUrl(position);
+        if (url == null || url.isEmpty() || recent.put(url, Boolean.TRUE) != null) return;
+
+        //oldest preloads are released first; by then they've either finished into the cache or scrolled past
+        if (inFlight.size() >= maxPreload) requestManager.clear(inFlight.poll());
+        inFlight.add(provider.buildRequest(requestManager, url).submit());
+    }
+}
@@ -14,7 +14,10 @@ import androidx.recyclerview.widget.RecyclerView;
 
 import com.alphawallet.app.R;
 import com.alphawallet.app.entity.nftassets.NFTAsset;
+import com.alphawallet.app.entity.nftassets.NFTAssetPager;
 import com.alphawallet.app.entity.tokens.ERC1155Token;
+import com.alphawallet.app.entity.tokens.Token;
+import com.alphawallet.app.service.TokensService;
 import com.alphawallet.app.ui.widget.OnAssetClickListener;
 import com.alphawallet.app.widget.NFTImageView;
 import com.bumptech.glide.Glide;
@@ -23,21 +26,27 @@ import com.bumptech.glide.request.RequestOptions;
 import org.jetbrains.annotations.NotNull;
 
 import java.math.BigInteger;
-import java.util.List;
-import java.util.Map;
 
+import io.reactivex.android.schedulers.AndroidSchedulers;
+import io.reactivex.schedulers.Schedulers;
+
+/**
+ * Members of one ERC1155 collection; their assets are read from the database a page at a time by {@link NFTAssetPager}
+ */
 public class Erc1155AssetListAdapter extends RecyclerView.Adapter<Erc1155AssetListAdapter.ViewHolder> {
-    private final List<BigInteger> actualData;
-    private final Map<BigInteger, NFTAsset> assetData;
+    private final NFTAssetPager pager;
+    private final Token token;
     private final Context context;
     private final OnAssetClickListener listener;
 
-    public Erc1155AssetListAdapter(Context context, Map<BigInteger, NFTAsset> data, NFTAsset asset, OnAssetClickListener listener)
+    public Erc1155AssetListAdapter(Context context, Token token, NFTAsset asset, TokensService tokensService, OnAssetClickListener listener)
     {
         this.context = context;
         this.listener = listener;
-        this.assetData = data;
-        this.actualData = asset.getCollectionIds();
+        this.token = token;
+        this.pager = new NFTAssetPager(tokenIds -> tokensService.getNFTAssets(token, tokenIds), Schedulers.io(), AndroidSchedulers.mainThread());
+        pager.setListener(this::notifyItemRangeChanged);
+        pager.setTokenIds(asset.getCollectionIds());
     }
 
     @NotNull
@@ -52,18 +61,34 @@ public class Erc1155AssetListAdapter extends RecyclerView.Adapter<Erc1155AssetLi
     @Override
     public void onBindViewHolder(@NotNull ViewHolder holder, int position)
     {
-        BigInteger id = actualData.get(position);
-        holder.title.setText(assetData.get(id).getName());
+        BigInteger id = pager.getTokenId(position);
+        NFTAsset asset = pager.getAsset(position);
         holder.tokenId.setText(context.getString(R.string.hash_tokenid, ERC1155Token.getNFTTokenId(id).toString())); //base value of token
-        holder.subtitle.setText(assetData.get(id).getDescription());
-        holder.icon.setupTokenImageThumbnail(assetData.get(id));
-        holder.layout.setOnClickListener(v -> listener.onAssetClicked(new Pair<>(id, assetData.get(id))));
+        if (asset == null)
+        {
+            //page still loading
+            holder.title.setText(String.format("ID #%s", id));
+            holder.subtitle.setText("");
+            holder.icon.showFallbackLayout(token);
+            holder.layout.setOnClickListener(null);
+            return;
+        }
+
+        holder.title.setText(asset.getName());
+        holder.subtitle.setText(asset.getDescription());
+        holder.icon.setupTokenImageThumbnail(asset);
+        holder.layout.setOnClickListener(v -> listener.onAssetClicked(new Pair<>(id, asset)));
     }
 
     @Override
     public int getItemCount()
     {
-        return actualData.size();
+        return pager.size();
+    }
+
+    public void onDestroy()
+    {
+        pager.dispose();
     }
 
     static class ViewHolder extends RecyclerView.ViewHolder {
@@ -13,48 +13,121 @@ import androidx.annotation.NonNull;
 import androidx.recyclerview.widget.RecyclerView;
 
 import com.alphawallet.app.R;
+import com.alphawallet.app.entity.ContractType;
 import com.alphawallet.app.entity.nftassets.NFTAsset;
+import com.alphawallet.app.entity.nftassets.NFTAssetPager;
 import com.alphawallet.app.entity.tokens.Attestation;
+import com.alphawallet.app.entity.tokens.ERC1155Token;
 import com.alphawallet.app.entity.tokens.Token;
 import com.alphawallet.app.repository.EthereumNetworkBase;
 import com.alphawallet.app.service.OpenSeaService;
+import com.alphawallet.app.service.TokensService;
 import com.alphawallet.app.ui.NFTActivity;
+import com.alphawallet.app.ui.widget.MediaPreloader;
 import com.alphawallet.app.ui.widget.OnAssetClickListener;
 import com.alphawallet.app.widget.NFTImageView;
+import com.bumptech.glide.Glide;
+import com.bumptech.glide.RequestBuilder;
+import com.bumptech.glide.RequestManager;
 
 import org.jetbrains.annotations.NotNull;
 
 import java.math.BigInteger;
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.function.IntConsumer;
 
 import io.reactivex.Single;
 import io.reactivex.android.schedulers.AndroidSchedulers;
+import io.reactivex.disposables.Disposable;
 import io.reactivex.schedulers.Schedulers;
+import timber.log.Timber;
 
+/**
+ * Shows a token's NFT assets a page at a time: the adapter holds only the token ids, read from the database without
+ * their metadata, and assets are read by {@link NFTAssetPager} around the rows being shown. ERC1155 ids sharing a base
+ * id are shown as one collection.
+ */
 public class NFTAssetsAdapter extends RecyclerView.Adapter<NFTAssetsAdapter.ViewHolder>
 {
+    private static final int PRELOAD_LIST = 8; //rows
+    private static final int PRELOAD_GRID = 12; //cells, a few rows of the grid
+
     private final Activity activity;
     private final OnAssetClickListener listener;
     private final Token token;
     private final boolean isGrid;
     private final OpenSeaService openSeaService;
+    private final TokensService tokensService;
+    private final NFTAssetPager pager;
 
-    private final List<Pair<BigInteger, NFTAsset>> actualData;
-    private final List<Pair<BigInteger, NFTAsset>> displayData;
+    private final Map<BigInteger, List<BigInteger>> collections = new HashMap<>(); //ERC1155: first id of a collection -> all its ids
+    private List<BigInteger> actualData = Collections.emptyList(); //ids shown when there's no filter
     private String lastFilter;
+    private MediaPreloader preloader;
+    private Disposable filterLoader;
+    private Disposable idLoader;
+    private IntConsumer onTokenIdsLoaded;
 
-    public NFTAssetsAdapter(Activity activity, Token token, OnAssetClickListener listener, OpenSeaService openSeaSvs, boolean isGrid)
+    public NFTAssetsAdapter(Activity activity, Token token, OnAssetClickListener listener, OpenSeaService openSeaSvs,
+                            TokensService tokensService, boolean isGrid)
     {
         this.activity = activity;
         this.listener = listener;
         this.token = token;
         this.isGrid = isGrid;
         this.openSeaService = openSeaSvs;
+        this.tokensService = tokensService;
+
+        pager = new NFTAssetPager(this::loadAssets, Schedulers.io(), AndroidSchedulers.mainThread());
+        pager.setListener(this::notifyItemRangeChanged);
+        lastFilter = "";
+
+        idLoader = Single.fromCallable(this::readTokenIds)
+                .map(storedIds -> new Pair<>(storedIds.size(), displayIds(storedIds)))
+                .subscribeOn(Schedulers.io())
+                .observeOn(AndroidSchedulers.mainThread())
+                .subscribe(this::onTokenIdsLoaded, Timber::w);
+    }
+
+    /**
+     * Told the number of stored assets once their ids have been read
+     */
+    public void setOnTokenIdsLoaded(IntConsumer listener)
+    {
+        onTokenIdsLoaded = listener;
+    }
+
+    private List<BigInteger> readTokenIds()
+    {
+        //ticket balances are held as an id array on the token itself
+        if (token.getInterfaceSpec() == ContractType.ERC721_TICKET) return new ArrayList<>(token.getUniqueTokenIds());
+        return tokensService.getNFTTokenIds(token);
+    }
+
+    private void onTokenIdsLoaded(Pair<Integer, List<BigInteger>> loaded)
+    {
+        actualData = loaded.second;
+        String searchFilter = lastFilter;
+        lastFilter = "";
+        if (searchFilter.isEmpty())
+        {
+            pager.setTokenIds(actualData);
+            notifyDataSetChanged();
+        }
+        else
+        {
+            filter(searchFilter); //search typed while the ids were read
+        }
 
-        actualData = new ArrayList<>();
+        if (onTokenIdsLoaded != null) onTokenIdsLoaded.accept(loaded.first);
+    }
+
+    private List<BigInteger> displayIds(List<BigInteger> tokenIds)
+    {
         switch (token.getInterfaceSpec())
         {
             case ERC721:
@@ -62,25 +135,74 @@ public class NFTAssetsAdapter extends RecyclerView.Adapter<NFTAssetsAdapter.View
             case ERC721_TICKET:
             case ERC721_UNDETERMINED:
             case ERC721_ENUMERABLE:
-                for (BigInteger i : token.getUniqueTokenIds())
-                {
-                    NFTAsset asset = token.getAssetForToken(i);
-                    actualData.add(new Pair<>(i, asset));
-                }
-                break;
+                return tokenIds;
             case ERC1155:
-                Map<BigInteger, NFTAsset> data = token.getCollectionMap();
-                for (Map.Entry<BigInteger, NFTAsset> d : data.entrySet())
+                Collections.sort(tokenIds);
+                return groupCollections(tokenIds);
+            default:
+                return new ArrayList<>();
+        }
+    }
+
+    // Fold ERC1155 ids with the same base id into one entry, as Token.getCollectionMap does, from the ids alone
+    private List<BigInteger> groupCollections(List<BigInteger> tokenIds)
+    {
+        Map<BigInteger, BigInteger> firstIdOfBase = new HashMap<>();
+        Map<BigInteger, List<BigInteger>> grouped = new HashMap<>();
+        List<BigInteger> displayIds = new ArrayList<>();
+        for (BigInteger tokenId : tokenIds)
+        {
+            BigInteger baseTokenId = ERC1155Token.getBaseTokenId(tokenId);
+            if (baseTokenId.compareTo(BigInteger.ZERO) > 0)
+            {
+                BigInteger firstId = firstIdOfBase.get(baseTokenId);
+                if (firstId == null)
                 {
-                    actualData.add(new Pair<>(d.getKey(), d.getValue()));
+                    firstId = tokenId;
+                    firstIdOfBase.put(baseTokenId, tokenId);
+                    displayIds.add(tokenId);
                 }
-                break;
+                grouped.computeIfAbsent(firstId, k -> new ArrayList<>()).add(tokenId);
+            }
+            else
+            {
+                displayIds.add(tokenId); //add token as-is
+            }
         }
 
-        displayData = new ArrayList<>();
-        displayData.addAll(actualData);
-        lastFilter = "";
-        sortData();
+        synchronized (collections)
+        {
+            collections.clear();
+            collections.putAll(grouped);
+        }
+        return displayIds;
+    }
+
+    // Called off the main thread for each page
+    private Map<BigInteger, NFTAsset> loadAssets(List<BigInteger> tokenIds)
+    {
+        Map<BigInteger, NFTAsset> assets = tokensService.getNFTAssets(token, tokenIds);
+        for (BigInteger tokenId : tokenIds)
+        {
+            NFTAsset asset = assets.get(tokenId);
+            if (asset == null) asset = new NFTAsset(tokenId);
+
+            List<BigInteger> collection;
+            synchronized (collections)
+            {
+                collection = collections.get(tokenId);
+            }
+
+            if (collection != null)
+            {
+                asset = new NFTAsset(asset);
+                for (BigInteger collectionId : collection) asset.addCollectionToken(collectionId);
+            }
+
+            assets.put(tokenId, asset);
+        }
+
+        return assets;
     }
 
     //TODO: Attestations should be attached to the backing Token if available
@@ -92,8 +214,36 @@ public class NFTAssetsAdapter extends RecyclerView.Adapter<NFTAssetsAdapter.View
             NFTAsset attestationAsset = new NFTAsset(thisAttn);
             //displayData.add(new Pair<>(thisAttn.getAttestationUID(), attestationAsset));
         }
+    }
+
+    @Override
+    public void onAttachedToRecyclerView(@NonNull RecyclerView recyclerView)
+    {
+        super.onAttachedToRecyclerView(recyclerView);
+        preloader = new MediaPreloader(Glide.with(activity), new MediaPreloader.Provider()
+        {
+            @Override
+            public String getPreloadUrl(int position)
+            {
+                NFTAsset asset = pager.peekAsset(position);
+                return asset != null && asset.hasImageAsset() ? asset.getThumbnail() : null;
+            }
 
-        sortData();
+            @Override
+            public RequestBuilder<?> buildRequest(RequestManager requestManager, String url)
+            {
+                return NFTImageView.thumbnailRequest(activity, requestManager, url);
+            }
+        }, isGrid ? PRELOAD_GRID : PRELOAD_LIST);
+        recyclerView.addOnScrollListener(preloader);
+    }
+
+    @Override
+    public void onDetachedFromRecyclerView(@NonNull RecyclerView recyclerView)
+    {
+        super.onDetachedFromRecyclerView(recyclerView);
+        recyclerView.removeOnScrollListener(preloader);
+        preloader.clear();
     }
 
     @Override
@@ -108,19 +258,32 @@ public class NFTAssetsAdapter extends RecyclerView.Adapter<NFTAssetsAdapter.View
     @Override
     public void onBindViewHolder(@NotNull ViewHolder holder, int position)
     {
-        Pair<BigInteger, NFTAsset> pair = displayData.get(position);
-        NFTAsset item = pair.second;
-        if (item != null)
+        BigInteger tokenId = pager.getTokenId(position);
+        NFTAsset item = pager.getAsset(position);
+        if (item == null)
         {
-            displayAsset(holder, item, pair.first);
+            displayPlaceholder(holder, tokenId); //page still loading
+            return;
         }
 
-        if (item != null && item.requiresReplacement())
+        displayAsset(holder, item, tokenId);
+
+        if (item.requiresReplacement() && (item.metaDataLoader == null || item.metaDataLoader.isDisposed()))
         {
-            fetchAsset(holder, pair);
+            fetchAsset(new Pair<>(tokenId, item));
         }
     }
 
+    private void displayPlaceholder(@NotNull ViewHolder holder, BigInteger tokenId)
+    {
+        holder.title.setText(String.format("ID #%s", tokenId));
+        holder.subtitle.setVisibility(View.GONE);
+        holder.icon.showFallbackLayout(token);
+        holder.layout.setOnClickListener(null);
+        holder.layout.setOnLongClickListener(null);
+        if (isGrid) holder.icon.setOnClickListener(null);
+    }
+
     private void displayAsset(@NotNull ViewHolder holder, NFTAsset asset, BigInteger tokenId)
     {
         displayTitle(holder, asset, token, tokenId);
@@ -172,7 +335,7 @@ public class NFTAssetsAdapter extends RecyclerView.Adapter<NFTAssetsAdapter.View
         }
     }
 
-    private void fetchAsset(ViewHolder holder, Pair<BigInteger, NFTAsset> pair)
+    private void fetchAsset(Pair<BigInteger, NFTAsset> pair)
     {
         if (EthereumNetworkBase.hasOpenseaAPI(token.tokenInfo.chainId))
         {
@@ -181,36 +344,45 @@ public class NFTAssetsAdapter extends RecyclerView.Adapter<NFTAssetsAdapter.View
                     .map(asset -> storeAsset(pair.first, asset, pair.second))
                     .subscribeOn(Schedulers.io())
                     .observeOn(AndroidSchedulers.mainThread())
-                    .subscribe(asset -> checkAsset(asset, holder, pair), e -> {});
+                    .subscribe(asset -> checkAsset(asset, pair), e -> {});
         }
         else
         {
-            fetchContractMetadata(holder, pair);
+            fetchContractMetadata(pair);
         }
     }
 
-    private void fetchContractMetadata(ViewHolder holder, Pair<BigInteger, NFTAsset> pair)
+    private void fetchContractMetadata(Pair<BigInteger, NFTAsset> pair)
     {
         pair.second.metaDataLoader = Single.fromCallable(() -> {
                     return token.fetchTokenMetadata(pair.first); //fetch directly from token
                 }).map(newAsset -> storeAsset(pair.first, newAsset, pair.second))
                 .subscribeOn(Schedulers.io())
                 .observeOn(AndroidSchedulers.mainThread())
-                .subscribe(a -> displayAsset(holder, a, pair.first), e -> {});
+                .subscribe(a -> onAssetFetched(pair, a), e -> {});
     }
 
-    private void checkAsset(NFTAsset asset, ViewHolder holder, Pair<BigInteger, NFTAsset> pair)
+    private void checkAsset(NFTAsset asset, Pair<BigInteger, NFTAsset> pair)
     {
         if (asset.hasImageAsset())
         {
-            displayAsset(holder, asset, pair.first);
+            onAssetFetched(pair, asset);
         }
         else
         {
-            fetchContractMetadata(holder, pair);
+            fetchContractMetadata(pair);
         }
     }
 
+    // The row may have been recycled for another id meanwhile, so rebind by position rather than updating the holder
+    private void onAssetFetched(Pair<BigInteger, NFTAsset> pair, NFTAsset asset)
+    {
+        if (asset == pair.second) return; //nothing better found; don't rebind and fetch again
+        pager.update(pair.first, asset);
+        int position = pager.indexOf(pair.first);
+        if (position >= 0) notifyItemChanged(position);
+    }
+
     private NFTAsset storeAsset(BigInteger tokenId, NFTAsset fetchedAsset, NFTAsset oldAsset)
     {
         if (!fetchedAsset.hasImageAsset()) return oldAsset;
@@ -220,31 +392,13 @@ public class NFTAssetsAdapter extends RecyclerView.Adapter<NFTAssetsAdapter.View
             ((NFTActivity) activity).storeAsset(tokenId, fetchedAsset);
         }
 
-        token.addAssetToTokenBalanceAssets(tokenId, fetchedAsset);
         return fetchedAsset;
     }
 
     @Override
     public int getItemCount()
     {
-        return displayData.size();
-    }
-
-    private void sortData()
-    {
-        Collections.sort(displayData, (e1, e2) -> {
-            BigInteger tokenId1 = e1.first;
-            BigInteger tokenId2 = e2.first;
-            return tokenId1.compareTo(tokenId2);
-        });
-    }
-
-    public void updateList(List<Pair<BigInteger, NFTAsset>> list)
-    {
-        displayData.clear();
-        displayData.addAll(list);
-        sortData();
-        notifyDataSetChanged();
+        return pager.size();
     }
 
     public void filter(String searchFilter)
@@ -254,28 +408,46 @@ public class NFTAssetsAdapter extends RecyclerView.Adapter<NFTAssetsAdapter.View
             return;
         }
 
-        List<Pair<BigInteger, NFTAsset>> filteredList = new ArrayList<>();
-        for (Pair<BigInteger, NFTAsset> data : actualData)
+        lastFilter = searchFilter;
+        if (filterLoader != null && !filterLoader.isDisposed()) filterLoader.dispose();
+        List<BigInteger> tokenIds = actualData;
+        filterLoader = Single.fromCallable(() -> filterTokenIds(tokenIds, searchFilter))
+                .subscribeOn(Schedulers.io())
+                .observeOn(AndroidSchedulers.mainThread())
+                .subscribe(filtered -> {
+                    pager.setTokenIds(filtered);
+                    notifyDataSetChanged();
+                }, Timber::w);
+    }
+
+    // Names are only in the metadata, so read through the ids a page at a time rather than holding every asset
+    private List<BigInteger> filterTokenIds(List<BigInteger> tokenIds, String searchFilter)
+    {
+        if (searchFilter.isEmpty()) return tokenIds;
+
+        List<BigInteger> filteredList = new ArrayList<>();
+        for (int start = 0; start < tokenIds.size(); start += NFTAssetPager.PAGE_SIZE)
         {
-            NFTAsset asset = data.second;
-            if (asset.getName() != null)
+            List<BigInteger> page = tokenIds.subList(start, Math.min(tokenIds.size(), start + NFTAssetPager.PAGE_SIZE));
+            Map<BigInteger, NFTAsset> assets = loadAssets(page);
+            for (BigInteger tokenId : page)
             {
-                if (asset.getName().toLowerCase().contains(searchFilter.toLowerCase()))
+                NFTAsset asset = assets.get(tokenId);
+                if (asset != null && asset.getName() != null)
                 {
-                    filteredList.add(data);
+                    if (asset.getName().toLowerCase().contains(searchFilter.toLowerCase()))
+                    {
+                        filteredList.add(tokenId);
+                    }
                 }
-            }
-            else
-            {
-                String id = data.first.toString();
-                if (id.contains(searchFilter))
+                else if (tokenId.toString().contains(searchFilter))
                 {
-                    filteredList.add(data);
+                    filteredList.add(tokenId);
                 }
             }
         }
-        updateList(filteredList);
-        lastFilter = searchFilter;
+
+        return filteredList;
     }
 
     @Override
@@ -287,13 +459,17 @@ public class NFTAssetsAdapter extends RecyclerView.Adapter<NFTAssetsAdapter.View
     public void onDestroy()
     {
         //clear all loaders
-        for (Pair<BigInteger, NFTAsset> assetPair : displayData)
+        for (NFTAsset asset : pager.getLoadedAssets())
         {
-            if (assetPair.second != null && assetPair.second.metaDataLoader != null && !assetPair.second.metaDataLoader.isDisposed())
+            if (asset != null && asset.metaDataLoader != null && !asset.metaDataLoader.isDisposed())
             {
-                assetPair.second.metaDataLoader.dispose();
+                asset.metaDataLoader.dispose();
             }
         }
+
+        if (filterLoader != null && !filterLoader.isDisposed()) filterLoader.dispose();
+        if (idLoader != null && !idLoader.isDisposed()) idLoader.dispose();
+        pager.dispose();
     }
 
     static class ViewHolder extends RecyclerView.ViewHolder
@@ -1,5 +1,6 @@
 package com.alphawallet.app.ui.widget.adapter;
 
+import android.net.Uri;
 import android.view.LayoutInflater;
 import android.view.View;
 import android.view.ViewGroup;
@@ -13,6 +14,8 @@ import androidx.recyclerview.widget.RecyclerView;
 import com.alphawallet.app.R;
 import com.alphawallet.app.repository.EthereumNetworkBase;
 import com.alphawallet.app.repository.TokenRepository;
+import com.alphawallet.app.repository.Web3jClientRegistry;
+import com.alphawallet.app.service.RpcEndpointHealth;
 import com.alphawallet.app.widget.TokenIcon;
 import com.alphawallet.ethereum.NetworkInfo;
 
@@ -22,6 +25,7 @@ import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.LongFunction;
 
 import io.reactivex.Single;
 import io.reactivex.android.schedulers.AndroidSchedulers;
@@ -36,10 +40,17 @@ public class NodeStatusAdapter extends RecyclerView.Adapter<NodeStatusAdapter.Vi
     private final ArrayList<Disposable> disposables = new ArrayList<>();
     /** Stores whether node status is being fetched or not. Key: chainId, value: fetching status*/
     private final Map<Long, Boolean> fetchStatusMap = new ConcurrentHashMap<>();
+    /** Latency of the last status check. Key: chainId, value: milliseconds*/
+    private final Map<Long, Long> latencyMap = new ConcurrentHashMap<>();
+    private final LongFunction<RpcEndpointHealth.EndpointStatus> endpointHealth;
+    private final LongFunction<Web3jClientRegistry.ClientStats> clientStats;
 
-    public NodeStatusAdapter(List<NetworkInfo> networkList)
+    public NodeStatusAdapter(List<NetworkInfo> networkList, LongFunction<RpcEndpointHealth.EndpointStatus> endpointHealth,
+                             LongFunction<Web3jClientRegistry.ClientStats> clientStats)
     {
         this.networkList = networkList;
+        this.endpointHealth = endpointHealth;
+        this.clientStats = clientStats;
         initStatusCheck();
     }
 
@@ -58,6 +69,15 @@ public class NodeStatusAdapter extends RecyclerView.Adapter<NodeStatusAdapter.Vi
         {
             holder.name.setText(item.name);
             holder.chainId.setText(holder.itemLayout.getContext().getString(R.string.chain_id, item.chainId));
+            RpcEndpointHealth.EndpointStatus best = endpointHealth.apply(item.chainId);
+            if (best != null)
+            {
+                // The node traffic goes to first, with the check just made if there is one, else its tracked average
+                Long measured = latencyMap.get(item.chainId);
+                holder.chainId.append(holder.itemLayout.getContext().getString(R.string.node_endpoint_latency,
+                        Uri.parse(best.url).getHost(), measured != null ? measured : best.latencyMs));
+            }
+            bindClientStats(holder, item.chainId);
             holder.tokenIcon.bindData(item.chainId);
             NodeStatus nodeStatus = statusMap.get(item.chainId);
             holder.itemLayout.setOnClickListener(v -> refreshNodeStatus(item.chainId, holder));
@@ -80,6 +100,20 @@ public class NodeStatusAdapter extends RecyclerView.Adapter<NodeStatusAdapter.Vi
         }
     }
 
+    private void bindClientStats(ViewHolder holder, long chainId)
+    {
+        Web3jClientRegistry.ClientStats stats = clientStats.apply(chainId);
+        if (stats == null || stats.totalCalls == 0)
+        {
+            holder.clientStats.setVisibility(View.GONE);
+            return;
+        }
+
+        holder.clientStats.setText(holder.itemLayout.getContext().getString(R.string.node_client_stats,
+                stats.connections, stats.idleConnections, stats.callsInFlight, stats.totalCalls));
+        holder.clientStats.setVisibility(View.VISIBLE);
+    }
+
     @Override
     public int getItemCount() {
         return networkList.size();
@@ -104,6 +138,7 @@ public class NodeStatusAdapter extends RecyclerView.Adapter<NodeStatusAdapter.Vi
             String s = web3j.web3ClientVersion().send().getWeb3ClientVersion();
             long endTime = System.currentTimeMillis();
             long latency = endTime - startTime;
+            latencyMap.put(chainId, latency);
             status = latency < 1000 ? NodeStatus.STRONG : NodeStatus.MEDIUM;
         }
         catch (Exception e)
@@ -168,6 +203,7 @@ public class NodeStatusAdapter extends RecyclerView.Adapter<NodeStatusAdapter.Vi
     {
         TextView name;
         TextView chainId;
+        TextView clientStats;
         View itemLayout;
         TokenIcon tokenIcon;
         ImageView status;
@@ -178,6 +214,7 @@ public class NodeStatusAdapter extends RecyclerView.Adapter<NodeStatusAdapter.Vi
             super(view);
             name = view.findViewById(R.id.name);
             chainId = view.findViewById(R.id.chain_id);
+            clientStats = view.findViewById(R.id.client_stats);
             itemLayout = view.findViewById(R.id.layout_list_item);
             tokenIcon = view.findViewById(R.id.token_icon);
             status = view.findViewById(R.id.image_status);
@@ -0,0 +1,25 @@
+package com.alphawallet.app.ui.widget.adapter;
+
+import androidx.recyclerview.widget.SortedList;
+
+public class SortedListSearch
+{
+    /**
+     * Position of this exact row. SortedList.indexOf is a binary search on the sort key, which misses a row whose
+     * key has changed since it was added; fall back to a scan so the row is still found rather than duplicated.
+     *
+     * @return position, or {@link SortedList#INVALID_POSITION} if the row isn't in the list
+     */
+    public static <T> int indexOf(SortedList<T> list, T row)
+    {
+        int index = list.indexOf(row);
+        if (index != SortedList.INVALID_POSITION && list.get(index) == row) return index;
+
+        for (int i = 0; i < list.size(); i++)
+        {
+            if (list.get(i) == row) return i;
+        }
+
+        return SortedList.INVALID_POSITION;
+    }
+}
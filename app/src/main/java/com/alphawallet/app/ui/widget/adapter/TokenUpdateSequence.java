@@ -0,0 +1,60 @@
+package com.alphawallet.app.ui.widget.adapter;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Orders token list updates which are prepared off the main thread. Each update takes a sequence number when it
+ * starts reading token state; when it's applied, rows already written by a later update are left alone, so two
+ * overlapping updates finishing out of order can't put an older row back.
+ *
+ * {@link #next()} may be called from any thread; the rest is main thread only.
+ */
+public class TokenUpdateSequence
+{
+    private final AtomicLong sequence = new AtomicLong();
+    private final Map<String, Long> applied = new HashMap<>();
+    private long clearedAt = 0;
+
+    /**
+     * @return sequence number for an update starting now
+     */
+    public long next()
+    {
+        return sequence.incrementAndGet();
+    }
+
+    /**
+     * @return true if a later update has already written (or cleared) this row
+     */
+    public boolean isStale(String key, long updateSequence)
+    {
+        if (updateSequence < clearedAt) return true;
+        Long last = applied.get(key);
+        return last != null && last > updateSequence;
+    }
+
+    /**
+     * @return true if the whole list has been replaced since this update started
+     */
+    public boolean isBeforeClear(long updateSequence)
+    {
+        return updateSequence < clearedAt;
+    }
+
+    public void markApplied(String key, long updateSequence)
+    {
+        Long last = applied.get(key);
+        if (last == null || last < updateSequence) applied.put(key, updateSequence);
+    }
+
+    /**
+     * The list was replaced by this update; anything started before it is stale
+     */
+    public void clear(long updateSequence)
+    {
+        applied.clear();
+        if (updateSequence > clearedAt) clearedAt = updateSequence;
+    }
+}
@@ -1,7 +1,6 @@
 package com.alphawallet.app.ui.widget.adapter;
 
 import android.content.Intent;
-import android.util.Log;
 import android.view.ViewGroup;
 
 import androidx.activity.result.ActivityResultLauncher;
@@ -17,8 +16,10 @@ import com.alphawallet.app.entity.tokendata.TokenGroup;
 import com.alphawallet.app.entity.tokens.Token;
 import com.alphawallet.app.entity.tokens.TokenCardMeta;
 import com.alphawallet.app.entity.walletconnect.WalletConnectSessionItem;
+import com.alphawallet.app.repository.EthereumNetworkBase;
 import com.alphawallet.app.service.AssetDefinitionService;
 import com.alphawallet.app.service.TokensService;
+import com.alphawallet.app.ui.widget.MediaPreloader;
 import com.alphawallet.app.ui.widget.TokensAdapterCallback;
 import com.alphawallet.app.ui.widget.entity.ChainItem;
 import com.alphawallet.app.ui.widget.entity.HeaderItem;
@@ -43,17 +44,25 @@ import com.alphawallet.app.ui.widget.holder.TokenHolder;
 import com.alphawallet.app.ui.widget.holder.TotalBalanceHolder;
 import com.alphawallet.app.ui.widget.holder.WalletConnectSessionHolder;
 import com.alphawallet.app.ui.widget.holder.WarningHolder;
+import com.alphawallet.app.util.Utils;
 import com.alphawallet.token.entity.ViewType;
+import com.bumptech.glide.Glide;
+import com.bumptech.glide.RequestBuilder;
+import com.bumptech.glide.RequestManager;
 
 import java.math.BigDecimal;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 public class TokensAdapter extends RecyclerView.Adapter<BinderViewHolder>
 {
     private static final String TAG = "TKNADAPTER";
-    private TokenFilter filterType = TokenFilter.ALL;
+    private static final int PRELOAD_ICONS = 10;
+    private volatile TokenFilter filterType = TokenFilter.ALL; //read by prepareUpdate off the main thread
     protected final AssetDefinitionService assetService;
     protected final TokensService tokensService;
     private final ActivityResultLauncher<Intent> managementLauncher;
@@ -62,7 +71,7 @@ public class TokensAdapter extends RecyclerView.Adapter<BinderViewHolder>
     private String walletAddress;
     private boolean debugView = false;
 
-    private boolean gridFlag;
+    private volatile boolean gridFlag;
 
     protected final TokensAdapterCallback tokensAdapterCallback;
 
@@ -113,8 +122,16 @@ public class TokensAdapter extends RecyclerView.Adapter<BinderViewHolder>
 
     protected TotalBalanceSortedItem total = new TotalBalanceSortedItem(null);
 
+    // tokenId (lower case) -> row currently in the list, so an update finds its row without scanning; main thread only
+    private final Map<String, TokenSortedItem> tokenIndex = new HashMap<>();
+    // what each row currently shows; read off the main thread to drop metas which wouldn't change anything
+    private final Map<String, String> displayedState = new ConcurrentHashMap<>();
+    // keeps overlapping prepared updates from overwriting newer rows when they're applied out of order
+    private final TokenUpdateSequence updateSequence = new TokenUpdateSequence();
+
     private boolean searchBarAdded;
     private boolean manageTokenLayoutAdded;
+    private MediaPreloader iconPreloader;
 
     public TokensAdapter(TokensAdapterCallback tokensAdapterCallback, AssetDefinitionService aService, TokensService tService,
                          ActivityResultLauncher<Intent> launcher)
@@ -133,6 +150,50 @@ public class TokensAdapter extends RecyclerView.Adapter<BinderViewHolder>
         this.managementLauncher = null;
     }
 
+    @Override
+    public void onAttachedToRecyclerView(@NonNull RecyclerView recyclerView)
+    {
+        super.onAttachedToRecyclerView(recyclerView);
+        iconPreloader = new MediaPreloader(Glide.with(recyclerView), new MediaPreloader.Provider()
+        {
+            @Override
+            public String getPreloadUrl(int position)
+            {
+                return position < items.size() ? getIconUrl(items.get(position)) : null;
+            }
+
+            @Override
+            public RequestBuilder<?> buildRequest(RequestManager requestManager, String url)
+            {
+                //rows decode at their own icon size; fetching the file is what keeps them from stalling
+                return requestManager.downloadOnly().load(url);
+            }
+        }, PRELOAD_ICONS);
+        recyclerView.addOnScrollListener(iconPreloader);
+    }
+
+    @Override
+    public void onDetachedFromRecyclerView(@NonNull RecyclerView recyclerView)
+    {
+        super.onDetachedFromRecyclerView(recyclerView);
+        recyclerView.removeOnScrollListener(iconPreloader);
+        iconPreloader.clear();
+    }
+
+    // The repo icon TokenIcon tries first; chain tokens use bundled logos and spam shows no icon
+    private String getIconUrl(SortedItem<?> item)
+    {
+        if (!(item instanceof TokenSortedItem tsi)) return null;
+        TokenCardMeta meta = tsi.value;
+        if (meta.isEthereum() || meta.getTokenGroup() == TokenGroup.SPAM
+                || EthereumNetworkBase.getChainOverrideAddress(meta.getChain()).equalsIgnoreCase(meta.getAddress()))
+        {
+            return null;
+        }
+
+        return Utils.getTokenImageUrl(meta.getAddress());
+    }
+
     @Override
     public long getItemId(int position)
     {
@@ -275,100 +336,207 @@ public class TokensAdapter extends RecyclerView.Adapter<BinderViewHolder>
     }
 
     /**
-     * Update a single item in the recycler view
+     * Take a place in the update order for metas which have just arrived; call on the main thread, in arrival order,
+     * before handing the metas to {@link #prepareUpdate}
+     */
+    public long startUpdate()
+    {
+        return updateSequence.next();
+    }
+
+    /**
+     * Work out what a set of metas changes in the list. This builds the rows, including the fiat value lookups, and
+     * drops metas which wouldn't change what's displayed; it's safe to call off the main thread.
+     * Hand the result to {@link #applyUpdate} on the main thread.
      *
-     * @param token
+     * @param clear true if the metas replace the whole list
+     * @param sequence from {@link #startUpdate}; a batch applied after a later one only changes rows the later one didn't
      */
-    public void updateToken(TokenCardMeta token)
+    public UpdateBatch prepareUpdate(TokenCardMeta[] tokens, boolean clear, long sequence)
     {
-        if (canDisplayToken(token))
+        //one read of the filter, so the batch can't pair a new filter with the old grid flag
+        TokenFilter filter = filterType;
+        UpdateBatch batch = new UpdateBatch(tokens, filter, filter == TokenFilter.COLLECTIBLES, clear, sequence);
+        for (TokenCardMeta token : tokens)
         {
-            //does this token already exist with a different weight (ie name has changed)?
-            removeMatchingTokenDifferentWeight(token);
-            if (gridFlag)
+            if (token == null || token.tokenId == null) continue;
+            String key = token.tokenId.toLowerCase(Locale.ROOT);
+            if (!canDisplayToken(token, batch.filterType))
             {
-                items.add(new TokenSortedItem(TokenGridHolder.VIEW_TYPE, token, token.getNameWeight()));
-                return;
+                if (!clear && displayedState.containsKey(key)) batch.removals.add(key);
+                continue;
             }
 
-            TokenSortedItem tsi = new TokenSortedItem(TokenHolder.VIEW_TYPE, token, token.getNameWeight());
-            tsi.setFiatValue(tokensService.getTokenFiatValue(token.getChain(), token.getAddress()));
-            if (debugView) tsi.debug();
-            int index = findItem(tsi);
-            if (index > -1)
-            {
-                items.updateItemAt(index, tsi);
-            }
-            else
-            {
-                SortedItem<?> headerItem = new HeaderItem(token.group);
-                items.add(headerItem);
-                items.add(tsi);
+            TokenSortedItem tsi = buildTokenItem(token, batch.gridFlag);
+            if (!clear && displayState(tsi).equals(displayedState.get(key))) continue;
+            batch.upserts.add(tsi);
+        }
 
-                SortedItem<?> chainItem = new ChainItem(token.getChain(), token.group);
-                if (doesNotExist(chainItem))
-                {
-                    Log.e(TAG, "updateToken: ******************" + chainItem.viewType);
-                    items.add(chainItem);//链名称类型
-                }
-            }
+        return batch;
+    }
+
+    /**
+     * Apply a prepared update in one batched pass
+     */
+    public void applyUpdate(UpdateBatch batch)
+    {
+        if (updateSequence.isBeforeClear(batch.sequence)) return; //the list has been replaced since
+
+        if (batch.filterType != filterType || batch.gridFlag != gridFlag)
+        {
+            //filter changed while the batch was being prepared; rebuild the rows for the current filter
+            populateTokens(currentMetas(batch), batch.clear);
+            return;
         }
-        else
+
+        items.beginBatchedUpdates();
+        if (batch.clear) clearItems(batch.sequence);
+
+        addSearchTokensLayout();
+
+        if (managementLauncher != null) addManageTokensLayout();
+
+        for (String key : batch.removals)
         {
-            removeToken(token);
+            if (!updateSequence.isStale(key, batch.sequence)) removeIndexed(key, batch.sequence);
         }
+
+        for (TokenSortedItem tsi : batch.upserts)
+        {
+            if (!updateSequence.isStale(tokenKey(tsi.value), batch.sequence)) placeToken(tsi, batch.sequence);
+        }
+
+        addManageTokensLayout();
+
+        items.endBatchedUpdates();
     }
 
-    private boolean doesNotExist(SortedItem<?> token)
+    /**
+     * Update a single item in the recycler view
+     *
+     * @param token
+     */
+    public void updateToken(TokenCardMeta token)
     {
-        return findItem(token) == -1;
+        if (canDisplayToken(token) && token.tokenId != null)
+        {
+            placeToken(buildTokenItem(token, gridFlag), updateSequence.next());
+        }
+        else
+        {
+            removeToken(token);
+        }
     }
 
-    private int findItem(SortedItem<?> tsi)
+    // Metas from a batch which a later update hasn't already overtaken
+    private TokenCardMeta[] currentMetas(UpdateBatch batch)
     {
-        for (int i = 0; i < items.size(); i++)
+        List<TokenCardMeta> current = new ArrayList<>();
+        for (TokenCardMeta token : batch.tokens)
         {
-            if (items.get(i).areItemsTheSame(tsi))
+            if (token != null && token.tokenId != null && !updateSequence.isStale(tokenKey(token), batch.sequence))
             {
-                return i;
+                current.add(token);
             }
         }
-        return -1;
+        return current.toArray(new TokenCardMeta[0]);
     }
 
-    private void removeMatchingTokenDifferentWeight(TokenCardMeta token)
+    private static String tokenKey(TokenCardMeta token)
     {
-        for (int i = 0; i < items.size(); i++)
+        return token.tokenId.toLowerCase(Locale.ROOT);
+    }
+
+    private TokenSortedItem buildTokenItem(TokenCardMeta token, boolean grid)
+    {
+        if (grid)
         {
-            if (items.get(i) instanceof TokenSortedItem tsi)
-            {
-                if (tsi.value.equals(token))
-                {
-                    if (tsi.value.getNameWeight() != token.getNameWeight())
-                    {
-                        items.removeItemAt(i);
-                        break;
-                    }
-                }
-            }
+            return new TokenSortedItem(TokenGridHolder.VIEW_TYPE, token, token.getNameWeight());
         }
+
+        TokenSortedItem tsi = new TokenSortedItem(TokenHolder.VIEW_TYPE, token, token.getNameWeight());
+        if (tokensService != null) tsi.setFiatValue(tokensService.getTokenFiatValue(token.getChain(), token.getAddress()));
+        if (debugView) tsi.debug();
+        return tsi;
     }
 
-    public void removeToken(TokenCardMeta token)
+    // Add or replace the token's row; the index finds an existing row without comparing against every other row
+    private void placeToken(TokenSortedItem tsi, long sequence)
     {
-        for (int i = 0; i < items.size(); i++)
+        String key = tokenKey(tsi.value);
+        TokenSortedItem existing = tokenIndex.get(key);
+        int index = existing != null ? SortedListSearch.indexOf(items, existing) : SortedList.INVALID_POSITION;
+
+        if (index != SortedList.INVALID_POSITION && existing.viewType == tsi.viewType
+                && existing.value.getNameWeight() == tsi.value.getNameWeight())
         {
-            Object si = items.get(i);
-            if (si instanceof TokenSortedItem tsi && tsi.value.tokenId != null)
+            items.updateItemAt(index, tsi);
+        }
+        else
+        {
+            //weight changed (ie name has changed) or the view type is different: replace the row
+            if (index != SortedList.INVALID_POSITION) items.removeItemAt(index);
+            items.add(tsi);
+
+            if (tsi.viewType == TokenHolder.VIEW_TYPE)
             {
-                TokenCardMeta thisToken = tsi.value;
-                if (thisToken.tokenId.equalsIgnoreCase(token.tokenId))
+                items.add(new HeaderItem(tsi.value.group));
+
+                SortedItem<?> chainItem = new ChainItem(tsi.value.getChain(), tsi.value.group);
+                if (items.indexOf(chainItem) == SortedList.INVALID_POSITION)
                 {
-                    items.remove(tsi);
-                    break;
+                    items.add(chainItem);//链名称类型
                 }
             }
         }
+
+        tokenIndex.put(key, tsi);
+        displayedState.put(key, displayState(tsi));
+        updateSequence.markApplied(key, sequence);
+    }
+
+    private void removeIndexed(String key, long sequence)
+    {
+        TokenSortedItem existing = tokenIndex.remove(key);
+        displayedState.remove(key);
+        updateSequence.markApplied(key, sequence);
+        if (existing == null) return;
+
+        int index = SortedListSearch.indexOf(items, existing);
+        if (index != SortedList.INVALID_POSITION) items.removeItemAt(index);
+    }
+
+    private void forget(TokenSortedItem tsi)
+    {
+        String key = tsi.value.tokenId.toLowerCase(Locale.ROOT);
+        if (tokenIndex.get(key) == tsi)
+        {
+            tokenIndex.remove(key);
+            displayedState.remove(key);
+        }
+    }
+
+    private void clearItems(long sequence)
+    {
+        updateSequence.clear(sequence);
+        items.clear();
+        tokenIndex.clear();
+        displayedState.clear();
+        searchBarAdded = false;
+        manageTokenLayoutAdded = false;
+    }
+
+    private static String displayState(TokenSortedItem tsi)
+    {
+        TokenCardMeta tcm = tsi.value;
+        return tsi.viewType + "|" + tcm.getNameWeight() + "|" + tcm.balance + "|" + tcm.type.ordinal() + "|"
+                + tcm.lastUpdate + "|" + tcm.group + "|" + tsi.getFiatValue();
+    }
+
+    public void removeToken(TokenCardMeta token)
+    {
+        if (token == null || token.tokenId == null) return;
+        removeIndexed(tokenKey(token), updateSequence.next());
     }
 
     public SortedItem<TokenCardMeta> removeToken(String removalKey)
@@ -381,6 +549,7 @@ public class TokensAdapter extends RecyclerView.Adapter<BinderViewHolder>
                 if (tsi.value.tokenId.toLowerCase(Locale.ROOT).startsWith(removalKey))
                 {
                     items.remove(tsi);
+                    forget(tsi);
                     return tsi;
                 }
             }
@@ -400,6 +569,7 @@ public class TokensAdapter extends RecyclerView.Adapter<BinderViewHolder>
                 if (thisToken.tokenId.equals(tokenId))
                 {
                     items.remove(tsi);
+                    forget(tsi);
                     return tsi;
                 }
             }
@@ -419,6 +589,7 @@ public class TokensAdapter extends RecyclerView.Adapter<BinderViewHolder>
                 if (thisToken.tokenId.toLowerCase(Locale.ROOT).startsWith(tokenKey))
                 {
                     items.remove(tsi);
+                    forget(tsi);
                     return tsi;
                 }
             }
@@ -427,6 +598,11 @@ public class TokensAdapter extends RecyclerView.Adapter<BinderViewHolder>
     }
 
     private boolean canDisplayToken(TokenCardMeta token)
+    {
+        return canDisplayToken(token, filterType);
+    }
+
+    private boolean canDisplayToken(TokenCardMeta token, TokenFilter filterType)
     {
         if (token == null || token.balance == null) return false;
         if (token.balance.equals("-2"))
@@ -476,12 +652,7 @@ public class TokensAdapter extends RecyclerView.Adapter<BinderViewHolder>
     private void populateTokens(TokenCardMeta[] tokens, boolean clear)
     {
         items.beginBatchedUpdates();
-        if (clear)
-        {
-            items.clear();
-            searchBarAdded = false;
-            manageTokenLayoutAdded = false;
-        }
+        if (clear) clearItems(updateSequence.next());
 
         addSearchTokensLayout();
 
@@ -546,6 +717,8 @@ public class TokensAdapter extends RecyclerView.Adapter<BinderViewHolder>
     {
         items.beginBatchedUpdates();
         items.clear();
+        tokenIndex.clear();
+        displayedState.clear();
         items.endBatchedUpdates();
     }
 
@@ -637,7 +810,8 @@ public class TokensAdapter extends RecyclerView.Adapter<BinderViewHolder>
         {
             if (items.get(i).viewType == viewType)
             {
-                items.removeItemAt(i);
+                SortedItem<?> removed = items.removeItemAt(i);
+                if (removed instanceof TokenSortedItem tsi) forget(tsi);
                 break;
             }
         }
@@ -645,7 +819,14 @@ public class TokensAdapter extends RecyclerView.Adapter<BinderViewHolder>
 
     public void addToken(SortedItem<TokenCardMeta> token)
     {
-        items.add(token);
+        if (token instanceof TokenSortedItem tsi && tsi.value.tokenId != null)
+        {
+            placeToken(tsi, updateSequence.next());
+        }
+        else
+        {
+            items.add(token);
+        }
     }
 
     public void checkWalletConnect()
@@ -669,4 +850,32 @@ public class TokensAdapter extends RecyclerView.Adapter<BinderViewHolder>
             }
         }
     }
+
+    /**
+     * Rows built off the main thread by {@link #prepareUpdate}
+     */
+    public static class UpdateBatch
+    {
+        final TokenCardMeta[] tokens;
+        final TokenFilter filterType;
+        final boolean gridFlag;
+        final boolean clear;
+        final long sequence;
+        final List<TokenSortedItem> upserts = new ArrayList<>();
+        final List<String> removals = new ArrayList<>();
+
+        UpdateBatch(TokenCardMeta[] tokens, TokenFilter filterType, boolean gridFlag, boolean clear, long sequence)
+        {
+            this.tokens = tokens;
+            this.filterType = filterType;
+            this.gridFlag = gridFlag;
+            this.clear = clear;
+            this.sequence = sequence;
+        }
+
+        public boolean isEmpty()
+        {
+            return !clear && upserts.isEmpty() && removals.isEmpty();
+        }
+    }
 }
@@ -26,6 +26,11 @@ public class TokenSortedItem extends SortedItem<TokenCardMeta> {
         fiatValue = v;
     }
 
+    public double getFiatValue()
+    {
+        return fiatValue;
+    }
+
     public void debug()
     {
         debugging = true;
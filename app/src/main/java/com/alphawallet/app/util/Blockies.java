@@ -1,143 +1,122 @@
 package com.alphawallet.app.util;
 
 import android.graphics.Bitmap;
+import android.graphics.BitmapShader;
 import android.graphics.Canvas;
-import android.graphics.Color;
+import android.graphics.Matrix;
 import android.graphics.Paint;
-import android.graphics.PorterDuff;
-import android.graphics.PorterDuffXfermode;
-import android.graphics.Rect;
-
-import java.util.Arrays;
-
+import android.graphics.Shader;
+import android.util.LruCache;
+
+/**
+ * Blockies identicons. Generation keeps its random state per call, so icons can be made from any thread; rendered
+ * icons are kept in a memory bounded LRU keyed by address and scale, as the same few addresses are bound over and
+ * over while lists scroll. Bitmaps handed out are shared and must not be modified.
+ */
 public class Blockies {
-    private static final int size = 8;
-    private static final long[] randSeed = new long[4];
+    public static final int SIZE = 8;
+    private static final int CACHE_BYTES = (int) Math.min(8L * 1024 * 1024, Runtime.getRuntime().maxMemory() / 32);
+
+    private static final LruCache<String, Bitmap> icons = new LruCache<String, Bitmap>(CACHE_BYTES) {
+        @Override
+        protected int sizeOf(String key, Bitmap bitmap) {
+            return bitmap.getByteCount();
+        }
+    };
 
     public static Bitmap createIcon(String address) {
         return createIcon(address, 16);
     }
 
     public static Bitmap createIcon(String address, int scale) {
-        seedRand(address);
-        HSL color = createColor();
-        HSL bgColor = createColor();
-        HSL spotColor = createColor();
-        return createCanvas(createImageData(), color, bgColor, spotColor, scale);
+        String key = address + "-" + scale;
+        Bitmap icon = icons.get(key);
+        if (icon == null) {
+            icon = createCanvas(createPixels(address), scale);
+            icons.put(key, icon);
+        }
+        return icon;
     }
 
-    private static Bitmap createCanvas(double[] imgData, HSL color, HSL bgColor, HSL spotColor, int scale) {
-        int width = (int) Math.sqrt(imgData.length);
+    /**
+     * @return SIZE x SIZE ARGB pixels, row by row
+     */
+    public static int[] createPixels(String address) {
+        Rand rand = new Rand(address);
+        int color = createColor(rand);
+        int bgColor = createColor(rand);
+        int spotColor = createColor(rand);
+
+        //left half is random, right half mirrors it
+        int half = SIZE / 2;
+        int[] pixels = new int[SIZE * SIZE];
+        for (int y = 0; y < SIZE; y++) {
+            int rowStart = y * SIZE;
+            for (int x = 0; x < half; x++) {
+                int value = (int) Math.floor(rand.next() * 2.3d);
+                int pixel = value == 1 ? color : (value > 0 ? spotColor : bgColor);
+                pixels[rowStart + x] = pixel;
+                pixels[rowStart + SIZE - 1 - x] = pixel;
+            }
+        }
 
-        int w = width * scale;
-        int h = width * scale;
+        return pixels;
+    }
 
-        Bitmap.Config conf = Bitmap.Config.ARGB_8888;
-        Bitmap bmp = Bitmap.createBitmap(w, h, conf);
-        Canvas canvas = new Canvas(bmp);
+    // Scale the blocks up without filtering and crop to a circle, in one draw
+    private static Bitmap createCanvas(int[] pixels, int scale) {
+        Bitmap blocks = Bitmap.createBitmap(pixels, SIZE, SIZE, Bitmap.Config.ARGB_8888);
+        int w = SIZE * scale;
+        Bitmap output = Bitmap.createBitmap(w, w, Bitmap.Config.ARGB_8888);
 
-        int background = toRGB((int) bgColor.h, (int) bgColor.s, (int) bgColor.l);
+        BitmapShader shader = new BitmapShader(blocks, Shader.TileMode.CLAMP, Shader.TileMode.CLAMP);
+        Matrix matrix = new Matrix();
+        matrix.setScale(scale, scale);
+        shader.setLocalMatrix(matrix);
 
         Paint paint = new Paint();
-        paint.setStyle(Paint.Style.FILL);
-        paint.setColor(background);
-        canvas.drawRect(0, 0, w, h, paint);
-
-        int main = toRGB((int) color.h, (int) color.s, (int) color.l);
-        int scolor = toRGB((int) spotColor.h, (int) spotColor.s, (int) spotColor.l);
-
-        for (int i = 0; i < imgData.length; i++) {
-            int row = (int) Math.floor(i / width);
-            int col = i % width;
-            paint = new Paint();
-
-            paint.setColor((imgData[i] == 1.0d) ? main : scolor);
-
-            if (imgData[i] > 0d) {
-                canvas.drawRect(col * scale, row * scale, (col * scale) + scale, (row * scale) + scale, paint);
-            }
-        }
-        return getCroppedBitmap(bmp);
-    }
-
-    private static double rand() {
-        int t = (int) (randSeed[0] ^ (randSeed[0] << 11));
-        randSeed[0] = randSeed[1];
-        randSeed[1] = randSeed[2];
-        randSeed[2] = randSeed[3];
-        randSeed[3] = (randSeed[3] ^ (randSeed[3] >> 19) ^ t ^ (t >> 8));
-        double t1 = Math.abs(randSeed[3]);
-        return (t1 / Integer.MAX_VALUE);
+        paint.setAntiAlias(true);
+        paint.setFilterBitmap(false);
+        paint.setShader(shader);
+        new Canvas(output).drawCircle(w / 2f, w / 2f, w / 2f, paint);
+        blocks.recycle();
+        return output;
     }
 
-    private static HSL createColor() {
-        double h = Math.floor(rand() * 360d);
-        double s = ((rand() * 60d) + 40d);
-        double l = ((rand() + rand() + rand() + rand()) * 25d);
-        return new HSL(h, s, l);
+    private static int createColor(Rand rand) {
+        double h = Math.floor(rand.next() * 360d);
+        double s = ((rand.next() * 60d) + 40d);
+        double l = ((rand.next() + rand.next() + rand.next() + rand.next()) * 25d);
+        return toRGB((int) h, (int) s, (int) l);
     }
 
-    private static double[] createImageData() {
-        int width = size;
-        int height = size;
-
-        double dataWidth = Math.ceil(width / 2);
-        double mirrorWidth = width - dataWidth;
-
-        double[] data = new double[size * size];
-        int dataCount = 0;
-        for (int y = 0; y < height; y++) {
-            double[] row = new double[(int) dataWidth];
-            for (int x = 0; x < dataWidth; x++) {
-                row[x] = Math.floor(rand() * 2.3d);
+    // xorshift seeded from the address, as the reference blockies implementation
+    private static class Rand {
+        private final long[] seed = new long[4];
 
-            }
-            double[] r = Arrays.copyOfRange(row, 0, (int) mirrorWidth);
-            r = reverse(r);
-            row = concat(row, r);
+        Rand(String address) {
+            for (int i = 0; i < address.length(); i++) {
+                long test = seed[i % 4] << 5;
+                if (test > Integer.MAX_VALUE << 1 || test < Integer.MIN_VALUE << 1)
+                    test = (int) test;
 
-            for (double v : row) {
-                data[dataCount] = v;
-                dataCount++;
+                long test2 = test - seed[i % 4];
+                seed[i % 4] = (test2 + Character.codePointAt(address, i));
             }
-        }
-
-        return data;
-    }
-
-    public static double[] concat(double[] a, double[] b) {
-        int aLen = a.length;
-        int bLen = b.length;
-        double[] c = new double[aLen + bLen];
-        System.arraycopy(a, 0, c, 0, aLen);
-        System.arraycopy(b, 0, c, aLen, bLen);
-        return c;
-    }
 
-    private static double[] reverse(double[] data) {
-        for (int i = 0; i < data.length / 2; i++) {
-            double temp = data[i];
-            data[i] = data[data.length - i - 1];
-            data[data.length - i - 1] = temp;
+            for (int i = 0; i < seed.length; i++)
+                seed[i] = (int) seed[i];
         }
-        return data;
-    }
 
-    private static void seedRand(String seed) {
-        for (int i = 0; i < Blockies.randSeed.length; i++) {
-            Blockies.randSeed[i] = 0;
+        double next() {
+            int t = (int) (seed[0] ^ (seed[0] << 11));
+            seed[0] = seed[1];
+            seed[1] = seed[2];
+            seed[2] = seed[3];
+            seed[3] = (seed[3] ^ (seed[3] >> 19) ^ t ^ (t >> 8));
+            double t1 = Math.abs(seed[3]);
+            return (t1 / Integer.MAX_VALUE);
         }
-        for (int i = 0; i < seed.length(); i++) {
-            long test = Blockies.randSeed[i % 4] << 5;
-            if (test > Integer.MAX_VALUE << 1 || test < Integer.MIN_VALUE << 1)
-                test = (int) test;
-
-            long test2 = test - Blockies.randSeed[i % 4];
-            Blockies.randSeed[i % 4] = (test2 + Character.codePointAt(seed, i));
-        }
-
-        for (int i = 0; i < Blockies.randSeed.length; i++)
-            Blockies.randSeed[i] = (int) Blockies.randSeed[i];
     }
 
     private static int toRGB(float h, float s, float l) {
@@ -166,7 +145,7 @@ public class Blockies {
         int red = (int) (r * 255);
         int green = (int) (g * 255);
         int blue = (int) (b * 255);
-        return Color.rgb(red, green, blue);
+        return 0xff000000 | (red << 16) | (green << 8) | blue; //as Color.rgb, which isn't available off device
     }
 
     private static float hueToRGB(float p, float q, float h) {
@@ -183,33 +162,4 @@ public class Blockies {
         }
         return p;
     }
-
-    private static Bitmap getCroppedBitmap(Bitmap bitmap) {
-        Bitmap output = Bitmap.createBitmap(bitmap.getWidth(),
-                bitmap.getHeight(), Bitmap.Config.ARGB_8888);
-        Canvas canvas = new Canvas(output);
-
-        final int color = 0xff424242;
-        final Paint paint = new Paint();
-        final Rect rect = new Rect(0, 0, bitmap.getWidth(), bitmap.getHeight());
-
-        paint.setAntiAlias(true);
-        canvas.drawARGB(0, 0, 0, 0);
-        paint.setColor(color);
-        canvas.drawCircle(bitmap.getWidth() / 2, bitmap.getHeight() / 2,
-                bitmap.getWidth() / 2, paint);
-        paint.setXfermode(new PorterDuffXfermode(PorterDuff.Mode.SRC_IN));
-        canvas.drawBitmap(bitmap, rect, rect, paint);
-        return output;
-    }
-
-    static class HSL {
-        double h, s, l;
-
-        HSL(double h, double s, double l) {
-            this.h = h;
-            this.s = s;
-            this.l = l;
-        }
-    }
-}
\ No newline at end of file
+}
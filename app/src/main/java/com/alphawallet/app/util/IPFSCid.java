@@ -0,0 +1,238 @@
+package com.alphawallet.app.util;
+
+import java.io.ByteArrayOutputStream;
+import java.math.BigInteger;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+
+/**
+ * Content identifier of an IPFS link, and a check of fetched content against it.
+ *
+ * Content can be checked when the link is a whole file (no path below the CID) hashed with sha2-256. A raw block is
+ * confirmed or refuted. A dag-pb file can only be confirmed: it's rebuilt as the single UnixFS node IPFS writes with
+ * default settings, which covers most NFT metadata and TokenScript files, but the same content added with another
+ * chunker or with mode/mtime has a different CID, so a failed match is unverifiable rather than a mismatch. Anything
+ * else (directories, chunked files, other codecs) is unverifiable.
+ */
+public class IPFSCid
+{
+    public enum Check
+    {
+        VERIFIED,
+        UNVERIFIABLE,
+        MISMATCH
+    }
+
+    private static final String IPFS_PREFIX = "ipfs://";
+    private static final String IPFS_DESIGNATOR = "/ipfs/";
+    private static final String BASE58 = "123456789ABCDEFGHJKLMNPQRSTUVWXYZabcdefghijkmnopqrstuvwxyz";
+    private static final String BASE32 = "abcdefghijklmnopqrstuvwxyz234567";
+
+    private static final int CODEC_RAW = 0x55;
+    private static final int CODEC_DAG_PB = 0x70;
+    private static final int HASH_SHA2_256 = 0x12;
+    private static final int UNIXFS_CHUNK_SIZE = 262144; //default chunker; larger files are split across nodes
+
+    public final String cid;
+    public final String path; //everything after the CID, eg "/1.json"; empty for a whole file
+
+    private final int codec;
+    private final byte[] digest; //null unless sha2-256
+
+    private IPFSCid(String cid, String path, int codec, byte[] digest)
+    {
+        this.cid = cid;
+        this.path = path;
+        this.codec = codec;
+        this.digest = digest;
+    }
+
+    /**
+     * @return CID of an ipfs://, /ipfs/ or bare CID link; null if the link doesn't hold a valid CID
+     */
+    public static IPFSCid fromUrl(String url)
+    {
+        if (url == null) return null;
+        String content = url.trim();
+        int ipfsIndex = content.lastIndexOf(IPFS_DESIGNATOR);
+        if (ipfsIndex >= 0) content = content.substring(ipfsIndex + IPFS_DESIGNATOR.length());
+        else if (content.startsWith(IPFS_PREFIX)) content = content.substring(IPFS_PREFIX.length());
+
+        int end = 0;
+        while (end < content.length() && "/?#".indexOf(content.charAt(end)) < 0) end++;
+        String cid = content.substring(0, end);
+        String path = content.substring(end);
+
+        try
+        {
+            if (cid.length() == 46 && cid.startsWith("Qm"))
+            {
+                //CIDv0: bare base58 multihash, always dag-pb
+                return fromMultihash(cid, path, CODEC_DAG_PB, base58Decode(cid), 0);
+            }
+            else if (cid.length() > 1 && cid.charAt(0) == 'b')
+            {
+                //CIDv1 in base32
+                byte[] bytes = base32Decode(cid.substring(1));
+                int[] pos = {0};
+                if (readVarint(bytes, pos) != 1) return null;
+                int codec = (int) readVarint(bytes, pos);
+                return fromMultihash(cid, path, codec, bytes, pos[0]);
+            }
+        }
+        catch (IllegalArgumentException e)
+        {
+            //not a CID
+        }
+
+        return null;
+    }
+
+    /**
+     * Cache key: the CID plus the path below it, which is just as immutable
+     */
+    public String key()
+    {
+        return cid + path;
+    }
+
+    /**
+     * @return true if the CID names a whole file in a form verify can check; false for a path below the CID or a
+     * codec or hash it doesn't handle
+     */
+    public boolean isCheckable()
+    {
+        return digest != null && (path.isEmpty() || path.equals("/")) && (codec == CODEC_RAW || codec == CODEC_DAG_PB);
+    }
+
+    public Check verify(byte[] content)
+    {
+        if (!isCheckable()) return Check.UNVERIFIABLE;
+
+        byte[] hashed;
+        switch (codec)
+        {
+            case CODEC_RAW:
+                hashed = content;
+                break;
+            case CODEC_DAG_PB:
+                if (content.length > UNIXFS_CHUNK_SIZE) return Check.UNVERIFIABLE;
+                //only one of the ways the content could have been added; a miss doesn't mean it's wrong
+                return Arrays.equals(digest, sha256(unixFsFileNode(content))) ? Check.VERIFIED : Check.UNVERIFIABLE;
+            default:
+                return Check.UNVERIFIABLE;
+        }
+
+        return Arrays.equals(digest, sha256(hashed)) ? Check.VERIFIED : Check.MISMATCH;
+    }
+
+    private static IPFSCid fromMultihash(String cid, String path, int codec, byte[] bytes, int offset)
+    {
+        int[] pos = {offset};
+        long hashCode = readVarint(bytes, pos);
+        long length = readVarint(bytes, pos);
+        if (length != bytes.length - pos[0]) return null;
+
+        byte[] digest = (hashCode == HASH_SHA2_256 && length == 32) ? Arrays.copyOfRange(bytes, pos[0], bytes.length) : null;
+        return new IPFSCid(cid, path, codec, digest);
+    }
+
+    // dag-pb PBNode { Data: UnixFS { Type: File, Data: content, filesize } } as written by IPFS for a single chunk file
+    private static byte[] unixFsFileNode(byte[] content)
+    {
+        ByteArrayOutputStream unixFs = new ByteArrayOutputStream(content.length + 16);
+        unixFs.write(0x08); //Type
+        unixFs.write(0x02); //File
+        if (content.length > 0)
+        {
+            unixFs.write(0x12); //Data
+            writeVarint(unixFs, content.length);
+            unixFs.write(content, 0, content.length);
+        }
+        unixFs.write(0x18); //filesize
+        writeVarint(unixFs, content.length);
+
+        ByteArrayOutputStream node = new ByteArrayOutputStream(unixFs.size() + 8);
+        node.write(0x0a); //PBNode.Data
+        writeVarint(node, unixFs.size());
+        byte[] data = unixFs.toByteArray();
+        node.write(data, 0, data.length);
+        return node.toByteArray();
+    }
+
+    private static void writeVarint(ByteArrayOutputStream out, long value)
+    {
+        while ((value & ~0x7FL) != 0)
+        {
+            out.write((int) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        out.write((int) value);
+    }
+
+    private static long readVarint(byte[] bytes, int[] pos)
+    {
+        long value = 0;
+        for (int shift = 0; shift < 63; shift += 7)
+        {
+            if (pos[0] >= bytes.length) throw new IllegalArgumentException("Truncated varint");
+            int b = bytes[pos[0]++] & 0xFF;
+            value |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) return value;
+        }
+        throw new IllegalArgumentException("Varint too long");
+    }
+
+    private static byte[] base58Decode(String input)
+    {
+        BigInteger value = BigInteger.ZERO;
+        BigInteger base = BigInteger.valueOf(58);
+        for (int i = 0; i < input.length(); i++)
+        {
+            int digit = BASE58.indexOf(input.charAt(i));
+            if (digit < 0) throw new IllegalArgumentException("Invalid base58 character");
+            value = value.multiply(base).add(BigInteger.valueOf(digit));
+        }
+
+        byte[] bytes = value.toByteArray();
+        if (bytes.length > 1 && bytes[0] == 0) bytes = Arrays.copyOfRange(bytes, 1, bytes.length); //sign byte
+        int leadingZeros = 0;
+        while (leadingZeros < input.length() && input.charAt(leadingZeros) == '1') leadingZeros++;
+        byte[] result = new byte[leadingZeros + bytes.length];
+        System.arraycopy(bytes, 0, result, leadingZeros, bytes.length);
+        return result;
+    }
+
+    private static byte[] base32Decode(String input)
+    {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(input.length() * 5 / 8);
+        int buffer = 0;
+        int bits = 0;
+        for (int i = 0; i < input.length(); i++)
+        {
+            int digit = BASE32.indexOf(Character.toLowerCase(input.charAt(i)));
+            if (digit < 0) throw new IllegalArgumentException("Invalid base32 character");
+            buffer = ((buffer << 5) | digit) & 0xFFFF;
+            bits += 5;
+            if (bits >= 8)
+            {
+                bits -= 8;
+                out.write((buffer >> bits) & 0xFF);
+            }
+        }
+        return out.toByteArray();
+    }
+
+    private static byte[] sha256(byte[] data)
+    {
+        try
+        {
+            return MessageDigest.getInstance("SHA-256").digest(data);
+        }
+        catch (NoSuchAlgorithmException e)
+        {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -40,13 +40,13 @@ public class Erc1155AssetListViewModel extends BaseViewModel {
 
     public TokensService getTokensService() { return tokensService; }
 
-    public Intent showAssetDetailsIntent(Context context, Wallet wallet, Token token, BigInteger tokenId)
+    public Intent showAssetDetailsIntent(Context context, Wallet wallet, Token token, BigInteger tokenId, NFTAsset asset)
     {
         Intent intent = new Intent(context, NFTAssetDetailActivity.class);
         intent.putExtra(C.Key.WALLET, wallet);
         intent.putExtra(C.EXTRA_CHAIN_ID, token.tokenInfo.chainId);
         intent.putExtra(C.EXTRA_ADDRESS, token.getAddress());
-        intent.putExtra(C.EXTRA_NFTASSET, token.getAssetForToken(tokenId));
+        if (asset != null) intent.putExtra(C.EXTRA_NFTASSET, asset);
         intent.putExtra(C.EXTRA_TOKEN_ID, tokenId.toString());
         intent.putExtra(C.EXTRA_STATE, ERC1155Token.getNFTTokenId(tokenId).toString());
         return intent;
@@ -2,6 +2,8 @@ package com.alphawallet.app.viewmodel;
 
 import com.alphawallet.app.entity.NetworkInfo;
 import com.alphawallet.app.repository.EthereumNetworkRepositoryType;
+import com.alphawallet.app.repository.Web3jClientRegistry;
+import com.alphawallet.app.service.RpcEndpointHealth;
 
 import javax.inject.Inject;
 
@@ -22,4 +24,20 @@ public class NodeStatusViewModel extends BaseViewModel {
     {
         return networkRepository.getAvailableNetworkList();
     }
+
+    public Web3jClientRegistry.ClientStats getClientStats(long chainId)
+    {
+        return Web3jClientRegistry.getStats(chainId);
+    }
+
+    public RpcEndpointHealth.EndpointStatus getBestEndpoint(long chainId)
+    {
+        return RpcEndpointHealth.get(chainId).getBestEndpoint(getRpcUrls(chainId));
+    }
+
+    private String[] getRpcUrls(long chainId)
+    {
+        NetworkInfo info = networkRepository.getNetworkByChain(chainId);
+        return info != null ? info.rpcUrls : new String[0];
+    }
 }
@@ -1,7 +1,6 @@
 package com.alphawallet.app.viewmodel;
 
 import static com.alphawallet.app.C.EXTRA_ADDRESS;
-import static com.alphawallet.app.repository.TokensRealmSource.ADDRESS_FORMAT;
 import static com.alphawallet.app.widget.CopyTextView.KEY_ADDRESS;
 import static com.alphawallet.token.tools.TokenDefinition.NO_SCRIPT;
 import static com.alphawallet.token.tools.TokenDefinition.UNCHANGED_SCRIPT;
@@ -45,10 +44,8 @@ import com.alphawallet.app.repository.CoinbasePayRepository;
 import com.alphawallet.app.repository.OnRampRepositoryType;
 import com.alphawallet.app.repository.PreferenceRepositoryType;
 import com.alphawallet.app.repository.TokensMappingRepositoryType;
-import com.alphawallet.app.repository.TokensRealmSource;
 import com.alphawallet.app.repository.WalletItem;
 import com.alphawallet.app.repository.entity.RealmAttestation;
-import com.alphawallet.app.repository.entity.RealmToken;
 import com.alphawallet.app.router.CoinbasePayRouter;
 import com.alphawallet.app.router.ManageWalletsRouter;
 import com.alphawallet.app.router.MyAddressRouter;
@@ -57,6 +54,7 @@ import com.alphawallet.app.service.AnalyticsServiceType;
 import com.alphawallet.app.service.AssetDefinitionService;
 import com.alphawallet.app.service.RealmManager;
 import com.alphawallet.app.service.TokensService;
+import com.alphawallet.app.service.WalletWarmCache;
 import com.alphawallet.app.ui.NameThisWalletActivity;
 import com.alphawallet.app.ui.QRScanning.QRScannerActivity;
 import com.alphawallet.app.ui.TokenManagementActivity;
@@ -112,7 +110,7 @@ public class WalletViewModel extends BaseViewModel
     private final RealmManager realmManager;
     private final OnRampRepositoryType onRampRepository;
     private long lastBackupCheck = 0;
-    private long lastTokenFetchTime = 0;
+    private long lastMetaVersion = 0;
     private BottomSheetDialog dialog;
     private final AWWalletConnectClient awWalletConnectClient;
     @Nullable
@@ -193,7 +191,7 @@ public class WalletViewModel extends BaseViewModel
 
     public void prepare()
     {
-        lastTokenFetchTime = 0;
+        lastMetaVersion = 0;
         lastBackupCheck = System.currentTimeMillis() - BALANCE_BACKUP_CHECK_INTERVAL + 5 * DateUtils.SECOND_IN_MILLIS;
         //load the activity meta list
         disposable = genericWalletInteract
@@ -203,7 +201,7 @@ public class WalletViewModel extends BaseViewModel
 
     public void reloadTokens()
     {
-        lastTokenFetchTime = 0;
+        lastMetaVersion = 0;
         tokensService.startUpdateCycle();
         if (defaultWallet.getValue() != null)
         {
@@ -220,21 +218,40 @@ public class WalletViewModel extends BaseViewModel
         tokensService.setCurrentAddress(wallet.address);
         assetDefinitionService.startEventListener();
         defaultWallet.postValue(wallet);
-        fetchTokens(wallet);
+
+        //wallet seen recently: show what it showed last time, then pick up only the tokens which changed since
+        WalletWarmCache.State warmState = tokensService.getWarmState(wallet.address);
+        if (warmState != null)
+        {
+            lastMetaVersion = warmState.getMetaVersion();
+            onTokenMetas(warmState.getMetas());
+            if (warmState.hasFiatValues())
+            {
+                fiatValues.postValue(new Pair<>(warmState.getFiatValue(), warmState.getFiatHistorical()));
+            }
+            checkTokenUpdates();
+        }
+        else
+        {
+            fetchTokens(wallet);
+        }
     }
 
     private void fetchTokens(Wallet wallet)
     {
-        disposable =
-                fetchTokensInteract.fetchTokenMetas(wallet, tokensService.getNetworkFilters(), assetDefinitionService)
-                        .subscribeOn(Schedulers.io())
-                        .observeOn(AndroidSchedulers.mainThread())
-                        .subscribe(this::onTokenMetas, this::onError);
+        disposable = Single.fromCallable(() -> fetchTokensInteract.getTokenMetaVersion(wallet))
+                .flatMap(version -> {
+                    lastMetaVersion = version;
+                    return fetchTokensInteract.fetchTokenMetas(wallet, tokensService.getNetworkFilters(), assetDefinitionService)
+                            .doOnSuccess(metas -> tokensService.cacheTokenMetas(wallet.address, metas, version));
+                })
+                .subscribeOn(Schedulers.io())
+                .observeOn(AndroidSchedulers.mainThread())
+                .subscribe(this::onTokenMetas, this::onError);
     }
 
     private void onTokenMetas(TokenCardMeta[] metaTokens)
     {
-        lastTokenFetchTime = System.currentTimeMillis();
         tokens.postValue(metaTokens);
         tokensService.updateTickers();
     }
@@ -478,7 +495,9 @@ public class WalletViewModel extends BaseViewModel
 
     public void calculateFiatValues()
     {
+        final String walletAddress = getWalletAddr();
         disposable = tokensService.getFiatValuePair()
+                .doOnSuccess(values -> tokensService.cacheFiatValues(walletAddress, values))
                 .subscribeOn(Schedulers.io())
                 .observeOn(AndroidSchedulers.mainThread())
                 .subscribe(fiatValues::postValue);
@@ -538,39 +557,29 @@ public class WalletViewModel extends BaseViewModel
 
     private Single<TokenCardMeta[]> getUpdatedTokenMetas()
     {
-        return Single.fromCallable(() -> {
-            List<TokenCardMeta> tokenMetas = new ArrayList<>();
-            try (Realm r = realmManager.getRealmInstance(defaultWallet.getValue()))
-            {
-                RealmResults<RealmToken> updatedTokens = r.where(RealmToken.class).equalTo("isEnabled", true)
-                        .like("address", ADDRESS_FORMAT)
-                        .greaterThan("updatedTime", lastTokenFetchTime)
-                        .findAll();
-
-                for (RealmToken t : updatedTokens)
-                {
-                    if (!tokensService.getNetworkFilters().contains(t.getChainId()))
-                    {
-                        continue;
-                    }
-
-                    String balance = TokensRealmSource.convertStringBalance(t.getBalance(), t.getContractType());
-
-                    TokenCardMeta meta = new TokenCardMeta(t.getChainId(), t.getTokenAddress(), balance,
-                            t.getUpdateTime(), assetDefinitionService, t.getName(), t.getSymbol(), t.getContractType(),
-                            getTokenGroup(t.getChainId(), t.getTokenAddress()));
-                    meta.lastTxUpdate = t.getLastTxTime();
-                    meta.isEnabled = t.isEnabled();
-                    tokenMetas.add(meta);
-                    if (t.getBalanceUpdateTime() > lastTokenFetchTime)
-                    {
-                        lastTokenFetchTime = t.getBalanceUpdateTime() + 1;
-                    }
-                }
-            }
-
-            return tokenMetas.toArray(new TokenCardMeta[0]);
-        });
+        final Wallet wallet = defaultWallet.getValue();
+        final long sinceVersion = lastMetaVersion;
+        //take the version first; anything which changes while we read is picked up again next time
+        return Single.fromCallable(() -> fetchTokensInteract.getTokenMetaVersion(wallet))
+                .flatMap(version -> {
+                    lastMetaVersion = version;
+                    return fetchTokensInteract.fetchChangedTokenMetas(wallet, tokensService.getNetworkFilters(), assetDefinitionService, sinceVersion)
+                            .flatMap(changed -> {
+                                if (fetchTokensInteract.getTokenRemovedVersion(wallet) <= sinceVersion)
+                                {
+                                    tokensService.cacheChangedTokenMetas(wallet.address, changed, sinceVersion, version);
+                                    return Single.just(changed);
+                                }
+
+                                //a removed token can't be seen as a change; replace the list from a full read instead
+                                return fetchTokensInteract.fetchTokenMetas(wallet, tokensService.getNetworkFilters(), assetDefinitionService)
+                                        .doOnSuccess(metas -> {
+                                            tokensService.cacheTokenMetas(wallet.address, metas, version);
+                                            tokens.postValue(metas);
+                                        })
+                                        .map(metas -> new TokenCardMeta[0]);
+                            });
+                });
     }
 
     public void removeTokenMetaItem(String tokenKeyId)
@@ -16,6 +16,7 @@ import android.os.Looper;
 import android.text.TextUtils;
 import android.util.AttributeSet;
 import android.util.Base64;
+import android.util.DisplayMetrics;
 import android.view.MotionEvent;
 import android.view.View;
 import android.view.ViewGroup;
@@ -40,8 +41,11 @@ import com.alphawallet.app.entity.tokens.Token;
 import com.alphawallet.app.ui.widget.TokensAdapterCallback;
 import com.alphawallet.app.util.Utils;
 import com.bumptech.glide.Glide;
+import com.bumptech.glide.RequestBuilder;
+import com.bumptech.glide.RequestManager;
 import com.bumptech.glide.load.DataSource;
 import com.bumptech.glide.load.engine.GlideException;
+import com.bumptech.glide.load.resource.bitmap.DownsampleStrategy;
 import com.bumptech.glide.request.Request;
 import com.bumptech.glide.request.RequestListener;
 import com.bumptech.glide.request.target.DrawableImageViewTarget;
@@ -72,6 +76,8 @@ public class NFTImageView extends RelativeLayout implements View.OnTouchListener
     private int webViewHeight = 0;
     private int heightUpdates;
     private final static int STANDARD_THUMBNAIL_HEIGHT = 156; //standard height in dp of thumbnail icon; don't allow lower than this
+    private final static int THUMBNAIL_DECODE_SIZE = 180; //dp; covers a grid cell, so list and grid share a decoded thumbnail
+    private final static int IMAGE_TIMEOUT = 30 * 1000;
 
     /**
      * Prevent glide dumping log errors - it is expected that load will fail
@@ -197,17 +203,38 @@ public class NFTImageView extends RelativeLayout implements View.OnTouchListener
             holdingView.setBackgroundColor(ContextCompat.getColor(getContext(), R.color.transparent));
         }
 
-        loadRequest = Glide.with(getContext())
-                .load(url)
+        RequestBuilder<Drawable> request = isThumbnail ? thumbnailRequest(getContext(), Glide.with(getContext()), url)
+                : fullSizeRequest(getContext(), url);
+        loadRequest = request
                 .transition(withCrossFade())
-                .override(Target.SIZE_ORIGINAL)
-                .timeout(30 * 1000)
                 .listener(requestListener)
                 .into(new DrawableImageViewTarget(image)).getRequest();
 
         startImageListener();
     }
 
+    /**
+     * Thumbnail as list and grid rows load it; also used to preload rows before they're shown
+     */
+    public static RequestBuilder<Drawable> thumbnailRequest(Context context, RequestManager requestManager, String url)
+    {
+        return requestManager
+                .load(url)
+                .override(Utils.dp2px(context, THUMBNAIL_DECODE_SIZE))
+                .timeout(IMAGE_TIMEOUT);
+    }
+
+    // Full view: never decode beyond the screen, artwork can be many thousands of pixels across
+    private static RequestBuilder<Drawable> fullSizeRequest(Context context, String url)
+    {
+        DisplayMetrics metrics = context.getResources().getDisplayMetrics();
+        return Glide.with(context)
+                .load(url)
+                .override(Math.max(metrics.widthPixels, metrics.heightPixels))
+                .downsample(DownsampleStrategy.CENTER_INSIDE)
+                .timeout(IMAGE_TIMEOUT);
+    }
+
     @SuppressLint({"SetJavaScriptEnabled", "ClickableViewAccessibility"})
     private void setWebView(String imageUrl, ImageType hint)
     {
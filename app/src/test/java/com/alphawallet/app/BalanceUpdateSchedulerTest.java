@@ -0,0 +1,129 @@
+package com.alphawallet.app;
+
+import static com.alphawallet.app.repository.TokensRealmSource.databaseKey;
+import static com.alphawallet.ethereum.EthereumNetworkBase.MAINNET_ID;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.core.IsEqual.equalTo;
+import static org.junit.Assert.assertNull;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+
+import com.alphawallet.app.entity.ContractType;
+import com.alphawallet.app.entity.tokendata.TokenGroup;
+import com.alphawallet.app.entity.tokens.TokenCardMeta;
+import com.alphawallet.app.service.BalanceUpdateScheduler;
+import com.alphawallet.shadows.ShadowApp;
+import com.alphawallet.shadows.ShadowKeyProviderFactory;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.annotation.Config;
+
+import java.util.Map;
+
+@RunWith(AndroidJUnit4.class)
+@Config(shadows = {ShadowApp.class, ShadowKeyProviderFactory.class})
+public class BalanceUpdateSchedulerTest
+{
+    private static final long INTERVAL = 30000;
+    private static final String TOKEN_A = "0x1111111111111111111111111111111111111111";
+    private static final String TOKEN_B = "0x2222222222222222222222222222222222222222";
+    private static final String TOKEN_C = "0x3333333333333333333333333333333333333333";
+
+    // Fixed interval, priority is time since last check
+    private final BalanceUpdateScheduler.UpdatePolicy policy = new BalanceUpdateScheduler.UpdatePolicy()
+    {
+        @Override
+        public boolean canUpdate(TokenCardMeta meta)
+        {
+            return true;
+        }
+
+        @Override
+        public long updateInterval(TokenCardMeta meta, long currentTime)
+        {
+            return INTERVAL;
+        }
+
+        @Override
+        public float updatePriority(TokenCardMeta meta, long currentTime)
+        {
+            return currentTime - meta.lastUpdate;
+        }
+    };
+
+    @Test
+    public void picksMostOverdueAndBatchesChain()
+    {
+        long now = 1_000_000;
+        BalanceUpdateScheduler scheduler = new BalanceUpdateScheduler(policy);
+        scheduler.refresh(new TokenCardMeta[] {
+                meta(TOKEN_A, now - 40000),
+                meta(TOKEN_B, now - 90000),
+                meta(TOKEN_C, now - 1000) }, now);
+
+        BalanceUpdateScheduler.Selection selection = scheduler.next(now);
+
+        assertThat(selection.token.getAddress(), equalTo(TOKEN_B));
+        assertThat(selection.dueOnChain.size(), equalTo(1)); //TOKEN_C not yet due
+        assertThat(selection.dueOnChain.get(0).getAddress(), equalTo(TOKEN_A));
+    }
+
+    @Test
+    public void checkedTokenWaitsForInterval()
+    {
+        long now = 1_000_000;
+        BalanceUpdateScheduler scheduler = new BalanceUpdateScheduler(policy);
+        scheduler.refresh(new TokenCardMeta[] { meta(TOKEN_A, now - 40000) }, now);
+
+        scheduler.markChecked(databaseKey(MAINNET_ID, TOKEN_A), now);
+
+        assertNull(scheduler.next(now + 1000));
+        assertThat(scheduler.next(now + INTERVAL + 1).token.getAddress(), equalTo(TOKEN_A));
+        assertThat(scheduler.getLastChecked(databaseKey(MAINNET_ID, TOKEN_A)), equalTo(now));
+    }
+
+    @Test
+    public void refreshDropsRemovedTokens()
+    {
+        long now = 1_000_000;
+        BalanceUpdateScheduler scheduler = new BalanceUpdateScheduler(policy);
+        scheduler.refresh(new TokenCardMeta[] { meta(TOKEN_A, now - 40000), meta(TOKEN_B, now - 50000) }, now);
+        scheduler.refresh(new TokenCardMeta[] { meta(TOKEN_A, now - 40000) }, now);
+
+        BalanceUpdateScheduler.Selection selection = scheduler.next(now);
+
+        assertThat(scheduler.size(), equalTo(1));
+        assertThat(selection.token.getAddress(), equalTo(TOKEN_A));
+        assertThat(selection.dueOnChain.size(), equalTo(0));
+    }
+
+    @Test
+    public void restoredCheckTimesCarryOver()
+    {
+        long now = 1_000_000;
+        BalanceUpdateScheduler scheduler = new BalanceUpdateScheduler(policy);
+        scheduler.refresh(new TokenCardMeta[] { meta(TOKEN_A, now - 40000) }, now);
+        scheduler.markChecked(databaseKey(MAINNET_ID, TOKEN_A), now);
+        Map<String, Long> saved = scheduler.getCheckTimes();
+
+        //switched away and back again
+        scheduler.clear();
+        scheduler.restoreCheckTimes(saved);
+        assertThat(scheduler.getLastChecked(databaseKey(MAINNET_ID, TOKEN_A)), equalTo(now));
+        assertThat(scheduler.getLastChecked(databaseKey(MAINNET_ID, TOKEN_B)), equalTo(-1L));
+
+        //taken up by the refresh, as TokensService merges them into the metas it reads
+        scheduler.refresh(new TokenCardMeta[] { meta(TOKEN_A, now) }, now + 1000);
+        assertNull(scheduler.next(now + 1000));
+        scheduler.clear();
+        assertThat(scheduler.getLastChecked(databaseKey(MAINNET_ID, TOKEN_A)), equalTo(-1L));
+    }
+
+    private TokenCardMeta meta(String address, long lastUpdate)
+    {
+        TokenCardMeta meta = new TokenCardMeta(MAINNET_ID, address, "1", lastUpdate, 0, ContractType.ERC20, TokenGroup.ASSET);
+        meta.isEnabled = true;
+        return meta;
+    }
+}
@@ -0,0 +1,122 @@
+package com.alphawallet.app;
+
+import static com.alphawallet.ethereum.EthereumNetworkBase.MAINNET_ID;
+import static com.alphawallet.ethereum.EthereumNetworkBase.POLYGON_ID;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.core.IsEqual.equalTo;
+import static org.hamcrest.core.IsNull.nullValue;
+
+import com.alphawallet.app.service.BlockHeaderCache;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+public class BlockHeaderCacheTest
+{
+    private final List<List<String>> fetches = new ArrayList<>();
+    private final Map<String, BlockHeaderCache.Header> stored = new HashMap<>();
+
+    private final BlockHeaderCache.Source node = (chainId, hashes) -> {
+        fetches.add(hashes);
+        List<BlockHeaderCache.Header> headers = new ArrayList<>();
+        for (String hash : hashes)
+        {
+            if (hash.endsWith("dead")) continue; //unknown to the node
+            long number = Long.parseLong(hash.substring(2), 16);
+            headers.add(new BlockHeaderCache.Header(hash, number, 1600000000L + number * 12));
+        }
+        return headers;
+    };
+
+    private final BlockHeaderCache.Store store = new BlockHeaderCache.Store()
+    {
+        @Override
+        public List<BlockHeaderCache.Header> load(long chainId, Collection<String> hashes)
+        {
+            List<BlockHeaderCache.Header> headers = new ArrayList<>();
+            for (String hash : hashes)
+            {
+                if (stored.containsKey(chainId + hash)) headers.add(stored.get(chainId + hash));
+            }
+            return headers;
+        }
+
+        @Override
+        public void save(long chainId, List<BlockHeaderCache.Header> headers)
+        {
+            for (BlockHeaderCache.Header header : headers) stored.put(chainId + header.hash, header);
+        }
+    };
+
+    private final BlockHeaderCache cache = new BlockHeaderCache(node, store);
+
+    @Test
+    public void logsSharingBlocksFetchEachBlockOnce()
+    {
+        //500 logs spread over 20 blocks, hashes in mixed case as nodes return them
+        List<String> logBlocks = new ArrayList<>();
+        for (int i = 0; i < 500; i++)
+        {
+            String hash = hash(i % 20);
+            logBlocks.add(i % 2 == 0 ? hash : hash.toUpperCase().replace("0X", "0x"));
+        }
+
+        Map<String, BlockHeaderCache.Header> headers = cache.getHeaders(MAINNET_ID, logBlocks);
+
+        assertThat(fetches.size(), equalTo(1));
+        assertThat(fetches.get(0).size(), equalTo(20));
+        assertThat(headers.size(), equalTo(20));
+        assertThat(headers.get(hash(7)).timestamp, equalTo(1600000000L + 7 * 12));
+        assertThat(cache.getByNumber(MAINNET_ID, 7).hash, equalTo(hash(7)));
+
+        //second scan of the same blocks is served from memory
+        cache.getHeaders(MAINNET_ID, logBlocks);
+        assertThat(fetches.size(), equalTo(1));
+    }
+
+    @Test
+    public void storeServesColdCache()
+    {
+        cache.getHeader(POLYGON_ID, hash(3));
+        BlockHeaderCache restarted = new BlockHeaderCache(node, store);
+
+        assertThat(restarted.getHeader(POLYGON_ID, hash(3)).number, equalTo(3L));
+        assertThat(fetches.size(), equalTo(1));
+
+        //chains don't share entries
+        restarted.getHeader(MAINNET_ID, hash(3));
+        assertThat(fetches.size(), equalTo(2));
+    }
+
+    @Test
+    public void unknownBlockIsRetried()
+    {
+        assertThat(cache.getHeader(MAINNET_ID, "0xdead"), nullValue());
+        assertThat(cache.getHeader(MAINNET_ID, "0xdead"), nullValue());
+        assertThat(fetches.size(), equalTo(2));
+    }
+
+    @Test
+    public void evictsLeastRecentlyUsed()
+    {
+        cache.getHeader(MAINNET_ID, hash(0));
+        for (int i = 1; i <= BlockHeaderCache.MAX_HEADERS; i++)
+        {
+            cache.getHeader(MAINNET_ID, hash(i));
+            cache.getHeader(MAINNET_ID, hash(0)); //keep block 0 hot
+        }
+
+        assertThat(cache.getByNumber(MAINNET_ID, 0).hash, equalTo(hash(0)));
+        assertThat(cache.getByNumber(MAINNET_ID, 1), nullValue());
+    }
+
+    private static String hash(long number)
+    {
+        return "0x" + String.format("%064x", number);
+    }
+}
@@ -0,0 +1,178 @@
+package com.alphawallet.app;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.core.IsEqual.equalTo;
+
+import com.alphawallet.app.util.Blockies;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+public class BlockiesTest
+{
+    private static final int ADDRESSES = 200;
+
+    @Test
+    public void matchesLegacyGenerator()
+    {
+        for (String address : addresses())
+        {
+            assertThat(address, Blockies.createPixels(address), equalTo(new LegacyBlockies().pixels(address)));
+        }
+    }
+
+    @Test
+    public void generationIsReentrant() throws Exception
+    {
+        List<String> addresses = addresses();
+        List<int[]> expected = new ArrayList<>();
+        for (String address : addresses) expected.add(Blockies.createPixels(address));
+
+        ExecutorService pool = Executors.newFixedThreadPool(8);
+        try
+        {
+            List<Future<List<int[]>>> runs = new ArrayList<>();
+            for (int t = 0; t < 8; t++)
+            {
+                runs.add(pool.submit((Callable<List<int[]>>) () -> {
+                    List<int[]> result = new ArrayList<>();
+                    for (String address : addresses) result.add(Blockies.createPixels(address));
+                    return result;
+                }));
+            }
+
+            for (Future<List<int[]>> run : runs)
+            {
+                List<int[]> result = run.get();
+                for (int i = 0; i < addresses.size(); i++)
+                {
+                    assertThat(Arrays.equals(result.get(i), expected.get(i)), equalTo(true));
+                }
+            }
+        }
+        finally
+        {
+            pool.shutdown();
+        }
+    }
+
+    private static List<String> addresses()
+    {
+        List<String> addresses = new ArrayList<>();
+        for (int i = 0; i < ADDRESSES; i++)
+        {
+            addresses.add(String.format("0x%040x", ((long) i * 0x9e3779b97f4a7c15L) >>> 1));
+        }
+        addresses.add("0xbe474a74f3c6d62e7f6cd1ef31ea5c15ebb3a6bb");
+        return addresses;
+    }
+
+    // The shared-seed, double[] generator Blockies used to have, reduced to its pixel output
+    private static class LegacyBlockies
+    {
+        private final long[] randSeed = new long[4];
+
+        int[] pixels(String address)
+        {
+            seedRand(address);
+            double[] color = createColor();
+            double[] bgColor = createColor();
+            double[] spotColor = createColor();
+            double[] imgData = createImageData();
+
+            int[] pixels = new int[imgData.length];
+            for (int i = 0; i < imgData.length; i++)
+            {
+                double[] c = imgData[i] == 1.0d ? color : (imgData[i] > 0d ? spotColor : bgColor);
+                pixels[i] = toRGB((int) c[0], (int) c[1], (int) c[2]);
+            }
+            return pixels;
+        }
+
+        private double rand()
+        {
+            int t = (int) (randSeed[0] ^ (randSeed[0] << 11));
+            randSeed[0] = randSeed[1];
+            randSeed[1] = randSeed[2];
+            randSeed[2] = randSeed[3];
+            randSeed[3] = (randSeed[3] ^ (randSeed[3] >> 19) ^ t ^ (t >> 8));
+            double t1 = Math.abs(randSeed[3]);
+            return (t1 / Integer.MAX_VALUE);
+        }
+
+        private double[] createColor()
+        {
+            double h = Math.floor(rand() * 360d);
+            double s = ((rand() * 60d) + 40d);
+            double l = ((rand() + rand() + rand() + rand()) * 25d);
+            return new double[] {h, s, l};
+        }
+
+        private double[] createImageData()
+        {
+            int width = 8;
+            double dataWidth = Math.ceil(width / 2);
+            double mirrorWidth = width - dataWidth;
+            double[] data = new double[width * width];
+            int dataCount = 0;
+            for (int y = 0; y < width; y++)
+            {
+                double[] row = new double[(int) dataWidth];
+                for (int x = 0; x < dataWidth; x++) row[x] = Math.floor(rand() * 2.3d);
+                double[] r = Arrays.copyOfRange(row, 0, (int) mirrorWidth);
+                for (int i = 0; i < r.length / 2; i++)
+                {
+                    double temp = r[i];
+                    r[i] = r[r.length - i - 1];
+                    r[r.length - i - 1] = temp;
+                }
+                for (double v : row) data[dataCount++] = v;
+                for (double v : r) data[dataCount++] = v;
+            }
+            return data;
+        }
+
+        private void seedRand(String seed)
+        {
+            for (int i = 0; i < seed.length(); i++)
+            {
+                long test = randSeed[i % 4] << 5;
+                if (test > Integer.MAX_VALUE << 1 || test < Integer.MIN_VALUE << 1) test = (int) test;
+                long test2 = test - randSeed[i % 4];
+                randSeed[i % 4] = (test2 + Character.codePointAt(seed, i));
+            }
+            for (int i = 0; i < randSeed.length; i++) randSeed[i] = (int) randSeed[i];
+        }
+
+        private int toRGB(float h, float s, float l)
+        {
+            h = h % 360.0f;
+            h /= 360f;
+            s /= 100f;
+            l /= 100f;
+            float q = l < 0.5 ? l * (1 + s) : (l + s) - (s * l);
+            float p = 2 * l - q;
+            float r = Math.min(1.0f, Math.max(0, hueToRGB(p, q, h + (1.0f / 3.0f))));
+            float g = Math.min(1.0f, Math.max(0, hueToRGB(p, q, h)));
+            float b = Math.min(1.0f, Math.max(0, hueToRGB(p, q, h - (1.0f / 3.0f))));
+            return 0xff000000 | ((int) (r * 255) << 16) | ((int) (g * 255) << 8) | (int) (b * 255);
+        }
+
+        private float hueToRGB(float p, float q, float h)
+        {
+            if (h < 0) h += 1;
+            if (h > 1) h -= 1;
+            if (6 * h < 1) return p + ((q - p) * 6 * h);
+            if (2 * h < 1) return q;
+            if (3 * h < 2) return p + ((q - p) * 6 * ((2.0f / 3.0f) - h));
+            return p;
+        }
+    }
+}
@@ -0,0 +1,229 @@
+package com.alphawallet.app;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.greaterThan;
+import static org.hamcrest.Matchers.lessThanOrEqualTo;
+import static org.hamcrest.core.IsEqual.equalTo;
+
+import com.alphawallet.app.service.EventScanner;
+import com.alphawallet.token.entity.EventDefinition;
+
+import org.junit.Test;
+import org.web3j.protocol.core.DefaultBlockParameterName;
+import org.web3j.protocol.core.Response;
+import org.web3j.protocol.core.methods.request.EthFilter;
+import org.web3j.protocol.core.methods.response.EthLog;
+import org.web3j.protocol.core.methods.response.Log;
+import org.web3j.utils.Numeric;
+
+import java.io.IOException;
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+public class EventScannerTest
+{
+    private static final long CHAIN = 1;
+    private static final String CONTRACT = "0x1111111111111111111111111111111111111111";
+    private static final String SIG_A = "0x" + "a".repeat(64);
+    private static final String SIG_B = "0x" + "b".repeat(64);
+    private static final String TOKEN_X = Numeric.toHexStringWithPrefixZeroPadded(BigInteger.ONE, 64);
+    private static final String TOKEN_Y = Numeric.toHexStringWithPrefixZeroPadded(BigInteger.TEN, 64);
+
+    private final EventScanner scanner = new EventScanner();
+    private final List<EthFilter> requests = new ArrayList<>();
+    private final Map<EventDefinition, List<Long>> received = new HashMap<>();
+    private final Map<EventDefinition, Long> checkpoints = new HashMap<>();
+
+    private final EventScanner.Listener listener = new EventScanner.Listener()
+    {
+        @Override
+        public void onLogs(EventDefinition ev, List<EthLog.LogResult> logs)
+        {
+            for (EthLog.LogResult<?> log : logs)
+            {
+                received.computeIfAbsent(ev, e -> new ArrayList<>()).add(((Log) log.get()).getBlockNumber().longValue());
+            }
+        }
+
+        @Override
+        public void onCheckpoint(EventDefinition ev, long nextBlock)
+        {
+            checkpoints.put(ev, nextBlock);
+        }
+    };
+
+    @Test
+    public void halvesOnRefusedRangeAndGrowsAgain()
+    {
+        EventDefinition ev = new EventDefinition();
+        List<EthLog.LogResult> chainLogs = Arrays.asList(log(10, SIG_A, TOKEN_X), log(1500, SIG_A, TOKEN_X), log(3999, SIG_A, TOKEN_X));
+
+        int sent = scanner.scan(CHAIN, CONTRACT, Collections.singletonList(subscription(ev, SIG_A, TOKEN_X)),
+                0, 3999, Long.MAX_VALUE, node(1000, chainLogs), listener);
+
+        //0-3999 x, 0-1999 x, 0-999, 1000-2999 x, 1000-1999, 2000-3999 x, 2000-2999, 3000-3999
+        assertThat(sent, equalTo(8));
+        assertThat(received.get(ev), equalTo(Arrays.asList(10L, 1500L, 3999L)));
+        assertThat(checkpoints.get(ev), equalTo(4000L));
+        assertThat(ev.readBlock, equalTo(BigInteger.valueOf(4000)));
+    }
+
+    @Test
+    public void definitionsOnOneContractShareRequests()
+    {
+        EventDefinition transfers = new EventDefinition();
+        EventDefinition mints = new EventDefinition();
+        List<EthLog.LogResult> chainLogs = Arrays.asList(log(5, SIG_A, TOKEN_X), log(6, SIG_A, TOKEN_Y), log(7, SIG_B, TOKEN_Y));
+
+        scanner.scan(CHAIN, CONTRACT, Arrays.asList(subscription(transfers, SIG_A, TOKEN_X), subscription(mints, SIG_B)),
+                0, 100, Long.MAX_VALUE, node(1000, chainLogs), listener);
+
+        assertThat(requests.size(), equalTo(1));
+        //topic 0 is either signature; topic 1 is unconstrained because the mint definition doesn't filter on it
+        assertThat(requests.get(0).getTopics().size(), equalTo(1));
+        assertThat(received.get(transfers), equalTo(Collections.singletonList(5L)));
+        assertThat(received.get(mints), equalTo(Collections.singletonList(7L)));
+    }
+
+    @Test
+    public void resumesFromCheckpointWithLearnedSpan()
+    {
+        EventDefinition ev = new EventDefinition();
+        EventScanner.Subscription sub = subscription(ev, SIG_A);
+        EventScanner.LogSource node = node(10, Collections.emptyList());
+
+        //every request refused: no progress, but the span is learned
+        scanner.scan(CHAIN, CONTRACT, Collections.singletonList(sub), 0, 100000, Long.MAX_VALUE, node, listener);
+        assertThat(checkpoints.containsKey(ev), equalTo(false));
+
+        scanner.scan(CHAIN, CONTRACT, Collections.singletonList(sub), 0, 100000, Long.MAX_VALUE, node, listener);
+        long resumeFrom = checkpoints.get(ev);
+        assertThat(resumeFrom, greaterThan(0L));
+
+        requests.clear();
+        scanner.scan(CHAIN, CONTRACT, Collections.singletonList(sub), 0, 100000, Long.MAX_VALUE, node, listener);
+        assertThat(Numeric.toBigInt(requests.get(0).getFromBlock().getValue()).longValue(), equalTo(resumeFrom));
+        assertThat(span(requests.get(0)), lessThanOrEqualTo(10L));
+    }
+
+    @Test
+    public void otherErrorsStopTheScan()
+    {
+        EventDefinition ev = new EventDefinition();
+        EventScanner.LogSource node = filter -> {
+            requests.add(filter);
+            return error("execution reverted");
+        };
+
+        scanner.scan(CHAIN, CONTRACT, Collections.singletonList(subscription(ev, SIG_A)), 0, 100000, Long.MAX_VALUE, node, listener);
+        assertThat(requests.size(), equalTo(1));
+        assertThat(ev.readBlock, equalTo(BigInteger.ZERO));
+    }
+
+    @Test
+    public void rateLimitDoesNotShrinkSpan()
+    {
+        EventDefinition ev = new EventDefinition();
+        EventScanner.LogSource node = filter -> {
+            requests.add(filter);
+            return error("rate limit exceeded");
+        };
+
+        scanner.scan(CHAIN, CONTRACT, Collections.singletonList(subscription(ev, SIG_A)), 0, 100000, Long.MAX_VALUE, node, listener);
+        assertThat(requests.size(), equalTo(1));
+
+        //the next scan still asks for the whole range
+        requests.clear();
+        scanner.scan(CHAIN, CONTRACT, Collections.singletonList(subscription(ev, SIG_A)), 0, 100000, Long.MAX_VALUE,
+                node(Long.MAX_VALUE, Collections.emptyList()), listener);
+        assertThat(span(requests.get(0)), equalTo(100001L));
+        assertThat(checkpoints.get(ev), equalTo(100001L));
+    }
+
+    @Test
+    public void failedStoreKeepsDefinitionBeforeChunk()
+    {
+        EventDefinition failing = new EventDefinition();
+        EventDefinition other = new EventDefinition();
+        List<EthLog.LogResult> chainLogs = Arrays.asList(log(5, SIG_A), log(6, SIG_B), log(1500, SIG_B));
+        EventScanner.Listener failingListener = new EventScanner.Listener()
+        {
+            @Override
+            public void onLogs(EventDefinition ev, List<EthLog.LogResult> logs) throws IOException
+            {
+                if (ev == failing) throw new IOException("No block header");
+                listener.onLogs(ev, logs);
+            }
+
+            @Override
+            public void onCheckpoint(EventDefinition ev, long nextBlock)
+            {
+                listener.onCheckpoint(ev, nextBlock);
+            }
+        };
+
+        scanner.scan(CHAIN, CONTRACT, Arrays.asList(subscription(failing, SIG_A), subscription(other, SIG_B)),
+                0, 1999, Long.MAX_VALUE, node(1000, chainLogs), failingListener);
+
+        //the definition which stored its logs moves on past the chunk; the scan stops there so neither passes it
+        assertThat(failing.readBlock, equalTo(BigInteger.ZERO));
+        assertThat(checkpoints.containsKey(failing), equalTo(false));
+        assertThat(received.get(other), equalTo(Collections.singletonList(6L)));
+        assertThat(checkpoints.get(other), equalTo(1000L));
+    }
+
+    // Node refusing more than maxRange blocks per call; otherwise returns the logs in range
+    private EventScanner.LogSource node(long maxRange, List<EthLog.LogResult> chainLogs)
+    {
+        return filter -> {
+            requests.add(filter);
+            if (span(filter) > maxRange) return error("query returned more than 10000 results");
+
+            long from = Numeric.toBigInt(filter.getFromBlock().getValue()).longValue();
+            long to = Numeric.toBigInt(filter.getToBlock().getValue()).longValue();
+            List<EthLog.LogResult> inRange = new ArrayList<>();
+            for (EthLog.LogResult<?> log : chainLogs)
+            {
+                long block = ((Log) log.get()).getBlockNumber().longValue();
+                if (block >= from && block <= to) inRange.add(log);
+            }
+            EthLog result = new EthLog();
+            result.setResult(inRange);
+            return result;
+        };
+    }
+
+    private static long span(EthFilter filter)
+    {
+        return Numeric.toBigInt(filter.getToBlock().getValue()).longValue()
+                - Numeric.toBigInt(filter.getFromBlock().getValue()).longValue() + 1;
+    }
+
+    private static EthLog error(String message)
+    {
+        EthLog result = new EthLog();
+        result.setError(new Response.Error(-32005, message));
+        return result;
+    }
+
+    private static EventScanner.Subscription subscription(EventDefinition ev, String... topics)
+    {
+        EthFilter filter = new EthFilter(DefaultBlockParameterName.EARLIEST, DefaultBlockParameterName.LATEST, CONTRACT);
+        for (String topic : topics) filter.addSingleTopic(topic);
+        return new EventScanner.Subscription(ev, filter);
+    }
+
+    private static EthLog.LogResult log(long block, String... topics)
+    {
+        EthLog.LogObject log = new EthLog.LogObject();
+        log.setBlockNumber(Numeric.encodeQuantity(BigInteger.valueOf(block)));
+        log.setAddress(CONTRACT);
+        log.setTopics(Arrays.asList(topics));
+        return log;
+    }
+}
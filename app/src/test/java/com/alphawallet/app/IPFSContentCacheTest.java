@@ -0,0 +1,90 @@
+package com.alphawallet.app;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.core.IsEqual.equalTo;
+import static org.hamcrest.core.IsNull.nullValue;
+
+import com.alphawallet.app.service.IPFSContentCache;
+import com.alphawallet.app.util.IPFSCid;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+
+public class IPFSContentCacheTest
+{
+    //"hello world\n" as added by ipfs with default settings, and with raw leaves
+    private static final byte[] HELLO = "hello world\n".getBytes(StandardCharsets.UTF_8);
+    private static final String HELLO_V0 = "QmT78zSuBmuS4z925WZfrqQ1qHaJ56DQaTfyMUF7F8ff5o";
+    private static final String HELLO_RAW = "bafkreifjjcie6lypi6ny7amxnfftagclbuxndqonfipmb64f2km2devei4";
+    private static final String EMPTY_V0 = "QmbFMke1KXqnYyBBWxB74N4c5SBnJMVAiMNRcGu6x1AwQH";
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void verifiesContentAgainstCid()
+    {
+        assertThat(IPFSCid.fromUrl("ipfs://" + HELLO_V0).verify(HELLO), equalTo(IPFSCid.Check.VERIFIED));
+        assertThat(IPFSCid.fromUrl("https://dweb.link/ipfs/" + HELLO_RAW).verify(HELLO), equalTo(IPFSCid.Check.VERIFIED));
+        assertThat(IPFSCid.fromUrl(EMPTY_V0).verify(new byte[0]), equalTo(IPFSCid.Check.VERIFIED));
+
+        //a raw block is refuted; dag-pb content may have been built another way, so it's only unconfirmed
+        byte[] truncated = "hello wor".getBytes(StandardCharsets.UTF_8);
+        assertThat(IPFSCid.fromUrl(HELLO_V0).verify(truncated), equalTo(IPFSCid.Check.UNVERIFIABLE));
+        assertThat(IPFSCid.fromUrl(HELLO_RAW).verify(truncated), equalTo(IPFSCid.Check.MISMATCH));
+
+        //a file within a directory can't be checked against the directory's CID
+        IPFSCid inDir = IPFSCid.fromUrl("ipfs://" + HELLO_V0 + "/1.json");
+        assertThat(inDir.path, equalTo("/1.json"));
+        assertThat(inDir.verify(truncated), equalTo(IPFSCid.Check.UNVERIFIABLE));
+
+        assertThat(IPFSCid.fromUrl("https://example.com/token/1.json"), nullValue());
+        assertThat(IPFSCid.fromUrl("ipfs://QmNotACid"), nullValue());
+    }
+
+    @Test
+    public void storesOnlyMatchingContent() throws Exception
+    {
+        IPFSContentCache cache = new IPFSContentCache(folder.newFolder("ipfs"), 1024 * 1024);
+        IPFSCid hello = IPFSCid.fromUrl(HELLO_V0);
+
+        assertThat(cache.put(hello, "<html>gateway error</html>".getBytes(StandardCharsets.UTF_8)), equalTo(false));
+        assertThat(cache.get(hello), nullValue());
+
+        assertThat(cache.put(hello, HELLO), equalTo(true));
+        assertThat(cache.get(hello), equalTo(HELLO));
+
+        IPFSCid raw = IPFSCid.fromUrl(HELLO_RAW);
+        assertThat(cache.put(raw, "hello wor".getBytes(StandardCharsets.UTF_8)), equalTo(false));
+    }
+
+    @Test
+    public void evictsLeastRecentlyUsedAndSurvivesRestart() throws Exception
+    {
+        File dir = folder.newFolder("ipfs");
+        IPFSContentCache cache = new IPFSContentCache(dir, 4000);
+        IPFSCid first = IPFSCid.fromUrl("ipfs://" + HELLO_V0 + "/1");
+        IPFSCid second = IPFSCid.fromUrl("ipfs://" + HELLO_V0 + "/2");
+        IPFSCid third = IPFSCid.fromUrl("ipfs://" + HELLO_V0 + "/3");
+        byte[] block = new byte[1000];
+
+        cache.put(first, block);
+        cache.put(second, block);
+        cache.get(first); //first is now more recent than second
+        cache.put(third, block);
+        cache.put(IPFSCid.fromUrl("ipfs://" + HELLO_V0 + "/4"), new byte[1000]);
+        cache.put(IPFSCid.fromUrl("ipfs://" + HELLO_V0 + "/5"), new byte[1000]);
+
+        assertThat(cache.size(), equalTo(4000L));
+        assertThat(cache.get(second), nullValue());
+        assertThat(cache.get(first), equalTo(block));
+
+        IPFSContentCache reopened = new IPFSContentCache(dir, 4000);
+        assertThat(reopened.size(), equalTo(4000L));
+        assertThat(reopened.get(third), equalTo(block));
+    }
+}
@@ -0,0 +1,141 @@
+package com.alphawallet.app;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.core.IsEqual.equalTo;
+import static org.hamcrest.core.IsNull.nullValue;
+import static org.hamcrest.core.IsSame.sameInstance;
+
+import androidx.annotation.NonNull;
+
+import com.alphawallet.app.entity.IPFSModelLoader;
+import com.bumptech.glide.Priority;
+import com.bumptech.glide.load.DataSource;
+import com.bumptech.glide.load.data.DataFetcher;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+
+public class IPFSModelLoaderTest
+{
+    @Test
+    public void fallsThroughToNextGateway()
+    {
+        InputStream content = new ByteArrayInputStream(new byte[] {1, 2, 3});
+        FakeFetcher down = new FakeFetcher(null, new IOException("502"));
+        FakeFetcher empty = new FakeFetcher(null, null);
+        FakeFetcher up = new FakeFetcher(content, null);
+        FakeFetcher unused = new FakeFetcher(content, null);
+        Result result = new Result();
+
+        new IPFSModelLoader.GatewayFetcher(Arrays.asList(down, empty, up, unused)).loadData(Priority.NORMAL, result);
+
+        assertThat(result.data, sameInstance(content));
+        assertThat(result.error, nullValue());
+        assertThat(down.cleanedUp, equalTo(true));
+        assertThat(empty.cleanedUp, equalTo(true));
+        assertThat(unused.loads, equalTo(0));
+    }
+
+    @Test
+    public void reportsLastErrorWhenAllGatewaysFail()
+    {
+        IOException last = new IOException("timeout");
+        Result result = new Result();
+
+        new IPFSModelLoader.GatewayFetcher(Arrays.asList(new FakeFetcher(null, new IOException("404")),
+                new FakeFetcher(null, last))).loadData(Priority.NORMAL, result);
+
+        assertThat(result.data, nullValue());
+        assertThat(result.error, sameInstance(last));
+    }
+
+    @Test
+    public void cancelStopsFallback()
+    {
+        FakeFetcher first = new FakeFetcher(null, new IOException("502"));
+        FakeFetcher second = new FakeFetcher(new ByteArrayInputStream(new byte[0]), null);
+        IPFSModelLoader.GatewayFetcher fetcher = new IPFSModelLoader.GatewayFetcher(Arrays.asList(first, second));
+        first.onLoad = fetcher::cancel; //cancelled while the first gateway is in flight
+        Result result = new Result();
+
+        fetcher.loadData(Priority.NORMAL, result);
+
+        assertThat(first.cancelled, equalTo(true));
+        assertThat(second.loads, equalTo(0));
+        assertThat(result.data, nullValue());
+        assertThat(result.error, nullValue());
+    }
+
+    private static class Result implements DataFetcher.DataCallback<InputStream>
+    {
+        InputStream data;
+        Exception error;
+
+        @Override
+        public void onDataReady(InputStream data)
+        {
+            this.data = data;
+        }
+
+        @Override
+        public void onLoadFailed(@NonNull Exception e)
+        {
+            this.error = e;
+        }
+    }
+
+    private static class FakeFetcher implements DataFetcher<InputStream>
+    {
+        private final InputStream data;
+        private final Exception error;
+        Runnable onLoad;
+        int loads;
+        boolean cleanedUp;
+        boolean cancelled;
+
+        FakeFetcher(InputStream data, Exception error)
+        {
+            this.data = data;
+            this.error = error;
+        }
+
+        @Override
+        public void loadData(@NonNull Priority priority, @NonNull DataCallback<? super InputStream> callback)
+        {
+            loads++;
+            if (onLoad != null) onLoad.run();
+            if (error != null) callback.onLoadFailed(error);
+            else callback.onDataReady(data);
+        }
+
+        @Override
+        public void cleanup()
+        {
+            cleanedUp = true;
+        }
+
+        @Override
+        public void cancel()
+        {
+            cancelled = true;
+        }
+
+        @NonNull
+        @Override
+        public Class<InputStream> getDataClass()
+        {
+            return InputStream.class;
+        }
+
+        @NonNull
+        @Override
+        public DataSource getDataSource()
+        {
+            return DataSource.REMOTE;
+        }
+    }
+}
@@ -0,0 +1,252 @@
+package com.alphawallet.app;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.core.IsEqual.equalTo;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import com.alphawallet.app.service.JsonRpcBatcher;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class JsonRpcBatcherTest
+{
+    private static final String[] URLS = { "https://rpc.example.org" };
+
+    @Test
+    public void coalescesConcurrentRequests() throws Exception
+    {
+        AtomicInteger posts = new AtomicInteger();
+        JsonRpcBatcher batcher = new JsonRpcBatcher(1L, URLS, payload -> {
+            posts.incrementAndGet();
+            return answer(payload, true);
+        });
+
+        List<String> responses = runConcurrently(batcher, 5);
+
+        //requests arriving in the same window share one POST
+        assertTrue(posts.get() < 5);
+        for (int i = 0; i < 5; i++)
+        {
+            //each caller gets its own response back by id
+            assertThat(JsonParser.parseString(responses.get(i)).getAsJsonObject().get("result").getAsString(), equalTo("0x" + (i + 1)));
+        }
+    }
+
+    @Test
+    public void fallsBackWhenNodeRejectsBatch() throws Exception
+    {
+        AtomicInteger batches = new AtomicInteger();
+        JsonRpcBatcher batcher = new JsonRpcBatcher(1L, URLS, payload -> {
+            if (payload.startsWith("[")) batches.incrementAndGet();
+            return answer(payload, false);
+        });
+
+        List<String> responses = runConcurrently(batcher, 3);
+
+        //a rejected batch switches the chain to single requests
+        assertThat(batcher.isBatchingSupported(), equalTo(batches.get() == 0));
+        for (int i = 0; i < 3; i++)
+        {
+            assertThat(JsonParser.parseString(responses.get(i)).getAsJsonObject().get("result").getAsString(), equalTo("0x" + (i + 1)));
+        }
+    }
+
+    @Test
+    public void doesNotBatchTransactionsOrRestrictedNodes()
+    {
+        JsonRpcBatcher batcher = new JsonRpcBatcher(1L, URLS, payload -> answer(payload, true));
+        assertTrue(batcher.canBatch(request(1, "eth_blockNumber")));
+        assertFalse(batcher.canBatch(request(1, "eth_sendRawTransaction")));
+        assertFalse(batcher.canBatch("[" + request(1, "eth_blockNumber") + "]"));
+
+        JsonRpcBatcher restricted = new JsonRpcBatcher(1L, new String[] { "https://rpc.ankr.com/eth" }, payload -> answer(payload, true));
+        assertFalse(restricted.canBatch(request(1, "eth_blockNumber")));
+    }
+
+    @Test
+    public void slowSendsDoNotHoldBackOtherServices() throws Exception
+    {
+        //each service's node only answers once every service has a request in flight
+        int services = 4;
+        CountDownLatch allSending = new CountDownLatch(services);
+        List<String> responses = Collections.synchronizedList(new ArrayList<>());
+        List<Thread> threads = new ArrayList<>();
+        for (int i = 0; i < services; i++)
+        {
+            JsonRpcBatcher batcher = new JsonRpcBatcher(i + 1, URLS, payload -> {
+                allSending.countDown();
+                try
+                {
+                    allSending.await(10, TimeUnit.SECONDS);
+                }
+                catch (InterruptedException e)
+                {
+                    throw new java.io.InterruptedIOException();
+                }
+                return answer(payload, true);
+            });
+
+            Thread t = new Thread(() -> {
+                try
+                {
+                    responses.add(batcher.submit(request(1, "eth_blockNumber")));
+                }
+                catch (Exception e)
+                {
+                    //left out of responses
+                }
+            });
+            threads.add(t);
+            t.start();
+        }
+
+        for (Thread t : threads) t.join();
+        assertThat(allSending.getCount(), equalTo(0L));
+        assertThat(responses.size(), equalTo(services));
+    }
+
+    @Test
+    public void batchGoesOutOnItsOwnTransport() throws Exception
+    {
+        List<String> standardPosts = Collections.synchronizedList(new ArrayList<>());
+        List<String> eventPosts = Collections.synchronizedList(new ArrayList<>());
+        JsonRpcBatcher standard = new JsonRpcBatcher(1L, URLS, payload -> {
+            standardPosts.add(payload);
+            return answer(payload, true);
+        });
+        JsonRpcBatcher events = new JsonRpcBatcher(1L, URLS, payload -> {
+            eventPosts.add(payload);
+            return answer(payload, true);
+        });
+
+        //same chain, same window, but never mixed into one batch
+        Thread t = new Thread(() -> {
+            try
+            {
+                events.submit(request(9, "eth_getLogs"));
+            }
+            catch (Exception e)
+            {
+                //checked below
+            }
+        });
+        t.start();
+        runConcurrently(standard, 3);
+        t.join();
+
+        for (String post : standardPosts) assertFalse(post.contains("eth_getLogs"));
+        assertThat(eventPosts.size(), equalTo(1));
+        assertTrue(eventPosts.get(0).contains("eth_getLogs"));
+    }
+
+    @Test
+    public void failedElementIsResentAlone() throws Exception
+    {
+        JsonRpcBatcher batcher = new JsonRpcBatcher(1L, URLS, payload -> {
+            if (!payload.startsWith("[")) return answer(payload, true);
+
+            //the node couldn't serve call 2, and call 3 reverted; the rest of the batch is fine
+            JsonArray out = JsonParser.parseString(answer(payload, true)).getAsJsonArray();
+            for (JsonElement e : out)
+            {
+                JsonObject obj = e.getAsJsonObject();
+                int id = obj.get("id").getAsInt();
+                if (id == 2 || id == 3)
+                {
+                    obj.remove("result");
+                    JsonObject error = new JsonObject();
+                    error.addProperty("code", id == 2 ? -32603 : 3);
+                    error.addProperty("message", id == 2 ? "Internal error" : "execution reverted");
+                    obj.add("error", error);
+                }
+            }
+            return out.toString();
+        });
+
+        List<String> responses = runConcurrently(batcher, 4);
+
+        //the others keep their batched answers; call 2 gets the answer from its own resend
+        assertThat(JsonParser.parseString(responses.get(0)).getAsJsonObject().get("result").getAsString(), equalTo("0x1"));
+        assertThat(JsonParser.parseString(responses.get(1)).getAsJsonObject().get("result").getAsString(), equalTo("0x2"));
+        assertTrue(JsonParser.parseString(responses.get(2)).getAsJsonObject().has("error")); //the call's own answer
+        assertThat(JsonParser.parseString(responses.get(3)).getAsJsonObject().get("result").getAsString(), equalTo("0x4"));
+        assertTrue(batcher.isBatchingSupported());
+    }
+
+    private List<String> runConcurrently(JsonRpcBatcher batcher, int count) throws Exception
+    {
+        List<String> responses = Collections.synchronizedList(new ArrayList<>(Collections.nCopies(count, "")));
+        CountDownLatch start = new CountDownLatch(1);
+        List<Thread> threads = new ArrayList<>();
+        for (int i = 0; i < count; i++)
+        {
+            final int index = i;
+            Thread t = new Thread(() -> {
+                try
+                {
+                    start.await();
+                    responses.set(index, batcher.submit(request(index + 1, "eth_blockNumber")));
+                }
+                catch (Exception e)
+                {
+                    responses.set(index, e.getMessage());
+                }
+            });
+            threads.add(t);
+            t.start();
+        }
+
+        start.countDown();
+        for (Thread t : threads) t.join();
+        return responses;
+    }
+
+    private static String request(int id, String method)
+    {
+        return "{\"jsonrpc\":\"2.0\",\"method\":\"" + method + "\",\"params\":[],\"id\":" + id + "}";
+    }
+
+    // Answers each request with its own id as the result; a node without batch support returns an error object
+    private static String answer(String payload, boolean supportsBatch)
+    {
+        JsonElement element = JsonParser.parseString(payload);
+        if (element.isJsonObject())
+        {
+            return result(element.getAsJsonObject()).toString();
+        }
+        else if (!supportsBatch)
+        {
+            return "{\"jsonrpc\":\"2.0\",\"id\":null,\"error\":{\"code\":-32600,\"message\":\"batch not supported\"}}";
+        }
+
+        JsonArray out = new JsonArray();
+        //reverse order to check responses are matched by id, not position
+        JsonArray in = element.getAsJsonArray();
+        for (int i = in.size() - 1; i >= 0; i--)
+        {
+            out.add(result(in.get(i).getAsJsonObject()));
+        }
+        return out.toString();
+    }
+
+    private static JsonObject result(JsonObject request)
+    {
+        JsonObject response = new JsonObject();
+        response.addProperty("jsonrpc", "2.0");
+        response.add("id", request.get("id"));
+        response.addProperty("result", "0x" + request.get("id").getAsInt());
+        return response;
+    }
+}
@@ -0,0 +1,120 @@
+package com.alphawallet.app;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.core.IsEqual.equalTo;
+import static org.hamcrest.core.IsNull.notNullValue;
+import static org.hamcrest.core.IsNull.nullValue;
+
+import com.alphawallet.app.entity.nftassets.NFTAsset;
+import com.alphawallet.app.entity.nftassets.NFTAssetPager;
+
+import org.junit.Test;
+
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import io.reactivex.schedulers.Schedulers;
+
+public class NFTAssetPagerTest
+{
+    private final List<List<BigInteger>> loads = new ArrayList<>();
+    private final NFTAssetPager pager = new NFTAssetPager(this::load, Schedulers.trampoline(), Schedulers.trampoline());
+
+    private Map<BigInteger, NFTAsset> load(List<BigInteger> tokenIds)
+    {
+        loads.add(tokenIds);
+        Map<BigInteger, NFTAsset> assets = new HashMap<>();
+        for (BigInteger tokenId : tokenIds) assets.put(tokenId, new NFTAsset(tokenId));
+        return assets;
+    }
+
+    private static List<BigInteger> ids(int count)
+    {
+        List<BigInteger> ids = new ArrayList<>();
+        for (int i = count; i > 0; i--) ids.add(BigInteger.valueOf(i * 10L)); //given in descending order
+        return ids;
+    }
+
+    @Test
+    public void loadsOnlyPagesAroundShownPosition()
+    {
+        pager.setTokenIds(ids(10000));
+        assertThat(pager.size(), equalTo(10000));
+        assertThat(pager.getTokenId(0), equalTo(BigInteger.TEN));
+
+        assertThat(pager.peekAsset(0), nullValue());
+        assertThat(pager.getAsset(0), notNullValue());
+        assertThat(loads.size(), equalTo(1));
+        assertThat(loads.get(0).size(), equalTo(NFTAssetPager.PAGE_SIZE));
+
+        //near the end of the first page the next one is read ahead
+        pager.getAsset(NFTAssetPager.PAGE_SIZE - 1);
+        assertThat(loads.size(), equalTo(2));
+        assertThat(loads.get(1).get(0), equalTo(pager.getTokenId(NFTAssetPager.PAGE_SIZE)));
+
+        //already loaded
+        pager.getAsset(10);
+        assertThat(loads.size(), equalTo(2));
+    }
+
+    @Test
+    public void dropsLeastRecentlyUsedPages()
+    {
+        pager.setTokenIds(ids(10000));
+        for (int position = 0; position < 5000; position += NFTAssetPager.PAGE_SIZE)
+        {
+            pager.getAsset(position);
+        }
+
+        assertThat(pager.getLoadedPageCount(), equalTo(NFTAssetPager.MAX_PAGES));
+        assertThat(pager.getLoadedAssets().size(), equalTo(NFTAssetPager.MAX_PAGES * NFTAssetPager.PAGE_SIZE));
+        assertThat(pager.peekAsset(0), nullValue());
+    }
+
+    @Test
+    public void notifiesLoadedRange()
+    {
+        int[] loaded = new int[2];
+        pager.setListener((start, count) -> {
+            loaded[0] = start;
+            loaded[1] = count;
+        });
+        pager.setTokenIds(ids(50));
+
+        pager.getAsset(45);
+        assertThat(loaded[0], equalTo(NFTAssetPager.PAGE_SIZE));
+        assertThat(loaded[1], equalTo(50 - NFTAssetPager.PAGE_SIZE));
+    }
+
+    @Test
+    public void updateReplacesLoadedAsset()
+    {
+        pager.setTokenIds(ids(100));
+        pager.getAsset(0);
+
+        NFTAsset fetched = new NFTAsset(BigInteger.ONE);
+        pager.update(BigInteger.valueOf(20), fetched);
+        assertThat(pager.indexOf(BigInteger.valueOf(20)), equalTo(1));
+        assertThat(pager.peekAsset(1) == fetched, equalTo(true));
+
+        //ids not shown are ignored
+        pager.update(BigInteger.valueOf(25), fetched);
+        assertThat(pager.indexOf(BigInteger.valueOf(25)), equalTo(-1));
+    }
+
+    @Test
+    public void newIdsDropLoadedPages()
+    {
+        pager.setTokenIds(ids(100));
+        pager.getAsset(0);
+        assertThat(pager.getLoadedPageCount(), equalTo(1));
+
+        pager.setTokenIds(ids(3));
+        assertThat(pager.getLoadedPageCount(), equalTo(0));
+        assertThat(pager.size(), equalTo(3));
+        assertThat(pager.getAsset(2), notNullValue());
+    }
+}
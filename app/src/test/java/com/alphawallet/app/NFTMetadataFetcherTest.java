@@ -0,0 +1,110 @@
+package com.alphawallet.app;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.core.IsEqual.equalTo;
+
+import com.alphawallet.app.entity.QueryResponse;
+import com.alphawallet.app.service.ExplorerRateLimiter;
+import com.alphawallet.app.service.NFTMetadataFetcher;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class NFTMetadataFetcherTest
+{
+    private static final String URL = "https://metadata.example.com/token/1.json";
+    private static final String METADATA = "{\"name\":\"Item #1\",\"image\":\"https://metadata.example.com/1.png\"}";
+
+    private final AtomicInteger calls = new AtomicInteger();
+    private final ExplorerRateLimiter limiter = new ExplorerRateLimiter(8, 2, 1000.0, 100, System::nanoTime);
+
+    @Test
+    public void concurrentRequestsForSameUrlShareOneFetch() throws Exception
+    {
+        CountDownLatch entered = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        NFTMetadataFetcher fetcher = new NFTMetadataFetcher(url -> {
+            calls.incrementAndGet();
+            entered.countDown();
+            await(release);
+            return new QueryResponse(200, METADATA);
+        }, limiter, 1);
+
+        String[] results = new String[2];
+        Thread first = new Thread(() -> results[0] = fetcher.getContent(URL));
+        first.start();
+        entered.await();
+
+        Thread second = new Thread(() -> results[1] = fetcher.getContent(URL + " "));
+        second.start();
+        while (second.getState() != Thread.State.WAITING) Thread.sleep(1); //parked on the first fetch
+
+        release.countDown();
+        first.join();
+        second.join();
+
+        assertThat(calls.get(), equalTo(1));
+        assertThat(results[0], equalTo(METADATA));
+        assertThat(results[1], equalTo(METADATA));
+    }
+
+    @Test
+    public void retriesRefusedAndFailedCalls()
+    {
+        Deque<Integer> codes = new ArrayDeque<>(Arrays.asList(429, 503, 200));
+        NFTMetadataFetcher fetcher = new NFTMetadataFetcher(url -> {
+            calls.incrementAndGet();
+            int code = codes.pop();
+            return new QueryResponse(code, code == 200 ? METADATA : "");
+        }, limiter, 1);
+
+        assertThat(fetcher.getContent(URL), equalTo(METADATA));
+        assertThat(calls.get(), equalTo(3));
+    }
+
+    @Test
+    public void missingContentNotRetried()
+    {
+        NFTMetadataFetcher fetcher = new NFTMetadataFetcher(url -> {
+            calls.incrementAndGet();
+            return new QueryResponse(404, "not found");
+        }, limiter, 1);
+
+        assertThat(fetcher.getContent(URL), equalTo(""));
+        assertThat(calls.get(), equalTo(1));
+    }
+
+    @Test
+    public void givesUpAfterMaxAttempts()
+    {
+        NFTMetadataFetcher fetcher = new NFTMetadataFetcher(url -> {
+            calls.incrementAndGet();
+            throw new IOException("connection reset");
+        }, limiter, 1);
+
+        assertThat(fetcher.getContent(URL), equalTo(""));
+        assertThat(calls.get(), equalTo(NFTMetadataFetcher.MAX_ATTEMPTS));
+
+        //a later request tries again rather than reusing the failure
+        fetcher.getContent(URL);
+        assertThat(calls.get(), equalTo(NFTMetadataFetcher.MAX_ATTEMPTS * 2));
+    }
+
+    private static void await(CountDownLatch latch) throws IOException
+    {
+        try
+        {
+            latch.await();
+        }
+        catch (InterruptedException e)
+        {
+            throw new IOException(e);
+        }
+    }
+}
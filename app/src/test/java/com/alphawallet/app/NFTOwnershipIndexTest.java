@@ -0,0 +1,153 @@
+package com.alphawallet.app;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.core.IsEqual.equalTo;
+
+import com.alphawallet.app.entity.nftassets.NFTOwnershipIndex;
+
+import org.junit.Test;
+
+import java.math.BigInteger;
+import java.util.Arrays;
+import java.util.Collections;
+
+public class NFTOwnershipIndexTest
+{
+    private static final String WALLET = "0xabc0000000000000000000000000000000000001";
+    private static final String OTHER = "0xdef0000000000000000000000000000000000002";
+    private static final BigInteger ID = BigInteger.valueOf(7);
+
+    @Test
+    public void latestTransferDecidesErc721Ownership()
+    {
+        NFTOwnershipIndex index = new NFTOwnershipIndex(WALLET, false);
+        //send log read before the receive log of the same range
+        index.applyTransfer(20, 0, WALLET, OTHER, ID, BigInteger.ONE);
+        index.applyTransfer(10, 3, OTHER, WALLET, ID, BigInteger.ONE);
+        index.commitRange(1, 30);
+
+        assertThat(index.isHeld(ID), equalTo(false));
+        assertThat(index.isSettled(ID), equalTo(true));
+
+        index.applyTransfer(40, 1, OTHER, WALLET.toUpperCase(), ID, BigInteger.ONE);
+        index.commitRange(31, 50);
+        assertThat(index.isHeld(ID), equalTo(true));
+    }
+
+    @Test
+    public void transferToSelfCountedOnce()
+    {
+        NFTOwnershipIndex index = new NFTOwnershipIndex(WALLET, true);
+        index.applyTransfer(5, 0, OTHER, WALLET, ID, BigInteger.TEN);
+        //same log appears in both the send and receive reads
+        index.applyTransfer(6, 2, WALLET, WALLET, ID, BigInteger.ONE);
+        index.applyTransfer(6, 2, WALLET, WALLET, ID, BigInteger.ONE);
+        index.commitRange(1, 10);
+
+        assertThat(index.getAmount(ID), equalTo(BigInteger.TEN));
+    }
+
+    @Test
+    public void overlappingRangeNotCountedTwice()
+    {
+        NFTOwnershipIndex index = new NFTOwnershipIndex(WALLET, true);
+        index.applyTransfer(5, 0, OTHER, WALLET, ID, BigInteger.valueOf(3));
+        index.commitRange(1, 10);
+
+        //a re-read from an earlier start block sees the same log again
+        index.applyTransfer(5, 0, OTHER, WALLET, ID, BigInteger.valueOf(3));
+        index.applyTransfer(12, 0, WALLET, OTHER, ID, BigInteger.ONE);
+        index.commitRange(4, 15);
+
+        assertThat(index.getAmount(ID), equalTo(BigInteger.valueOf(2)));
+        assertThat(index.getRanges(), equalTo("1-15"));
+    }
+
+    @Test
+    public void gapLeavesIdUnsettled()
+    {
+        NFTOwnershipIndex index = new NFTOwnershipIndex(WALLET, true);
+        index.applyTransfer(25, 0, OTHER, WALLET, ID, BigInteger.ONE);
+        index.commitRange(20, 30);
+
+        //blocks 1 to 19 haven't been read, so the sum might be missing earlier transfers
+        assertThat(index.isSettled(ID), equalTo(false));
+        assertThat(index.getUnsettled(Arrays.asList(ID, BigInteger.ONE)).size(), equalTo(2));
+
+        index.commitRange(1, 19);
+        assertThat(index.isSettled(ID), equalTo(true));
+        assertThat(index.getUnsettled(Collections.singletonList(ID)).isEmpty(), equalTo(true));
+    }
+
+    @Test
+    public void verifiedAmountIsStartingPoint()
+    {
+        NFTOwnershipIndex index = new NFTOwnershipIndex(WALLET, true);
+        index.commitRange(50, 100);
+        index.setVerified(ID, BigInteger.valueOf(5), 100);
+        assertThat(index.isSettled(ID), equalTo(true));
+
+        //logs at or before the verified block are already in the amount
+        index.applyTransfer(101, 0, OTHER, WALLET, ID, BigInteger.valueOf(2));
+        index.applyTransfer(90, 0, OTHER, WALLET, ID, BigInteger.valueOf(9));
+        index.commitRange(101, 110);
+
+        assertThat(index.getAmount(ID), equalTo(BigInteger.valueOf(7)));
+        assertThat(index.isSettled(ID), equalTo(true));
+    }
+
+    @Test
+    public void restoresFromSavedState()
+    {
+        NFTOwnershipIndex index = new NFTOwnershipIndex(WALLET, false);
+        index.applyTransfer(8, 1, OTHER, WALLET, ID, BigInteger.ONE);
+        index.commitRange(1, 10);
+        index.commitRange(20, 30);
+        assertThat(index.getChangedEntries().size(), equalTo(1));
+
+        NFTOwnershipIndex.Entry entry = index.getChangedEntries().get(0);
+        NFTOwnershipIndex restored = new NFTOwnershipIndex(WALLET, false);
+        restored.restoreRanges(index.getRanges(), index.getLastRebuild());
+        restored.restoreEntry(entry.tokenId, entry.getAmount(), entry.getLastBlock(), entry.getLastLogIndex(), entry.getVerifiedBlock());
+
+        assertThat(restored.getRanges(), equalTo("1-10,20-30"));
+        assertThat(restored.isHeld(ID), equalTo(true));
+        assertThat(restored.isSettled(ID), equalTo(false));
+        assertThat(restored.getChangedEntries().isEmpty(), equalTo(true));
+
+        index.markSaved();
+        assertThat(index.getChangedEntries().isEmpty(), equalTo(true));
+        assertThat(index.isRangesChanged(), equalTo(false));
+    }
+
+    @Test
+    public void rebuildIsRateLimited()
+    {
+        NFTOwnershipIndex index = new NFTOwnershipIndex(WALLET, false);
+        index.applyTransfer(8, 1, OTHER, WALLET, ID, BigInteger.ONE);
+        index.commitRange(1, 10);
+
+        long now = NFTOwnershipIndex.REBUILD_INTERVAL * 2;
+        assertThat(index.isRebuildDue(now), equalTo(true));
+        index.rebuild(now);
+
+        assertThat(index.contains(ID), equalTo(false));
+        assertThat(index.getCoveredHead(), equalTo(-1L));
+        assertThat(index.isCleared(), equalTo(true));
+        assertThat(index.isRebuildDue(now + 1000), equalTo(false));
+    }
+
+    @Test
+    public void auditSampleTakesSettledIdsLongestUncheckedFirst()
+    {
+        NFTOwnershipIndex index = new NFTOwnershipIndex(WALLET, true);
+        BigInteger recent = BigInteger.ONE;
+        BigInteger older = BigInteger.TEN;
+        index.setVerified(recent, BigInteger.ONE, 90);
+        index.setVerified(older, BigInteger.ONE, 20);
+        index.commitRange(1, 100); //ID isn't known to the index, so it isn't settled
+
+        assertThat(index.getAuditSample(Arrays.asList(recent, ID, older), 5), equalTo(Arrays.asList(older, recent)));
+        assertThat(index.getAuditSample(Arrays.asList(recent, ID, older), 1), equalTo(Collections.singletonList(older)));
+    }
+}
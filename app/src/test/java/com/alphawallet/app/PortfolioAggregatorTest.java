@@ -0,0 +1,86 @@
+package com.alphawallet.app;
+
+import static com.alphawallet.app.repository.TokensRealmSource.databaseKey;
+import static com.alphawallet.ethereum.EthereumNetworkBase.MAINNET_ID;
+import static com.alphawallet.ethereum.EthereumNetworkBase.POLYGON_ID;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.core.IsEqual.equalTo;
+
+import com.alphawallet.app.entity.tokendata.TokenTicker;
+import com.alphawallet.app.repository.PortfolioAggregator;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+public class PortfolioAggregatorTest
+{
+    private static final String WALLET = "0x1234567890123456789012345678901234567890";
+    private static final String TOKEN = "0x1111111111111111111111111111111111111111";
+    private static final String ETH_TICKER = databaseKey(MAINNET_ID, "eth");
+    private static final String TOKEN_TICKER = databaseKey(POLYGON_ID, TOKEN);
+
+    @Test
+    public void totalsArePerChain()
+    {
+        PortfolioAggregator portfolio = loaded();
+
+        //2 ETH at 1000, 50 tokens (6 decimals) at 2 which were 10% cheaper yesterday
+        PortfolioAggregator.Totals all = portfolio.getTotal(WALLET, Collections.emptyList());
+        assertThat(all.value, equalTo(2100.0));
+        assertThat(all.historical, equalTo(2090.0));
+
+        PortfolioAggregator.Totals polygon = portfolio.getTotal(WALLET.toUpperCase(), Collections.singletonList(POLYGON_ID));
+        assertThat(polygon.value, equalTo(100.0));
+    }
+
+    @Test
+    public void tickerChangeRepricesOnlyItsHoldings()
+    {
+        PortfolioAggregator portfolio = loaded();
+        portfolio.updateTicker(ETH_TICKER, ticker("1500", "0"));
+
+        assertThat(portfolio.getTotal(WALLET, Collections.singletonList(MAINNET_ID)).value, equalTo(3000.0));
+        assertThat(portfolio.getTotal(WALLET, Collections.singletonList(POLYGON_ID)).value, equalTo(100.0));
+
+        portfolio.updateTicker(ETH_TICKER, null);
+        assertThat(portfolio.getTotal(WALLET, Collections.emptyList()).value, equalTo(100.0));
+    }
+
+    @Test
+    public void balanceChangeReplacesContribution()
+    {
+        PortfolioAggregator portfolio = loaded();
+        portfolio.update(WALLET, 2, Collections.singletonList(
+                new PortfolioAggregator.Holding(databaseKey(POLYGON_ID, TOKEN), POLYGON_ID, TOKEN_TICKER, "10000000", 6)), false);
+        assertThat(portfolio.getTotal(WALLET, Collections.emptyList()).value, equalTo(2020.0));
+
+        //token hidden or emptied
+        portfolio.update(WALLET, 3, Collections.singletonList(
+                new PortfolioAggregator.Holding(databaseKey(POLYGON_ID, TOKEN), POLYGON_ID, TOKEN_TICKER, null, 6)), false);
+        assertThat(portfolio.getTotal(WALLET, Collections.emptyList()).value, equalTo(2000.0));
+        assertThat(portfolio.getVersion(WALLET), equalTo(3L));
+    }
+
+    private PortfolioAggregator loaded()
+    {
+        PortfolioAggregator portfolio = new PortfolioAggregator();
+        Map<String, TokenTicker> tickers = new HashMap<>();
+        tickers.put(ETH_TICKER, ticker("1000", "0"));
+        tickers.put(TOKEN_TICKER, ticker("2", "10"));
+        portfolio.loadTickers(portfolio.beginTickerLoad(), tickers);
+
+        portfolio.update(WALLET, 1, Arrays.asList(
+                new PortfolioAggregator.Holding(databaseKey(MAINNET_ID, WALLET), MAINNET_ID, ETH_TICKER, "2000000000000000000", 18),
+                new PortfolioAggregator.Holding(databaseKey(POLYGON_ID, TOKEN), POLYGON_ID, TOKEN_TICKER, "50000000", 6)), true);
+        return portfolio;
+    }
+
+    private TokenTicker ticker(String price, String percentChange)
+    {
+        return new TokenTicker(price, percentChange, "USD", "", 0);
+    }
+}
@@ -0,0 +1,204 @@
+package com.alphawallet.app;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.core.IsEqual.equalTo;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+
+import com.alphawallet.app.service.RealmWriter;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import io.realm.Realm;
+
+public class RealmWriterTest
+{
+    private static final String DB = "0xabc-db.realm";
+
+    //stands in for the database: writes are staged in a transaction and only land on commit
+    private final List<String> committed = Collections.synchronizedList(new ArrayList<>());
+    private final AtomicInteger commits = new AtomicInteger();
+    private final AtomicInteger opens = new AtomicInteger();
+    private List<String> staged;
+    private Realm realm;
+
+    private final Map<String, Throwable> results = new ConcurrentHashMap<>();
+    private final Map<String, CountDownLatch> done = new ConcurrentHashMap<>();
+
+    @Before
+    public void setUp()
+    {
+        realm = mock(Realm.class);
+        doAnswer(inv -> {
+            staged = new ArrayList<>();
+            return null;
+        }).when(realm).beginTransaction();
+        doAnswer(inv -> {
+            committed.addAll(staged);
+            staged = null;
+            commits.incrementAndGet();
+            return null;
+        }).when(realm).commitTransaction();
+        doAnswer(inv -> {
+            staged = null;
+            return null;
+        }).when(realm).cancelTransaction();
+        doAnswer(inv -> staged != null).when(realm).isInTransaction();
+        doAnswer(inv -> {
+            Realm.Transaction transaction = inv.getArgument(0);
+            realm.beginTransaction();
+            try
+            {
+                transaction.execute(realm);
+                realm.commitTransaction();
+            }
+            catch (RuntimeException e)
+            {
+                realm.cancelTransaction();
+                throw e;
+            }
+            return null;
+        }).when(realm).executeTransaction(any());
+    }
+
+    private RealmWriter writer(long idleMs)
+    {
+        return new RealmWriter(DB, name -> {
+            opens.incrementAndGet();
+            return realm;
+        }, idleMs);
+    }
+
+    private void submit(RealmWriter writer, String id, Realm.Transaction transaction)
+    {
+        done.put(id, new CountDownLatch(1));
+        writer.submit(transaction, error -> {
+            if (error != null) results.put(id, error);
+            done.get(id).countDown();
+        });
+    }
+
+    private void await(String id) throws InterruptedException
+    {
+        assertTrue(done.get(id).await(5, TimeUnit.SECONDS));
+    }
+
+    private Realm.Transaction write(String value)
+    {
+        return r -> staged.add(value);
+    }
+
+    // Holds the writer thread in a transaction until released, so later writes queue up behind it
+    private CountDownLatch hold(RealmWriter writer) throws InterruptedException
+    {
+        CountDownLatch entered = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        submit(writer, "hold", r -> {
+            entered.countDown();
+            try
+            {
+                release.await(5, TimeUnit.SECONDS);
+            }
+            catch (InterruptedException e)
+            {
+                Thread.currentThread().interrupt();
+            }
+        });
+        assertTrue(entered.await(5, TimeUnit.SECONDS));
+        return release;
+    }
+
+    @Test
+    public void queuedWritesShareOneCommit() throws Exception
+    {
+        RealmWriter writer = writer(60000);
+        CountDownLatch release = hold(writer);
+        for (int i = 0; i < 5; i++) submit(writer, "w" + i, write("w" + i));
+        release.countDown();
+        await("w4");
+
+        assertThat(commits.get(), equalTo(2)); //the held write, then the five queued behind it
+        assertThat(committed, equalTo(Arrays.asList("w0", "w1", "w2", "w3", "w4")));
+        assertThat(writer.getMetrics().transactions, equalTo(6L));
+        assertTrue(results.isEmpty());
+    }
+
+    @Test
+    public void failedWriteIsRolledBackAndOthersReplayed() throws Exception
+    {
+        RealmWriter writer = writer(60000);
+        CountDownLatch release = hold(writer);
+        submit(writer, "a", write("a"));
+        submit(writer, "bad", r -> {
+            staged.add("partial");
+            throw new IllegalStateException("bad write");
+        });
+        submit(writer, "b", write("b"));
+        release.countDown();
+        await("b");
+
+        //nothing from the failed write lands, and the rest are committed once each
+        assertThat(committed, equalTo(Arrays.asList("a", "b")));
+        assertTrue(results.get("bad") instanceof IllegalStateException);
+        assertNull(results.get("a"));
+        assertNull(results.get("b"));
+    }
+
+    @Test
+    public void effectsRunOnlyAfterCommit() throws Exception
+    {
+        RealmWriter writer = writer(60000);
+        List<String> effects = Collections.synchronizedList(new ArrayList<>());
+        CountDownLatch release = hold(writer);
+        submit(writer, "a", r -> {
+            staged.add("a");
+            RealmWriter.afterCommit(() -> effects.add("a"));
+        });
+        submit(writer, "bad", r -> {
+            RealmWriter.afterCommit(() -> effects.add("bad"));
+            throw new IllegalStateException("bad write");
+        });
+        release.countDown();
+        await("bad");
+
+        //"a" ran twice (batch, then replay) but its effect is applied once; the failed write's never is
+        assertThat(effects, equalTo(Collections.singletonList("a")));
+
+        //outside a writer transaction the effect runs straight away
+        RealmWriter.afterCommit(() -> effects.add("direct"));
+        assertThat(effects.size(), equalTo(2));
+    }
+
+    @Test
+    public void idleWriterStopsAndRestarts() throws Exception
+    {
+        RealmWriter writer = writer(50);
+        assertFalse(writer.isRunning());
+
+        submit(writer, "a", write("a"));
+        await("a");
+        long deadline = System.currentTimeMillis() + 5000;
+        while (writer.isRunning() && System.currentTimeMillis() < deadline) Thread.sleep(10);
+        assertFalse(writer.isRunning());
+
+        submit(writer, "b", write("b"));
+        await("b");
+        assertThat(committed, equalTo(Arrays.asList("a", "b")));
+        assertThat(opens.get(), equalTo(2)); //the Realm is closed with the thread and reopened by the next one
+    }
+}
@@ -0,0 +1,112 @@
+package com.alphawallet.app;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.core.IsEqual.equalTo;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import com.alphawallet.app.service.RpcEndpointHealth;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.List;
+
+public class RpcEndpointHealthTest
+{
+    private static final String A = "https://a.example.org";
+    private static final String B = "https://b.example.org";
+    private static final String C = "https://c.example.org";
+
+    @Test
+    public void latencyIsSmoothed()
+    {
+        RpcEndpointHealth health = RpcEndpointHealth.get(910001L);
+        health.recordSuccess(A, 100);
+        health.recordSuccess(A, 600); //one slow answer moves the average a fifth of the way
+
+        RpcEndpointHealth.EndpointStatus status = health.getBestEndpoint(new String[] { A });
+        assertThat(status.latencyMs, equalTo(200L));
+        assertThat(status.samples, equalTo(2));
+    }
+
+    @Test
+    public void fasterEndpointIsTriedFirst()
+    {
+        RpcEndpointHealth health = RpcEndpointHealth.get(910002L);
+        health.recordSuccess(A, 400);
+        health.recordSuccess(B, 100);
+
+        assertThat(health.orderEndpoints(new String[] { A, B }), equalTo(Arrays.asList(B, A)));
+    }
+
+    @Test
+    public void errorsPushEndpointBack()
+    {
+        RpcEndpointHealth health = RpcEndpointHealth.get(910003L);
+        health.recordSuccess(A, 100);
+        health.recordSuccess(B, 200);
+        health.recordFailure(A);
+
+        assertThat(health.orderEndpoints(new String[] { A, B }).get(0), equalTo(B));
+
+        //an endpoint which has only ever failed ranks behind one which answers slowly
+        RpcEndpointHealth other = RpcEndpointHealth.get(910004L);
+        other.recordFailure(A);
+        other.recordSuccess(B, 2000);
+        assertThat(other.orderEndpoints(new String[] { A, B }).get(0), equalTo(B));
+    }
+
+    @Test
+    public void staleNodeIsPenalised()
+    {
+        RpcEndpointHealth health = RpcEndpointHealth.get(910005L);
+        health.recordSuccess(A, 100);
+        health.recordSuccess(B, 300);
+        health.recordBlockHeight(A, 1000);
+        health.recordBlockHeight(B, 1100);
+
+        assertThat(health.orderEndpoints(new String[] { A, B }).get(0), equalTo(B));
+    }
+
+    @Test
+    public void unmeasuredEndpointScoresAsAverage()
+    {
+        RpcEndpointHealth health = RpcEndpointHealth.get(910006L);
+        health.recordSuccess(A, 100);
+        health.recordSuccess(B, 500);
+
+        //C is ranked between the measured endpoints so it still gets tried
+        List<String> ordered = health.orderEndpoints(new String[] { B, C, A });
+        assertThat(ordered, equalTo(Arrays.asList(A, C, B)));
+    }
+
+    @Test
+    public void hedgeDelayFollowsP95()
+    {
+        RpcEndpointHealth health = RpcEndpointHealth.get(910007L);
+        assertThat(health.getHedgeDelay(A), equalTo(RpcEndpointHealth.MAX_HEDGE_DELAY_MS));
+
+        for (int i = 0; i < 19; i++) health.recordSuccess(A, 200);
+        health.recordSuccess(A, 2500);
+        assertThat(health.getHedgeDelay(A), equalTo(200L));
+
+        health.recordSuccess(B, 10);
+        assertThat(health.getHedgeDelay(B), equalTo(RpcEndpointHealth.MIN_HEDGE_DELAY_MS));
+    }
+
+    @Test
+    public void onlyCurrentUrlsAreReported()
+    {
+        RpcEndpointHealth health = RpcEndpointHealth.get(910008L);
+        health.recordSuccess(A, 50);
+        health.recordSuccess(B, 300);
+
+        //A was removed from the chain's RPC list
+        RpcEndpointHealth.EndpointStatus best = health.getBestEndpoint(new String[] { B, C });
+        assertThat(best.url, equalTo(B));
+        assertThat(health.getStatus(new String[] { B, C }).size(), equalTo(1));
+        assertNull(health.getBestEndpoint(new String[] { C }));
+        assertTrue(health.getStatus(new String[0]).isEmpty());
+    }
+}
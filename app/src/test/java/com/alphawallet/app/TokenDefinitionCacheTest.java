@@ -0,0 +1,96 @@
+package com.alphawallet.app;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.core.IsEqual.equalTo;
+import static org.hamcrest.core.IsNull.nullValue;
+import static org.hamcrest.core.IsSame.sameInstance;
+
+import com.alphawallet.app.service.TokenDefinitionCache;
+import com.alphawallet.token.entity.ContractInfo;
+import com.alphawallet.token.tools.TokenDefinition;
+
+import org.junit.Test;
+
+import java.util.Collections;
+
+public class TokenDefinitionCacheTest
+{
+    private final TokenDefinitionCache cache = new TokenDefinitionCache();
+
+    @Test
+    public void findsDefinitionByHoldingContract()
+    {
+        TokenDefinition td = definition(1, "0xAbCd000000000000000000000000000000000001");
+        cache.put("hash1", td);
+
+        assertThat(cache.find(1, "0xabcd000000000000000000000000000000000001"), sameInstance(td));
+        assertThat(cache.find(137, "0xabcd000000000000000000000000000000000001"), nullValue());
+        assertThat(cache.find(1, "0xabcd000000000000000000000000000000000002"), nullValue());
+        assertThat(cache.get("hash1"), sameInstance(td));
+    }
+
+    @Test
+    public void holdsSeveralDefinitions()
+    {
+        TokenDefinition first = definition(1, "0x01");
+        TokenDefinition second = definition(1, "0x02");
+        cache.put("hash1", first);
+        cache.put("hash2", second);
+
+        //switching between two tokens no longer reparses either
+        assertThat(cache.find(1, "0x01"), sameInstance(first));
+        assertThat(cache.find(1, "0x02"), sameInstance(second));
+        assertThat(cache.find(1, "0x01"), sameInstance(first));
+    }
+
+    @Test
+    public void dropsLeastRecentlyUsed()
+    {
+        for (int i = 0; i < TokenDefinitionCache.MAX_DEFINITIONS; i++)
+        {
+            cache.put("hash" + i, definition(1, "0x" + i));
+        }
+
+        cache.find(1, "0x0"); //used, so kept
+        cache.put("new", definition(1, "0xnew"));
+
+        assertThat(cache.size(), equalTo(TokenDefinitionCache.MAX_DEFINITIONS));
+        assertThat(cache.get("hash1"), nullValue());
+        assertThat(cache.find(1, "0x0") != null, equalTo(true));
+        assertThat(cache.find(1, "0xnew") != null, equalTo(true));
+    }
+
+    @Test
+    public void newScriptReplacesOldForSameContract()
+    {
+        TokenDefinition old = definition(1, "0x01");
+        TokenDefinition other = definition(1, "0x02");
+        TokenDefinition updated = definition(1, "0x01");
+        cache.put("oldHash", old);
+        cache.put("otherHash", other);
+        cache.put("newHash", updated);
+
+        assertThat(cache.find(1, "0x01"), sameInstance(updated));
+        assertThat(cache.get("oldHash"), nullValue());
+        assertThat(cache.find(1, "0x02"), sameInstance(other));
+        assertThat(cache.size(), equalTo(2));
+    }
+
+    @Test
+    public void clearDropsAll()
+    {
+        cache.put("hash1", definition(1, "0x01"));
+        cache.clear();
+
+        assertThat(cache.size(), equalTo(0));
+        assertThat(cache.find(1, "0x01"), nullValue());
+    }
+
+    private static TokenDefinition definition(long chainId, String address)
+    {
+        TokenDefinition td = new TokenDefinition();
+        td.holdingToken = "Token";
+        td.contracts.put("Token", new ContractInfo("ERC20", Collections.singletonMap(chainId, Collections.singletonList(address))));
+        return td;
+    }
+}
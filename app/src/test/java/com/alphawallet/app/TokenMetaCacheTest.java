@@ -0,0 +1,58 @@
+package com.alphawallet.app;
+
+import static com.alphawallet.app.repository.TokensRealmSource.databaseKey;
+import static com.alphawallet.ethereum.EthereumNetworkBase.MAINNET_ID;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.core.IsEqual.equalTo;
+
+import com.alphawallet.app.entity.ContractType;
+import com.alphawallet.app.repository.TokenMetaCache;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+public class TokenMetaCacheTest
+{
+    private static final String WALLET = "0x1234567890123456789012345678901234567890";
+    private static final String TOKEN_A = "0x1111111111111111111111111111111111111111";
+    private static final String TOKEN_B = "0x2222222222222222222222222222222222222222";
+
+    @Test
+    public void onlyChangedRowsBumpVersion()
+    {
+        TokenMetaCache cache = new TokenMetaCache();
+        cache.apply(WALLET, Arrays.asList(row(TOKEN_A, "1", 100), row(TOKEN_B, "5", 100)), Collections.emptyList());
+        long version = cache.getVersion(WALLET);
+
+        //balance read again with the same value; only addedTime moves
+        cache.apply(WALLET, Arrays.asList(row(TOKEN_A, "1", 200), row(TOKEN_B, "6", 200)), Collections.emptyList());
+
+        List<TokenMetaCache.Row> changed = cache.changedSince(WALLET, version);
+        assertThat(changed.size(), equalTo(1));
+        assertThat(changed.get(0).tokenAddress, equalTo(TOKEN_B));
+        assertThat(changed.get(0).balance, equalTo("6"));
+        assertThat(cache.getVersion(WALLET), equalTo(version + 1));
+    }
+
+    @Test
+    public void removalBumpsVersion()
+    {
+        TokenMetaCache cache = new TokenMetaCache();
+        cache.apply(WALLET, Collections.singletonList(row(TOKEN_A, "1", 100)), Collections.emptyList());
+        long version = cache.getVersion(WALLET);
+
+        cache.apply(WALLET.toUpperCase(), Collections.emptyList(), Collections.singletonList(databaseKey(MAINNET_ID, TOKEN_A)));
+
+        assertThat(cache.getVersion(WALLET), equalTo(version + 1));
+        assertThat(cache.changedSince(WALLET, 0).size(), equalTo(0));
+    }
+
+    private TokenMetaCache.Row row(String address, String balance, long addedTime)
+    {
+        return new TokenMetaCache.Row(databaseKey(MAINNET_ID, address), MAINNET_ID, address, balance, ContractType.ERC20,
+                "Token", "TKN", "Token", 18, addedTime, 50, 0, true, false);
+    }
+}
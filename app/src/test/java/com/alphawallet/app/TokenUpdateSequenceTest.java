@@ -0,0 +1,120 @@
+package com.alphawallet.app;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.core.IsEqual.equalTo;
+
+import androidx.recyclerview.widget.SortedList;
+
+import com.alphawallet.app.ui.widget.adapter.SortedListSearch;
+import com.alphawallet.app.ui.widget.adapter.TokenUpdateSequence;
+
+import org.junit.Test;
+
+public class TokenUpdateSequenceTest
+{
+    @Test
+    public void olderUpdateDoesNotOverwriteNewerRow()
+    {
+        TokenUpdateSequence sequence = new TokenUpdateSequence();
+        long first = sequence.next();
+        long second = sequence.next();
+
+        //the second update finishes first
+        sequence.markApplied("1-0xa", second);
+
+        assertThat(sequence.isStale("1-0xa", first), equalTo(true));
+        assertThat(sequence.isStale("1-0xb", first), equalTo(false)); //rows the later update didn't touch still apply
+        assertThat(sequence.isStale("1-0xa", sequence.next()), equalTo(false));
+    }
+
+    @Test
+    public void applyingOlderUpdateKeepsNewerMark()
+    {
+        TokenUpdateSequence sequence = new TokenUpdateSequence();
+        long first = sequence.next();
+        long second = sequence.next();
+
+        sequence.markApplied("1-0xa", second);
+        sequence.markApplied("1-0xa", first);
+
+        assertThat(sequence.isStale("1-0xa", first), equalTo(true));
+    }
+
+    @Test
+    public void clearMakesEarlierUpdatesStale()
+    {
+        TokenUpdateSequence sequence = new TokenUpdateSequence();
+        long before = sequence.next();
+        long clear = sequence.next();
+        long after = sequence.next();
+
+        sequence.clear(clear);
+
+        assertThat(sequence.isBeforeClear(before), equalTo(true));
+        assertThat(sequence.isStale("1-0xa", before), equalTo(true));
+        assertThat(sequence.isBeforeClear(after), equalTo(false));
+        assertThat(sequence.isStale("1-0xa", after), equalTo(false));
+    }
+
+    @Test
+    public void rowFoundAfterSortKeyChanged()
+    {
+        SortedList<Row> list = new SortedList<>(Row.class, new SortedList.Callback<Row>()
+        {
+            @Override
+            public int compare(Row o1, Row o2)
+            {
+                return Integer.compare(o1.weight, o2.weight);
+            }
+
+            @Override
+            public void onChanged(int position, int count) { }
+
+            @Override
+            public boolean areContentsTheSame(Row oldItem, Row newItem)
+            {
+                return oldItem == newItem;
+            }
+
+            @Override
+            public boolean areItemsTheSame(Row item1, Row item2)
+            {
+                return item1 == item2;
+            }
+
+            @Override
+            public void onInserted(int position, int count) { }
+
+            @Override
+            public void onRemoved(int position, int count) { }
+
+            @Override
+            public void onMoved(int fromPosition, int toPosition) { }
+        });
+
+        Row[] rows = new Row[10];
+        for (int i = 0; i < rows.length; i++)
+        {
+            rows[i] = new Row(i * 10);
+            list.add(rows[i]);
+        }
+
+        Row moved = rows[2];
+        moved.weight = 95; //sort key changed after the row was added
+
+        assertThat(list.indexOf(moved), equalTo(SortedList.INVALID_POSITION));
+        assertThat(SortedListSearch.indexOf(list, moved), equalTo(2));
+        assertThat(SortedListSearch.indexOf(list, new Row(30)), equalTo(SortedList.INVALID_POSITION));
+        assertThat(SortedListSearch.indexOf(list, rows[5]), equalTo(5));
+    }
+
+    private static class Row
+    {
+        int weight;
+
+        Row(int weight)
+        {
+            this.weight = weight;
+        }
+    }
+}
@@ -0,0 +1,86 @@
+package com.alphawallet.app;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.core.IsEqual.equalTo;
+
+import com.alphawallet.app.repository.TokenWriteQueue;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import io.realm.Realm;
+
+public class TokenWriteQueueTest
+{
+    private static final String WALLET = "0xAbCd000000000000000000000000000000000001";
+    private static final long NO_TIMER = 60000; //tests flush by hand
+
+    private final List<Realm.Transaction> flushed = new ArrayList<>();
+    private final List<String> databases = new ArrayList<>();
+    private final List<String> applied = new ArrayList<>();
+
+    // Runs the batch straight away instead of on a writer thread
+    private final TokenWriteQueue.Sink sink = (database, transaction, callback) -> {
+        databases.add(database);
+        flushed.add(transaction);
+        transaction.execute(null);
+        if (callback != null) callback.onComplete(null);
+    };
+
+    @Test
+    public void supersededWritesCollapse()
+    {
+        TokenWriteQueue queue = new TokenWriteQueue(sink, 100, NO_TIMER);
+        queue.enqueue(WALLET, "balance:a", r -> applied.add("a1"));
+        queue.enqueue(WALLET, "balance:b", r -> applied.add("b1"));
+        queue.enqueue(WALLET.toLowerCase(), "balance:a", r -> applied.add("a2"));
+
+        assertThat(queue.getPendingCount(), equalTo(2));
+        queue.flush(WALLET);
+
+        assertThat(flushed.size(), equalTo(1));
+        assertThat(databases.get(0), equalTo(WALLET.toLowerCase()));
+        assertThat(applied.size(), equalTo(2));
+        assertThat(applied.get(0), equalTo("b1"));
+        assertThat(applied.get(1), equalTo("a2")); //replacement moves to the end
+        assertThat(queue.getSupersededCount(), equalTo(1L));
+    }
+
+    @Test
+    public void flushesWhenFull()
+    {
+        TokenWriteQueue queue = new TokenWriteQueue(sink, 3, NO_TIMER);
+        for (int i = 0; i < 7; i++)
+        {
+            queue.enqueue(WALLET, "balance:" + i, r -> applied.add("x"));
+        }
+
+        assertThat(flushed.size(), equalTo(2));
+        assertThat(applied.size(), equalTo(6));
+        assertThat(queue.getPendingCount(), equalTo(1));
+
+        queue.flushAll();
+        assertThat(applied.size(), equalTo(7));
+        assertThat(queue.getPendingCount(), equalTo(0));
+    }
+
+    @Test
+    public void databasesFlushSeparately()
+    {
+        TokenWriteQueue queue = new TokenWriteQueue(sink, 100, NO_TIMER);
+        final int[] callbacks = { 0 };
+        queue.enqueue(WALLET, "token:a", r -> applied.add("token"), error -> callbacks[0]++);
+        queue.enqueue("tickers_db", "ticker:a", r -> applied.add("ticker"), error -> callbacks[0]++);
+
+        queue.flush("tickers_db");
+        assertThat(applied.size(), equalTo(1));
+        assertThat(applied.get(0), equalTo("ticker"));
+        assertThat(callbacks[0], equalTo(1));
+
+        queue.flush(WALLET);
+        assertThat(flushed.size(), equalTo(2));
+        assertThat(callbacks[0], equalTo(2));
+    }
+}
@@ -0,0 +1,185 @@
+package com.alphawallet.app;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.core.IsEqual.equalTo;
+import static org.hamcrest.core.IsNot.not;
+import static org.hamcrest.core.IsSame.sameInstance;
+
+import com.alphawallet.app.entity.FunctionData;
+import com.alphawallet.app.entity.Transaction;
+import com.alphawallet.app.entity.TransactionDecoder;
+import com.alphawallet.app.entity.TransactionInput;
+
+import org.junit.Test;
+import org.web3j.utils.Numeric;
+
+import java.math.BigInteger;
+
+/**
+ * Checks the byte decoder against the String decoder it replaced over the TransactionDecodingTest fixtures, and the
+ * by-hash cache in front of it.
+ */
+public class TransactionDecoderBytesTest
+{
+    private static final String WALLET = "0x007bee82bdd9e866b2bd114780a47f2261c684e3";
+
+    private final String[] fixtures = new TransactionDecodingTest().inputTestList;
+    private final TransactionDecoder decoder = new TransactionDecoder();
+
+    @Test
+    public void matchesStringDecoder()
+    {
+        for (String input : fixtures)
+        {
+            TransactionInput decoded = decoder.decodeInput(input);
+            TransactionInput legacy = new LegacyArgs().decode(input, decoded.functionData);
+
+            assertThat(input, decoded.hexArgs, equalTo(legacy.hexArgs));
+            assertThat(input, decoded.miscData, equalTo(legacy.miscData));
+            assertThat(input, decoded.addresses, equalTo(legacy.addresses));
+            assertThat(input, decoded.sigData, equalTo(legacy.sigData));
+            assertThat(input, decoded.arrayValues, equalTo(legacy.arrayValues));
+        }
+    }
+
+    @Test
+    public void cachedDecodeHandsOutCopies()
+    {
+        String input = fixtures[2]; //transfer(address,uint256)
+        Transaction tx = transaction("0x" + "ab".repeat(32), input);
+
+        TransactionInput first = decoder.decodeInput(tx, WALLET);
+        first.hexArgs.clear();
+        TransactionInput second = decoder.decodeInput(transaction(tx.hash, input), WALLET);
+
+        assertThat(second, not(sameInstance(first)));
+        assertThat(second.hexArgs, equalTo(decoder.decodeInput(input).hexArgs));
+    }
+
+    @Test
+    public void cacheFollowsChangedInput()
+    {
+        String hash = "0x" + "cd".repeat(32);
+        decoder.decodeInput(transaction(hash, "0x"), WALLET);
+        TransactionInput later = decoder.decodeInput(transaction(hash, fixtures[2]), WALLET);
+
+        assertThat(later.hexArgs, equalTo(decoder.decodeInput(fixtures[2]).hexArgs));
+    }
+
+    private static Transaction transaction(String hash, String input)
+    {
+        return new Transaction(hash, "0", "1", 0, 0, WALLET, "0xa0b86991c6218b36c1d19d4a2e9eb0ce3606eb48", "0", "21000",
+                "1", input, "21000", 1, null, "");
+    }
+
+    // Argument reading of the String decoder: substrings 64 digits at a time and BigInteger for every count
+    private static class LegacyArgs
+    {
+        private int parseIndex = TransactionDecoder.FUNCTION_LENGTH;
+        private boolean signature;
+        private int sigCount;
+
+        TransactionInput decode(String input, FunctionData functionData)
+        {
+            TransactionInput thisData = new TransactionInput();
+            if (functionData == null || functionData.args == null) return thisData;
+            try
+            {
+                for (String type : functionData.args)
+                {
+                    String argData = read256bits(input);
+                    if (argData.equals("0")) break;
+                    BigInteger count;
+                    switch (type)
+                    {
+                        case "bytes":
+                            BigInteger dataCount = Numeric.toBigInt(read256bits(input));
+                            String hexBytes = readBytes(input, dataCount.intValue());
+                            thisData.miscData.add(hexBytes);
+                            thisData.hexArgs.add(Numeric.prependHexPrefix(hexBytes));
+                            break;
+                        case "string":
+                            count = new BigInteger(argData, 16);
+                            StringBuilder sb = new StringBuilder();
+                            argData = read256bits(input);
+                            if (count.intValue() > argData.length()) count = BigInteger.valueOf(argData.length());
+                            for (int index = 0; index < (count.intValue() * 2); index += 2)
+                            {
+                                sb.append((char) Integer.parseInt(argData.substring(index, index + 2), 16));
+                            }
+                            thisData.miscData.add(Numeric.cleanHexPrefix(sb.toString()));
+                            thisData.hexArgs.add(new String(Numeric.hexStringToByteArray(sb.toString())));
+                            break;
+                        case "address":
+                            String addr = Numeric.prependHexPrefix(argData.substring(24));
+                            thisData.addresses.add(addr);
+                            thisData.hexArgs.add(addr);
+                            break;
+                        case "bytes32[]":
+                        case "uint16[]":
+                        case "uint256[]":
+                            count = new BigInteger(argData, 16);
+                            for (int i = 0; i < count.intValue(); i++)
+                            {
+                                String inputData = read256bits(input);
+                                thisData.arrayValues.add(new BigInteger(inputData, 16));
+                                thisData.hexArgs.add(inputData);
+                                if (inputData.equals("0")) break;
+                            }
+                            break;
+                        case "uint8":
+                            if (functionData.hasSig)
+                            {
+                                signature = true;
+                                sigCount = 0;
+                            }
+                            addArg(thisData, argData);
+                            break;
+                        case "bytes32":
+                        case "uint256":
+                        case "uint":
+                            addArg(thisData, argData);
+                            break;
+                        case "bool":
+                            thisData.hexArgs.add(new BigInteger(argData, 16).longValue() == 0 ? "false" : "true");
+                            break;
+                        default:
+                            break;
+                    }
+                }
+            }
+            catch (Exception e)
+            {
+                //decoding stopped here, as before
+            }
+            return thisData;
+        }
+
+        private void addArg(TransactionInput thisData, String input)
+        {
+            if (signature)
+            {
+                thisData.sigData.add(input);
+                if (++sigCount == 3) signature = false;
+            }
+            else
+            {
+                thisData.miscData.add(Numeric.cleanHexPrefix(input));
+            }
+            thisData.hexArgs.add(input);
+        }
+
+        private String readBytes(String input, int bytes)
+        {
+            if ((parseIndex + bytes) > input.length()) return "0";
+            String value = input.substring(parseIndex, parseIndex + bytes);
+            parseIndex += bytes;
+            return value;
+        }
+
+        private String read256bits(String input)
+        {
+            return readBytes(input, 64);
+        }
+    }
+}
@@ -0,0 +1,122 @@
+package com.alphawallet.app;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.core.IsEqual.equalTo;
+
+import com.alphawallet.app.entity.CovalentTransaction;
+import com.alphawallet.app.entity.EtherscanTransaction;
+import com.alphawallet.app.service.TransactionPageParser;
+import com.google.common.io.CharStreams;
+import com.google.common.io.Resources;
+import com.google.gson.Gson;
+
+import org.json.JSONObject;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Checks the streaming page decoder against the String -> JSONObject -> Gson path it replaced: every row must come out
+ * with the same fields.
+ */
+public class TransactionPageParserTest
+{
+    private static final int PAGESIZE = 800; //as TransactionsNetworkClient
+
+    private final Gson gson = new Gson();
+    private final TransactionPageParser parser = new TransactionPageParser(gson);
+    private final byte[] etherscanPage = etherscanPage(PAGESIZE).getBytes(StandardCharsets.UTF_8);
+    private final byte[] covalentPage;
+
+    public TransactionPageParserTest() throws IOException
+    {
+        covalentPage = Resources.toByteArray(Resources.getResource("covalenttxs.json"));
+    }
+
+    @Test
+    public void etherscanPageMatchesLegacy() throws Exception
+    {
+        EtherscanTransaction[] legacy = legacyEtherscan(etherscanPage);
+        List<EtherscanTransaction> streamed = new ArrayList<>();
+        int count = parser.readEtherscanPage(reader(etherscanPage), EtherscanTransaction.class, streamed::add);
+
+        assertThat(count, equalTo(PAGESIZE));
+        assertThat(streamed.size(), equalTo(legacy.length));
+        for (int i = 0; i < legacy.length; i++)
+        {
+            assertThat(gson.toJson(streamed.get(i)), equalTo(gson.toJson(legacy[i])));
+        }
+    }
+
+    @Test
+    public void covalentPageMatchesLegacy() throws Exception
+    {
+        CovalentTransaction[] legacy = legacyCovalent(covalentPage);
+        List<CovalentTransaction> streamed = new ArrayList<>();
+        parser.readCovalentPage(reader(covalentPage), streamed::add);
+
+        assertThat(streamed.size(), equalTo(legacy.length));
+        for (int i = 0; i < legacy.length; i++)
+        {
+            assertThat(gson.toJson(streamed.get(i)), equalTo(gson.toJson(legacy[i])));
+        }
+    }
+
+    @Test
+    public void nonArrayResultReadsNothing() throws Exception
+    {
+        byte[] rateLimited = "{\"status\":\"0\",\"message\":\"NOTOK\",\"result\":\"Max rate limit reached\"}".getBytes(StandardCharsets.UTF_8);
+        List<EtherscanTransaction> streamed = new ArrayList<>();
+        assertThat(parser.readEtherscanPage(reader(rateLimited), EtherscanTransaction.class, streamed::add), equalTo(0));
+        assertThat(streamed.size(), equalTo(0));
+    }
+
+    // The path TransactionsNetworkClient used: body as String, JSONObject, re-serialised array, Gson
+    private EtherscanTransaction[] legacyEtherscan(byte[] page) throws Exception
+    {
+        String body = CharStreams.toString(reader(page));
+        return gson.fromJson(new JSONObject(body).getJSONArray("result").toString(), EtherscanTransaction[].class);
+    }
+
+    private CovalentTransaction[] legacyCovalent(byte[] page) throws Exception
+    {
+        String body = CharStreams.toString(reader(page));
+        return gson.fromJson(new JSONObject(body).getJSONObject("data").getJSONArray("items").toString(), CovalentTransaction[].class);
+    }
+
+    private Reader reader(byte[] page)
+    {
+        return new InputStreamReader(new ByteArrayInputStream(page), StandardCharsets.UTF_8);
+    }
+
+    // Page shaped like an Etherscan txlist response
+    private static String etherscanPage(int rows)
+    {
+        StringBuilder sb = new StringBuilder("{\"status\":\"1\",\"message\":\"OK\",\"result\":[");
+        for (int i = 0; i < rows; i++)
+        {
+            if (i > 0) sb.append(',');
+            String hex = String.format("%064x", 0x5eed0000L + i);
+            sb.append("{\"blockNumber\":\"").append(18000000 - i)
+                    .append("\",\"timeStamp\":\"").append(1690000000L - i * 12L)
+                    .append("\",\"hash\":\"0x").append(hex)
+                    .append("\",\"nonce\":\"").append(i)
+                    .append("\",\"blockHash\":\"0x").append(hex)
+                    .append("\",\"transactionIndex\":\"").append(i % 200)
+                    .append("\",\"from\":\"0x99c839a196497eda48c5dee9545ce10d497fd8f5\",\"to\":\"0xa0b86991c6218b36c1d19d4a2e9eb0ce3606eb48\"")
+                    .append(",\"value\":\"").append(i * 1000000000L)
+                    .append("\",\"gas\":\"60000\",\"gasPrice\":\"21000000000\",\"isError\":\"0\",\"txreceipt_status\":\"1\"")
+                    .append(",\"input\":\"0xa9059cbb000000000000000000000000").append(hex, 24, 64).append(hex)
+                    .append("\",\"contractAddress\":\"\",\"cumulativeGasUsed\":\"").append(1000000 + i)
+                    .append("\",\"gasUsed\":\"46000\",\"confirmations\":\"").append(1000 + i)
+                    .append("\",\"methodId\":\"0xa9059cbb\",\"functionName\":\"transfer(address _to, uint256 _value)\"}");
+        }
+        return sb.append("]}").toString();
+    }
+}
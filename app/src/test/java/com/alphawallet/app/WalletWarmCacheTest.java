@@ -0,0 +1,157 @@
+package com.alphawallet.app;
+
+import static com.alphawallet.ethereum.EthereumNetworkBase.MAINNET_ID;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.core.IsEqual.equalTo;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+
+import com.alphawallet.app.entity.ContractType;
+import com.alphawallet.app.entity.tokendata.TokenGroup;
+import com.alphawallet.app.entity.tokens.TokenCardMeta;
+import com.alphawallet.app.service.WalletWarmCache;
+import com.alphawallet.shadows.ShadowApp;
+import com.alphawallet.shadows.ShadowKeyProviderFactory;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.annotation.Config;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+@RunWith(AndroidJUnit4.class)
+@Config(shadows = {ShadowApp.class, ShadowKeyProviderFactory.class})
+public class WalletWarmCacheTest
+{
+    private static final List<Long> FILTERS = Collections.singletonList(MAINNET_ID);
+    private static final String TOKEN_A = "0x1111111111111111111111111111111111111111";
+    private static final String TOKEN_B = "0x2222222222222222222222222222222222222222";
+
+    @Test
+    public void keepsTokensForSameFilters()
+    {
+        WalletWarmCache cache = new WalletWarmCache();
+        cache.putTokens(wallet(1), new TokenCardMeta[] { meta(TOKEN_A, "1") }, 10, FILTERS);
+        cache.putFiatValues(wallet(1), 12.5, 10.0);
+
+        WalletWarmCache.State state = cache.getTokens(wallet(1).toUpperCase(), FILTERS);
+        assertNotNull(state);
+        assertThat(state.getMetas().length, equalTo(1));
+        assertThat(state.getMetaVersion(), equalTo(10L));
+        assertTrue(state.hasFiatValues());
+        assertThat(state.getFiatValue(), equalTo(12.5));
+
+        //read with other chains selected; the list doesn't apply
+        assertNull(cache.getTokens(wallet(1), Arrays.asList(MAINNET_ID, 137L)));
+        assertNull(cache.getTokens(wallet(2), FILTERS));
+    }
+
+    @Test
+    public void mergesChangesSinceHeldVersion()
+    {
+        WalletWarmCache cache = new WalletWarmCache();
+        cache.putTokens(wallet(1), new TokenCardMeta[] { meta(TOKEN_A, "1") }, 10, FILTERS);
+
+        //changes against a list we don't hold are ignored
+        cache.mergeTokens(wallet(1), new TokenCardMeta[] { meta(TOKEN_B, "5") }, 9, 11);
+        assertThat(cache.getTokens(wallet(1), FILTERS).getMetas().length, equalTo(1));
+
+        cache.mergeTokens(wallet(1), new TokenCardMeta[] { meta(TOKEN_A, "2"), meta(TOKEN_B, "5") }, 10, 12);
+        WalletWarmCache.State state = cache.getTokens(wallet(1), FILTERS);
+        assertThat(state.getMetaVersion(), equalTo(12L));
+        assertThat(state.getMetas().length, equalTo(2));
+        assertThat(state.getMetas()[0].balance, equalTo("2"));
+        assertThat(state.getMetas()[1].getAddress(), equalTo(TOKEN_B));
+    }
+
+    @Test
+    public void mergeDropsDisabledTokens()
+    {
+        WalletWarmCache cache = new WalletWarmCache();
+        TokenCardMeta base = new TokenCardMeta(MAINNET_ID, wallet(1), "1", 0, 0, ContractType.ETHEREUM, TokenGroup.ASSET);
+        cache.putTokens(wallet(1), new TokenCardMeta[] { base, meta(TOKEN_A, "1"), meta(TOKEN_B, "5") }, 10, FILTERS);
+
+        TokenCardMeta hidden = meta(TOKEN_A, "1");
+        hidden.isEnabled = false;
+        TokenCardMeta disabledUnseen = new TokenCardMeta(MAINNET_ID, "0x3333333333333333333333333333333333333333", "7", 0, 0, ContractType.ERC20, TokenGroup.SPAM);
+        cache.mergeTokens(wallet(1), new TokenCardMeta[] { hidden, disabledUnseen }, 10, 11);
+
+        //the base chain token stays whether enabled or not, as in the full list
+        TokenCardMeta[] metas = cache.getTokens(wallet(1), FILTERS).getMetas();
+        assertThat(metas.length, equalTo(2));
+        assertThat(metas[0].getAddress(), equalTo(wallet(1)));
+        assertThat(metas[1].getAddress(), equalTo(TOKEN_B));
+    }
+
+    @Test
+    public void evictsLeastRecentlyUsed()
+    {
+        WalletWarmCache cache = new WalletWarmCache();
+        for (int i = 0; i < WalletWarmCache.MAX_WALLETS; i++)
+        {
+            cache.putTokens(wallet(i), new TokenCardMeta[] { meta(TOKEN_A, "1") }, i, FILTERS);
+        }
+
+        cache.getTokens(wallet(0), FILTERS); //touch the oldest
+        cache.putTokens(wallet(WalletWarmCache.MAX_WALLETS), new TokenCardMeta[] { meta(TOKEN_A, "1") }, 1, FILTERS);
+
+        assertThat(cache.size(), equalTo(WalletWarmCache.MAX_WALLETS));
+        assertNotNull(cache.getTokens(wallet(0), FILTERS));
+        assertNull(cache.getTokens(wallet(1), FILTERS));
+    }
+
+    @Test
+    public void staysWithinMemoryBudget()
+    {
+        WalletWarmCache cache = new WalletWarmCache();
+        TokenCardMeta[] large = new TokenCardMeta[3000]; //about 1.5MB by the cache's estimate
+        Arrays.fill(large, meta(TOKEN_A, "1"));
+        for (int i = 0; i < 10; i++)
+        {
+            cache.putTokens(wallet(i), large, i, FILTERS);
+            assertTrue(cache.estimatedBytes() <= WalletWarmCache.MEMORY_BUDGET);
+        }
+
+        assertThat(cache.size(), equalTo(5));
+        assertNotNull(cache.getTokens(wallet(9), FILTERS));
+
+        //a single wallet over budget is still kept, so the current wallet is always warm
+        TokenCardMeta[] huge = new TokenCardMeta[20000];
+        Arrays.fill(huge, meta(TOKEN_A, "1"));
+        cache.putTokens(wallet(10), huge, 1, FILTERS);
+        assertThat(cache.size(), equalTo(1));
+        assertNotNull(cache.getTokens(wallet(10), FILTERS));
+    }
+
+    @Test
+    public void keepsCheckTimes()
+    {
+        WalletWarmCache cache = new WalletWarmCache();
+        cache.putCheckTimes(wallet(1), Collections.singletonMap("key", 100L));
+        cache.putTokens(wallet(1), new TokenCardMeta[0], 1, FILTERS);
+
+        assertThat(cache.getCheckTimes(wallet(1)).get("key"), equalTo(100L));
+        assertTrue(cache.getCheckTimes(wallet(2)).isEmpty());
+
+        cache.remove(wallet(1));
+        assertThat(cache.size(), equalTo(0));
+        assertThat(cache.estimatedBytes(), equalTo(0L));
+    }
+
+    private static String wallet(int index)
+    {
+        return String.format("0x%040x", index + 1);
+    }
+
+    private static TokenCardMeta meta(String address, String balance)
+    {
+        TokenCardMeta meta = new TokenCardMeta(MAINNET_ID, address, balance, 0, 0, ContractType.ERC20, TokenGroup.ASSET);
+        meta.isEnabled = true;
+        return meta;
+    }
+}
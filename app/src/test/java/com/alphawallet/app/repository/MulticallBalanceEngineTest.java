@@ -0,0 +1,251 @@
+package com.alphawallet.app.repository;
+
+import static com.alphawallet.app.repository.TokensRealmSource.databaseKey;
+import static com.alphawallet.ethereum.EthereumNetworkBase.MAINNET_ID;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.core.IsEqual.equalTo;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+
+import com.alphawallet.app.entity.ContractType;
+import com.alphawallet.app.entity.tokens.Token;
+import com.alphawallet.app.entity.tokens.TokenInfo;
+import com.alphawallet.shadows.ShadowApp;
+import com.alphawallet.shadows.ShadowKeyProviderFactory;
+
+import org.json.JSONObject;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.annotation.Config;
+import org.web3j.protocol.Web3j;
+import org.web3j.protocol.http.HttpService;
+import org.web3j.utils.Numeric;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Runs the Multicall3 balance engine against a local stand-in JSON-RPC node which implements aggregate3
+ */
+@RunWith(AndroidJUnit4.class)
+@Config(shadows = {ShadowApp.class, ShadowKeyProviderFactory.class})
+public class MulticallBalanceEngineTest
+{
+    private static final String WALLET = "0x951c19daead668bfa8391c94286f8ce7cbda2fe3";
+    private static final String TOKEN_A = "0x1111111111111111111111111111111111111111";
+    private static final String TOKEN_B = "0x2222222222222222222222222222222222222222";
+    private static final String DEAD_TOKEN = "0x3333333333333333333333333333333333333333";
+    private static final String BALANCE_OF = "70a08231";
+    private static final String GET_ETH_BALANCE = "4d2301cc";
+
+    private final Map<String, BigInteger> contractBalances = new HashMap<>();
+    private ServerSocket server;
+    private Thread serverThread;
+    private Web3j web3j;
+    private volatile int requestCount;
+
+    @Before
+    public void setUp() throws Exception
+    {
+        contractBalances.put(TOKEN_A, new BigInteger("1000000000000000000"));
+        contractBalances.put(TOKEN_B, BigInteger.valueOf(42));
+
+        server = new ServerSocket(0, 50, InetAddress.getByName("127.0.0.1"));
+        serverThread = new Thread(this::serve);
+        serverThread.start();
+
+        web3j = Web3j.build(new HttpService("http://127.0.0.1:" + server.getLocalPort()));
+    }
+
+    @After
+    public void tearDown() throws Exception
+    {
+        web3j.shutdown();
+        server.close();
+        serverThread.join();
+    }
+
+    @Test
+    public void fetchesBalancesInOneRequest()
+    {
+        List<Token> tokens = Arrays.asList(
+                makeToken(WALLET, ContractType.ETHEREUM),
+                makeToken(TOKEN_A, ContractType.ERC20),
+                makeToken(TOKEN_B, ContractType.ERC20),
+                makeToken(DEAD_TOKEN, ContractType.ERC20));
+
+        Map<String, BigDecimal> balances = new MulticallBalanceEngine().fetchBalances(web3j, MAINNET_ID, WALLET, tokens);
+
+        assertThat(requestCount, equalTo(1));
+        assertThat(balances.get(databaseKey(MAINNET_ID, WALLET)), equalTo(new BigDecimal("5000000000000000000")));
+        assertThat(balances.get(databaseKey(MAINNET_ID, TOKEN_A)), equalTo(new BigDecimal("1000000000000000000")));
+        assertThat(balances.get(databaseKey(MAINNET_ID, TOKEN_B)), equalTo(BigDecimal.valueOf(42)));
+        //failed call must be left for the single token fallback
+        assertFalse(balances.containsKey(databaseKey(MAINNET_ID, DEAD_TOKEN)));
+    }
+
+    @Test
+    public void chunksLargeTokenLists()
+    {
+        List<Token> tokens = new ArrayList<>();
+        for (int i = 0; i < MulticallBalanceEngine.MAX_CALLS_PER_REQUEST + 10; i++)
+        {
+            String address = Numeric.toHexStringWithPrefixZeroPadded(BigInteger.valueOf(0x1000 + i), 40);
+            contractBalances.put(address, BigInteger.valueOf(i));
+            tokens.add(makeToken(address, ContractType.ERC20));
+        }
+
+        Map<String, BigDecimal> balances = new MulticallBalanceEngine().fetchBalances(web3j, MAINNET_ID, WALLET, tokens);
+
+        assertThat(requestCount, equalTo(2));
+        assertThat(balances.size(), equalTo(tokens.size()));
+    }
+
+    @Test
+    public void unsupportedChainFallsBack()
+    {
+        long customChain = 9876543210L;
+        Token token = new Token(new TokenInfo(TOKEN_A, "A", "A", 18, true, customChain), BigDecimal.ZERO, 0, "", ContractType.ERC20);
+
+        Map<String, BigDecimal> balances = new MulticallBalanceEngine().fetchBalances(web3j, customChain, WALLET, Collections.singletonList(token));
+
+        assertTrue(balances.isEmpty());
+        assertThat(requestCount, equalTo(0));
+    }
+
+    private Token makeToken(String address, ContractType type)
+    {
+        return new Token(new TokenInfo(address, "T", "T", 18, true, MAINNET_ID), BigDecimal.ZERO, 0, "Ethereum", type);
+    }
+
+    // Minimal single threaded HTTP/1.1 JSON-RPC endpoint
+    private void serve()
+    {
+        while (!server.isClosed())
+        {
+            try (Socket socket = server.accept())
+            {
+                BufferedReader reader = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+                int contentLength = 0;
+                String line;
+                while ((line = reader.readLine()) != null && !line.isEmpty())
+                {
+                    if (line.toLowerCase().startsWith("content-length:"))
+                    {
+                        contentLength = Integer.parseInt(line.substring(15).trim());
+                    }
+                }
+
+                char[] body = new char[contentLength];
+                int read = 0;
+                while (read < contentLength)
+                {
+                    read += reader.read(body, read, contentLength - read);
+                }
+
+                JSONObject rpc = new JSONObject(new String(body));
+                JSONObject tx = rpc.getJSONArray("params").getJSONObject(0);
+                requestCount++;
+
+                String result = handleAggregate3(tx.optString("data", tx.optString("input")));
+                byte[] response = ("{\"jsonrpc\":\"2.0\",\"id\":" + rpc.get("id") + ",\"result\":\"" + result + "\"}")
+                        .getBytes(StandardCharsets.UTF_8);
+                OutputStream os = socket.getOutputStream();
+                os.write(("HTTP/1.1 200 OK\r\nContent-Type: application/json\r\nConnection: close\r\nContent-Length: "
+                        + response.length + "\r\n\r\n").getBytes(StandardCharsets.UTF_8));
+                os.write(response);
+                os.flush();
+            }
+            catch (Exception e)
+            {
+                //socket closed at end of test
+            }
+        }
+    }
+
+    // Stand-in Multicall3: decode the aggregate3 call list, answer each call and encode Result[]
+    private String handleAggregate3(String input)
+    {
+        byte[] data = Numeric.hexStringToByteArray(input.substring(10)); //strip 0x + selector
+        int arrayStart = word(data, 0);
+        int count = word(data, arrayStart);
+        int base = arrayStart + 32;
+
+        List<byte[]> returns = new ArrayList<>();
+        List<Boolean> success = new ArrayList<>();
+        for (int i = 0; i < count; i++)
+        {
+            int tuple = base + word(data, base + i * 32);
+            String target = Numeric.toHexString(Arrays.copyOfRange(data, tuple + 12, tuple + 32));
+            int callStart = tuple + word(data, tuple + 64);
+            byte[] callData = Arrays.copyOfRange(data, callStart + 32, callStart + 32 + word(data, callStart));
+            String selector = Numeric.toHexStringNoPrefix(Arrays.copyOfRange(callData, 0, 4));
+
+            if (selector.equals(GET_ETH_BALANCE))
+            {
+                success.add(true);
+                returns.add(Numeric.toBytesPadded(new BigInteger("5000000000000000000"), 32));
+            }
+            else if (selector.equals(BALANCE_OF) && contractBalances.containsKey(target))
+            {
+                success.add(true);
+                returns.add(Numeric.toBytesPadded(contractBalances.get(target), 32));
+            }
+            else
+            {
+                success.add(false);
+                returns.add(new byte[0]);
+            }
+        }
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        writeWord(out, 32);
+        writeWord(out, count);
+        int offset = 32 * count;
+        for (byte[] r : returns)
+        {
+            writeWord(out, offset);
+            offset += 96 + ((r.length + 31) / 32) * 32;
+        }
+        for (int i = 0; i < count; i++)
+        {
+            byte[] r = returns.get(i);
+            writeWord(out, success.get(i) ? 1 : 0);
+            writeWord(out, 64);
+            writeWord(out, r.length);
+            out.write(r, 0, r.length);
+            out.write(new byte[((r.length + 31) / 32) * 32 - r.length], 0, ((r.length + 31) / 32) * 32 - r.length);
+        }
+
+        return Numeric.toHexString(out.toByteArray());
+    }
+
+    private static int word(byte[] data, int offset)
+    {
+        return new BigInteger(1, Arrays.copyOfRange(data, offset, offset + 32)).intValue();
+    }
+
+    private static void writeWord(ByteArrayOutputStream out, long value)
+    {
+        byte[] w = Numeric.toBytesPadded(BigInteger.valueOf(value), 32);
+        out.write(w, 0, w.length);
+    }
+}
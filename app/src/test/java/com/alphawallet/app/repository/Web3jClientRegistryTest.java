@@ -0,0 +1,112 @@
+package com.alphawallet.app.repository;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.core.IsEqual.equalTo;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.web3j.protocol.Web3j;
+import org.web3j.protocol.http.HttpService;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import okhttp3.OkHttpClient;
+
+public class Web3jClientRegistryTest
+{
+    private static final long CHAIN = 1L;
+
+    private final Map<Long, String[]> rpcUrls = new HashMap<>();
+    private final List<OkHttpClient> builtOn = new ArrayList<>();
+
+    @Before
+    public void setUp()
+    {
+        rpcUrls.put(CHAIN, new String[] { "https://rpc.example.org" });
+        Web3jClientRegistry.setFactories(rpcUrls::get, (chainId, urls, client) -> {
+            builtOn.add(client);
+            return Web3j.build(new HttpService(urls[0], client));
+        });
+    }
+
+    @After
+    public void tearDown()
+    {
+        Web3jClientRegistry.resetFactories();
+    }
+
+    @Test
+    public void eachProfileHasItsOwnClientOnSharedPool()
+    {
+        Web3j standard = Web3jClientRegistry.get(CHAIN, Web3jClientRegistry.Profile.STANDARD);
+        Web3j events = Web3jClientRegistry.get(CHAIN, Web3jClientRegistry.Profile.EVENTS);
+
+        assertNotSame(standard, events);
+        assertThat(builtOn.size(), equalTo(2));
+
+        OkHttpClient standardClient = builtOn.get(0);
+        OkHttpClient eventsClient = builtOn.get(1);
+        assertTrue(eventsClient.readTimeoutMillis() > standardClient.readTimeoutMillis());
+        assertTrue(eventsClient.connectTimeoutMillis() > standardClient.connectTimeoutMillis());
+        assertSame(standardClient.connectionPool(), eventsClient.connectionPool());
+        assertSame(standardClient.dispatcher(), eventsClient.dispatcher());
+    }
+
+    @Test
+    public void dispatcherAllowsHedgedCallsPerHost()
+    {
+        Web3jClientRegistry.get(CHAIN, Web3jClientRegistry.Profile.STANDARD);
+
+        //OkHttp's default of 5 per host would queue concurrent hedged reads
+        assertTrue(builtOn.get(0).dispatcher().getMaxRequestsPerHost() > 5);
+    }
+
+    @Test
+    public void clientsAreReused()
+    {
+        Web3j first = Web3jClientRegistry.get(CHAIN, Web3jClientRegistry.Profile.STANDARD);
+        Web3j second = Web3jClientRegistry.get(CHAIN, Web3jClientRegistry.Profile.STANDARD);
+
+        assertSame(first, second);
+        assertThat(builtOn.size(), equalTo(1));
+    }
+
+    @Test
+    public void invalidateRebuildsClients()
+    {
+        Web3j before = Web3jClientRegistry.get(CHAIN, Web3jClientRegistry.Profile.STANDARD);
+        Web3jClientRegistry.invalidate(CHAIN);
+        Web3j after = Web3jClientRegistry.get(CHAIN, Web3jClientRegistry.Profile.STANDARD);
+
+        assertNotSame(before, after);
+        assertNotSame(builtOn.get(0).connectionPool(), builtOn.get(1).connectionPool());
+    }
+
+    @Test
+    public void changedRpcListRebuildsClients()
+    {
+        Web3j before = Web3jClientRegistry.get(CHAIN, Web3jClientRegistry.Profile.EVENTS);
+        rpcUrls.put(CHAIN, new String[] { "https://rpc.example.org", "https://backup.example.org" });
+        Web3j after = Web3jClientRegistry.get(CHAIN, Web3jClientRegistry.Profile.EVENTS);
+
+        assertNotSame(before, after);
+        assertSame(after, Web3jClientRegistry.get(CHAIN, Web3jClientRegistry.Profile.EVENTS));
+    }
+
+    @Test
+    public void statsCountCallsPerChain()
+    {
+        Web3jClientRegistry.ClientStats empty = Web3jClientRegistry.getStats(2L);
+        assertThat(empty.totalCalls, equalTo(0L));
+
+        Web3jClientRegistry.get(CHAIN, Web3jClientRegistry.Profile.STANDARD);
+        assertThat(Web3jClientRegistry.getStats(CHAIN).chainId, equalTo(CHAIN));
+    }
+}
@@ -0,0 +1,88 @@
+package com.alphawallet.app.service;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.greaterThan;
+import static org.hamcrest.core.IsEqual.equalTo;
+
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+
+public class ExplorerRateLimiterTest
+{
+    private static final String ETHERSCAN = "https://api.etherscan.io/api?module=account&action=txlist";
+    private static final String POLYGONSCAN = "https://api.polygonscan.com/api?module=account&action=tokentx";
+
+    private long now = 0;
+    private final ExplorerRateLimiter limiter = new ExplorerRateLimiter(4, 1, 2.0, 2, () -> now);
+
+    @Test
+    public void burstThenPaced()
+    {
+        assertThat(limiter.reserve(ETHERSCAN), equalTo(0L));
+        assertThat(limiter.reserve(ETHERSCAN + "&page=2"), equalTo(0L));
+
+        //third call in the same instant waits for the next token at 2/s
+        assertThat(limiter.reserve(ETHERSCAN), equalTo(TimeUnit.MILLISECONDS.toNanos(500)));
+        //and the one after that queues behind it
+        assertThat(limiter.reserve(ETHERSCAN), equalTo(TimeUnit.MILLISECONDS.toNanos(1000)));
+
+        now += TimeUnit.SECONDS.toNanos(10);
+        assertThat(limiter.reserve(ETHERSCAN), equalTo(0L));
+    }
+
+    @Test
+    public void hostsHaveSeparateBuckets()
+    {
+        limiter.reserve(ETHERSCAN);
+        limiter.reserve(ETHERSCAN);
+        assertThat(limiter.reserve(ETHERSCAN), greaterThan(0L));
+        assertThat(limiter.reserve(POLYGONSCAN), equalTo(0L));
+    }
+
+    @Test
+    public void backOffHoldsHost() throws Exception
+    {
+        try (ExplorerRateLimiter.Permit permit = limiter.acquire(POLYGONSCAN))
+        {
+            permit.backOff();
+        }
+
+        //drained to -burst: the next token is burst + 1 tokens away
+        assertThat(limiter.reserve(POLYGONSCAN), equalTo(TimeUnit.MILLISECONDS.toNanos(1500)));
+    }
+
+    @Test(timeout = 5000)
+    public void permitReleasesHostSlot() throws Exception
+    {
+        //one slot per host; a leaked slot would block the second acquire forever
+        limiter.acquire(ETHERSCAN).close();
+        now += TimeUnit.SECONDS.toNanos(10);
+        limiter.acquire(ETHERSCAN).close();
+    }
+
+    @Test(timeout = 5000)
+    public void pacedHostDoesNotHoldGlobalSlot() throws Exception
+    {
+        ExplorerRateLimiter single = new ExplorerRateLimiter(1, 1, 0.5, 1, () -> now);
+        single.reserve(ETHERSCAN); //bucket empty: the next etherscan call waits 2s for its token
+
+        Thread paced = new Thread(() -> {
+            try
+            {
+                single.acquire(ETHERSCAN).close();
+            }
+            catch (InterruptedException e)
+            {
+                //expected
+            }
+        });
+        paced.start();
+        Thread.sleep(100);
+
+        long start = System.nanoTime();
+        single.acquire(POLYGONSCAN).close();
+        paced.interrupt();
+        assertThat(System.nanoTime() - start < TimeUnit.SECONDS.toNanos(1), equalTo(true));
+    }
+}
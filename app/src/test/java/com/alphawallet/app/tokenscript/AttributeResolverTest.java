@@ -0,0 +1,143 @@
+package com.alphawallet.app.tokenscript;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.core.IsEqual.equalTo;
+import static org.hamcrest.core.IsNull.nullValue;
+
+import com.alphawallet.app.entity.tokenscript.AttributeResolver;
+import com.alphawallet.token.entity.ParseResult;
+import com.alphawallet.token.entity.TokenScriptResult;
+import com.alphawallet.token.tools.TokenDefinition;
+
+import org.junit.Test;
+import org.xml.sax.SAXException;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import io.reactivex.schedulers.Schedulers;
+
+public class AttributeResolverTest implements ParseResult
+{
+    //'expired' is read per tokenId, 'paused' once for the contract
+    private final String script = "<ts:token xmlns:ethereum=\"urn:ethereum:constantinople\" xmlns:ts=\"http://tokenscript.org/2020/06/tokenscript\" custodian=\"false\">\n" +
+            "  <ts:label><ts:string xml:lang=\"en\">Ticket</ts:string></ts:label>\n" +
+            "  <ts:contract interface=\"erc721\" name=\"Ticket\">\n" +
+            "    <ts:address network=\"1\">0x63cCEF733a093E5Bd773b41C96D3eCE361464942</ts:address>\n" +
+            "  </ts:contract>\n" +
+            "  <ts:origins><ts:ethereum contract=\"Ticket\"></ts:ethereum></ts:origins>\n" +
+            "  <ts:attribute name=\"expired\">\n" +
+            "    <ts:type><ts:syntax>1.3.6.1.4.1.1466.115.121.1.7</ts:syntax></ts:type>\n" +
+            "    <ts:origins>\n" +
+            "      <ethereum:call as=\"bool\" contract=\"Ticket\" function=\"isExpired\">\n" +
+            "        <ts:data><ts:uint256 ref=\"tokenId\"></ts:uint256></ts:data>\n" +
+            "      </ethereum:call>\n" +
+            "    </ts:origins>\n" +
+            "  </ts:attribute>\n" +
+            "  <ts:attribute name=\"paused\">\n" +
+            "    <ts:type><ts:syntax>1.3.6.1.4.1.1466.115.121.1.7</ts:syntax></ts:type>\n" +
+            "    <ts:origins>\n" +
+            "      <ethereum:call as=\"bool\" contract=\"Ticket\" function=\"paused\"></ethereum:call>\n" +
+            "    </ts:origins>\n" +
+            "  </ts:attribute>\n" +
+            "</ts:token>\n";
+
+    private final TokenDefinition td;
+    private final List<String> attrNames = Arrays.asList("expired", "paused");
+    private final List<BigInteger> tokenIds = new ArrayList<>();
+
+    public AttributeResolverTest() throws IOException, SAXException
+    {
+        td = new TokenDefinition(new ByteArrayInputStream(script.getBytes(StandardCharsets.UTF_8)), new Locale("en"), this);
+        for (int i = 1; i <= 6; i++) tokenIds.add(BigInteger.valueOf(i));
+    }
+
+    @Override
+    public void parseMessage(ParseResultId parseResult)
+    {
+        //not testing parse
+    }
+
+    @Test
+    public void tokenIdAgnosticAttributeFetchedOnce()
+    {
+        List<AttributeResolver.Call> calls = AttributeResolver.buildCalls(td, attrNames, tokenIds);
+
+        //6 tokenIds x 'expired', plus 'paused' once under tokenId zero
+        assertThat(calls.size(), equalTo(7));
+        int paused = 0;
+        for (AttributeResolver.Call call : calls)
+        {
+            if (call.attr.name.equals("paused"))
+            {
+                paused++;
+                assertThat(call.tokenId, equalTo(BigInteger.ZERO));
+            }
+        }
+        assertThat(paused, equalTo(1));
+
+        //repeated tokenIds don't add work
+        List<BigInteger> repeated = new ArrayList<>(tokenIds);
+        repeated.addAll(tokenIds);
+        assertThat(AttributeResolver.buildCalls(td, attrNames, repeated).size(), equalTo(7));
+    }
+
+    @Test
+    public void resolvesEveryPair()
+    {
+        AtomicInteger fetches = new AtomicInteger();
+        AttributeResolver resolver = new AttributeResolver(4, Schedulers.io());
+
+        Map<BigInteger, Map<String, TokenScriptResult.Attribute>> results = resolver.resolve(td, attrNames, tokenIds, (attr, tokenId) -> {
+            fetches.incrementAndGet();
+            return new TokenScriptResult.Attribute(attr.name, attr.name, tokenId, attr.name + tokenId);
+        });
+
+        assertThat(fetches.get(), equalTo(7));
+        for (BigInteger tokenId : tokenIds)
+        {
+            assertThat(results.get(tokenId).get("expired").text, equalTo("expired" + tokenId));
+        }
+        assertThat(results.get(BigInteger.ZERO).get("paused").text, equalTo("paused0"));
+    }
+
+    @Test
+    public void concurrencyIsBounded()
+    {
+        AtomicInteger running = new AtomicInteger();
+        AtomicInteger maxRunning = new AtomicInteger();
+        AttributeResolver resolver = new AttributeResolver(2, Schedulers.io());
+
+        resolver.resolve(td, attrNames, tokenIds, (attr, tokenId) -> {
+            maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+            Thread.sleep(20);
+            running.decrementAndGet();
+            return new TokenScriptResult.Attribute(attr.name, attr.name, tokenId, "");
+        });
+
+        assertThat(maxRunning.get() <= 2, equalTo(true));
+    }
+
+    @Test
+    public void failedFetchIsLeftOut()
+    {
+        AttributeResolver resolver = new AttributeResolver(4, Schedulers.io());
+
+        Map<BigInteger, Map<String, TokenScriptResult.Attribute>> results = resolver.resolve(td, attrNames, Collections.singletonList(BigInteger.ONE), (attr, tokenId) -> {
+            if (attr.name.equals("paused")) throw new IOException("node unavailable");
+            return new TokenScriptResult.Attribute(attr.name, attr.name, tokenId, "true");
+        });
+
+        assertThat(results.get(BigInteger.ONE).get("expired").text, equalTo("true"));
+        assertThat(results.get(BigInteger.ZERO), nullValue());
+    }
+}
@@ -0,0 +1,331 @@
+package com.alphawallet.token.tools;
+
+import com.alphawallet.token.entity.ParseResult;
+
+import org.w3c.dom.Attr;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.NamedNodeMap;
+import org.w3c.dom.Node;
+import org.w3c.dom.ProcessingInstruction;
+import org.xml.sax.SAXException;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+import javax.xml.parsers.DocumentBuilderFactory;
+import javax.xml.parsers.ParserConfigurationException;
+
+/**
+ * Precompiled form of a TokenScript: the parsed XML tree written out as a compact binary, so a script which has been
+ * seen before is rebuilt into a DOM directly instead of being parsed again.
+ *
+ *   int magic, UTF source hash
+ *   varint count, then count strings (varint length, UTF-8 bytes); every name, value and text in the tree, once each
+ *   the document's child nodes; each node a kind byte then string indices, elements followed by their children
+ *
+ * The source hash is whatever the caller keys scripts by (eg the file MD5), so a stale form is never loaded for a
+ * changed script. The tree is kept exactly as the parser produced it, so TokenDefinition reads it the same way.
+ */
+public class CompiledTokenDefinition
+{
+    private static final int MAGIC = 0x54534231; //"TSB1"
+    private static final byte ELEMENT = 1;
+    private static final byte TEXT = 2;
+    private static final byte CDATA = 3;
+    private static final byte COMMENT = 4;
+    private static final byte PROCESSING_INSTRUCTION = 5;
+
+    /**
+     * Parse TokenScript XML with the settings TokenDefinition has always used
+     */
+    public static Document parseDocument(InputStream xml) throws IOException, SAXException
+    {
+        try
+        {
+            return newDocumentFactory().newDocumentBuilder().parse(xml);
+        }
+        catch (ParserConfigurationException e)
+        {
+            throw new IOException(e);
+        }
+    }
+
+    public static byte[] compile(Document xml, String sourceHash) throws IOException
+    {
+        Writer writer = new Writer();
+        writer.writeChildren(xml);
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream(writer.tree.size() + writer.stringBytes + 64);
+        DataOutputStream data = new DataOutputStream(out);
+        data.writeInt(MAGIC);
+        data.writeUTF(sourceHash);
+        writeVarInt(out, writer.strings.size());
+        for (String s : writer.strings)
+        {
+            byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+            writeVarInt(out, bytes.length);
+            out.write(bytes);
+        }
+        writer.tree.writeTo(out);
+        return out.toByteArray();
+    }
+
+    /**
+     * @return true if the compiled form was made from the script with this hash
+     */
+    public static boolean matches(byte[] compiled, String sourceHash)
+    {
+        try
+        {
+            ByteBuffer buffer = ByteBuffer.wrap(compiled);
+            return buffer.getInt() == MAGIC && readUTF(buffer).equals(sourceHash);
+        }
+        catch (RuntimeException e)
+        {
+            return false; //truncated or not a compiled script
+        }
+    }
+
+    public static Document load(byte[] compiled) throws IOException
+    {
+        try
+        {
+            ByteBuffer buffer = ByteBuffer.wrap(compiled);
+            if (buffer.getInt() != MAGIC) throw new IOException("Not a compiled TokenScript");
+            readUTF(buffer);
+
+            String[] strings = new String[readVarInt(buffer)];
+            for (int i = 0; i < strings.length; i++)
+            {
+                int length = readVarInt(buffer);
+                strings[i] = new String(compiled, buffer.position(), length, StandardCharsets.UTF_8);
+                buffer.position(buffer.position() + length);
+            }
+
+            Document doc = newDocumentFactory().newDocumentBuilder().newDocument();
+            new Reader(buffer, strings, doc).readChildren(doc);
+            return doc;
+        }
+        catch (ParserConfigurationException e)
+        {
+            throw new IOException(e);
+        }
+        catch (RuntimeException e)
+        {
+            throw new IOException("Corrupt compiled TokenScript", e);
+        }
+    }
+
+    public static TokenDefinition load(byte[] compiled, Locale locale, ParseResult result) throws IOException, SAXException
+    {
+        return new TokenDefinition(load(compiled), locale, result);
+    }
+
+    static DocumentBuilderFactory newDocumentFactory()
+    {
+        DocumentBuilderFactory dbFactory = DocumentBuilderFactory.newInstance();
+        dbFactory.setNamespaceAware(true);
+        dbFactory.setExpandEntityReferences(true);
+        dbFactory.setCoalescing(true);
+        return dbFactory;
+    }
+
+    private static class Writer
+    {
+        final ByteArrayOutputStream tree = new ByteArrayOutputStream();
+        final List<String> strings = new ArrayList<>();
+        final Map<String, Integer> indices = new HashMap<>();
+        int stringBytes;
+
+        void writeChildren(Node parent)
+        {
+            List<Node> children = new ArrayList<>();
+            for (Node n = parent.getFirstChild(); n != null; n = n.getNextSibling())
+            {
+                switch (n.getNodeType())
+                {
+                    case Node.ELEMENT_NODE:
+                    case Node.TEXT_NODE:
+                    case Node.CDATA_SECTION_NODE:
+                    case Node.COMMENT_NODE:
+                    case Node.PROCESSING_INSTRUCTION_NODE:
+                        children.add(n);
+                        break;
+                    default: //doctype; entities are already expanded
+                        break;
+                }
+            }
+
+            writeVarInt(tree, children.size());
+            for (Node n : children) writeNode(n);
+        }
+
+        void writeNode(Node n)
+        {
+            switch (n.getNodeType())
+            {
+                case Node.ELEMENT_NODE:
+                    tree.write(ELEMENT);
+                    writeName(n.getNamespaceURI(), n.getNodeName());
+                    NamedNodeMap attrs = n.getAttributes();
+                    writeVarInt(tree, attrs.getLength());
+                    for (int i = 0; i < attrs.getLength(); i++)
+                    {
+                        Attr attr = (Attr) attrs.item(i);
+                        writeName(attr.getNamespaceURI(), attr.getName());
+                        writeString(attr.getValue());
+                    }
+                    writeChildren(n);
+                    break;
+                case Node.TEXT_NODE:
+                    tree.write(TEXT);
+                    writeString(n.getNodeValue());
+                    break;
+                case Node.CDATA_SECTION_NODE:
+                    tree.write(CDATA);
+                    writeString(n.getNodeValue());
+                    break;
+                case Node.COMMENT_NODE:
+                    tree.write(COMMENT);
+                    writeString(n.getNodeValue());
+                    break;
+                default:
+                    ProcessingInstruction pi = (ProcessingInstruction) n;
+                    tree.write(PROCESSING_INSTRUCTION);
+                    writeString(pi.getTarget());
+                    writeString(pi.getData());
+                    break;
+            }
+        }
+
+        // Namespace is optional; written as index + 1, with 0 for none
+        void writeName(String namespace, String qualifiedName)
+        {
+            writeVarInt(tree, namespace != null ? intern(namespace) + 1 : 0);
+            writeString(qualifiedName);
+        }
+
+        void writeString(String s)
+        {
+            writeVarInt(tree, intern(s));
+        }
+
+        int intern(String s)
+        {
+            Integer index = indices.get(s);
+            if (index == null)
+            {
+                index = strings.size();
+                strings.add(s);
+                indices.put(s, index);
+                stringBytes += s.length() + 2;
+            }
+            return index;
+        }
+    }
+
+    private static class Reader
+    {
+        final ByteBuffer buffer;
+        final String[] strings;
+        final Document doc;
+
+        Reader(ByteBuffer buffer, String[] strings, Document doc)
+        {
+            this.buffer = buffer;
+            this.strings = strings;
+            this.doc = doc;
+        }
+
+        void readChildren(Node parent)
+        {
+            int count = readVarInt(buffer);
+            for (int i = 0; i < count; i++)
+            {
+                parent.appendChild(readNode());
+            }
+        }
+
+        Node readNode()
+        {
+            byte kind = buffer.get();
+            switch (kind)
+            {
+                case ELEMENT:
+                    Element element = doc.createElementNS(readNamespace(), readString());
+                    int attrCount = readVarInt(buffer);
+                    for (int i = 0; i < attrCount; i++)
+                    {
+                        String namespace = readNamespace();
+                        String name = readString();
+                        element.setAttributeNS(namespace, name, readString());
+                    }
+                    readChildren(element);
+                    return element;
+                case TEXT:
+                    return doc.createTextNode(readString());
+                case CDATA:
+                    return doc.createCDATASection(readString());
+                case COMMENT:
+                    return doc.createComment(readString());
+                case PROCESSING_INSTRUCTION:
+                    String target = readString();
+                    return doc.createProcessingInstruction(target, readString());
+                default:
+                    throw new IllegalStateException("Unknown node kind " + kind);
+            }
+        }
+
+        String readNamespace()
+        {
+            int index = readVarInt(buffer);
+            return index == 0 ? null : strings[index - 1];
+        }
+
+        String readString()
+        {
+            return strings[readVarInt(buffer)];
+        }
+    }
+
+    private static void writeVarInt(ByteArrayOutputStream out, int value)
+    {
+        while ((value & ~0x7F) != 0)
+        {
+            out.write((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.write(value);
+    }
+
+    private static int readVarInt(ByteBuffer buffer)
+    {
+        int value = 0;
+        for (int shift = 0; shift < 32; shift += 7)
+        {
+            byte b = buffer.get();
+            value |= (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) return value;
+        }
+        throw new IllegalStateException("Malformed varint");
+    }
+
+    // Same encoding as DataOutputStream.writeUTF, for the short hash header
+    private static String readUTF(ByteBuffer buffer)
+    {
+        int length = buffer.getShort() & 0xFFFF;
+        byte[] bytes = new byte[length];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
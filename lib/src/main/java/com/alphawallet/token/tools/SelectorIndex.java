@@ -0,0 +1,144 @@
+package com.alphawallet.token.tools;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Read only index from 4 byte function selector to text signature, laid out so it can be used straight from a
+ * memory mapped file:
+ *
+ *   int magic, int count
+ *   int[count]     selectors, ascending as unsigned values
+ *   int[count + 1] offsets of each signature in the string table; the last is the table length
+ *   byte[]         string table, UTF-8 signatures back to back
+ *
+ * All values big endian. A lookup is a binary search over the selectors and one string decode.
+ */
+public class SelectorIndex
+{
+    private static final int MAGIC = 0x53454c31; //"SEL1"
+    private static final int HEADER_SIZE = 8;
+
+    private final ByteBuffer buffer;
+    private final int count;
+    private final int offsetsAt;
+    private final int stringsAt;
+
+    public SelectorIndex(ByteBuffer buffer)
+    {
+        this.buffer = buffer;
+        if (buffer.capacity() < HEADER_SIZE || buffer.getInt(0) != MAGIC)
+        {
+            throw new IllegalArgumentException("Not a selector index");
+        }
+
+        count = buffer.getInt(4);
+        offsetsAt = HEADER_SIZE + count * 4;
+        stringsAt = offsetsAt + (count + 1) * 4;
+        if (count < 0 || stringsAt > buffer.capacity() || stringsAt + buffer.getInt(offsetsAt + count * 4) > buffer.capacity())
+        {
+            throw new IllegalArgumentException("Truncated selector index");
+        }
+    }
+
+    public int size()
+    {
+        return count;
+    }
+
+    /**
+     * @return text signature for the selector, or null if it isn't in the index
+     */
+    public String lookup(int selector)
+    {
+        int low = 0;
+        int high = count - 1;
+        while (low <= high)
+        {
+            int mid = (low + high) >>> 1;
+            int cmp = compareUnsigned(buffer.getInt(HEADER_SIZE + mid * 4), selector);
+            if (cmp < 0) low = mid + 1;
+            else if (cmp > 0) high = mid - 1;
+            else return signatureAt(mid);
+        }
+
+        return null;
+    }
+
+    /**
+     * @param hex selector, or whole call data, with or without 0x
+     * @return text signature, or null if not known or not a selector
+     */
+    public String lookup(String hex)
+    {
+        int selector = 0;
+        int start = hex.startsWith("0x") || hex.startsWith("0X") ? 2 : 0;
+        if (hex.length() < start + 8) return null;
+        for (int i = start; i < start + 8; i++)
+        {
+            int digit = Character.digit(hex.charAt(i), 16);
+            if (digit < 0) return null;
+            selector = (selector << 4) | digit;
+        }
+
+        return lookup(selector);
+    }
+
+    private String signatureAt(int index)
+    {
+        int start = buffer.getInt(offsetsAt + index * 4);
+        int end = buffer.getInt(offsetsAt + (index + 1) * 4);
+        byte[] text = new byte[end - start];
+        for (int i = 0; i < text.length; i++)
+        {
+            text[i] = buffer.get(stringsAt + start + i); //absolute reads, so lookups can run concurrently
+        }
+        return new String(text, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Write an index of the given signatures, keyed by selector
+     */
+    public static void write(Map<Integer, String> signatures, OutputStream out) throws IOException
+    {
+        List<Integer> selectors = new ArrayList<>(signatures.keySet());
+        selectors.sort(SelectorIndex::compareUnsigned);
+
+        DataOutputStream data = new DataOutputStream(out);
+        data.writeInt(MAGIC);
+        data.writeInt(selectors.size());
+        for (int selector : selectors) data.writeInt(selector);
+
+        List<byte[]> strings = new ArrayList<>();
+        int offset = 0;
+        for (int selector : selectors)
+        {
+            byte[] text = signatures.get(selector).getBytes(StandardCharsets.UTF_8);
+            strings.add(text);
+            data.writeInt(offset);
+            offset += text.length;
+        }
+        data.writeInt(offset);
+
+        for (byte[] text : strings) data.write(text);
+        data.flush();
+    }
+
+    public static int selectorOf(byte[] signatureHash)
+    {
+        return ((signatureHash[0] & 0xFF) << 24) | ((signatureHash[1] & 0xFF) << 16)
+                | ((signatureHash[2] & 0xFF) << 8) | (signatureHash[3] & 0xFF);
+    }
+
+    // Integer.compareUnsigned isn't available on all the Android versions we support
+    private static int compareUnsigned(int a, int b)
+    {
+        return Integer.compare(a + Integer.MIN_VALUE, b + Integer.MIN_VALUE);
+    }
+}
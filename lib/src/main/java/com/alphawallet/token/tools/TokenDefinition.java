@@ -58,7 +58,6 @@ import java.util.Map;
 import javax.xml.crypto.dsig.XMLSignatureFactory;
 import javax.xml.crypto.dsig.dom.DOMSignContext;
 import javax.xml.parsers.DocumentBuilder;
-import javax.xml.parsers.DocumentBuilderFactory;
 import javax.xml.parsers.ParserConfigurationException;
 
 public class TokenDefinition
@@ -495,11 +494,7 @@ public class TokenDefinition
         DocumentBuilder dBuilder;
 
         try {
-            DocumentBuilderFactory dbFactory = DocumentBuilderFactory.newInstance();
-            dbFactory.setNamespaceAware(true);
-            dbFactory.setExpandEntityReferences(true);
-            dbFactory.setCoalescing(true);
-            dBuilder = dbFactory.newDocumentBuilder();
+            dBuilder = CompiledTokenDefinition.newDocumentFactory().newDocumentBuilder();
             //DOMSignContext signContext = new DOMSignContext(privateKey, document.getDocumentElement());
             //XMLSignatureFactory ssig;
         } catch (ParserConfigurationException e) {
@@ -507,7 +502,23 @@ public class TokenDefinition
             e.printStackTrace();
             return;
         }
-        Document xml = dBuilder.parse(xmlAsset);
+        parse(dBuilder.parse(xmlAsset), result);
+    }
+
+    /**
+     * Build from an already parsed script; see {@link CompiledTokenDefinition}
+     */
+    public TokenDefinition(Document xml, Locale locale, ParseResult result) throws IllegalArgumentException, IOException, SAXException {
+        this.locale = locale;
+        if (locale.getLanguage().length() < 2 || locale.getLanguage().length() > 3) {
+            throw new SAXException("Locale object wasn't created following ISO 639");
+        }
+
+        parse(xml, result);
+    }
+
+    private void parse(Document xml, ParseResult result) throws IOException, SAXException
+    {
         xml.getDocumentElement().normalize();
         determineNamespace(xml, result);
 
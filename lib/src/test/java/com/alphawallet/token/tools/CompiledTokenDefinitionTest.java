@@ -0,0 +1,129 @@
+package com.alphawallet.token.tools;
+
+import com.alphawallet.token.entity.ParseResult;
+
+import org.junit.Test;
+import org.w3c.dom.Document;
+import org.xml.sax.SAXException;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class CompiledTokenDefinitionTest
+{
+    private static final Locale LOCALE = new Locale("en");
+
+    private final File scriptDir = new File("src/test/ts");
+
+    @Test
+    public void compiledScriptsMatchParsedScripts() throws Exception
+    {
+        for (File script : scripts())
+        {
+            byte[] xml = readAll(script);
+            Messages parsedMessages = new Messages();
+            Messages loadedMessages = new Messages();
+
+            String name = script.getName();
+            byte[] compiled = CompiledTokenDefinition.compile(CompiledTokenDefinition.parseDocument(new ByteArrayInputStream(xml)), "hash");
+            TokenDefinition parsed = parseOrNull(() -> new TokenDefinition(new ByteArrayInputStream(xml), LOCALE, parsedMessages));
+            TokenDefinition loaded = parseOrNull(() -> CompiledTokenDefinition.load(compiled, LOCALE, loadedMessages));
+
+            //scripts TokenDefinition rejects must be rejected the same way from the compiled form
+            assertEquals(name, parsed == null, loaded == null);
+            if (parsed == null) continue;
+
+            assertEquals(name, parsedMessages.received, loadedMessages.received);
+            assertEquals(name, parsed.nameSpace, loaded.nameSpace);
+            assertEquals(name, parsed.holdingToken, loaded.holdingToken);
+            assertEquals(name, parsed.attributes.keySet(), loaded.attributes.keySet());
+            assertEquals(name, parsed.contracts.keySet(), loaded.contracts.keySet());
+            assertEquals(name, parsed.actions.keySet(), loaded.actions.keySet());
+            if (parsed.holdingToken != null)
+            {
+                assertEquals(name, parsed.getTokenNameList(), loaded.getTokenNameList());
+                assertEquals(name, parsed.getTokenName(1), loaded.getTokenName(1));
+            }
+
+            //the rebuilt tree compiles back to the same bytes, so nothing in the document was lost
+            assertArrayEquals(name, compiled, CompiledTokenDefinition.compile(CompiledTokenDefinition.load(compiled), "hash"));
+        }
+    }
+
+    @Test
+    public void sourceHashIdentifiesScript() throws Exception
+    {
+        Document xml = CompiledTokenDefinition.parseDocument(new FileInputStream(new File(scriptDir, "DAI.tsml")));
+        byte[] compiled = CompiledTokenDefinition.compile(xml, "0123abcd");
+
+        assertTrue(CompiledTokenDefinition.matches(compiled, "0123abcd"));
+        assertFalse(CompiledTokenDefinition.matches(compiled, "0123abce"));
+        assertFalse(CompiledTokenDefinition.matches(new byte[] { 1, 2 }, "0123abcd"));
+        assertFalse(CompiledTokenDefinition.matches(Arrays.copyOf(compiled, 6), "0123abcd"));
+    }
+
+    @Test(expected = IOException.class)
+    public void rejectsTruncatedForm() throws Exception
+    {
+        Document xml = CompiledTokenDefinition.parseDocument(new FileInputStream(new File(scriptDir, "DAI.tsml")));
+        byte[] compiled = CompiledTokenDefinition.compile(xml, "hash");
+        CompiledTokenDefinition.load(Arrays.copyOf(compiled, compiled.length / 2));
+    }
+
+    private interface Load
+    {
+        TokenDefinition load() throws Exception;
+    }
+
+    private static TokenDefinition parseOrNull(Load load) throws Exception
+    {
+        try
+        {
+            return load.load();
+        }
+        catch (SAXException e)
+        {
+            return null;
+        }
+    }
+
+    private List<File> scripts()
+    {
+        File[] files = scriptDir.listFiles((dir, name) -> name.endsWith(".tsml") || name.endsWith(".xml"));
+        if (files == null || files.length == 0) fail("No scripts in " + scriptDir);
+        Arrays.sort(files);
+        return Arrays.asList(files);
+    }
+
+    private static byte[] readAll(File file) throws IOException
+    {
+        try (InputStream in = new FileInputStream(file))
+        {
+            return in.readAllBytes();
+        }
+    }
+
+    private static class Messages implements ParseResult
+    {
+        final List<ParseResultId> received = new ArrayList<>();
+
+        @Override
+        public void parseMessage(ParseResultId parseResult)
+        {
+            received.add(parseResult);
+        }
+    }
+}
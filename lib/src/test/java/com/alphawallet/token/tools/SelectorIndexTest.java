@@ -0,0 +1,113 @@
+package com.alphawallet.token.tools;
+
+import org.junit.Test;
+import org.web3j.crypto.Hash;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class SelectorIndexTest
+{
+    private final File bundledIndex = new File("../app/src/main/assets/selectors.idx");
+
+    @Test
+    public void lookupRoundTrip() throws IOException
+    {
+        String[] signatures = {
+                "transfer(address,uint256)",               //0xa9059cbb, above 0x7fffffff
+                "approve(address,uint256)",                //0x095ea7b3
+                "multicall(bytes[])",
+                "exactInputSingle((address,address,uint24,address,uint256,uint256,uint256,uint160))",
+                "deposit()"
+        };
+
+        Map<Integer, String> entries = new HashMap<>();
+        for (String signature : signatures)
+        {
+            entries.put(selectorOf(signature), signature);
+        }
+
+        SelectorIndex index = new SelectorIndex(ByteBuffer.wrap(write(entries)));
+        assertEquals(signatures.length, index.size());
+        for (String signature : signatures)
+        {
+            assertEquals(signature, index.lookup(selectorOf(signature)));
+        }
+
+        assertEquals("transfer(address,uint256)", index.lookup("0xa9059cbb"));
+        assertEquals("approve(address,uint256)", index.lookup("095ea7b3000000000000000000000000"));
+        assertNull(index.lookup("0x12345678"));
+        assertNull(index.lookup(0xffffffff));
+        assertNull(index.lookup(0));
+        assertNull(index.lookup("0xa905"));
+        assertNull(index.lookup("0xzz059cbb"));
+    }
+
+    @Test
+    public void emptyIndex() throws IOException
+    {
+        SelectorIndex index = new SelectorIndex(ByteBuffer.wrap(write(new HashMap<>())));
+        assertEquals(0, index.size());
+        assertNull(index.lookup("0xa9059cbb"));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsTruncatedIndex() throws IOException
+    {
+        Map<Integer, String> entries = new HashMap<>();
+        entries.put(selectorOf("deposit()"), "deposit()");
+        byte[] data = write(entries);
+        ByteBuffer truncated = ByteBuffer.wrap(data, 0, data.length - 2).slice();
+        new SelectorIndex(truncated);
+    }
+
+    @Test
+    public void bundledIndexMatchesSignatures() throws IOException
+    {
+        assertTrue(bundledIndex.exists());
+        SelectorIndex index = new SelectorIndex(ByteBuffer.wrap(readAll(bundledIndex)));
+        assertTrue(index.size() > 0);
+
+        //each entry must be the signature its selector hashes from
+        for (String signature : new String[] { "transfer(address,uint256)", "transferFrom(address,address,uint256)",
+                "safeTransferFrom(address,address,uint256,uint256,bytes)", "setApprovalForAll(address,bool)" })
+        {
+            assertEquals(signature, index.lookup(selectorOf(signature)));
+        }
+    }
+
+    private static int selectorOf(String signature)
+    {
+        return SelectorIndex.selectorOf(Hash.sha3(signature.getBytes(StandardCharsets.UTF_8)));
+    }
+
+    private static byte[] write(Map<Integer, String> entries) throws IOException
+    {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        SelectorIndex.write(entries, out);
+        return out.toByteArray();
+    }
+
+    private static byte[] readAll(File file) throws IOException
+    {
+        try (InputStream in = new FileInputStream(file))
+        {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            byte[] buffer = new byte[4096];
+            int read;
+            while ((read = in.read(buffer)) != -1) out.write(buffer, 0, read);
+            return out.toByteArray();
+        }
+    }
+}
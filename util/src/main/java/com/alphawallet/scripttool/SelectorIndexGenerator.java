@@ -0,0 +1,65 @@
+package com.alphawallet.scripttool;
+
+import com.alphawallet.token.tools.SelectorIndex;
+
+import org.web3j.crypto.Hash;
+
+import java.io.BufferedReader;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Builds the app's bundled function selector index (see SelectorIndex) from a list of text signatures, one per
+ * line; blank lines and lines starting with # are skipped. Where two signatures share a selector the first listed
+ * wins, so list the common one first.
+ *
+ * Usage: SelectorIndexGenerator signatures.txt selectors.idx
+ */
+public class SelectorIndexGenerator
+{
+    public static void main(String[] args) throws IOException
+    {
+        if (args.length != 2)
+        {
+            System.out.println("Usage: SelectorIndexGenerator <signature list> <index file>");
+            return;
+        }
+
+        Map<Integer, String> signatures = new LinkedHashMap<>();
+        int lineNumber = 0;
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(args[0]), StandardCharsets.UTF_8)))
+        {
+            String line;
+            while ((line = reader.readLine()) != null)
+            {
+                lineNumber++;
+                String signature = line.replace(" ", "").trim();
+                if (signature.isEmpty() || signature.startsWith("#")) continue;
+                if (!signature.matches("[A-Za-z_$][A-Za-z0-9_$]*\\(.*\\)"))
+                {
+                    throw new IllegalArgumentException("Line " + lineNumber + " is not a function signature: " + line);
+                }
+
+                int selector = SelectorIndex.selectorOf(Hash.sha3(signature.getBytes(StandardCharsets.UTF_8)));
+                String existing = signatures.putIfAbsent(selector, signature);
+                if (existing != null && !existing.equals(signature))
+                {
+                    System.out.println("Selector clash, keeping " + existing + " over " + signature);
+                }
+            }
+        }
+
+        try (OutputStream out = new FileOutputStream(args[1]))
+        {
+            SelectorIndex.write(signatures, out);
+        }
+
+        System.out.println("Wrote " + signatures.size() + " selectors to " + args[1]);
+    }
+}